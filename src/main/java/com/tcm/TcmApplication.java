@@ -4,10 +4,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableJpaRepositories
 @EnableFeignClients // 启用Feign客户端
+@EnableScheduling // 启用定时任务（ID机器号租约续期等）
 public class TcmApplication {
     public static void main(String[] args) {
         SpringApplication.run(TcmApplication.class, args);
@@ -1,12 +1,21 @@
 package com.tcm.api;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.tcm.service.AIAnalysisService;
+import com.tcm.service.AIDiagnosisCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * AI分析与结果处理API接口
@@ -19,6 +28,16 @@ public class AIAnalysisAPI {
     @Autowired
     private AIAnalysisService aiAnalysisService;
 
+    @Autowired
+    private AIDiagnosisCache aiDiagnosisCache;
+
+    @Autowired
+    @Qualifier("analysisExecutor")
+    private ThreadPoolTaskExecutor analysisExecutor;
+
+    // 流式分析连接的最长保持时间
+    private static final long STREAM_TIMEOUT_MS = 180000L;
+
     /**
      * 根据就诊ID整合数据，调用AI分析，并处理结果
      * @param visitId 就诊记录ID
@@ -29,6 +48,12 @@ public class AIAnalysisAPI {
         try {
             Map<String, Object> aiAnalysisResult = aiAnalysisService.analyzeAndProcess(visitId);
             return ResponseEntity.ok().body(aiAnalysisResult);
+        } catch (RejectedExecutionException e) {
+            // 模型服务并发已满且等待超时
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "系统繁忙");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(503).body(errorResponse);
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, Object> errorResponse = new HashMap<>();
@@ -37,4 +62,76 @@ public class AIAnalysisAPI {
             return ResponseEntity.status(500).body(errorResponse);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * AI诊断缓存命中统计
+     * @return 内存层/持久化层命中数、未命中数和命中率
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<?> getCacheStats() {
+        return ResponseEntity.ok(aiDiagnosisCache.getStats());
+    }
+
+    /**
+     * 流式AI分析（Server-Sent Events）
+     * 事件类型：token（模型增量输出）、field（某个诊断字段已完整生成）、result（最终结果）、error（失败）
+     * 使用GET以便浏览器直接通过EventSource订阅
+     * @param visitId 就诊记录ID
+     * @return SSE事件流
+     */
+    @GetMapping(value = "/analyze-and-process/{visitId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter analyzeAndProcessStream(@PathVariable Long visitId) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        try {
+            analysisExecutor.execute(() -> {
+                try {
+                    Map<String, Object> aiAnalysisResult = aiAnalysisService.analyzeAndProcessStreaming(visitId, new AIAnalysisService.StreamListener() {
+                        @Override
+                        public void onToken(String content) {
+                            Map<String, Object> data = new HashMap<>();
+                            data.put("content", content);
+                            sendEvent(emitter, "token", data);
+                        }
+
+                        @Override
+                        public void onField(String name, JsonNode value) {
+                            Map<String, Object> data = new HashMap<>();
+                            data.put("name", name);
+                            data.put("value", value);
+                            sendEvent(emitter, "field", data);
+                        }
+                    });
+                    sendEvent(emitter, "result", aiAnalysisResult);
+                    emitter.complete();
+                } catch (RejectedExecutionException e) {
+                    sendError(emitter, "系统繁忙", e);
+                } catch (Exception e) {
+                    sendError(emitter, "Failed to call AI model", e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            sendError(emitter, "系统繁忙", new RuntimeException("AI分析队列已满，请稍后重试"));
+        }
+        return emitter;
+    }
+
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开：忽略后续推送，但不中断分析，结果仍会保存到就诊记录
+        }
+    }
+
+    private void sendError(SseEmitter emitter, String error, Exception e) {
+        try {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", error);
+            errorResponse.put("message", e.getMessage() != null ? e.getMessage() : "未知错误");
+            emitter.send(SseEmitter.event().name("error").data(errorResponse, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (Exception sendException) {
+            emitter.completeWithError(e);
+        }
+    }
+}
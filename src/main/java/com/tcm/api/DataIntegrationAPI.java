@@ -1,11 +1,22 @@
 package com.tcm.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tcm.service.DataIntegrationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -18,6 +29,11 @@ public class DataIntegrationAPI {
     @Autowired
     private DataIntegrationService dataIntegrationService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     /**
      * 仅整合数据，不调用AI
      * @param visitId 就诊记录ID
@@ -33,4 +49,63 @@ public class DataIntegrationAPI {
         }
         return ResponseEntity.ok().body(integratedData);
     }
-}
\ No newline at end of file
+
+    /**
+     * 批量整合多个就诊的数据，不调用AI
+     * 请求体二选一：{"visitIds": [1, 2, 3]} 或 {"from": "2024-01-01", "to": "2024-02-01"}（按就诊时间，左闭右开，
+     * 也可以带时间如 "2024-01-01T08:00:00"）
+     * 以NDJSON逐行返回，每行一条与 /data-by-visit/{visitId} 相同结构的整合数据；
+     * 不存在的就诊返回 {"编号": id, "error": "..."}
+     * @param request 就诊ID列表或时间范围
+     * @return NDJSON数据流
+     */
+    @PostMapping("/data-by-visits")
+    public ResponseEntity<?> getDataByVisitIds(@RequestBody Map<String, Object> request) {
+        List<Long> visitIds;
+        try {
+            if (request.get("visitIds") instanceof List) {
+                visitIds = new ArrayList<>();
+                for (Object id : (List<?>) request.get("visitIds")) {
+                    visitIds.add(Long.valueOf(id.toString()));
+                }
+            } else if (request.get("from") != null && request.get("to") != null) {
+                visitIds = dataIntegrationService.findVisitIdsByDateRange(
+                        parseDateTime(request.get("from").toString()), parseDateTime(request.get("to").toString()));
+            } else {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("error", "Invalid request");
+                errorResponse.put("message", "需要提供 visitIds 或 from/to 时间范围");
+                return ResponseEntity.badRequest().body(errorResponse);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Invalid request");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+
+        final List<Long> ids = visitIds;
+        StreamingResponseBody body = outputStream -> {
+            try {
+                dataIntegrationService.integrateDataByVisitIds(ids, data -> writeLine(outputStream, data));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private void writeLine(OutputStream outputStream, Map<String, Object> data) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(data));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            // 客户端断开时终止后续批次的查询
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private LocalDateTime parseDateTime(String value) {
+        return value.length() <= 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value);
+    }
+}
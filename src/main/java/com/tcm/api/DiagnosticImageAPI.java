@@ -1,15 +1,28 @@
 package com.tcm.api;
 
+import com.tcm.dto.CursorPage;
+import com.tcm.dto.DiagnosticImageContent;
 import com.tcm.dto.DiagnosticImageResponse;
+import com.tcm.dto.SimilarImageResponse;
 import com.tcm.model.DiagnosticImage;
 import com.tcm.service.DiagnosticImageService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 诊断图片API控制器
@@ -19,6 +32,15 @@ import java.util.List;
 @RequestMapping("/api/diagnostic-images")
 public class DiagnosticImageAPI {
 
+    // 相似图片查询的最大返回数量
+    private static final int MAX_SIMILAR_RESULTS = 100;
+
+    // Tomcat sendfile请求属性
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private DiagnosticImageService diagnosticImageService;
 
@@ -42,9 +64,18 @@ public class DiagnosticImageAPI {
 
     /**
      * 根据ID获取诊断图片
+     * 指定 fields（逗号分隔，如 fields=id,imageType,thumbnailPath）时只查询并返回这些字段
      */
     @GetMapping("/{id}")
-    public ResponseEntity<DiagnosticImageResponse> getDiagnosticImage(@PathVariable Long id) {
+    public ResponseEntity<?> getDiagnosticImage(@PathVariable Long id, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                Optional<Map<String, Object>> summary = diagnosticImageService.getDiagnosticImageSummary(id, fields);
+                return summary.isPresent() ? ResponseEntity.ok(summary.get()) : ResponseEntity.notFound().build();
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         DiagnosticImageResponse response = diagnosticImageService.getDiagnosticImageById(id);
         if (response != null) {
             return ResponseEntity.ok(response);
@@ -55,31 +86,169 @@ public class DiagnosticImageAPI {
 
     /**
      * 根据就诊ID获取诊断图片列表
+     * 指定 fields 时只查询并返回这些字段，按创建时间倒序
      */
     @GetMapping("/visit/{visitId}")
-    public ResponseEntity<List<DiagnosticImageResponse>> getDiagnosticImagesByVisitId(@PathVariable Long visitId) {
+    public ResponseEntity<?> getDiagnosticImagesByVisitId(@PathVariable Long visitId, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(diagnosticImageService.getDiagnosticImageSummaries(visitId, null, fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<DiagnosticImageResponse> responses = diagnosticImageService.getDiagnosticImagesByVisitId(visitId);
         return ResponseEntity.ok(responses);
     }
 
     /**
      * 根据图片类型获取诊断图片列表
+     * 指定 fields 时只查询并返回这些字段，按创建时间倒序
      */
     @GetMapping("/type/{imageType}")
-    public ResponseEntity<List<DiagnosticImageResponse>> getDiagnosticImagesByType(@PathVariable String imageType) {
+    public ResponseEntity<?> getDiagnosticImagesByType(@PathVariable String imageType, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(diagnosticImageService.getDiagnosticImageSummaries(null, imageType, fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<DiagnosticImageResponse> responses = diagnosticImageService.getDiagnosticImagesByImageType(imageType);
         return ResponseEntity.ok(responses);
     }
 
     /**
      * 获取所有诊断图片列表
+     * 指定 fields 时只查询并返回这些字段，按创建时间倒序
      */
     @GetMapping
-    public ResponseEntity<List<DiagnosticImageResponse>> getAllDiagnosticImages() {
+    public ResponseEntity<?> getAllDiagnosticImages(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(diagnosticImageService.getDiagnosticImageSummaries(null, null, fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<DiagnosticImageResponse> responses = diagnosticImageService.getAllDiagnosticImages();
         return ResponseEntity.ok(responses);
     }
 
+    /**
+     * 游标分页查询诊断图片，按创建时间倒序
+     * 可选筛选：visitId 就诊ID，imageType 图片类型
+     * 翻页时把上一页返回的 nextCursor 作为 cursor 传入；size 默认20、最大200；withTotal=true 时返回总数
+     * 每条记录默认只包含摘要字段，可通过 fields 指定返回的字段
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> getDiagnosticImagesPage(
+            @RequestParam(required = false) Long visitId,
+            @RequestParam(required = false) String imageType,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(required = false) String fields) {
+        try {
+            CursorPage<Map<String, Object>> page = diagnosticImageService.getDiagnosticImagesPage(visitId, imageType, cursor, size, withTotal, fields);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return invalidRequest(e);
+        }
+    }
+
+    /**
+     * 下载诊断图片内容
+     * variant 可选 original（原图，默认）、512（模型输入图）、thumb（缩略图）、preview（预览图）
+     * 支持 Range 分段请求和 If-None-Match 条件请求；按内容寻址的图片返回强ETag并允许浏览器长期缓存
+     */
+    @GetMapping("/{id}/content")
+    public ResponseEntity<?> getDiagnosticImageContent(
+            @PathVariable Long id,
+            @RequestParam(value = "variant", defaultValue = "original") String variant,
+            HttpServletRequest request) {
+        DiagnosticImageContent content;
+        try {
+            content = diagnosticImageService.getDiagnosticImageContent(id, variant);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Invalid variant");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (IllegalStateException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Content not available");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        } catch (IOException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Failed to read image");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+        if (content == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // 诊断图片属于患者隐私，只允许浏览器私有缓存
+        CacheControl cacheControl = content.isImmutable()
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable()
+                : CacheControl.noCache().cachePrivate();
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(content.getEtag())
+                .cacheControl(cacheControl)
+                .contentType(content.getContentType())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header("X-Content-Type-Options", "nosniff");
+
+        // 完整下载且容器支持sendfile时，由Tomcat直接把文件交给内核发送，不经过JVM堆
+        if (canSendfile(request)) {
+            try {
+                long length = Files.size(content.getPath());
+                request.setAttribute(SENDFILE_FILENAME, content.getPath().toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, length);
+                return builder.contentLength(length).build();
+            } catch (IOException e) {
+                // 读取文件大小失败时退回普通输出
+            }
+        }
+        // 分段请求和条件请求由Spring根据资源类型和ETag处理（206 / 304）
+        return builder.body(new FileSystemResource(content.getPath()));
+    }
+
+    /**
+     * 查询与指定舌象图片最相似的历史图片及其就诊的证型
+     * k 默认10，最大100
+     */
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<?> getSimilarImages(@PathVariable Long id,
+                                              @RequestParam(value = "k", defaultValue = "10") int k) {
+        if (k < 1 || k > MAX_SIMILAR_RESULTS) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Invalid k");
+            errorResponse.put("message", "k必须在1到" + MAX_SIMILAR_RESULTS + "之间");
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        try {
+            List<SimilarImageResponse> responses = diagnosticImageService.findSimilarImages(id, k);
+            if (responses == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(responses);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Unsupported image type");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (IllegalStateException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Image not processed");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+        }
+    }
+
     /**
      * 删除诊断图片
      */
@@ -88,4 +257,22 @@ public class DiagnosticImageAPI {
         diagnosticImageService.deleteDiagnosticImage(id);
         return ResponseEntity.noContent().build();
     }
+
+    private ResponseEntity<Map<String, Object>> invalidRequest(IllegalArgumentException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Invalid request");
+        errorResponse.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+
+    /**
+     * 只有不带Range和条件请求头的完整GET请求才走sendfile，其余情况需要由Spring计算206/304响应
+     */
+    private boolean canSendfile(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))
+                && "GET".equals(request.getMethod())
+                && request.getHeader(HttpHeaders.RANGE) == null
+                && request.getHeader(HttpHeaders.IF_NONE_MATCH) == null
+                && request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) == null;
+    }
 }
\ No newline at end of file
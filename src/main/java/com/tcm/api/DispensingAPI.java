@@ -0,0 +1,112 @@
+package com.tcm.api;
+
+import com.tcm.model.StockReservation;
+import com.tcm.service.DispensingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * 发药API控制器
+ * 发药分两步：先为处方预占（扣减）库存，药房配药完成后确认；取消或超时未确认时自动归还库存
+ */
+@RestController
+@RequestMapping("/api/dispensing")
+public class DispensingAPI {
+
+    @Autowired
+    private DispensingService dispensingService;
+
+    /**
+     * 为处方预占库存，所有药材一起扣减，任一药材库存不足时都不扣减并返回409及不足的药材
+     * doses 为剂数，不传时使用处方的治疗天数
+     */
+    @PostMapping("/prescriptions/{prescriptionId}/reservations")
+    public ResponseEntity<?> reserve(@PathVariable Long prescriptionId, @RequestParam(required = false) Integer doses) {
+        try {
+            StockReservation reservation = dispensingService.reserve(prescriptionId, doses);
+            return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+        } catch (DispensingService.InsufficientStockException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "库存不足");
+            errorResponse.put("message", e.getMessage());
+            errorResponse.put("shortages", e.getShortages());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+        } catch (RuntimeException e) {
+            return errorResponse(e);
+        }
+    }
+
+    /**
+     * 查询处方的库存预占记录，按创建时间倒序
+     */
+    @GetMapping("/prescriptions/{prescriptionId}/reservations")
+    public ResponseEntity<List<StockReservation>> getReservationsByPrescriptionId(@PathVariable Long prescriptionId) {
+        return ResponseEntity.ok(dispensingService.getReservationsByPrescriptionId(prescriptionId));
+    }
+
+    /**
+     * 根据ID获取库存预占
+     */
+    @GetMapping("/reservations/{id}")
+    public ResponseEntity<StockReservation> getReservation(@PathVariable Long id) {
+        Optional<StockReservation> reservation = dispensingService.getReservation(id);
+        if (reservation.isPresent()) {
+            return ResponseEntity.ok(reservation.get());
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * 确认发药，处方标记为已取药
+     */
+    @PostMapping("/reservations/{id}/confirm")
+    public ResponseEntity<?> confirm(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(dispensingService.confirm(id));
+        } catch (RuntimeException e) {
+            return errorResponse(e);
+        }
+    }
+
+    /**
+     * 取消预占并归还库存
+     */
+    @PostMapping("/reservations/{id}/cancel")
+    public ResponseEntity<?> cancel(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(dispensingService.cancel(id));
+        } catch (RuntimeException e) {
+            return errorResponse(e);
+        }
+    }
+
+    private ResponseEntity<?> errorResponse(RuntimeException e) {
+        HttpStatus status;
+        String error;
+        if (e instanceof NoSuchElementException) {
+            status = HttpStatus.NOT_FOUND;
+            error = "Not found";
+        } else if (e instanceof IllegalStateException) {
+            status = HttpStatus.CONFLICT;
+            error = "Invalid state";
+        } else if (e instanceof IllegalArgumentException) {
+            status = HttpStatus.BAD_REQUEST;
+            error = "Invalid request";
+        } else {
+            throw e;
+        }
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", error);
+        errorResponse.put("message", e.getMessage());
+        return ResponseEntity.status(status).body(errorResponse);
+    }
+}
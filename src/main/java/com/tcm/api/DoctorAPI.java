@@ -1,5 +1,6 @@
 package com.tcm.api;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.Doctor;
 import com.tcm.service.DoctorService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,7 +8,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -22,18 +25,58 @@ public class DoctorAPI {
 
     /**
      * 获取所有医生
+     * 指定 fields（逗号分隔，如 fields=id,name,department）时只查询并返回这些字段，按创建时间倒序
      */
     @GetMapping
-    public ResponseEntity<List<Doctor>> getAllDoctors() {
+    public ResponseEntity<?> getAllDoctors(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(doctorService.getDoctorSummaries(fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<Doctor> doctors = doctorService.getAllDoctors();
         return ResponseEntity.ok(doctors);
     }
 
+    /**
+     * 游标分页查询医生，按创建时间倒序
+     * 可选筛选：name 姓名包含，department 科室，status 状态
+     * 翻页时把上一页返回的 nextCursor 作为 cursor 传入；size 默认20、最大200；withTotal=true 时返回总数
+     * 每条记录默认只包含摘要字段，可通过 fields 指定返回的字段
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> getDoctorsPage(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String department,
+            @RequestParam(required = false) Integer status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(required = false) String fields) {
+        try {
+            CursorPage<Map<String, Object>> page = doctorService.getDoctorsPage(name, department, status, cursor, size, withTotal, fields);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return invalidRequest(e);
+        }
+    }
+
     /**
      * 根据ID获取医生
+     * 指定 fields 时只查询并返回这些字段
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Doctor> getDoctor(@PathVariable Long id) {
+    public ResponseEntity<?> getDoctor(@PathVariable Long id, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                Optional<Map<String, Object>> summary = doctorService.getDoctorSummary(id, fields);
+                return summary.isPresent() ? ResponseEntity.ok(summary.get()) : ResponseEntity.notFound().build();
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         Optional<Doctor> doctor = doctorService.getDoctorById(id);
         if (doctor.isPresent()) {
             return ResponseEntity.ok(doctor.get());
@@ -98,4 +141,11 @@ public class DoctorAPI {
             return ResponseEntity.notFound().build();
         }
     }
+
+    private ResponseEntity<Map<String, Object>> invalidRequest(IllegalArgumentException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Invalid request");
+        errorResponse.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.tcm.api;
+
+import com.tcm.service.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 数据导出API控制器，以CSV或NDJSON流式导出就诊记录和处方
+ */
+@RestController
+@RequestMapping("/api/export")
+public class ExportAPI {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    @Autowired
+    private ExportService exportService;
+
+    /**
+     * 导出就诊记录
+     * from/to 按就诊时间筛选（左闭右开），格式为日期 "2024-01-01" 或时间 "2024-01-01T08:00:00"，不传时不限；
+     * format 为 csv（默认）或 ndjson；gzip=true 时返回gzip压缩的文件
+     */
+    @GetMapping("/visits")
+    public ResponseEntity<?> exportVisits(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = ExportService.FORMAT_CSV) String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return export("visits", from, to, format, gzip, true);
+    }
+
+    /**
+     * 导出处方及处方明细，每个明细一行；参数与 /visits 相同，按处方所属就诊的就诊时间筛选
+     */
+    @GetMapping("/prescriptions")
+    public ResponseEntity<?> exportPrescriptions(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = ExportService.FORMAT_CSV) String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return export("prescriptions", from, to, format, gzip, false);
+    }
+
+    private ResponseEntity<?> export(String name, String from, String to, String format, boolean gzip, boolean visits) {
+        LocalDateTime fromTime;
+        LocalDateTime toTime;
+        String resolvedFormat = format.toLowerCase();
+        try {
+            fromTime = from != null ? parseDateTime(from) : null;
+            toTime = to != null ? parseDateTime(to) : null;
+            if (!ExportService.FORMAT_CSV.equals(resolvedFormat) && !ExportService.FORMAT_NDJSON.equals(resolvedFormat)) {
+                throw new IllegalArgumentException("不支持的格式: " + format + "，可选: csv、ndjson");
+            }
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Invalid request");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            OutputStream target = gzip ? new GZIPOutputStream(outputStream, 64 * 1024) : outputStream;
+            long rows = visits
+                    ? exportService.exportVisits(fromTime, toTime, resolvedFormat, target)
+                    : exportService.exportPrescriptions(fromTime, toTime, resolvedFormat, target);
+            if (target instanceof GZIPOutputStream) {
+                ((GZIPOutputStream) target).finish();
+            }
+            System.out.println("导出完成: " + name + " 共" + rows + "行");
+        };
+
+        String fileName = name + "." + resolvedFormat + (gzip ? ".gz" : "");
+        MediaType contentType = gzip ? GZIP : (ExportService.FORMAT_CSV.equals(resolvedFormat) ? CSV : NDJSON);
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+    private LocalDateTime parseDateTime(String value) {
+        return value.length() <= 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value);
+    }
+}
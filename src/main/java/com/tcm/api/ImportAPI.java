@@ -0,0 +1,73 @@
+package com.tcm.api;
+
+import com.tcm.dto.ImportResult;
+import com.tcm.service.BulkImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 批量导入API控制器，用于从其他诊所系统迁移历史数据
+ */
+@RestController
+@RequestMapping("/api/import")
+public class ImportAPI {
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    /**
+     * 批量导入
+     * entity：patients、visits、prescriptions、prescription-details
+     * 请求体为CSV（首行为表头）或NDJSON（每行一个JSON对象），UTF-8编码；
+     * 格式由 format 参数指定，未指定时按 Content-Type 判断（text/csv 或 application/x-ndjson）
+     * 关联列：visits 的 patientId、doctorId，prescriptions 的 visitId、doctorId，prescription-details 的 prescriptionId
+     * 返回导入行数和失败行的行号及原因，部分行失败不影响其他行
+     */
+    @PostMapping("/{entity}")
+    public ResponseEntity<?> importRows(
+            @PathVariable String entity,
+            @RequestParam(required = false) String format,
+            HttpServletRequest request) {
+        String resolvedFormat = format != null ? format.toLowerCase() : formatOf(request.getContentType());
+        if (resolvedFormat == null) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Invalid request");
+            errorResponse.put("message", "无法确定数据格式，请指定 format=csv 或 format=ndjson");
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        try {
+            ImportResult result = bulkImportService.importRows(entity, resolvedFormat, request.getInputStream());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Invalid request");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (IOException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "读取导入数据失败");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
+    private String formatOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String type = contentType.toLowerCase();
+        if (type.contains("csv")) {
+            return BulkImportService.FORMAT_CSV;
+        }
+        if (type.contains("ndjson") || type.contains("jsonl") || type.contains("json-seq")) {
+            return BulkImportService.FORMAT_NDJSON;
+        }
+        return null;
+    }
+}
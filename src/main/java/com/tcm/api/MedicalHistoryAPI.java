@@ -1,5 +1,6 @@
 package com.tcm.api;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.MedicalHistory;
 import com.tcm.service.MedicalHistoryService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,7 +8,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -29,6 +32,28 @@ public class MedicalHistoryAPI {
         return ResponseEntity.ok(medicalHistories);
     }
 
+    /**
+     * 游标分页查询病史，按创建时间倒序
+     * 可选筛选：patientId 患者ID
+     * 翻页时把上一页返回的 nextCursor 作为 cursor 传入；size 默认20、最大200；withTotal=true 时返回总数
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> getMedicalHistoriesPage(
+            @RequestParam(required = false) Long patientId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        try {
+            CursorPage<MedicalHistory> page = medicalHistoryService.getMedicalHistoriesPage(patientId, cursor, size, withTotal);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Invalid cursor");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
     /**
      * 根据ID获取病史记录
      */
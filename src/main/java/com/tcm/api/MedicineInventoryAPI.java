@@ -1,13 +1,20 @@
 package com.tcm.api;
 
+import com.tcm.dto.CursorPage;
+import com.tcm.dto.HerbSuggestion;
 import com.tcm.model.MedicineInventory;
+import com.tcm.service.DispensingService;
+import com.tcm.service.HerbCatalog;
 import com.tcm.service.MedicineInventoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 /**
@@ -20,20 +27,77 @@ public class MedicineInventoryAPI {
     @Autowired
     private MedicineInventoryService medicineInventoryService;
 
+    @Autowired
+    private HerbCatalog herbCatalog;
+
+    @Autowired
+    private DispensingService dispensingService;
+
     /**
      * 获取所有药品库存
+     * 指定 fields（逗号分隔，如 fields=id,medicineName,stockQuantity）时只查询并返回这些字段，按创建时间倒序
      */
     @GetMapping
-    public ResponseEntity<List<MedicineInventory>> getAllMedicineInventory() {
+    public ResponseEntity<?> getAllMedicineInventory(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(medicineInventoryService.getMedicineInventorySummaries(fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<MedicineInventory> medicineInventory = medicineInventoryService.getAllMedicineInventory();
         return ResponseEntity.ok(medicineInventory);
     }
 
+    /**
+     * 游标分页查询药品库存，按创建时间倒序
+     * 可选筛选：medicineName 药品名称包含，supplier 供应商，status 状态
+     * 翻页时把上一页返回的 nextCursor 作为 cursor 传入；size 默认20、最大200；withTotal=true 时返回总数
+     * 每条记录默认只包含摘要字段，可通过 fields 指定返回的字段
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> getMedicineInventoryPage(
+            @RequestParam(required = false) String medicineName,
+            @RequestParam(required = false) String supplier,
+            @RequestParam(required = false) Integer status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(required = false) String fields) {
+        try {
+            CursorPage<Map<String, Object>> page = medicineInventoryService.getMedicineInventoryPage(medicineName, supplier, status, cursor, size, withTotal, fields);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return invalidRequest(e);
+        }
+    }
+
+    /**
+     * 开方时的药品联想，从内存目录中按前缀匹配药品名称、编码、全拼或拼音首字母（如 hq、huangqi 均可匹配黄芪）
+     * 只返回启用的药品，有库存的在前；limit 默认和最大均为20
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<HerbSuggestion>> suggest(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(herbCatalog.suggest(q, limit));
+    }
+
     /**
      * 根据ID获取药品库存
+     * 指定 fields 时只查询并返回这些字段
      */
     @GetMapping("/{id}")
-    public ResponseEntity<MedicineInventory> getMedicineInventory(@PathVariable Long id) {
+    public ResponseEntity<?> getMedicineInventory(@PathVariable Long id, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                Optional<Map<String, Object>> summary = medicineInventoryService.getMedicineInventorySummary(id, fields);
+                return summary.isPresent() ? ResponseEntity.ok(summary.get()) : ResponseEntity.notFound().build();
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         Optional<MedicineInventory> medicineInventory = medicineInventoryService.getMedicineInventoryById(id);
         if (medicineInventory.isPresent()) {
             return ResponseEntity.ok(medicineInventory.get());
@@ -52,11 +116,17 @@ public class MedicineInventoryAPI {
     }
 
     /**
-     * 更新药品库存
+     * 更新药品信息
+     * 不修改库存数量：请求中的 stockQuantity 与当前库存不一致时返回400，库存变更使用 stock-adjustments 接口
      */
     @PutMapping("/{id}")
-    public ResponseEntity<MedicineInventory> updateMedicineInventory(@PathVariable Long id, @RequestBody MedicineInventory medicineInventory) {
-        MedicineInventory updatedMedicineInventory = medicineInventoryService.updateMedicineInventory(id, medicineInventory);
+    public ResponseEntity<?> updateMedicineInventory(@PathVariable Long id, @RequestBody MedicineInventory medicineInventory) {
+        MedicineInventory updatedMedicineInventory;
+        try {
+            updatedMedicineInventory = medicineInventoryService.updateMedicineInventory(id, medicineInventory);
+        } catch (IllegalArgumentException e) {
+            return errorResponse(e);
+        }
         if (updatedMedicineInventory != null) {
             return ResponseEntity.ok(updatedMedicineInventory);
         } else {
@@ -64,6 +134,25 @@ public class MedicineInventoryAPI {
         }
     }
 
+    /**
+     * 调整库存：quantity 为正数时入库，为负数时报损、盘亏出库
+     * 按当前库存相对增减，不会覆盖并发发药的扣减；库存不足以减少时返回409
+     */
+    @PostMapping("/{id}/stock-adjustments")
+    public ResponseEntity<?> adjustStock(@PathVariable Long id, @RequestParam int quantity) {
+        try {
+            dispensingService.adjustStock(id, quantity);
+        } catch (RuntimeException e) {
+            return errorResponse(e);
+        }
+        Optional<MedicineInventory> medicineInventory = medicineInventoryService.getMedicineInventoryById(id);
+        if (medicineInventory.isPresent()) {
+            return ResponseEntity.ok(medicineInventory.get());
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     /**
      * 删除药品库存
      */
@@ -98,4 +187,32 @@ public class MedicineInventoryAPI {
             return ResponseEntity.notFound().build();
         }
     }
+
+    private ResponseEntity<Map<String, Object>> invalidRequest(IllegalArgumentException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Invalid request");
+        errorResponse.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+
+    private ResponseEntity<?> errorResponse(RuntimeException e) {
+        HttpStatus status;
+        String error;
+        if (e instanceof NoSuchElementException) {
+            status = HttpStatus.NOT_FOUND;
+            error = "Not found";
+        } else if (e instanceof IllegalStateException) {
+            status = HttpStatus.CONFLICT;
+            error = "Insufficient stock";
+        } else if (e instanceof IllegalArgumentException) {
+            status = HttpStatus.BAD_REQUEST;
+            error = "Invalid request";
+        } else {
+            throw e;
+        }
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", error);
+        errorResponse.put("message", e.getMessage());
+        return ResponseEntity.status(status).body(errorResponse);
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.tcm.api;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.Patient;
 import com.tcm.service.PatientService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,7 +9,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -29,18 +32,58 @@ public class PatientAPI {
 
     /**
      * 获取所有患者
+     * 指定 fields（逗号分隔，如 fields=id,name,phone）时只查询并返回这些字段，按创建时间倒序
      */
     @GetMapping
-    public ResponseEntity<List<Patient>> getAllPatients() {
+    public ResponseEntity<?> getAllPatients(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(patientService.getPatientSummaries(fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<Patient> patients = patientService.getAllPatients();
         return ResponseEntity.ok(patients);
     }
 
+    /**
+     * 游标分页查询患者，按创建时间倒序
+     * 可选筛选：name 姓名包含，gender 性别，phone 电话
+     * 翻页时把上一页返回的 nextCursor 作为 cursor 传入；size 默认20、最大200；withTotal=true 时返回总数
+     * 每条记录默认只包含摘要字段，可通过 fields 指定返回的字段
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> getPatientsPage(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) Integer gender,
+            @RequestParam(required = false) String phone,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(required = false) String fields) {
+        try {
+            CursorPage<Map<String, Object>> page = patientService.getPatientsPage(name, gender, phone, cursor, size, withTotal, fields);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return invalidRequest(e);
+        }
+    }
+
     /**
      * 根据ID获取患者
+     * 指定 fields 时只查询并返回这些字段
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Patient> getPatient(@PathVariable Long id) {
+    public ResponseEntity<?> getPatient(@PathVariable Long id, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                Optional<Map<String, Object>> summary = patientService.getPatientSummary(id, fields);
+                return summary.isPresent() ? ResponseEntity.ok(summary.get()) : ResponseEntity.notFound().build();
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         Optional<Patient> patient = patientService.getPatientById(id);
         if (patient.isPresent()) {
             return ResponseEntity.ok(patient.get());
@@ -105,4 +148,11 @@ public class PatientAPI {
             return ResponseEntity.notFound().build();
         }
     }
+
+    private ResponseEntity<Map<String, Object>> invalidRequest(IllegalArgumentException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Invalid request");
+        errorResponse.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
 }
\ No newline at end of file
@@ -2,11 +2,13 @@ package com.tcm.api;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tcm.model.AnalysisJob;
 import com.tcm.model.DiagnosticImage;
 import com.tcm.model.Patient;
 import com.tcm.model.Visit;
 import com.tcm.repository.DiagnosticImageRepository;
 import com.tcm.repository.VisitRepository;
+import com.tcm.service.AnalysisJobService;
 import com.tcm.service.DiagnosticImageService;
 import com.tcm.service.PatientSelfDiagnosisService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +21,7 @@ import org.springframework.web.multipart.MultipartFile;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 患者自诊功能API接口
@@ -31,6 +34,9 @@ public class PatientSelfDiagnosisAPI {
     @Autowired
     private PatientSelfDiagnosisService patientSelfDiagnosisService;
 
+    @Autowired
+    private AnalysisJobService analysisJobService;
+
     @Autowired
     private DiagnosticImageService diagnosticImageService;
 
@@ -84,6 +90,12 @@ public class PatientSelfDiagnosisAPI {
             successResponse.put("aiAnalysisResult", aiAnalysisResult);
             successResponse.put("status", "completed");
             return ResponseEntity.ok(successResponse);
+        } catch (RejectedExecutionException e) {
+            // 模型服务并发已满且等待超时
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "系统繁忙");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(503).body(errorResponse);
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, Object> errorResponse = new HashMap<>();
@@ -196,30 +208,28 @@ public class PatientSelfDiagnosisAPI {
     }
 
     /**
-     * 完成自诊流程 - 立即返回，AI分析异步进行
+     * 完成自诊流程 - 立即返回，AI分析在后台任务队列中进行
      * @param visitId 就诊记录ID
-     * @return 立即返回完成状态
+     * @return 立即返回提交状态和任务ID
      */
     @PostMapping("/complete-self-diagnosis/{visitId}")
     public ResponseEntity<?> completeSelfDiagnosis(@PathVariable Long visitId) {
         try {
-            // 在单独线程中触发AI分析以避免API挂起
-            new Thread(() -> {
-                try {
-                    Map<String, Object> aiAnalysisResult = patientSelfDiagnosisService.triggerAIAnalysis(visitId);
-                    System.out.println("AI分析完成，visitId: " + visitId);
-                } catch (Exception e) {
-                    System.out.println("AI分析失败，visitId: " + visitId + ", 错误: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            }).start();
+            // 提交到有界的AI分析线程池，避免每个请求都新建线程
+            AnalysisJob job = analysisJobService.submit(visitId);
 
             // 立即返回响应，避免阻塞
             Map<String, Object> successResponse = new HashMap<>();
             successResponse.put("message", "自诊流程已提交，AI分析将在后台进行");
             successResponse.put("status", "submitted");
             successResponse.put("visitId", visitId);
+            successResponse.put("jobId", String.valueOf(job.getId()));
             return ResponseEntity.ok(successResponse);
+        } catch (RejectedExecutionException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "系统繁忙");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(503).body(errorResponse);
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, Object> errorResponse = new HashMap<>();
@@ -229,6 +239,23 @@ public class PatientSelfDiagnosisAPI {
         }
     }
 
+    /**
+     * 查询AI分析任务状态
+     * @param jobId 任务ID
+     * @return 任务状态（queued/running/done/failed）
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getAnalysisJob(@PathVariable Long jobId) {
+        Optional<AnalysisJob> jobOpt = analysisJobService.getJob(jobId);
+        if (!jobOpt.isPresent()) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "未找到AI分析任务");
+            errorResponse.put("jobId", jobId);
+            return ResponseEntity.status(404).body(errorResponse);
+        }
+        return ResponseEntity.ok(jobOpt.get());
+    }
+
     /**
      * 获取指定就诊记录的所有诊断图片
      * @param visitId 就诊记录ID
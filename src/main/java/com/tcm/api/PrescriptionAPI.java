@@ -1,5 +1,6 @@
 package com.tcm.api;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.Prescription;
 import com.tcm.service.PrescriptionService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,7 +8,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -22,18 +25,58 @@ public class PrescriptionAPI {
 
     /**
      * 获取所有处方
+     * 指定 fields（逗号分隔，如 fields=id,prescriptionName,patientName）时只查询并返回这些字段，按创建时间倒序
      */
     @GetMapping
-    public ResponseEntity<List<Prescription>> getAllPrescriptions() {
+    public ResponseEntity<?> getAllPrescriptions(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(prescriptionService.getPrescriptionSummaries(null, null, fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<Prescription> prescriptions = prescriptionService.getAllPrescriptions();
         return ResponseEntity.ok(prescriptions);
     }
 
+    /**
+     * 游标分页查询处方，按创建时间倒序
+     * 可选筛选：visitId 就诊ID，doctorId 医生ID，status 状态
+     * 翻页时把上一页返回的 nextCursor 作为 cursor 传入；size 默认20、最大200；withTotal=true 时返回总数
+     * 每条记录默认只包含摘要字段（患者、医生以姓名和ID返回），可通过 fields 指定返回的字段
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> getPrescriptionsPage(
+            @RequestParam(required = false) Long visitId,
+            @RequestParam(required = false) Long doctorId,
+            @RequestParam(required = false) Integer status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(required = false) String fields) {
+        try {
+            CursorPage<Map<String, Object>> page = prescriptionService.getPrescriptionsPage(visitId, doctorId, status, cursor, size, withTotal, fields);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return invalidRequest(e);
+        }
+    }
+
     /**
      * 根据ID获取处方
+     * 指定 fields 时只查询并返回这些字段
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Prescription> getPrescription(@PathVariable Long id) {
+    public ResponseEntity<?> getPrescription(@PathVariable Long id, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                Optional<Map<String, Object>> summary = prescriptionService.getPrescriptionSummary(id, fields);
+                return summary.isPresent() ? ResponseEntity.ok(summary.get()) : ResponseEntity.notFound().build();
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         Optional<Prescription> prescription = prescriptionService.getPrescriptionById(id);
         if (prescription.isPresent()) {
             return ResponseEntity.ok(prescription.get());
@@ -75,19 +118,42 @@ public class PrescriptionAPI {
     
     /**
      * 根据就诊ID获取处方
+     * 指定 fields 时只查询并返回这些字段
      */
     @GetMapping("/visit/{visitId}")
-    public ResponseEntity<List<Prescription>> getPrescriptionsByVisitId(@PathVariable Long visitId) {
+    public ResponseEntity<?> getPrescriptionsByVisitId(@PathVariable Long visitId, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(prescriptionService.getPrescriptionSummaries(visitId, null, fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<Prescription> prescriptions = prescriptionService.getPrescriptionsByVisitId(visitId);
         return ResponseEntity.ok(prescriptions);
     }
     
     /**
      * 根据医生ID获取处方
+     * 指定 fields 时只查询并返回这些字段
      */
     @GetMapping("/doctor/{doctorId}")
-    public ResponseEntity<List<Prescription>> getPrescriptionsByDoctorId(@PathVariable Long doctorId) {
+    public ResponseEntity<?> getPrescriptionsByDoctorId(@PathVariable Long doctorId, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(prescriptionService.getPrescriptionSummaries(null, doctorId, fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<Prescription> prescriptions = prescriptionService.getPrescriptionsByDoctorId(doctorId);
         return ResponseEntity.ok(prescriptions);
     }
+
+    private ResponseEntity<Map<String, Object>> invalidRequest(IllegalArgumentException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Invalid request");
+        errorResponse.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
 }
\ No newline at end of file
@@ -1,13 +1,17 @@
 package com.tcm.api;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.PrescriptionDetail;
 import com.tcm.service.PrescriptionDetailService;
+import com.tcm.service.VisitSearchService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -20,6 +24,9 @@ public class PrescriptionDetailAPI {
     @Autowired
     private PrescriptionDetailService prescriptionDetailService;
 
+    @Autowired
+    private VisitSearchService visitSearchService;
+
     /**
      * 获取所有处方明细
      */
@@ -29,6 +36,47 @@ public class PrescriptionDetailAPI {
         return ResponseEntity.ok(prescriptionDetails);
     }
 
+    /**
+     * 游标分页查询处方明细，按创建时间倒序
+     * 可选筛选：prescriptionId 处方ID，herbName 药材名称包含
+     * 翻页时把上一页返回的 nextCursor 作为 cursor 传入；size 默认20、最大200；withTotal=true 时返回总数
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> getPrescriptionDetailsPage(
+            @RequestParam(required = false) Long prescriptionId,
+            @RequestParam(required = false) String herbName,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        try {
+            CursorPage<PrescriptionDetail> page = prescriptionDetailService.getPrescriptionDetailsPage(prescriptionId, herbName, cursor, size, withTotal);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Invalid cursor");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
+    /**
+     * 模糊检索处方中用过的药材名称，按相似度倒序，可容忍错字和缺字
+     * limit 默认和最大均为20
+     */
+    @GetMapping("/herbs")
+    public ResponseEntity<?> searchHerbNames(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(visitSearchService.searchHerbNames(q, limit));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Invalid request");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
     /**
      * 根据ID获取处方明细
      */
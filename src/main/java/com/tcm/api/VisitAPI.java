@@ -1,16 +1,22 @@
 package com.tcm.api;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.dto.DiagnosticImageResponse;
 import com.tcm.model.Visit;
 import com.tcm.service.DiagnosticImageService;
+import com.tcm.service.VisitSearchService;
 import com.tcm.service.VisitService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -26,20 +32,84 @@ public class VisitAPI {
     @Autowired
     private DiagnosticImageService diagnosticImageService;
 
+    @Autowired
+    private VisitSearchService visitSearchService;
+
     /**
      * 获取所有就诊记录
+     * 指定 fields（逗号分隔，如 fields=id,visitDate,patientName）时只查询并返回这些字段，按创建时间倒序
      */
     @GetMapping
-    public ResponseEntity<List<Visit>> getAllVisits() {
+    public ResponseEntity<?> getAllVisits(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(visitService.getVisitSummaries(null, null, fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<Visit> visits = visitService.getAllVisits();
         return ResponseEntity.ok(visits);
     }
 
+    /**
+     * 游标分页查询就诊记录，按创建时间倒序
+     * 可选筛选：patientId 患者ID，doctorId 医生ID，visitType 就诊类型，from/to 就诊时间范围（左闭右开）
+     * 翻页时把上一页返回的 nextCursor 作为 cursor 传入；size 默认20、最大200；withTotal=true 时返回总数
+     * 每条记录默认只包含摘要字段（患者、医生以姓名和ID返回），可通过 fields 指定返回的字段
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> getVisitsPage(
+            @RequestParam(required = false) Long patientId,
+            @RequestParam(required = false) Long doctorId,
+            @RequestParam(required = false) Integer visitType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(required = false) String fields) {
+        try {
+            CursorPage<Map<String, Object>> page = visitService.getVisitsPage(patientId, doctorId, visitType, from, to, cursor, size, withTotal, fields);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return invalidRequest(e);
+        }
+    }
+
+    /**
+     * 检索就诊记录
+     * q 匹配主诉、症状、中医诊断、证型（中文按字切分，所有词都出现才算匹配），结果按相关度倒序；
+     * herb 按药材名称模糊匹配，只返回开过相近药材的就诊；q 和 herb 至少传一个
+     * 翻页时把上一页返回的 nextCursor 作为 cursor 传入；size 默认20、最大200
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchVisits(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String herb,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        try {
+            return ResponseEntity.ok(visitSearchService.searchVisits(q, herb, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return invalidRequest(e);
+        }
+    }
+
     /**
      * 根据ID获取就诊记录
+     * 指定 fields 时只查询并返回这些字段
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Visit> getVisit(@PathVariable Long id) {
+    public ResponseEntity<?> getVisit(@PathVariable Long id, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                Optional<Map<String, Object>> summary = visitService.getVisitSummary(id, fields);
+                return summary.isPresent() ? ResponseEntity.ok(summary.get()) : ResponseEntity.notFound().build();
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         Optional<Visit> visit = visitService.getVisitById(id);
         if (visit.isPresent()) {
             return ResponseEntity.ok(visit.get());
@@ -81,18 +151,34 @@ public class VisitAPI {
     
     /**
      * 根据患者ID获取就诊记录
+     * 指定 fields 时只查询并返回这些字段
      */
     @GetMapping("/patient/{patientId}")
-    public ResponseEntity<List<Visit>> getVisitsByPatientId(@PathVariable Long patientId) {
+    public ResponseEntity<?> getVisitsByPatientId(@PathVariable Long patientId, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(visitService.getVisitSummaries(patientId, null, fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<Visit> visits = visitService.getVisitsByPatientId(patientId);
         return ResponseEntity.ok(visits);
     }
     
     /**
      * 根据医生ID获取就诊记录
+     * 指定 fields 时只查询并返回这些字段
      */
     @GetMapping("/doctor/{doctorId}")
-    public ResponseEntity<List<Visit>> getVisitsByDoctorId(@PathVariable Long doctorId) {
+    public ResponseEntity<?> getVisitsByDoctorId(@PathVariable Long doctorId, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(visitService.getVisitSummaries(null, doctorId, fields));
+            } catch (IllegalArgumentException e) {
+                return invalidRequest(e);
+            }
+        }
         List<Visit> visits = visitService.getVisitsByDoctorId(doctorId);
         return ResponseEntity.ok(visits);
     }
@@ -113,4 +199,11 @@ public class VisitAPI {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    private ResponseEntity<Map<String, Object>> invalidRequest(IllegalArgumentException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Invalid request");
+        errorResponse.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.tcm.client;
 
+import com.tcm.config.ModelServerFeignConfig;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -9,7 +10,7 @@ import java.util.Map;
  * AI大模型处理端客户端
  * 通过Feign实现与AI大模型服务的通信
  */
-@FeignClient(name = "ai-model-service", url = "${ai.model.service.url:http://localhost:8082}")
+@FeignClient(name = "ai-model-service", url = "${ai.model.service.url:http://localhost:8082}", configuration = ModelServerFeignConfig.class)
 public interface AIBigModelClient {
     
     /**
@@ -0,0 +1,209 @@
+package com.tcm.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tcm.utils.ConcurrencyLimiter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 模型服务（VLLM，OpenAI兼容接口）的HTTP传输层
+ * 使用共享的 modelHttpClient 复用连接；请求体由Jackson直接序列化为字节，响应以流的形式交给Jackson解析，
+ * 不再逐行读取拼接字符串；每次调用占用一个模型服务并发许可，直到响应读完。
+ * 记录每次调用的耗时（tcm.model.requests）和响应usage中的token数（tcm.model.tokens），
+ * 批量接口按批次计时，token数按批次中每个结果的usage记录。
+ */
+@Component
+public class ModelServerTransport {
+
+    private static final String CHAT_COMPLETIONS_PATH = "/v1/chat/completions";
+
+    private static final String BATCH_PROCESS_PATH = "/batch/process";
+
+    @Autowired
+    @Qualifier("modelHttpClient")
+    private HttpClient modelHttpClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("modelServerLimiter")
+    private ConcurrencyLimiter modelServerLimiter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ai.model.service.url:http://localhost:7578}")
+    private String aiModelServiceUrl;
+
+    @Value("${ai.model.api.key:EMPTY}")
+    private String aiApiKey;
+
+    @Value("${ai.model.service.read-timeout:${ai.model.service.timeout:10000}}")
+    private long readTimeoutMs;
+
+    /**
+     * 流式响应中每个 data: 数据块的回调
+     */
+    public interface ChunkHandler {
+        void onChunk(JsonNode chunk) throws IOException;
+    }
+
+    /**
+     * 调用聊天补全接口
+     * @param requestData OpenAI兼容格式的请求体
+     * @return 完整的 chat.completion 响应
+     */
+    public JsonNode chatCompletions(Map<String, Object> requestData) throws IOException, InterruptedException {
+        try (ConcurrencyLimiter.Permit permit = modelServerLimiter.acquire()) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "error";
+            try {
+                HttpResponse<InputStream> response = modelHttpClient.send(
+                        buildRequest(CHAT_COMPLETIONS_PATH, requestData, "application/json"), HttpResponse.BodyHandlers.ofInputStream());
+                try (InputStream body = response.body()) {
+                    checkStatus(response.statusCode());
+                    JsonNode result = objectMapper.readTree(body);
+                    recordUsage(result.path("usage"));
+                    outcome = "success";
+                    return result;
+                }
+            } finally {
+                sample.stop(requestTimer("blocking", outcome));
+            }
+        }
+    }
+
+    /**
+     * 调用模型服务的批量接口，一个批次占用一个并发许可
+     * @param batchData 请求体，约定为 {"requests": [...]}
+     * @return 响应体，约定为 {"results": [...]}，每个结果为一个 chat.completion 响应
+     */
+    public JsonNode batchProcess(Map<String, Object> batchData) throws IOException, InterruptedException {
+        try (ConcurrencyLimiter.Permit permit = modelServerLimiter.acquire()) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "error";
+            try {
+                HttpResponse<InputStream> response = modelHttpClient.send(
+                        buildRequest(BATCH_PROCESS_PATH, batchData, "application/json"), HttpResponse.BodyHandlers.ofInputStream());
+                try (InputStream body = response.body()) {
+                    checkStatus(response.statusCode());
+                    JsonNode result = objectMapper.readTree(body);
+                    for (JsonNode item : result.path("results")) {
+                        recordUsage(item.path("usage"));
+                    }
+                    outcome = "success";
+                    return result;
+                }
+            } finally {
+                sample.stop(requestTimer("batch", outcome));
+            }
+        }
+    }
+
+    /**
+     * 以 stream=true 调用聊天补全接口，逐个回调SSE数据块，直到收到 [DONE] 或连接结束
+     * @param requestData OpenAI兼容格式的请求体（无需包含stream、stream_options字段）
+     * @param handler 数据块回调
+     */
+    public void streamChatCompletions(Map<String, Object> requestData, ChunkHandler handler)
+            throws IOException, InterruptedException {
+        Map<String, Object> streamRequest = new HashMap<>(requestData);
+        streamRequest.put("stream", true);
+        // 流式响应默认不带usage，需显式要求在最后一个数据块中返回
+        streamRequest.put("stream_options", Map.of("include_usage", true));
+
+        try (ConcurrencyLimiter.Permit permit = modelServerLimiter.acquire()) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "error";
+            try {
+                HttpResponse<InputStream> response = modelHttpClient.send(
+                        buildRequest(CHAT_COMPLETIONS_PATH, streamRequest, "text/event-stream"), HttpResponse.BodyHandlers.ofInputStream());
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                    checkStatus(response.statusCode());
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.startsWith("data:")) {
+                            continue;
+                        }
+                        String data = line.substring(5).trim();
+                        if ("[DONE]".equals(data)) {
+                            break;
+                        }
+                        JsonNode chunk = objectMapper.readTree(data);
+                        // usage只出现在最后一个数据块中
+                        recordUsage(chunk.path("usage"));
+                        handler.onChunk(chunk);
+                    }
+                }
+                outcome = "success";
+            } finally {
+                sample.stop(requestTimer("stream", outcome));
+            }
+        }
+    }
+
+    private HttpRequest buildRequest(String path, Map<String, Object> requestData, String accept) throws IOException {
+        return HttpRequest.newBuilder(URI.create(aiModelServiceUrl + path))
+                // 对流式请求而言是等待响应头的最长时间
+                .timeout(Duration.ofMillis(readTimeoutMs))
+                .header("Content-Type", "application/json; charset=UTF-8")
+                .header("Accept", accept)
+                .header("Authorization", "Bearer " + aiApiKey)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(requestData)))
+                .build();
+    }
+
+    private Timer requestTimer(String mode, String outcome) {
+        return Timer.builder("tcm.model.requests")
+                .description("模型服务调用耗时")
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void recordUsage(JsonNode usage) {
+        if (!usage.isObject()) {
+            return;
+        }
+        recordTokens("prompt", usage.path("prompt_tokens"));
+        recordTokens("completion", usage.path("completion_tokens"));
+    }
+
+    private void recordTokens(String type, JsonNode tokens) {
+        if (tokens.isNumber()) {
+            DistributionSummary.builder("tcm.model.tokens")
+                    .description("每次模型调用的token数")
+                    .baseUnit("tokens")
+                    .tag("type", type)
+                    .register(meterRegistry)
+                    .record(tokens.asLong());
+        }
+    }
+
+    private void checkStatus(int statusCode) throws IOException {
+        if (statusCode != 200) {
+            throw new IOException("模型服务返回状态码: " + statusCode);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.tcm.client;
 
+import com.tcm.config.ModelServerFeignConfig;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -10,7 +11,7 @@ import java.util.Map;
  * VLLM兼容的AI大模型客户端
  * 使用标准的OpenAI兼容接口与VLLM服务通信
  */
-@FeignClient(name = "vllm-service", url = "${ai.model.service.url:http://localhost:7578}")
+@FeignClient(name = "vllm-service", url = "${ai.model.service.url:http://localhost:7578}", configuration = ModelServerFeignConfig.class)
 public interface VLLMClient {
 
     /**
@@ -0,0 +1,61 @@
+package com.tcm.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * AI分析后台线程池配置
+ * 线程数与队列长度均有上限，避免突发请求耗尽线程或数据库连接池；
+ * 分析线程同步等待批量调度器返回结果，是调度器唯一的请求来源，线程数至少为批次上限的两倍，
+ * 否则批次永远凑不满，且一个批次在途时无法收集下一批；
+ * 虚拟线程模式下任务大部分时间在等待模型服务，线程数改用 virtual-pool-size，实际并发由下游信号量限制
+ */
+@Configuration
+public class AnalysisExecutorConfig {
+
+    @Value("${ai.analysis.executor.pool-size:16}")
+    private int poolSize;
+
+    @Value("${ai.model.batch.max-size:8}")
+    private int maxBatchSize;
+
+    @Value("${ai.analysis.executor.virtual-pool-size:256}")
+    private int virtualPoolSize;
+
+    @Value("${ai.analysis.executor.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Autowired
+    private Environment environment;
+
+    @Bean(name = "analysisExecutor")
+    public ThreadPoolTaskExecutor analysisExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        if (VirtualThreadConfig.isEnabled(environment)) {
+            executor.setCorePoolSize(virtualPoolSize);
+            executor.setMaxPoolSize(virtualPoolSize);
+            // 空闲的虚拟线程直接结束，不在池中常驻
+            executor.setAllowCoreThreadTimeOut(true);
+            executor.setThreadFactory(VirtualThreadConfig.threadFactory("ai-analysis-"));
+        } else {
+            int threads = poolSize;
+            if (threads < maxBatchSize * 2) {
+                threads = maxBatchSize * 2;
+                System.out.println("警告：ai.analysis.executor.pool-size=" + poolSize + " 小于批次上限的两倍，已调整为 " + threads);
+            }
+            executor.setCorePoolSize(threads);
+            executor.setMaxPoolSize(threads);
+            executor.setThreadNamePrefix("ai-analysis-");
+        }
+        executor.setQueueCapacity(queueCapacity);
+        // 队列满时直接拒绝（默认AbortPolicy），由调用方返回"繁忙"而不是无限堆积
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
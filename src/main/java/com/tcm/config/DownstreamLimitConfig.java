@@ -0,0 +1,78 @@
+package com.tcm.config;
+
+import com.tcm.utils.ConcurrencyLimitedDataSource;
+import com.tcm.utils.ConcurrencyLimiter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 下游并发限制配置
+ * 模型服务、微信接口各用一个信号量限制同时在途的调用数；
+ * 虚拟线程模式下请求数不再受线程池约束，数据库连接也改由信号量限制，由这里保护各下游不被压垮。
+ */
+@Configuration
+public class DownstreamLimitConfig {
+
+    @Value("${downstream.model.max-concurrency:16}")
+    private int modelMaxConcurrency;
+
+    @Value("${downstream.model.acquire-timeout-ms:60000}")
+    private long modelAcquireTimeoutMs;
+
+    @Value("${downstream.wechat.max-concurrency:8}")
+    private int wechatMaxConcurrency;
+
+    @Value("${downstream.wechat.acquire-timeout-ms:5000}")
+    private long wechatAcquireTimeoutMs;
+
+    /**
+     * 数据库并发上限默认与连接池大小一致，等待时间默认与连接池的 connectionTimeout 一致
+     * 仅在虚拟线程模式下启用（与 VirtualThreadConfig.isEnabled 条件相同）：平台线程模式下并发已受线程池约束，直接由连接池排队
+     * 静态方法：数据源包装在后处理器中完成，不能依赖本配置类实例
+     */
+    @Bean(name = "databaseLimiter")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public static ConcurrencyLimiter databaseLimiter(
+            @Value("${downstream.database.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+            @Value("${downstream.database.acquire-timeout-ms:${spring.datasource.hikari.connection-timeout:30000}}") long acquireTimeoutMs) {
+        return new ConcurrencyLimiter("数据库", maxConcurrency, acquireTimeoutMs);
+    }
+
+    @Bean(name = "modelServerLimiter")
+    public ConcurrencyLimiter modelServerLimiter() {
+        return new ConcurrencyLimiter("模型服务", modelMaxConcurrency, modelAcquireTimeoutMs);
+    }
+
+    @Bean(name = "wechatLimiter")
+    public ConcurrencyLimiter wechatLimiter() {
+        return new ConcurrencyLimiter("微信接口", wechatMaxConcurrency, wechatAcquireTimeoutMs);
+    }
+
+    /**
+     * 虚拟线程模式下为连接池数据源包装并发许可，所有JPA和JDBC访问都经过同一个限制
+     * 等待发生在信号量上而不是连接池中，排队情况见 tcm.downstream.waiting{limiter=databaseLimiter}，
+     * hikaricp.connections.acquire 只统计拿到许可之后从连接池取连接的时间
+     */
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public static BeanPostProcessor databaseLimitPostProcessor(
+            @Qualifier("databaseLimiter") ObjectProvider<ConcurrencyLimiter> databaseLimiter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof ConcurrencyLimitedDataSource)) {
+                    return new ConcurrencyLimitedDataSource((DataSource) bean, databaseLimiter.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
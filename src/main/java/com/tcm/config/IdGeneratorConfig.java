@@ -0,0 +1,152 @@
+package com.tcm.config;
+
+import com.tcm.utils.SnowflakeIdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+/**
+ * 雪花ID生成器配置
+ * 每个节点必须使用不同的机器ID，否则同一毫秒内生成的ID会重复。两种方式：
+ * 1. 通过 tcm.id.worker-id / tcm.id.datacenter-id 为每个节点显式指定；
+ * 2. 开启 tcm.id.lease.enabled，启动时从 id_worker_leases 表中租用一个空闲的机器ID，并定时续期。
+ * 租约模式下，距上次成功续期超过 有效期 - 安全余量 时生成器停止发号，避免租约过期后被其他节点占用同一个机器ID。
+ */
+@Configuration
+public class IdGeneratorConfig {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${tcm.id.worker-id:1}")
+    private long workerId;
+
+    @Value("${tcm.id.datacenter-id:1}")
+    private long datacenterId;
+
+    @Value("${tcm.id.max-clock-drift-ms:5000}")
+    private long maxClockDriftMs;
+
+    @Value("${tcm.id.lease.enabled:false}")
+    private boolean leaseEnabled;
+
+    @Value("${tcm.id.lease.ttl-seconds:120}")
+    private long leaseTtlSeconds;
+
+    // 停止发号时距租约到期的余量，需覆盖逻辑时钟的领先量和节点与数据库间的时钟偏差
+    @Value("${tcm.id.lease.safety-margin-ms:15000}")
+    private long leaseSafetyMarginMs;
+
+    // 租约持有者标识：主机名@进程号 + 随机后缀，重启后视为新的持有者
+    private final String leaseOwner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+
+    private volatile Long leasedWorkerId;
+
+    // 最近一次成功租用或续期的时间（发出语句前的本地时间）
+    private volatile long leaseRenewedAt;
+
+    @PostConstruct
+    public void init() {
+        long worker = workerId;
+        long attemptedAt = System.currentTimeMillis();
+        if (leaseEnabled) {
+            if (leaseSafetyMarginMs >= leaseTtlSeconds * 1000) {
+                throw new IllegalStateException("tcm.id.lease.safety-margin-ms 必须小于租约有效期 tcm.id.lease.ttl-seconds");
+            }
+            createLeaseTable();
+            worker = acquireLease();
+            leasedWorkerId = worker;
+        }
+        SnowflakeIdGenerator generator = SnowflakeIdGenerator.configure(worker, datacenterId, maxClockDriftMs);
+        if (leaseEnabled) {
+            leaseRenewed(generator, attemptedAt);
+        }
+        System.out.println("雪花ID生成器已配置: datacenterId=" + datacenterId + ", workerId=" + worker
+                + (leaseEnabled ? " (租约)" : ""));
+    }
+
+    /**
+     * 定时续期机器ID租约；续期失败（租约已过期并被其他节点占用）时重新租用
+     * 数据库不可用时保留当前机器ID，但只在上次成功续期后的 有效期 - 安全余量 内继续发号
+     */
+    @Scheduled(fixedDelayString = "${tcm.id.lease.renew-interval-ms:30000}")
+    public void renewLease() {
+        if (!leaseEnabled || leasedWorkerId == null) {
+            return;
+        }
+        long attemptedAt = System.currentTimeMillis();
+        try {
+            int updated = jdbcTemplate.update(
+                    "UPDATE id_worker_leases SET expires_at = now() + ? * INTERVAL '1 second' WHERE datacenter_id = ? AND worker_id = ? AND owner = ?",
+                    leaseTtlSeconds, datacenterId, leasedWorkerId, leaseOwner);
+            if (updated == 0) {
+                System.err.println("机器ID租约已丢失 (workerId=" + leasedWorkerId + ")，重新租用");
+                long worker = acquireLease();
+                leasedWorkerId = worker;
+                leaseRenewed(SnowflakeIdGenerator.configure(worker, datacenterId, maxClockDriftMs), attemptedAt);
+            } else {
+                leaseRenewed(SnowflakeIdGenerator.getInstance(), attemptedAt);
+            }
+        } catch (Exception e) {
+            // 数据库暂时不可用时保留当前机器ID，下次再试；超过上次续期的有效期后生成器停止发号
+            System.err.println("机器ID租约续期失败: " + e.getMessage()
+                    + " (距上次成功续期 " + (attemptedAt - leaseRenewedAt) + "ms)");
+        }
+    }
+
+    /**
+     * 记录成功续期的时间，并据此设置生成器的停止发号时间
+     * 数据库中的到期时间不早于 attemptedAt + 有效期，提前安全余量停止即可保证租约被他人占用前已不再使用该机器ID
+     */
+    private void leaseRenewed(SnowflakeIdGenerator generator, long attemptedAt) {
+        leaseRenewedAt = attemptedAt;
+        generator.setLeaseExpiry(attemptedAt + leaseTtlSeconds * 1000 - leaseSafetyMarginMs);
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        if (!leaseEnabled || leasedWorkerId == null) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM id_worker_leases WHERE datacenter_id = ? AND worker_id = ? AND owner = ?",
+                    datacenterId, leasedWorkerId, leaseOwner);
+        } catch (Exception e) {
+            System.err.println("释放机器ID租约失败: " + e.getMessage());
+        }
+    }
+
+    private void createLeaseTable() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS id_worker_leases (" +
+                "datacenter_id INTEGER NOT NULL, " +
+                "worker_id INTEGER NOT NULL, " +
+                "owner VARCHAR(200) NOT NULL, " +
+                "expires_at TIMESTAMP NOT NULL, " +
+                "PRIMARY KEY (datacenter_id, worker_id))");
+    }
+
+    /**
+     * 依次尝试占用空闲或已过期的机器ID；插入冲突时只有旧租约已过期才会被覆盖
+     * 过期时间统一使用数据库时间，避免各节点时钟不一致
+     */
+    private long acquireLease() {
+        for (long worker = 0; worker <= SnowflakeIdGenerator.MAX_WORKER_ID; worker++) {
+            int acquired = jdbcTemplate.update(
+                    "INSERT INTO id_worker_leases (datacenter_id, worker_id, owner, expires_at) VALUES (?, ?, ?, now() + ? * INTERVAL '1 second') " +
+                    "ON CONFLICT (datacenter_id, worker_id) DO UPDATE SET owner = EXCLUDED.owner, expires_at = EXCLUDED.expires_at " +
+                    "WHERE id_worker_leases.expires_at < now() OR id_worker_leases.owner = EXCLUDED.owner",
+                    datacenterId, worker, leaseOwner, leaseTtlSeconds);
+            if (acquired == 1) {
+                return worker;
+            }
+        }
+        throw new IllegalStateException("数据中心 " + datacenterId + " 下没有空闲的机器ID可租用");
+    }
+}
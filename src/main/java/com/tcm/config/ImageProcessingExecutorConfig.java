@@ -0,0 +1,46 @@
+package com.tcm.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 图片变体处理线程池配置
+ * 图片解码和编码是CPU密集型任务，线程数默认等于CPU核数；队列有上限，避免批量上传时无限堆积。
+ * 虚拟线程模式下同样使用虚拟线程，但CPU密集任务不会因此更快，线程数保持不变
+ */
+@Configuration
+public class ImageProcessingExecutorConfig {
+
+    // 小于等于0时使用CPU核数
+    @Value("${image.processing.executor.pool-size:0}")
+    private int poolSize;
+
+    @Value("${image.processing.executor.queue-capacity:300}")
+    private int queueCapacity;
+
+    @Autowired
+    private Environment environment;
+
+    @Bean(name = "imageProcessingExecutor")
+    public ThreadPoolTaskExecutor imageProcessingExecutor() {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        if (VirtualThreadConfig.isEnabled(environment)) {
+            executor.setThreadFactory(VirtualThreadConfig.threadFactory("image-processing-"));
+        } else {
+            executor.setThreadNamePrefix("image-processing-");
+        }
+        // 队列满时直接拒绝（默认AbortPolicy），由调用方将图片标记为处理失败，不阻塞上传请求
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,93 @@
+package com.tcm.config;
+
+import com.tcm.service.AIDiagnosisCache;
+import com.tcm.service.VisitSnapshotCache;
+import com.tcm.utils.ConcurrencyLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * 业务指标配置
+ * 接口耗时（http.server.requests）、连接池（hikaricp.*）、线程池（executor.*）由Spring Boot自动采集；
+ * 这里把已有的缓存命中计数和下游并发许可注册为指标，统一通过 /actuator/prometheus 暴露
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * AI诊断缓存命中情况
+     */
+    @Bean
+    public MeterBinder aiDiagnosisCacheMetrics(AIDiagnosisCache aiDiagnosisCache) {
+        return registry -> {
+            FunctionCounter.builder("tcm.ai.cache.requests", aiDiagnosisCache, AIDiagnosisCache::getMemoryHits)
+                    .description("AI诊断缓存查询次数")
+                    .tag("result", "memory_hit")
+                    .register(registry);
+            FunctionCounter.builder("tcm.ai.cache.requests", aiDiagnosisCache, AIDiagnosisCache::getPersistentHits)
+                    .description("AI诊断缓存查询次数")
+                    .tag("result", "persistent_hit")
+                    .register(registry);
+            FunctionCounter.builder("tcm.ai.cache.requests", aiDiagnosisCache, AIDiagnosisCache::getMisses)
+                    .description("AI诊断缓存查询次数")
+                    .tag("result", "miss")
+                    .register(registry);
+            Gauge.builder("tcm.ai.cache.hit.ratio", aiDiagnosisCache, cache -> {
+                        long hits = cache.getMemoryHits() + cache.getPersistentHits();
+                        long total = hits + cache.getMisses();
+                        return total == 0 ? 0.0 : (double) hits / total;
+                    })
+                    .description("AI诊断缓存累计命中率")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * 就诊整合数据快照缓存命中情况
+     */
+    @Bean
+    public MeterBinder visitSnapshotCacheMetrics(VisitSnapshotCache visitSnapshotCache) {
+        return registry -> {
+            FunctionCounter.builder("tcm.integration.snapshot.requests", visitSnapshotCache, VisitSnapshotCache::getHits)
+                    .description("就诊整合数据快照查询次数")
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("tcm.integration.snapshot.requests", visitSnapshotCache, VisitSnapshotCache::getMisses)
+                    .description("就诊整合数据快照查询次数")
+                    .tag("result", "miss")
+                    .register(registry);
+            Gauge.builder("tcm.integration.snapshot.size", visitSnapshotCache, VisitSnapshotCache::size)
+                    .description("已缓存的就诊快照数")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * 各下游的并发许可使用情况，按下游名称区分
+     */
+    @Bean
+    public MeterBinder downstreamLimiterMetrics(Map<String, ConcurrencyLimiter> limiters) {
+        return registry -> {
+            for (Map.Entry<String, ConcurrencyLimiter> entry : limiters.entrySet()) {
+                ConcurrencyLimiter limiter = entry.getValue();
+                Gauge.builder("tcm.downstream.active", limiter, ConcurrencyLimiter::getActive)
+                        .description("正在占用的并发许可数")
+                        .tag("limiter", entry.getKey())
+                        .register(registry);
+                Gauge.builder("tcm.downstream.waiting", limiter, ConcurrencyLimiter::getWaiting)
+                        .description("正在等待并发许可的线程数")
+                        .tag("limiter", entry.getKey())
+                        .register(registry);
+                Gauge.builder("tcm.downstream.max", limiter, ConcurrencyLimiter::getMaxConcurrency)
+                        .description("并发许可上限")
+                        .tag("limiter", entry.getKey())
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package com.tcm.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 模型服务HTTP客户端配置
+ * 全局共享一个JDK HttpClient：连接在多次诊断之间保持复用（HTTP/1.1 keep-alive，服务端支持时使用HTTP/2），
+ * 直接调用和Feign客户端都使用它，连接建立不再是每次诊断的开销
+ */
+@Configuration
+public class ModelHttpClientConfig {
+
+    @Value("${ai.model.service.timeout:10000}")
+    private long connectTimeoutMs;
+
+    @Value("${ai.model.service.client-threads:4}")
+    private int clientThreads;
+
+    @Bean(name = "modelHttpClient")
+    public HttpClient modelHttpClient() {
+        // 响应回调在固定的小线程池中执行，避免默认的无界缓存线程池
+        ExecutorService executor = Executors.newFixedThreadPool(clientThreads, runnable -> {
+            Thread thread = new Thread(runnable, "model-http-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2) // 服务端不支持时自动回退到HTTP/1.1
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+    }
+}
@@ -0,0 +1,34 @@
+package com.tcm.config;
+
+import feign.Client;
+import feign.Request;
+import feign.http2client.Http2Client;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型服务Feign客户端配置
+ * 仅通过 @FeignClient(configuration = ...) 引用，不加 @Configuration，避免影响其他Feign客户端
+ */
+public class ModelServerFeignConfig {
+
+    @Value("${ai.model.service.timeout:10000}")
+    private long connectTimeoutMs;
+
+    @Value("${ai.model.service.read-timeout:${ai.model.service.timeout:10000}}")
+    private long readTimeoutMs;
+
+    @Bean
+    public Client feignClient(@Qualifier("modelHttpClient") HttpClient modelHttpClient) {
+        return new Http2Client(modelHttpClient);
+    }
+
+    @Bean
+    public Request.Options feignRequestOptions() {
+        return new Request.Options(connectTimeoutMs, TimeUnit.MILLISECONDS, readTimeoutMs, TimeUnit.MILLISECONDS, false);
+    }
+}
@@ -0,0 +1,50 @@
+package com.tcm.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程运行模式
+ * 通过 spring.threads.virtual.enabled=true 开启，需要JDK 21及以上：
+ * Spring Boot 把Tomcat请求处理切换为虚拟线程，AI分析、模型请求发送和图片处理线程池也改用虚拟线程创建；
+ * 并发上限由 DownstreamLimitConfig 中各下游的信号量控制。JDK 21以下开启时不生效，继续使用平台线程。
+ */
+@Configuration
+public class VirtualThreadConfig {
+
+    private static final String PROPERTY = "spring.threads.virtual.enabled";
+
+    @Autowired
+    private Environment environment;
+
+    /**
+     * 是否启用虚拟线程（已开启且运行时支持）
+     */
+    public static boolean isEnabled(Environment environment) {
+        return Threading.VIRTUAL.isActive(environment);
+    }
+
+    /**
+     * 创建虚拟线程的线程工厂，线程名为 前缀+序号
+     */
+    public static ThreadFactory threadFactory(String threadNamePrefix) {
+        return new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportThreadingMode() {
+        if (isEnabled(environment)) {
+            System.out.println("请求处理线程模式：虚拟线程");
+        } else if (environment.getProperty(PROPERTY, Boolean.class, false)) {
+            System.out.println("警告：已开启 " + PROPERTY + "，但当前JDK " + Runtime.version().feature()
+                    + " 不支持虚拟线程（需要21及以上），继续使用平台线程");
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.tcm.dto;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 游标分页响应DTO
+ * 按 (created_at, id) 倒序分页，下一页请求时把 nextCursor 作为 cursor 参数传回
+ */
+public class CursorPage<T> {
+
+    private List<T> items;
+    private String nextCursor; // 下一页游标，没有更多数据时为null
+    private boolean hasMore;
+    private int size; // 本次请求的每页条数
+    private Long total; // 满足筛选条件的总数，仅在 withTotal=true 时返回
+
+    // 构造函数
+    public CursorPage() {}
+
+    public CursorPage(List<T> items, String nextCursor, boolean hasMore, int size, Long total) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+        this.size = size;
+        this.total = total;
+    }
+
+    /**
+     * 转换每一项（如实体转响应DTO），分页信息保持不变
+     */
+    public <R> CursorPage<R> map(Function<T, R> mapper) {
+        return new CursorPage<>(items.stream().map(mapper).collect(Collectors.toList()), nextCursor, hasMore, size, total);
+    }
+
+    // Getters and Setters
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+}
@@ -0,0 +1,40 @@
+package com.tcm.dto;
+
+import org.springframework.http.MediaType;
+
+import java.nio.file.Path;
+
+/**
+ * 诊断图片内容
+ * 描述某个图片变体在磁盘上的位置和下载时使用的响应头信息
+ */
+public class DiagnosticImageContent {
+
+    private final Path path;
+    private final MediaType contentType;
+    private final String etag;
+    private final boolean immutable; // 内容按哈希寻址，同一ETag对应的内容永不改变
+
+    public DiagnosticImageContent(Path path, MediaType contentType, String etag, boolean immutable) {
+        this.path = path;
+        this.contentType = contentType;
+        this.etag = etag;
+        this.immutable = immutable;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public MediaType getContentType() {
+        return contentType;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public boolean isImmutable() {
+        return immutable;
+    }
+}
@@ -21,6 +21,10 @@ public class DiagnosticImageResponse {
     private String description;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private String processedPath;
+    private String thumbnailPath;
+    private String previewPath;
+    private String processingStatus;
     
     // 构造函数
     public DiagnosticImageResponse() {}
@@ -148,4 +152,36 @@ public class DiagnosticImageResponse {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
+    
+    public String getProcessedPath() {
+        return processedPath;
+    }
+    
+    public void setProcessedPath(String processedPath) {
+        this.processedPath = processedPath;
+    }
+    
+    public String getThumbnailPath() {
+        return thumbnailPath;
+    }
+    
+    public void setThumbnailPath(String thumbnailPath) {
+        this.thumbnailPath = thumbnailPath;
+    }
+    
+    public String getPreviewPath() {
+        return previewPath;
+    }
+    
+    public void setPreviewPath(String previewPath) {
+        this.previewPath = previewPath;
+    }
+    
+    public String getProcessingStatus() {
+        return processingStatus;
+    }
+    
+    public void setProcessingStatus(String processingStatus) {
+        this.processingStatus = processingStatus;
+    }
 }
\ No newline at end of file
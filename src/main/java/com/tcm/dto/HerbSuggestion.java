@@ -0,0 +1,82 @@
+package com.tcm.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.math.BigDecimal;
+
+/**
+ * 药品联想结果DTO
+ * 由内存中的药品目录返回，库存数量为目录最近一次刷新时的值
+ */
+public class HerbSuggestion {
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long id;
+    private String medicineCode; // 药品编码
+    private String medicineName; // 药品名称
+    private String specification; // 规格
+    private Integer stockQuantity; // 库存数量
+    private BigDecimal unitPrice; // 单价
+
+    // 构造函数
+    public HerbSuggestion() {}
+
+    public HerbSuggestion(Long id, String medicineCode, String medicineName, String specification,
+                          Integer stockQuantity, BigDecimal unitPrice) {
+        this.id = id;
+        this.medicineCode = medicineCode;
+        this.medicineName = medicineName;
+        this.specification = specification;
+        this.stockQuantity = stockQuantity;
+        this.unitPrice = unitPrice;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getMedicineCode() {
+        return medicineCode;
+    }
+
+    public void setMedicineCode(String medicineCode) {
+        this.medicineCode = medicineCode;
+    }
+
+    public String getMedicineName() {
+        return medicineName;
+    }
+
+    public void setMedicineName(String medicineName) {
+        this.medicineName = medicineName;
+    }
+
+    public String getSpecification() {
+        return specification;
+    }
+
+    public void setSpecification(String specification) {
+        this.specification = specification;
+    }
+
+    public Integer getStockQuantity() {
+        return stockQuantity;
+    }
+
+    public void setStockQuantity(Integer stockQuantity) {
+        this.stockQuantity = stockQuantity;
+    }
+
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(BigDecimal unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+}
@@ -0,0 +1,137 @@
+package com.tcm.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量导入结果DTO
+ * 成功导入的行数、失败的行数，以及失败行的行号和原因（最多返回 import.max-errors 条）
+ */
+public class ImportResult {
+
+    private String entity;
+    private String format;
+    private long totalRows;
+    private long imported;
+    private long failed;
+    private List<RowError> errors = new ArrayList<>();
+    private boolean errorsTruncated; // 失败行超过上限时为true，errors只包含前面的部分
+    private long elapsedMs;
+
+    // 构造函数
+    public ImportResult() {}
+
+    public ImportResult(String entity, String format) {
+        this.entity = entity;
+        this.format = format;
+    }
+
+    /**
+     * 记录一行失败，超过上限时只计数
+     */
+    public void addError(long line, String message, int maxErrors) {
+        failed++;
+        if (errors.size() < maxErrors) {
+            errors.add(new RowError(line, message));
+        } else {
+            errorsTruncated = true;
+        }
+    }
+
+    // Getters and Setters
+    public String getEntity() {
+        return entity;
+    }
+
+    public void setEntity(String entity) {
+        this.entity = entity;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<RowError> errors) {
+        this.errors = errors;
+    }
+
+    public boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+
+    public void setErrorsTruncated(boolean errorsTruncated) {
+        this.errorsTruncated = errorsTruncated;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    /**
+     * 失败行：行号为CSV记录或NDJSON行在文件中的起始行号（表头为第1行）
+     */
+    public static class RowError {
+
+        private long line;
+        private String message;
+
+        public RowError() {}
+
+        public RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public void setLine(long line) {
+            this.line = line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
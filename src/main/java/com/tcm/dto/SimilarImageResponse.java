@@ -0,0 +1,91 @@
+package com.tcm.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * 相似舌象图片响应DTO
+ * 返回相似图片及其就诊的辨证结果，供医生参考相似病例
+ */
+public class SimilarImageResponse {
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long imageId;
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long visitId;
+    private int distance; // 感知哈希的汉明距离，0-64，越小越相似
+    private double similarity; // 1 - distance / 64
+    private String patternDifferentiation; // 证型
+    private String tcmDiagnosis; // 中医诊断
+    private String thumbnailPath;
+    private LocalDateTime createdAt;
+
+    // 构造函数
+    public SimilarImageResponse() {}
+
+    // Getters and Setters
+    public Long getImageId() {
+        return imageId;
+    }
+
+    public void setImageId(Long imageId) {
+        this.imageId = imageId;
+    }
+
+    public Long getVisitId() {
+        return visitId;
+    }
+
+    public void setVisitId(Long visitId) {
+        this.visitId = visitId;
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    public void setDistance(int distance) {
+        this.distance = distance;
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    public void setSimilarity(double similarity) {
+        this.similarity = similarity;
+    }
+
+    public String getPatternDifferentiation() {
+        return patternDifferentiation;
+    }
+
+    public void setPatternDifferentiation(String patternDifferentiation) {
+        this.patternDifferentiation = patternDifferentiation;
+    }
+
+    public String getTcmDiagnosis() {
+        return tcmDiagnosis;
+    }
+
+    public void setTcmDiagnosis(String tcmDiagnosis) {
+        this.tcmDiagnosis = tcmDiagnosis;
+    }
+
+    public String getThumbnailPath() {
+        return thumbnailPath;
+    }
+
+    public void setThumbnailPath(String thumbnailPath) {
+        this.thumbnailPath = thumbnailPath;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,51 @@
+package com.tcm.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * AI诊断结果缓存实体类（持久化缓存层）
+ * 以规范化临床输入的哈希为键，保存模型的原始响应
+ */
+@Entity
+@Table(name = "ai_diagnosis_cache")
+public class AIDiagnosisCacheEntry extends BaseEntity {
+
+    @Column(name = "cache_key", nullable = false, unique = true, length = 64)
+    private String cacheKey; // 规范化输入的SHA-256
+
+    @Column(name = "raw_response", nullable = false, columnDefinition = "TEXT")
+    private String rawResponse; // 模型原始响应
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt; // 过期时间
+
+    // 构造函数
+    public AIDiagnosisCacheEntry() {}
+
+    // Getters and Setters
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    public String getRawResponse() {
+        return rawResponse;
+    }
+
+    public void setRawResponse(String rawResponse) {
+        this.rawResponse = rawResponse;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
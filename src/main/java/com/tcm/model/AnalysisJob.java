@@ -0,0 +1,95 @@
+package com.tcm.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * AI分析任务实体类
+ * 记录每次后台AI分析的排队与执行状态
+ */
+@Entity
+@Table(name = "analysis_jobs", indexes = {
+        @Index(name = "idx_analysis_jobs_visit_id", columnList = "visit_id"),
+        @Index(name = "idx_analysis_jobs_status", columnList = "status"),
+        @Index(name = "idx_analysis_jobs_node_status", columnList = "node_id, status")
+})
+public class AnalysisJob extends BaseEntity {
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_DONE = "done";
+    public static final String STATUS_FAILED = "failed";
+
+    @Column(name = "visit_id", nullable = false)
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long visitId; // 就诊记录ID
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status; // queued(排队中), running(执行中), done(已完成), failed(失败)
+
+    @Column(name = "node_id", length = 100)
+    private String nodeId; // 执行任务的节点标识
+
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage; // 失败原因
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt; // 开始执行时间
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt; // 结束时间
+
+    // 构造函数
+    public AnalysisJob() {}
+
+    // Getters and Setters
+    public Long getVisitId() {
+        return visitId;
+    }
+
+    public void setVisitId(Long visitId) {
+        this.visitId = visitId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
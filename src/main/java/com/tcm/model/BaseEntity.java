@@ -23,16 +23,19 @@ public abstract class BaseEntity {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
-    // 在创建实体时自动生成ID和创建时间
+    // 在创建实体时自动生成ID和创建时间；已设置的时间（如从其他系统导入的记录）保留原值
     @PrePersist
     protected void onCreate() {
         if (id == null) {
-            // 使用雪花算法生成唯一ID
-            SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(1, 1);
-            this.id = idGenerator.nextId();
+            // 使用进程内共享的雪花算法生成器，机器ID由IdGeneratorConfig在启动时设置
+            this.id = SnowflakeIdGenerator.getInstance().nextId();
+        }
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (updatedAt == null) {
+            updatedAt = createdAt;
         }
-        createdAt = LocalDateTime.now();
-        updatedAt = LocalDateTime.now();
     }
     
     // 在更新实体时更新更新时间
@@ -8,9 +8,17 @@ import jakarta.persistence.*;
  * 用于存储舌象图片等中医诊断图片
  */
 @Entity
-@Table(name = "diagnostic_images")
+@Table(name = "diagnostic_images", indexes = {
+        @Index(name = "idx_diagnostic_images_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_diagnostic_images_content_hash", columnList = "content_hash")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler", "visit"})
 public class DiagnosticImage extends BaseEntity {
+
+    // 变体处理状态
+    public static final String PROCESSING_PENDING = "pending";
+    public static final String PROCESSING_DONE = "done";
+    public static final String PROCESSING_FAILED = "failed";
     
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "visit_id")
@@ -44,6 +52,28 @@ public class DiagnosticImage extends BaseEntity {
     @Column(name = "description", length = 500)
     private String description; // 图片描述
     
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // 图片内容SHA-256，对应image_blobs中的内容块
+    
+    @Column(name = "perceptual_hash")
+    private Long perceptualHash; // 舌象图片的64位差值感知哈希（dHash），用于相似图片检索
+    
+    @Column(name = "tongue_features")
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private byte[] tongueFeatures; // 舌象图像特征向量，见TongueFeatureExtractor
+    
+    @Column(name = "processed_path", length = 500)
+    private String processedPath; // 512*512模型输入图片路径
+    
+    @Column(name = "thumbnail_path", length = 500)
+    private String thumbnailPath; // 缩略图路径
+    
+    @Column(name = "preview_path", length = 500)
+    private String previewPath; // 预览图路径
+    
+    @Column(name = "processing_status", length = 20)
+    private String processingStatus; // 变体处理状态：pending, done, failed
+    
     // 构造函数
     public DiagnosticImage() {}
     
@@ -127,4 +157,60 @@ public class DiagnosticImage extends BaseEntity {
     public void setDescription(String description) {
         this.description = description;
     }
+    
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public Long getPerceptualHash() {
+        return perceptualHash;
+    }
+    
+    public void setPerceptualHash(Long perceptualHash) {
+        this.perceptualHash = perceptualHash;
+    }
+    
+    public byte[] getTongueFeatures() {
+        return tongueFeatures;
+    }
+    
+    public void setTongueFeatures(byte[] tongueFeatures) {
+        this.tongueFeatures = tongueFeatures;
+    }
+    
+    public String getProcessedPath() {
+        return processedPath;
+    }
+    
+    public void setProcessedPath(String processedPath) {
+        this.processedPath = processedPath;
+    }
+    
+    public String getThumbnailPath() {
+        return thumbnailPath;
+    }
+    
+    public void setThumbnailPath(String thumbnailPath) {
+        this.thumbnailPath = thumbnailPath;
+    }
+    
+    public String getPreviewPath() {
+        return previewPath;
+    }
+    
+    public void setPreviewPath(String previewPath) {
+        this.previewPath = previewPath;
+    }
+    
+    public String getProcessingStatus() {
+        return processingStatus;
+    }
+    
+    public void setProcessingStatus(String processingStatus) {
+        this.processingStatus = processingStatus;
+    }
 }
\ No newline at end of file
@@ -6,7 +6,7 @@ import jakarta.persistence.*;
  * 医生实体类
  */
 @Entity
-@Table(name = "doctors")
+@Table(name = "doctors", indexes = @Index(name = "idx_doctors_created_at_id", columnList = "created_at, id"))
 public class Doctor extends BaseEntity {
     
     @Column(name = "name", nullable = false, length = 100)
@@ -8,7 +8,7 @@ import java.time.LocalDate;
  * 随访记录实体类
  */
 @Entity
-@Table(name = "follow_ups")
+@Table(name = "follow_ups", indexes = @Index(name = "idx_follow_ups_created_at_id", columnList = "created_at, id"))
 public class FollowUp extends BaseEntity {
     
     @ManyToOne(fetch = FetchType.LAZY)
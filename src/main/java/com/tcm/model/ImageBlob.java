@@ -0,0 +1,61 @@
+package com.tcm.model;
+
+import jakarta.persistence.*;
+
+/**
+ * 图片内容块实体类
+ * 以内容SHA-256为键，记录磁盘上的存储路径和引用它的诊断图片数量，
+ * 引用计数降为0时由ImageBlobStore删除对应文件
+ */
+@Entity
+@Table(name = "image_blobs")
+public class ImageBlob extends BaseEntity {
+
+    @Column(name = "content_hash", nullable = false, unique = true, length = 64)
+    private String contentHash; // 内容SHA-256
+
+    @Column(name = "storage_path", nullable = false, length = 500)
+    private String storagePath; // 存储路径
+
+    @Column(name = "size", nullable = false)
+    private Long size; // 文件大小（字节）
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount; // 引用该内容的诊断图片数量
+
+    // 构造函数
+    public ImageBlob() {}
+
+    // Getters and Setters
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getStoragePath() {
+        return storagePath;
+    }
+
+    public void setStoragePath(String storagePath) {
+        this.storagePath = storagePath;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Integer getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(Integer refCount) {
+        this.refCount = refCount;
+    }
+}
@@ -6,7 +6,7 @@ import jakarta.persistence.*;
  * 病史记录实体类
  */
 @Entity
-@Table(name = "medical_histories")
+@Table(name = "medical_histories", indexes = @Index(name = "idx_medical_histories_created_at_id", columnList = "created_at, id"))
 public class MedicalHistory extends BaseEntity {
     
     @ManyToOne(fetch = FetchType.LAZY)
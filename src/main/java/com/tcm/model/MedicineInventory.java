@@ -1,5 +1,6 @@
 package com.tcm.model;
 
+import com.tcm.service.HerbCatalogListener;
 import jakarta.persistence.*;
 
 import java.math.BigDecimal;
@@ -9,7 +10,8 @@ import java.time.LocalDate;
  * 药品库存实体类
  */
 @Entity
-@Table(name = "medicine_inventory")
+@EntityListeners(HerbCatalogListener.class)
+@Table(name = "medicine_inventory", indexes = @Index(name = "idx_medicine_inventory_created_at_id", columnList = "created_at, id"))
 public class MedicineInventory extends BaseEntity {
     
     @Column(name = "medicine_code", unique = true, nullable = false, length = 50)
@@ -21,7 +23,8 @@ public class MedicineInventory extends BaseEntity {
     @Column(name = "specification", length = 200)
     private String specification; // 规格
     
-    @Column(name = "stock_quantity")
+    // 实体更新时不写入，库存只通过发药和库存调整带条件的UPDATE变更
+    @Column(name = "stock_quantity", updatable = false)
     private Integer stockQuantity; // 库存数量
     
     @Column(name = "supplier", length = 200)
@@ -2,6 +2,7 @@ package com.tcm.model;
 
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.tcm.service.VisitSnapshotListener;
 import jakarta.persistence.*;
 
 import java.time.LocalDate;
@@ -10,7 +11,8 @@ import java.time.LocalDate;
  * 患者实体类
  */
 @Entity
-@Table(name = "patients")
+@EntityListeners(VisitSnapshotListener.class)
+@Table(name = "patients", indexes = @Index(name = "idx_patients_created_at_id", columnList = "created_at, id"))
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Patient extends BaseEntity {
     
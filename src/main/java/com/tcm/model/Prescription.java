@@ -1,5 +1,6 @@
 package com.tcm.model;
 
+import com.tcm.service.VisitSnapshotListener;
 import jakarta.persistence.*;
 
 import java.util.List;
@@ -8,7 +9,8 @@ import java.util.List;
  * 处方实体类
  */
 @Entity
-@Table(name = "prescriptions")
+@EntityListeners(VisitSnapshotListener.class)
+@Table(name = "prescriptions", indexes = @Index(name = "idx_prescriptions_created_at_id", columnList = "created_at, id"))
 public class Prescription extends BaseEntity {
     
     @ManyToOne(fetch = FetchType.LAZY)
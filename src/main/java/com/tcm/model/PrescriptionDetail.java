@@ -1,5 +1,6 @@
 package com.tcm.model;
 
+import com.tcm.service.VisitSnapshotListener;
 import jakarta.persistence.*;
 
 import java.math.BigDecimal;
@@ -8,7 +9,8 @@ import java.math.BigDecimal;
  * 处方明细实体类
  */
 @Entity
-@Table(name = "prescription_details")
+@EntityListeners(VisitSnapshotListener.class)
+@Table(name = "prescription_details", indexes = @Index(name = "idx_prescription_details_created_at_id", columnList = "created_at, id"))
 public class PrescriptionDetail extends BaseEntity {
     
     @ManyToOne(fetch = FetchType.LAZY)
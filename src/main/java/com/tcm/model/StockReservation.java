@@ -0,0 +1,97 @@
+package com.tcm.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 库存预占实体类
+ * 发药时先为处方的全部药材扣减库存并记录预占，确认取药后完成；取消或超时未确认时归还库存
+ */
+@Entity
+@Table(name = "stock_reservations", indexes = {
+        @Index(name = "idx_stock_reservations_prescription_id", columnList = "prescription_id"),
+        @Index(name = "idx_stock_reservations_status_expires_at", columnList = "status, expires_at")
+})
+public class StockReservation extends BaseEntity {
+
+    public static final String STATUS_RESERVED = "reserved";
+    public static final String STATUS_DISPENSED = "dispensed";
+    public static final String STATUS_CANCELLED = "cancelled";
+    public static final String STATUS_EXPIRED = "expired";
+
+    @Column(name = "prescription_id", nullable = false)
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long prescriptionId; // 处方ID
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status; // reserved(已预占), dispensed(已发药), cancelled(已取消), expired(超时释放)
+
+    @Column(name = "doses", nullable = false)
+    private Integer doses; // 剂数
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt; // 预占到期时间，到期未确认自动释放
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt; // 发药、取消或释放的时间
+
+    // 预占的药品及数量
+    @OneToMany(mappedBy = "reservation", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    private List<StockReservationItem> items = new ArrayList<>();
+
+    // 构造函数
+    public StockReservation() {}
+
+    // Getters and Setters
+    public Long getPrescriptionId() {
+        return prescriptionId;
+    }
+
+    public void setPrescriptionId(Long prescriptionId) {
+        this.prescriptionId = prescriptionId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getDoses() {
+        return doses;
+    }
+
+    public void setDoses(Integer doses) {
+        this.doses = doses;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public List<StockReservationItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<StockReservationItem> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,64 @@
+package com.tcm.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+/**
+ * 库存预占明细实体类，每种药品一条
+ */
+@Entity
+@Table(name = "stock_reservation_items", indexes = @Index(name = "idx_stock_reservation_items_reservation_id", columnList = "reservation_id"))
+public class StockReservationItem extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "reservation_id", nullable = false)
+    @JsonIgnore
+    private StockReservation reservation;
+
+    @Column(name = "medicine_id", nullable = false)
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long medicineId; // 药品库存ID
+
+    @Column(name = "medicine_name", length = 200)
+    private String medicineName; // 药品名称
+
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity; // 扣减的库存数量
+
+    // 构造函数
+    public StockReservationItem() {}
+
+    // Getters and Setters
+    public StockReservation getReservation() {
+        return reservation;
+    }
+
+    public void setReservation(StockReservation reservation) {
+        this.reservation = reservation;
+    }
+
+    public Long getMedicineId() {
+        return medicineId;
+    }
+
+    public void setMedicineId(Long medicineId) {
+        this.medicineId = medicineId;
+    }
+
+    public String getMedicineName() {
+        return medicineName;
+    }
+
+    public void setMedicineName(String medicineName) {
+        this.medicineName = medicineName;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -1,7 +1,10 @@
 package com.tcm.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.tcm.service.VisitSnapshotListener;
+import com.tcm.utils.ChineseNgramTokenizer;
 import jakarta.persistence.*;
 
 import java.time.LocalDateTime;
@@ -10,7 +13,11 @@ import java.time.LocalDateTime;
  * 就诊记录实体类
  */
 @Entity
-@Table(name = "visits")
+@EntityListeners(VisitSnapshotListener.class)
+@Table(name = "visits", indexes = {
+        @Index(name = "idx_visits_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_visits_visit_date_id", columnList = "visit_date, id")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler", "diagnosticImages"})
 public class Visit extends BaseEntity {
     
@@ -68,6 +75,11 @@ public class Visit extends BaseEntity {
     @Column(name = "ai_analysis_raw_response", columnDefinition = "TEXT")
     private String aiAnalysisRawResponse; // AI分析的原始响应，用于调试和验证
 
+    // 主诉、症状、中医诊断、证型的n-gram分词结果，数据库据此生成全文检索列 search_vector（见 VisitSearchService）
+    @Column(name = "search_tokens", columnDefinition = "TEXT")
+    @JsonIgnore
+    private String searchTokens;
+
     // 与诊断图片的关联关系
     @OneToMany(mappedBy = "visit", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private java.util.List<DiagnosticImage> diagnosticImages;
@@ -204,6 +216,21 @@ public class Visit extends BaseEntity {
         this.tongueImagePath = tongueImagePath;
     }
 
+    // 保存前根据临床文本重新生成检索分词
+    @PrePersist
+    @PreUpdate
+    protected void updateSearchTokens() {
+        searchTokens = ChineseNgramTokenizer.indexTokens(chiefComplaint, symptoms, tcmDiagnosis, patternDifferentiation);
+    }
+
+    public String getSearchTokens() {
+        return searchTokens;
+    }
+
+    public void setSearchTokens(String searchTokens) {
+        this.searchTokens = searchTokens;
+    }
+
     public String getAiAnalysisRawResponse() {
         return aiAnalysisRawResponse;
     }
@@ -0,0 +1,22 @@
+package com.tcm.repository;
+
+import com.tcm.model.AIDiagnosisCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface AIDiagnosisCacheRepository extends JpaRepository<AIDiagnosisCacheEntry, Long> {
+    Optional<AIDiagnosisCacheEntry> findByCacheKey(String cacheKey);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM AIDiagnosisCacheEntry e WHERE e.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
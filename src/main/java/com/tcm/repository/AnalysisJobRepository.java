@@ -0,0 +1,31 @@
+package com.tcm.repository;
+
+import com.tcm.model.AnalysisJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AnalysisJobRepository extends JpaRepository<AnalysisJob, Long> {
+    List<AnalysisJob> findByVisitIdOrderByCreatedAtDesc(Long visitId);
+
+    /**
+     * 将指定节点在某时间之前创建、处于指定状态的任务批量标记为失败（用于节点重启后清理本节点未完成的任务）
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE AnalysisJob j SET j.status = :newStatus, j.errorMessage = :message, j.finishedAt = CURRENT_TIMESTAMP, j.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE j.nodeId = :nodeId AND j.status IN :statuses AND j.createdAt < :createdBefore")
+    int updateStatusByNodeWhereStatusIn(@Param("nodeId") String nodeId,
+                                        @Param("statuses") Collection<String> statuses,
+                                        @Param("createdBefore") LocalDateTime createdBefore,
+                                        @Param("newStatus") String newStatus,
+                                        @Param("message") String message);
+}
@@ -2,12 +2,34 @@ package com.tcm.repository;
 
 import com.tcm.model.DiagnosticImage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface DiagnosticImageRepository extends JpaRepository<DiagnosticImage, Long> {
+public interface DiagnosticImageRepository extends JpaRepository<DiagnosticImage, Long>, JpaSpecificationExecutor<DiagnosticImage> {
     List<DiagnosticImage> findByVisitId(Long visitId);
     List<DiagnosticImage> findByImageType(String imageType);
     List<DiagnosticImage> findByVisitIdAndImageType(Long visitId, String imageType);
+    List<DiagnosticImage> findByProcessingStatus(String processingStatus);
+    Optional<DiagnosticImage> findFirstByVisitIdAndImageTypeAndTongueFeaturesIsNotNullOrderByCreatedAtDesc(Long visitId, String imageType);
+
+    /**
+     * 查询缺少感知哈希或图像特征的图片，用于上线后补算
+     */
+    @Query("SELECT i FROM DiagnosticImage i WHERE i.imageType = :imageType AND (i.perceptualHash IS NULL OR i.tongueFeatures IS NULL)")
+    List<DiagnosticImage> findMissingImageFeatures(@Param("imageType") String imageType);
+
+    /**
+     * 查询某类图片的ID和感知哈希，用于启动时重建相似度索引，不加载整个实体
+     */
+    @Query("SELECT i.id, i.perceptualHash FROM DiagnosticImage i WHERE i.imageType = :imageType AND i.perceptualHash IS NOT NULL")
+    List<Object[]> findPerceptualHashesByImageType(@Param("imageType") String imageType);
+
+    @Query("SELECT i FROM DiagnosticImage i LEFT JOIN FETCH i.visit WHERE i.id IN :ids")
+    List<DiagnosticImage> findWithVisitByIdIn(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
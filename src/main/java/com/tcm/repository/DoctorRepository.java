@@ -2,10 +2,11 @@ package com.tcm.repository;
 
 import com.tcm.model.Doctor;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface DoctorRepository extends JpaRepository<Doctor, Long> {
+public interface DoctorRepository extends JpaRepository<Doctor, Long>, JpaSpecificationExecutor<Doctor> {
     Doctor findByLicenseNumber(String licenseNumber);
     Doctor findByPhone(String phone);
 }
\ No newline at end of file
@@ -2,11 +2,12 @@ package com.tcm.repository;
 
 import com.tcm.model.FollowUp;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface FollowUpRepository extends JpaRepository<FollowUp, Long> {
+public interface FollowUpRepository extends JpaRepository<FollowUp, Long>, JpaSpecificationExecutor<FollowUp> {
     List<FollowUp> findByVisitId(Long visitId);
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.tcm.repository;
+
+import com.tcm.model.ImageBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface ImageBlobRepository extends JpaRepository<ImageBlob, Long> {
+    Optional<ImageBlob> findByContentHash(String contentHash);
+
+    /**
+     * 新增一次引用：内容块不存在时插入（引用计数为1），已存在时引用计数加1
+     * 使用单条 INSERT ... ON CONFLICT 语句，并发上传相同内容时不会出现唯一约束冲突
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO image_blobs (id, content_hash, storage_path, size, ref_count, created_at, updated_at) " +
+            "VALUES (:id, :contentHash, :storagePath, :size, 1, now(), now()) " +
+            "ON CONFLICT (content_hash) DO UPDATE SET ref_count = image_blobs.ref_count + 1, updated_at = now()",
+            nativeQuery = true)
+    int addReference(@Param("id") Long id, @Param("contentHash") String contentHash,
+                     @Param("storagePath") String storagePath, @Param("size") Long size);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ImageBlob b SET b.refCount = b.refCount - 1 WHERE b.contentHash = :contentHash AND b.refCount > 0")
+    int releaseReference(@Param("contentHash") String contentHash);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ImageBlob b WHERE b.contentHash = :contentHash AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("contentHash") String contentHash);
+}
@@ -2,9 +2,10 @@ package com.tcm.repository;
 
 import com.tcm.model.MedicalHistory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface MedicalHistoryRepository extends JpaRepository<MedicalHistory, Long> {
+public interface MedicalHistoryRepository extends JpaRepository<MedicalHistory, Long>, JpaSpecificationExecutor<MedicalHistory> {
     MedicalHistory findByPatientId(Long patientId);
 }
\ No newline at end of file
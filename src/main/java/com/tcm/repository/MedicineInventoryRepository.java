@@ -2,10 +2,11 @@ package com.tcm.repository;
 
 import com.tcm.model.MedicineInventory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface MedicineInventoryRepository extends JpaRepository<MedicineInventory, Long> {
+public interface MedicineInventoryRepository extends JpaRepository<MedicineInventory, Long>, JpaSpecificationExecutor<MedicineInventory> {
     MedicineInventory findByMedicineCode(String medicineCode);
     MedicineInventory findByMedicineName(String medicineName);
 }
\ No newline at end of file
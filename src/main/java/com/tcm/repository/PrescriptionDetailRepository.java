@@ -2,11 +2,12 @@ package com.tcm.repository;
 
 import com.tcm.model.PrescriptionDetail;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface PrescriptionDetailRepository extends JpaRepository<PrescriptionDetail, Long> {
+public interface PrescriptionDetailRepository extends JpaRepository<PrescriptionDetail, Long>, JpaSpecificationExecutor<PrescriptionDetail> {
     List<PrescriptionDetail> findByPrescriptionId(Long prescriptionId);
 }
\ No newline at end of file
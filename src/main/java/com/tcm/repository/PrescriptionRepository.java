@@ -2,12 +2,30 @@ package com.tcm.repository;
 
 import com.tcm.model.Prescription;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface PrescriptionRepository extends JpaRepository<Prescription, Long> {
+public interface PrescriptionRepository extends JpaRepository<Prescription, Long>, JpaSpecificationExecutor<Prescription> {
     List<Prescription> findByVisitId(Long visitId);
     List<Prescription> findByDoctorId(Long doctorId);
+
+    /**
+     * 查询就诊下的全部处方，同时加载处方明细，一次查询完成
+     */
+    @Query("SELECT p FROM Prescription p LEFT JOIN FETCH p.prescriptionDetails d " +
+           "WHERE p.visit.id = :visitId ORDER BY p.id, d.id")
+    List<Prescription> findWithDetailsByVisitId(@Param("visitId") Long visitId);
+
+    /**
+     * 批量查询多个就诊的处方及明细
+     */
+    @Query("SELECT p FROM Prescription p LEFT JOIN FETCH p.prescriptionDetails d " +
+           "WHERE p.visit.id IN :visitIds ORDER BY p.id, d.id")
+    List<Prescription> findWithDetailsByVisitIdIn(@Param("visitIds") Collection<Long> visitIds);
 }
\ No newline at end of file
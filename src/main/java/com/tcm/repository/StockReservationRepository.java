@@ -0,0 +1,26 @@
+package com.tcm.repository;
+
+import com.tcm.model.StockReservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+    List<StockReservation> findByPrescriptionIdOrderByCreatedAtDesc(Long prescriptionId);
+
+    boolean existsByPrescriptionIdAndStatusIn(Long prescriptionId, Collection<String> statuses);
+
+    /**
+     * 查询已到期但仍处于预占状态的记录ID
+     */
+    @Query("SELECT r.id FROM StockReservation r WHERE r.status = :status AND r.expiresAt <= :now ORDER BY r.expiresAt")
+    List<Long> findExpiredIds(@Param("status") String status, @Param("now") LocalDateTime now,
+                              Pageable pageable);
+}
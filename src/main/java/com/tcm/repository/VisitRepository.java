@@ -2,12 +2,36 @@ package com.tcm.repository;
 
 import com.tcm.model.Visit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface VisitRepository extends JpaRepository<Visit, Long> {
+public interface VisitRepository extends JpaRepository<Visit, Long>, JpaSpecificationExecutor<Visit> {
     List<Visit> findByPatientId(Long patientId);
     List<Visit> findByDoctorId(Long doctorId);
+
+    /**
+     * 查询就诊记录，同时加载患者和医生，一次查询完成
+     */
+    @Query("SELECT v FROM Visit v LEFT JOIN FETCH v.patient LEFT JOIN FETCH v.doctor WHERE v.id = :id")
+    Optional<Visit> findWithPatientAndDoctorById(@Param("id") Long id);
+
+    /**
+     * 批量查询就诊记录，同时加载患者和医生
+     */
+    @Query("SELECT v FROM Visit v LEFT JOIN FETCH v.patient LEFT JOIN FETCH v.doctor WHERE v.id IN :ids")
+    List<Visit> findWithPatientAndDoctorByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 查询就诊时间在 [from, to) 范围内的就诊ID，按就诊时间排序
+     */
+    @Query("SELECT v.id FROM Visit v WHERE v.visitDate >= :from AND v.visitDate < :to ORDER BY v.visitDate, v.id")
+    List<Long> findIdsByVisitDateRange(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 }
\ No newline at end of file
@@ -2,19 +2,30 @@ package com.tcm.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.web.client.RestTemplate;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import jakarta.annotation.PostConstruct;
+import com.tcm.client.ModelServerTransport;
 import com.tcm.model.Prescription;
 import com.tcm.model.Visit;
+import com.tcm.repository.DiagnosticImageRepository;
 import com.tcm.repository.PrescriptionRepository;
 import com.tcm.repository.VisitRepository;
+import com.tcm.utils.IncrementalJsonFieldParser;
+import com.tcm.utils.TongueFeatureExtractor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * AI分析服务
@@ -32,14 +43,62 @@ public class AIAnalysisService {
     @Autowired
     private VisitRepository visitRepository; // 注入VisitRepository直接访问
 
-    @Value("${ai.model.api.key:EMPTY}")
-    private String aiApiKey;
+    @Autowired
+    private DiagnosticImageRepository diagnosticImageRepository;
 
     @Autowired
     private ObjectMapper objectMapper;
 
-    // 声明一个新的RestTemplate实例，而不是通过@Autowired注入
-    private RestTemplate restTemplate = new org.springframework.web.client.RestTemplate(); // 创建RestTemplate实例
+    @Autowired
+    private ModelBatchDispatcher modelBatchDispatcher;
+
+    @Autowired
+    private AIDiagnosisCache aiDiagnosisCache;
+
+    @Value("${ai.model.mock-response.enabled:true}")
+    private boolean mockResponseEnabled;
+
+    @Value("${ai.model.batch.result-timeout-ms:60000}")
+    private long modelResultTimeoutMs;
+
+    @Autowired
+    private ModelServerTransport modelServerTransport;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private static final String MODEL_NAME = "qwen3-8b-union";
+
+    // 整合数据中保存舌象图像特征描述的键，AIDiagnosisCache计算缓存键时同样使用
+    public static final String TONGUE_IMAGE_FEATURES_KEY = "舌象图像特征";
+
+    // 模拟流式输出时每段的字符数
+    private static final int MOCK_STREAM_CHUNK_SIZE = 8;
+
+    private static final String SYSTEM_PROMPT = "你是一个专业的中医诊断助手。请根据患者信息、临床表现等数据，提供中医诊断、证型分析、治则治法和处方建议。输出格式必须为标准JSON格式的中医诊断数据，包含以下字段：中医病名、证型推理、治则治法、最终结果（包含处方名称和处方组成）。请确保返回的JSON格式正确且完整。";
+
+    // 模拟VLLM响应，直接使用预定义的中医诊断JSON
+    private static final String MOCK_VLLM_RESPONSE = "{\n" +
+        "  \"id\": \"chatcmpl-mock\",\n" +
+        "  \"object\": \"chat.completion\",\n" +
+        "  \"created\": 1234567890,\n" +
+        "  \"model\": \"qwen3-8b-union\",\n" +
+        "  \"choices\": [\n" +
+        "    {\n" +
+        "      \"index\": 0,\n" +
+        "      \"message\": {\n" +
+        "        \"role\": \"assistant\",\n" +
+        "        \"content\": \"{\\n  \\\"中医病名\\\": \\\"感冒\\\",\\n  \\\"证型推理\\\": \\\"风寒束表证，因外感风寒之邪，卫阳被遏，营阴郁滞所致\\\",\\n  \\\"治则治法\\\": \\\"疏风散寒，宣肺解表\\\",\\n  \\\"临床表现\\\": \\\"恶寒重，发热轻，无汗，头痛，肢节酸疼，鼻塞声重，时流清涕，咽痒，咳嗽，痰吐稀薄色白\\\",\\n  \\\"西医诊断\\\": \\\"上呼吸道感染\\\",\\n  \\\"最终结果\\\": {\\n    \\\"处方名称\\\": \\\"荆防败毒散加减\\\",\\n    \\\"处方组成\\\": \\\"荆芥10g，防风10g，羌活10g，独活10g，柴胡10g，前胡10g，川芎10g，枳壳10g，茯苓15g，桔梗10g，甘草6g\\\"\\n  }\\n}\"\n" +
+        "      },\n" +
+        "      \"finish_reason\": \"stop\"\n" +
+        "    }\n" +
+        "  ],\n" +
+        "  \"usage\": {\n" +
+        "    \"prompt_tokens\": 100,\n" +
+        "    \"completion_tokens\": 250,\n" +
+        "    \"total_tokens\": 350\n" +
+        "  }\n" +
+        "}";
 
     /**
      * 根据就诊ID整合数据，调用AI分析，并处理结果
@@ -53,127 +112,271 @@ public class AIAnalysisService {
             if (integratedData == null) {
                 throw new RuntimeException("未能找到就诊记录ID: " + visitId);
             }
+            attachTongueImageFeatures(visitId, integratedData);
 
-            // 从整合数据中提取信息
-            Map<String, Object> patientInfo = (Map<String, Object>) integratedData.get("患者信息");
-            Map<String, Object> clinicalInfo = (Map<String, Object>) integratedData.get("临床表现");
+            // 2. 调用VLLM进行分析 - 将数据格式化为VLLM兼容的格式
+            Map<String, Object> requestData = buildRequestData(integratedData);
+
+            String vllmResultJson;
+            String cacheKey = null;
+            String cached = null;
+            if (mockResponseEnabled) {
+                // 为了防止挂起，默认使用模拟响应；关闭 ai.model.mock-response.enabled 后走真实模型调用
+                vllmResultJson = MOCK_VLLM_RESPONSE;
+            } else {
+                // 临床输入相同的就诊直接复用缓存的模型响应
+                cacheKey = aiDiagnosisCache.buildKey(integratedData, promptVersion());
+                cached = aiDiagnosisCache.get(cacheKey);
+                if (cached != null) {
+                    vllmResultJson = cached;
+                } else {
+                    // 通过批量调度器提交，由调度器合并请求并控制并发
+                    vllmResultJson = awaitModelResult(modelBatchDispatcher.submit(requestData));
+                }
+            }
 
-            // 确保必要字段存在
-            if (patientInfo == null) {
-                patientInfo = new HashMap<>();
-                patientInfo.put("姓名", "自诊患者");
-                patientInfo.put("性别", "未知");
-                patientInfo.put("年龄", "未知");
+            // 解析响应
+            Map<String, Object> aiDiagnosisResult = parseAIResponse(vllmResultJson);
+            if (cacheKey != null && cached == null && isCacheable(aiDiagnosisResult)) {
+                aiDiagnosisCache.put(cacheKey, vllmResultJson);
             }
 
-            if (clinicalInfo == null) {
-                clinicalInfo = new HashMap<>();
-                clinicalInfo.put("症状体征", "待描述");
-                clinicalInfo.put("舌象", "未记录");
-                clinicalInfo.put("脉象", "未记录");
-                clinicalInfo.put("西医检查", "未记录");
-                clinicalInfo.put("西医诊断", "待诊断");
+            // 更新就诊记录，保存AI分析的原始响应
+            saveAnalysisToVisit(visitId, vllmResultJson, aiDiagnosisResult);
+
+            System.out.println("AI分析完成，结果已生成 (visitId: " + visitId + ")");
+
+            return aiDiagnosisResult;
+
+        } catch (RejectedExecutionException e) {
+            // 模型服务繁忙，原样抛出，由调用方返回503
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("AI分析处理失败", e);
+        }
+    }
+
+    /**
+     * 流式AI分析：逐段转发模型输出，并在每个顶层诊断字段完整生成后立即回调
+     * 分析结束后与非流式接口一样保存到就诊记录
+     * @param visitId 就诊记录ID
+     * @param listener 流式事件回调
+     * @return 完整的AI分析结果
+     */
+    public Map<String, Object> analyzeAndProcessStreaming(Long visitId, StreamListener listener) {
+        try {
+            Map<String, Object> integratedData = dataIntegrationService.integrateDataByVisitId(visitId);
+            if (integratedData == null) {
+                throw new RuntimeException("未能找到就诊记录ID: " + visitId);
             }
+            attachTongueImageFeatures(visitId, integratedData);
 
-            // 2. 调用VLLM进行分析 - 将数据格式化为VLLM兼容的格式
-            // 构建VLLM兼容的消息格式
-            Map<String, Object> requestData = new HashMap<>();
-            requestData.put("model", "qwen3-8b-union");
-
-            // 创建消息数组
-            List<Map<String, String>> messages = new ArrayList<>();
-
-            // 系统消息：定义AI助手的角色
-            Map<String, String> systemMessage = new HashMap<>();
-            systemMessage.put("role", "system");
-            systemMessage.put("content", "你是一个专业的中医诊断助手。请根据患者信息、临床表现等数据，提供中医诊断、证型分析、治则治法和处方建议。输出格式必须为标准JSON格式的中医诊断数据，包含以下字段：中医病名、证型推理、治则治法、最终结果（包含处方名称和处方组成）。请确保返回的JSON格式正确且完整。");
-            messages.add(systemMessage);
-
-            // 用户消息：包含从数据库获取的数据
-            StringBuilder userContent = new StringBuilder();
-            userContent.append("患者信息：");
-            userContent.append("姓名: ").append(patientInfo.get("姓名")).append(", ");
-            userContent.append("性别: ").append(patientInfo.get("性别")).append(", ");
-            userContent.append("年龄: ").append(patientInfo.get("年龄")).append(". ");
-
-            userContent.append("临床表现：");
-            userContent.append("主诉: ").append(clinicalInfo.get("症状体征")).append(", ");
-            userContent.append("舌象: ").append(clinicalInfo.get("舌象")).append(", ");
-            userContent.append("脉象: ").append(clinicalInfo.get("脉象")).append(", ");
-            userContent.append("西医检查: ").append(clinicalInfo.get("西医检查")).append(", ");
-            userContent.append("西医诊断: ").append(clinicalInfo.get("西医诊断")).append(". ");
-
-            userContent.append("请根据以上信息提供中医诊断：包括中医病名、证型推理、治则治法，以及最终的处方建议。");
-
-            Map<String, String> userMessage = new HashMap<>();
-            userMessage.put("role", "user");
-            userMessage.put("content", userContent.toString());
-            messages.add(userMessage);
-
-            requestData.put("messages", messages);
-            requestData.put("temperature", 0.7);
-            requestData.put("max_tokens", 1024);
-
-            // 为了防止挂起，暂时使用模拟响应，但保留VLLM调用代码以便后续启用
-            // String vllmResultJson = callVLLMServer(requestData, aiApiKey);
-
-            // 模拟VLLM响应，直接使用预定义的中医诊断JSON
-            String mockResponse = "{\n" +
-                "  \"id\": \"chatcmpl-mock\",\n" +
-                "  \"object\": \"chat.completion\",\n" +
-                "  \"created\": 1234567890,\n" +
-                "  \"model\": \"qwen3-8b-union\",\n" +
-                "  \"choices\": [\n" +
-                "    {\n" +
-                "      \"index\": 0,\n" +
-                "      \"message\": {\n" +
-                "        \"role\": \"assistant\",\n" +
-                "        \"content\": \"{\\n  \\\"中医病名\\\": \\\"感冒\\\",\\n  \\\"证型推理\\\": \\\"风寒束表证，因外感风寒之邪，卫阳被遏，营阴郁滞所致\\\",\\n  \\\"治则治法\\\": \\\"疏风散寒，宣肺解表\\\",\\n  \\\"临床表现\\\": \\\"恶寒重，发热轻，无汗，头痛，肢节酸疼，鼻塞声重，时流清涕，咽痒，咳嗽，痰吐稀薄色白\\\",\\n  \\\"西医诊断\\\": \\\"上呼吸道感染\\\",\\n  \\\"最终结果\\\": {\\n    \\\"处方名称\\\": \\\"荆防败毒散加减\\\",\\n    \\\"处方组成\\\": \\\"荆芥10g，防风10g，羌活10g，独活10g，柴胡10g，前胡10g，川芎10g，枳壳10g，茯苓15g，桔梗10g，甘草6g\\\"\\n  }\\n}\"\n" +
-                "      },\n" +
-                "      \"finish_reason\": \"stop\"\n" +
-                "    }\n" +
-                "  ],\n" +
-                "  \"usage\": {\n" +
-                "    \"prompt_tokens\": 100,\n" +
-                "    \"completion_tokens\": 250,\n" +
-                "    \"total_tokens\": 350\n" +
-                "  }\n" +
-                "}";
-
-            // 解析模拟响应
-            Map<String, Object> aiDiagnosisResult = parseAIResponse(mockResponse);
+            Map<String, Object> requestData = buildRequestData(integratedData);
+            IncrementalJsonFieldParser fieldParser = new IncrementalJsonFieldParser();
 
-            // 更新就诊记录，保存AI分析的原始响应
-            Optional<Visit> visitOpt = visitRepository.findById(visitId);
-            if (visitOpt.isPresent()) {
-                Visit visit = visitOpt.get();
-                visit.setAiAnalysisRawResponse(mockResponse);
-
-                // 尝试从AI结果中提取关键信息并保存到就诊记录中
-                if (aiDiagnosisResult.containsKey("中医病名")) {
-                    visit.setTcmDiagnosis(aiDiagnosisResult.get("中医病名").toString());
-                }
-                if (aiDiagnosisResult.containsKey("西医诊断")) {
-                    visit.setWesternDiagnosis(aiDiagnosisResult.get("西医诊断").toString());
-                }
-                if (aiDiagnosisResult.containsKey("证型推理")) {
-                    visit.setPatternDifferentiation(aiDiagnosisResult.get("证型推理").toString());
+            String vllmResultJson;
+            String cacheKey = null;
+            String cached = null;
+            if (!mockResponseEnabled) {
+                cacheKey = aiDiagnosisCache.buildKey(integratedData, promptVersion());
+                cached = aiDiagnosisCache.get(cacheKey);
+            }
+
+            if (mockResponseEnabled || cached != null) {
+                // 模拟响应或缓存命中时把已有内容切成小段依次输出，行为与真实流式一致
+                vllmResultJson = mockResponseEnabled ? MOCK_VLLM_RESPONSE : cached;
+                String content = extractAssistantContent(vllmResultJson);
+                for (int i = 0; i < content.length(); i += MOCK_STREAM_CHUNK_SIZE) {
+                    forwardToken(content.substring(i, Math.min(content.length(), i + MOCK_STREAM_CHUNK_SIZE)), fieldParser, listener);
                 }
+            } else {
+                vllmResultJson = streamVLLMServer(requestData, fieldParser, listener);
+            }
 
-                // 保存更新后的就诊记录
-                visitRepository.save(visit);
+            Map<String, Object> aiDiagnosisResult = parseAIResponse(vllmResultJson);
+            if (cacheKey != null && cached == null && isCacheable(aiDiagnosisResult)) {
+                aiDiagnosisCache.put(cacheKey, vllmResultJson);
             }
+            saveAnalysisToVisit(visitId, vllmResultJson, aiDiagnosisResult);
 
-            System.out.println("AI分析完成，结果已生成 (visitId: " + visitId + ")");
+            System.out.println("AI流式分析完成，结果已生成 (visitId: " + visitId + ")");
 
             return aiDiagnosisResult;
 
+        } catch (RejectedExecutionException e) {
+            // 模型服务繁忙，原样抛出，由调用方返回503
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException("AI分析处理失败", e);
         }
     }
 
+    /**
+     * 流式AI分析的事件回调
+     */
+    public interface StreamListener {
+        /**
+         * 模型新输出的文本片段
+         */
+        void onToken(String content);
+
+        /**
+         * 某个顶层诊断字段（如中医病名、证型推理）已完整生成
+         */
+        void onField(String name, JsonNode value);
+    }
+
+    /**
+     * 根据整合数据构建VLLM兼容的聊天补全请求
+     * @param integratedData 数据整合服务返回的就诊数据
+     * @return OpenAI兼容格式的请求体
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> buildRequestData(Map<String, Object> integratedData) {
+        // 从整合数据中提取信息
+        Map<String, Object> patientInfo = (Map<String, Object>) integratedData.get("患者信息");
+        Map<String, Object> clinicalInfo = (Map<String, Object>) integratedData.get("临床表现");
+
+        // 确保必要字段存在
+        if (patientInfo == null) {
+            patientInfo = new HashMap<>();
+            patientInfo.put("姓名", "自诊患者");
+            patientInfo.put("性别", "未知");
+            patientInfo.put("年龄", "未知");
+        }
+
+        if (clinicalInfo == null) {
+            clinicalInfo = new HashMap<>();
+            clinicalInfo.put("症状体征", "待描述");
+            clinicalInfo.put("舌象", "未记录");
+            clinicalInfo.put("脉象", "未记录");
+            clinicalInfo.put("西医检查", "未记录");
+            clinicalInfo.put("西医诊断", "待诊断");
+        }
+
+        // 构建VLLM兼容的消息格式
+        Map<String, Object> requestData = new HashMap<>();
+        requestData.put("model", MODEL_NAME);
+
+        // 创建消息数组
+        List<Map<String, String>> messages = new ArrayList<>();
+
+        // 系统消息：定义AI助手的角色
+        Map<String, String> systemMessage = new HashMap<>();
+        systemMessage.put("role", "system");
+        systemMessage.put("content", SYSTEM_PROMPT);
+        messages.add(systemMessage);
+
+        // 用户消息：包含从数据库获取的数据
+        StringBuilder userContent = new StringBuilder();
+        userContent.append("患者信息：");
+        userContent.append("姓名: ").append(patientInfo.get("姓名")).append(", ");
+        userContent.append("性别: ").append(patientInfo.get("性别")).append(", ");
+        userContent.append("年龄: ").append(patientInfo.get("年龄")).append(". ");
+
+        userContent.append("临床表现：");
+        userContent.append("主诉: ").append(clinicalInfo.get("症状体征")).append(", ");
+        userContent.append("舌象: ").append(clinicalInfo.get("舌象")).append(", ");
+        userContent.append("脉象: ").append(clinicalInfo.get("脉象")).append(", ");
+        userContent.append("西医检查: ").append(clinicalInfo.get("西医检查")).append(", ");
+        userContent.append("西医诊断: ").append(clinicalInfo.get("西医诊断")).append(". ");
+
+        // 舌象照片的预计算特征，代替原始图片提供给模型
+        Object tongueImageFeatures = integratedData.get(TONGUE_IMAGE_FEATURES_KEY);
+        if (tongueImageFeatures != null) {
+            userContent.append("舌象图像特征：").append(tongueImageFeatures).append(". ");
+        }
+
+        userContent.append("请根据以上信息提供中医诊断：包括中医病名、证型推理、治则治法，以及最终的处方建议。");
+
+        Map<String, String> userMessage = new HashMap<>();
+        userMessage.put("role", "user");
+        userMessage.put("content", userContent.toString());
+        messages.add(userMessage);
+
+        requestData.put("messages", messages);
+        requestData.put("temperature", 0.7);
+        requestData.put("max_tokens", 1024);
+        return requestData;
+    }
+
+    /**
+     * 将就诊最近一张舌象照片的图像特征加入整合数据，没有照片或特征尚未生成时不做处理
+     */
+    private void attachTongueImageFeatures(Long visitId, Map<String, Object> integratedData) {
+        try {
+            diagnosticImageRepository
+                    .findFirstByVisitIdAndImageTypeAndTongueFeaturesIsNotNullOrderByCreatedAtDesc(visitId, TongueSimilarityIndex.IMAGE_TYPE)
+                    .ifPresent(image -> integratedData.put(TONGUE_IMAGE_FEATURES_KEY,
+                            TongueFeatureExtractor.describe(TongueFeatureExtractor.decode(image.getTongueFeatures()))));
+        } catch (Exception e) {
+            // 图像特征只是补充信息，读取失败时仍按文字信息分析
+            System.out.println("读取舌象图像特征失败 (visitId: " + visitId + "): " + e.getMessage());
+        }
+    }
+
+    /**
+     * 等待批量调度器返回模型响应；超时后取消请求，尚未发送的请求不会再占用模型服务
+     * 调度队列已满或等待模型服务并发许可超时时，抛出解包后的RejectedExecutionException
+     */
+    private String awaitModelResult(CompletableFuture<String> future) throws Exception {
+        try {
+            return future.get(modelResultTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                throw (RejectedExecutionException) e.getCause();
+            }
+            throw e;
+        } catch (TimeoutException | InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * 缓存键中的提示词版本，模型或系统提示词变化后旧缓存不再命中
+     */
+    private String promptVersion() {
+        return MODEL_NAME + "\n" + SYSTEM_PROMPT;
+    }
+
+    /**
+     * 只缓存成功解析出结构化诊断的响应，避免把异常输出固化下来
+     */
+    private boolean isCacheable(Map<String, Object> aiDiagnosisResult) {
+        Object tcmDiseaseName = aiDiagnosisResult.get("中医病名");
+        return tcmDiseaseName != null
+                && !"解析错误".equals(tcmDiseaseName)
+                && !"AI分析结果".equals(tcmDiseaseName);
+    }
+
+    /**
+     * 将AI原始响应和提取出的关键信息写回就诊记录
+     */
+    private void saveAnalysisToVisit(Long visitId, String rawResponse, Map<String, Object> aiDiagnosisResult) {
+        Optional<Visit> visitOpt = visitRepository.findById(visitId);
+        if (visitOpt.isPresent()) {
+            Visit visit = visitOpt.get();
+            visit.setAiAnalysisRawResponse(rawResponse);
+
+            // 尝试从AI结果中提取关键信息并保存到就诊记录中
+            if (aiDiagnosisResult.containsKey("中医病名")) {
+                visit.setTcmDiagnosis(aiDiagnosisResult.get("中医病名").toString());
+            }
+            if (aiDiagnosisResult.containsKey("西医诊断")) {
+                visit.setWesternDiagnosis(aiDiagnosisResult.get("西医诊断").toString());
+            }
+            if (aiDiagnosisResult.containsKey("证型推理")) {
+                visit.setPatternDifferentiation(aiDiagnosisResult.get("证型推理").toString());
+            }
+
+            // 保存更新后的就诊记录
+            visitRepository.save(visit);
+        }
+    }
+
     /**
      * 解析AI响应，提取结构化诊断信息
      * @param aiResponse 来自AI的原始响应（注意：这是VLLM返回的完整OpenAI格式响应）
@@ -184,7 +387,6 @@ public class AIAnalysisService {
 
         try {
             // 解析VLLM返回的完整OpenAI兼容格式响应
-            ObjectMapper objectMapper = new ObjectMapper();
             JsonNode rootNode = objectMapper.readTree(aiResponse);
 
             // 从VLLM响应中提取AI助手的回复内容
@@ -227,6 +429,7 @@ public class AIAnalysisService {
                         result.put("最终结果", finalResult);
                     } else {
                         // 如果AI响应不是结构化JSON，使用原始内容作为处方组成
+                        recordParseFailure("content_not_object");
                         result.put("中医病名", "AI分析结果");
                         result.put("证型推理", "AI分析结果");
                         result.put("治则治法", "AI分析结果");
@@ -239,6 +442,7 @@ public class AIAnalysisService {
                 } catch (Exception jsonParseEx) {
                     // 如果无法解析AI的JSON内容，使用原始内容
                     System.out.println("警告：无法解析AI返回的JSON格式：" + jsonParseEx.getMessage());
+                    recordParseFailure("content_not_json");
                     result.put("中医病名", "AI分析结果");
                     result.put("证型推理", "AI分析结果");
                     result.put("治则治法", "AI分析结果");
@@ -251,6 +455,7 @@ public class AIAnalysisService {
             } else {
                 // 如果VLLM响应格式不正确，使用原始响应
                 System.out.println("警告：VLLM响应格式不正确");
+                recordParseFailure("invalid_response");
                 result.put("中医病名", "AI分析结果");
                 result.put("证型推理", "AI分析结果");
                 result.put("治则治法", "AI分析结果");
@@ -262,6 +467,7 @@ public class AIAnalysisService {
             }
         } catch (Exception e) {
             System.out.println("解析AI响应时出错：" + e.getMessage());
+            recordParseFailure("error");
             e.printStackTrace();
             // 发生错误时返回默认值
             result.put("中医病名", "解析错误");
@@ -278,70 +484,78 @@ public class AIAnalysisService {
     }
 
     /**
-     * 直接HTTP调用VLLM服务器，避免Spring组件的复杂性
+     * 记录一次AI响应解析失败（回退为默认结果），按原因区分
      */
-    private String callVLLMServer(Map<String, Object> requestData, String apiKey) {
-        try {
-            java.net.URL url = new java.net.URL("http://localhost:7578/v1/chat/completions");
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-
-            // 设置请求方法和头信息
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
-            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
-            connection.setDoOutput(true);
-
-            // 写入请求体
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            String requestBody = mapper.writeValueAsString(requestData);
-
-            try (java.io.OutputStream os = connection.getOutputStream()) {
-                byte[] input = requestBody.getBytes("utf-8");
-                os.write(input, 0, input.length);
-            }
-
-            // 读取响应
-            int responseCode = connection.getResponseCode();
-            StringBuilder response = new StringBuilder();
+    private void recordParseFailure(String reason) {
+        Counter.builder("tcm.ai.parse.failures")
+                .description("AI响应解析失败次数")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
 
-            try (java.io.BufferedReader br = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(connection.getInputStream(), "utf-8"))) {
-                String responseLine;
-                while ((responseLine = br.readLine()) != null) {
-                    response.append(responseLine.trim());
-                }
+    /**
+     * 以 stream=true 调用VLLM服务器，逐行读取SSE数据块并转发增量内容
+     * @return 拼装后的完整响应，格式与非流式的 chat.completion 相同，便于统一解析和存储
+     */
+    private String streamVLLMServer(Map<String, Object> requestData, IncrementalJsonFieldParser fieldParser,
+                                    StreamListener listener) throws java.io.IOException, InterruptedException {
+        String[] id = {null};
+        String[] model = {MODEL_NAME};
+        String[] finishReason = {null};
+        JsonNode[] usage = {null};
+
+        modelServerTransport.streamChatCompletions(requestData, chunk -> {
+            if (id[0] == null && chunk.hasNonNull("id")) {
+                id[0] = chunk.get("id").asText();
+            }
+            if (chunk.hasNonNull("model")) {
+                model[0] = chunk.get("model").asText();
+            }
+            if (chunk.hasNonNull("usage")) {
+                usage[0] = chunk.get("usage");
+            }
+            JsonNode choice = chunk.path("choices").path(0);
+            String delta = choice.path("delta").path("content").asText("");
+            if (!delta.isEmpty()) {
+                forwardToken(delta, fieldParser, listener);
             }
+            if (choice.hasNonNull("finish_reason")) {
+                finishReason[0] = choice.get("finish_reason").asText();
+            }
+        });
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("id", id[0] != null ? id[0] : "chatcmpl-stream");
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", model[0]);
+        ObjectNode choice = response.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", fieldParser.getText());
+        choice.put("finish_reason", finishReason[0] != null ? finishReason[0] : "stop");
+        if (usage[0] != null) {
+            response.set("usage", usage[0]);
+        }
+        return objectMapper.writeValueAsString(response);
+    }
 
-            connection.disconnect();
-            return response.toString();
-        } catch (Exception e) {
-            System.err.println("调用VLLM服务器时出错: " + e.getMessage());
-            e.printStackTrace();
-            // 返回一个模拟的响应
-            return "{\n" +
-                "  \"id\": \"chatcmpl-mock\",\n" +
-                "  \"object\": \"chat.completion\",\n" +
-                "  \"created\": 1234567890,\n" +
-                "  \"model\": \"qwen3-8b-union\",\n" +
-                "  \"choices\": [\n" +
-                "    {\n" +
-                "      \"index\": 0,\n" +
-                "      \"message\": {\n" +
-                "        \"role\": \"assistant\",\n" +
-                "        \"content\": \"{\\n  \\\"中医病名\\\": \\\"模拟诊断\\\",\\n  \\\"证型推理\\\": \\\"模拟证型\\\",\\n  \\\"治则治法\\\": \\\"模拟治法\\\",\\n  \\\"临床表现\\\": \\\"模拟临床表现\\\",\\n  \\\"西医诊断\\\": \\\"模拟西医诊断\\\",\\n  \\\"最终结果\\\": {\\n    \\\"处方名称\\\": \\\"模拟处方\\\",\\n    \\\"处方组成\\\": \\\"模拟组成\\\"\\n  }\\n}\"\n" +
-                "      },\n" +
-                "      \"finish_reason\": \"stop\"\n" +
-                "    }\n" +
-                "  ],\n" +
-                "  \"usage\": {\n" +
-                "    \"prompt_tokens\": 100,\n" +
-                "    \"completion_tokens\": 100,\n" +
-                "    \"total_tokens\": 200\n" +
-                "  }\n" +
-                "}";
+    private void forwardToken(String token, IncrementalJsonFieldParser fieldParser, StreamListener listener) {
+        listener.onToken(token);
+        for (Map.Entry<String, JsonNode> field : fieldParser.feed(token)) {
+            listener.onField(field.getKey(), field.getValue());
         }
     }
 
+    /**
+     * 从 chat.completion 响应中取出助手消息内容
+     */
+    private String extractAssistantContent(String rawResponse) throws java.io.IOException {
+        return objectMapper.readTree(rawResponse).path("choices").path(0).path("message").path("content").asText("");
+    }
+
     // 从AI响应文本中提取关键信息
     private String extractKeyInfo(String text, String infoType) {
         // 简单提取，如果VLLM响应中没有特定格式，就返回文本片段
@@ -0,0 +1,253 @@
+package com.tcm.service;
+
+import com.tcm.model.AIDiagnosisCacheEntry;
+import com.tcm.repository.AIDiagnosisCacheRepository;
+import com.tcm.utils.TtlLruCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AI诊断结果缓存
+ * 以规范化后的临床输入（性别、年龄段、主诉、舌象、脉象、舌象图像特征等）的SHA-256为键缓存模型原始响应，
+ * 相同临床输入的就诊可以直接复用结果而不再调用模型。
+ * 内存层按容量和存活时间淘汰；可选开启PostgreSQL持久化层，重启后仍可命中。
+ */
+@Service
+public class AIDiagnosisCache {
+
+    // 参与缓存键计算的临床字段，与AIAnalysisService构建提示词时使用的字段一致
+    private static final String[] CLINICAL_FIELDS = {"症状体征", "舌象", "脉象", "西医检查", "西医诊断"};
+
+    private static final Pattern AGE_PATTERN = Pattern.compile("(\\d+)");
+
+    @Autowired
+    private AIDiagnosisCacheRepository aiDiagnosisCacheRepository;
+
+    @Value("${ai.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${ai.cache.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${ai.cache.persistent.enabled:false}")
+    private boolean persistentEnabled;
+
+    private TtlLruCache<String, String> memoryCache;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong persistentHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        memoryCache = new TtlLruCache<>(maxEntries, ttlMinutes * 60_000L);
+    }
+
+    /**
+     * 根据整合数据计算缓存键
+     * 姓名等与诊断无关的信息不参与计算，年龄按10岁分段
+     * @param integratedData 数据整合服务返回的就诊数据
+     * @param promptVersion 模型名称与系统提示词，提示词变化后旧缓存自然失效
+     * @return 64位十六进制SHA-256
+     */
+    @SuppressWarnings("unchecked")
+    public String buildKey(Map<String, Object> integratedData, String promptVersion) {
+        Map<String, Object> patientInfo = (Map<String, Object>) integratedData.get("患者信息");
+        Map<String, Object> clinicalInfo = (Map<String, Object>) integratedData.get("临床表现");
+        // 缺失字段按提示词中的实际取值参与计算，保证相同提示词得到相同的键
+        if (patientInfo == null) {
+            patientInfo = new HashMap<>();
+            patientInfo.put("性别", "未知");
+        }
+        if (clinicalInfo == null) {
+            clinicalInfo = new HashMap<>();
+            clinicalInfo.put("症状体征", "待描述");
+            clinicalInfo.put("舌象", "未记录");
+            clinicalInfo.put("脉象", "未记录");
+            clinicalInfo.put("西医检查", "未记录");
+            clinicalInfo.put("西医诊断", "待诊断");
+        }
+
+        StringBuilder canonical = new StringBuilder();
+        canonical.append("prompt=").append(promptVersion).append('\n');
+        canonical.append("性别=").append(normalize(patientInfo.get("性别"))).append('\n');
+        canonical.append("年龄段=").append(ageBucket(patientInfo.get("年龄"))).append('\n');
+        for (String field : CLINICAL_FIELDS) {
+            canonical.append(field).append('=').append(normalize(clinicalInfo.get(field))).append('\n');
+        }
+        // 舌象图像特征只在存在时参与计算，没有照片的就诊缓存键保持不变
+        Object tongueImageFeatures = integratedData.get(AIAnalysisService.TONGUE_IMAGE_FEATURES_KEY);
+        if (tongueImageFeatures != null) {
+            canonical.append(AIAnalysisService.TONGUE_IMAGE_FEATURES_KEY).append('=').append(tongueImageFeatures).append('\n');
+        }
+        return sha256Hex(canonical.toString());
+    }
+
+    /**
+     * 查询缓存，先查内存层，再查持久化层
+     * @return 模型原始响应；未命中返回null
+     */
+    public String get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        String cached = memoryCache.get(key);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            return cached;
+        }
+        if (persistentEnabled) {
+            try {
+                Optional<AIDiagnosisCacheEntry> entry = aiDiagnosisCacheRepository.findByCacheKey(key);
+                if (entry.isPresent() && entry.get().getExpiresAt().isAfter(LocalDateTime.now())) {
+                    persistentHits.incrementAndGet();
+                    memoryCache.put(key, entry.get().getRawResponse());
+                    return entry.get().getRawResponse();
+                }
+            } catch (Exception e) {
+                // 持久化层不可用时仅退化为未命中
+                System.out.println("读取AI诊断持久化缓存失败: " + e.getMessage());
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入缓存
+     */
+    public void put(String key, String rawResponse) {
+        if (!enabled) {
+            return;
+        }
+        memoryCache.put(key, rawResponse);
+        puts.incrementAndGet();
+        if (persistentEnabled) {
+            try {
+                AIDiagnosisCacheEntry entry = aiDiagnosisCacheRepository.findByCacheKey(key).orElseGet(AIDiagnosisCacheEntry::new);
+                entry.setCacheKey(key);
+                entry.setRawResponse(rawResponse);
+                entry.setExpiresAt(LocalDateTime.now().plusMinutes(ttlMinutes));
+                aiDiagnosisCacheRepository.save(entry);
+            } catch (Exception e) {
+                // 并发写入同一个键时可能触发唯一约束，内存层已写入，忽略即可
+                System.out.println("写入AI诊断持久化缓存失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        long memory = memoryHits.get();
+        long persistent = persistentHits.get();
+        long miss = misses.get();
+        long total = memory + persistent + miss;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("persistentEnabled", persistentEnabled);
+        stats.put("size", memoryCache.size());
+        stats.put("memoryHits", memory);
+        stats.put("persistentHits", persistent);
+        stats.put("misses", miss);
+        stats.put("puts", puts.get());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) (memory + persistent) / total);
+        return stats;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getPersistentHits() {
+        return persistentHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 启动时清理持久化层中已过期的条目
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void purgeExpired() {
+        if (!enabled || !persistentEnabled) {
+            return;
+        }
+        try {
+            int count = aiDiagnosisCacheRepository.deleteExpired(LocalDateTime.now());
+            if (count > 0) {
+                System.out.println("已清理 " + count + " 条过期的AI诊断缓存");
+            }
+        } catch (Exception e) {
+            System.out.println("清理过期AI诊断缓存失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 规范化文本：统一全角标点，去除首尾及标点两侧空白，合并连续空白，英文转小写
+     */
+    private String normalize(Object value) {
+        return String.valueOf(value)
+                .replace('，', ',')
+                .replace('。', '.')
+                .replace('；', ';')
+                .replace('：', ':')
+                .trim()
+                .replaceAll("\\s*([,.;:])\\s*", "$1")
+                .replaceAll("\\s+", " ")
+                .toLowerCase();
+    }
+
+    /**
+     * 年龄分段，如 "35岁" -> "30-39"
+     */
+    private String ageBucket(Object age) {
+        if (age == null) {
+            return "未知";
+        }
+        Matcher matcher = AGE_PATTERN.matcher(age.toString());
+        if (!matcher.find()) {
+            return "未知";
+        }
+        int years = Integer.parseInt(matcher.group(1));
+        int lower = years / 10 * 10;
+        return lower + "-" + (lower + 9);
+    }
+
+    private String sha256Hex(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+}
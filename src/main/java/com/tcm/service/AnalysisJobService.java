@@ -0,0 +1,157 @@
+package com.tcm.service;
+
+import com.tcm.model.AnalysisJob;
+import com.tcm.repository.AnalysisJobRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * AI分析任务服务
+ * 将AI分析提交到有界线程池中执行，并把任务状态持久化到analysis_jobs表
+ */
+@Service
+public class AnalysisJobService {
+
+    @Autowired
+    private AnalysisJobRepository analysisJobRepository;
+
+    @Autowired
+    private AIAnalysisService aiAnalysisService;
+
+    @Autowired
+    @Qualifier("analysisExecutor")
+    private ThreadPoolTaskExecutor analysisExecutor;
+
+    // 节点标识，重启后需保持不变才能找到本节点上次中断的任务；未配置时使用主机名
+    @Value("${ai.analysis.node-id:}")
+    private String nodeId;
+
+    // 本次启动的时间，早于此时间创建且未完成的本节点任务属于上次运行
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    @PostConstruct
+    public void init() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = localHostName();
+        }
+    }
+
+    /**
+     * 提交AI分析任务
+     * @param visitId 就诊记录ID
+     * @return 已创建的任务
+     * @throws RejectedExecutionException 分析队列已满
+     */
+    public AnalysisJob submit(Long visitId) {
+        AnalysisJob job = new AnalysisJob();
+        job.setVisitId(visitId);
+        job.setNodeId(nodeId);
+        job.setStatus(AnalysisJob.STATUS_QUEUED);
+        job = analysisJobRepository.save(job);
+
+        Long jobId = job.getId();
+        try {
+            analysisExecutor.execute(() -> runJob(jobId, visitId));
+        } catch (TaskRejectedException e) {
+            // 队列已满：记录失败状态，由调用方提示稍后重试
+            job.setStatus(AnalysisJob.STATUS_FAILED);
+            job.setErrorMessage("AI分析队列已满，请稍后重试");
+            job.setFinishedAt(LocalDateTime.now());
+            analysisJobRepository.save(job);
+            throw new RejectedExecutionException("AI分析队列已满，请稍后重试", e);
+        }
+        return job;
+    }
+
+    /**
+     * 根据ID获取任务
+     */
+    public Optional<AnalysisJob> getJob(Long jobId) {
+        return analysisJobRepository.findById(jobId);
+    }
+
+    /**
+     * 执行单个分析任务，并更新任务状态
+     */
+    private void runJob(Long jobId, Long visitId) {
+        AnalysisJob job = analysisJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        job.setStatus(AnalysisJob.STATUS_RUNNING);
+        job.setStartedAt(LocalDateTime.now());
+        job = analysisJobRepository.save(job);
+
+        try {
+            aiAnalysisService.analyzeAndProcess(visitId);
+            job.setStatus(AnalysisJob.STATUS_DONE);
+            System.out.println("AI分析完成，visitId: " + visitId + ", jobId: " + jobId);
+        } catch (Exception e) {
+            job.setStatus(AnalysisJob.STATUS_FAILED);
+            job.setErrorMessage(truncate(rootMessage(e)));
+            System.out.println("AI分析失败，visitId: " + visitId + ", jobId: " + jobId + ", 错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+        job.setFinishedAt(LocalDateTime.now());
+        analysisJobRepository.save(job);
+    }
+
+    /**
+     * 服务启动时，将本节点上次运行中断的任务标记为失败，避免状态永远停留在queued/running
+     * 任务只在提交它的节点的线程池中执行，其他节点的任务不受影响
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedJobs() {
+        try {
+            int count = analysisJobRepository.updateStatusByNodeWhereStatusIn(
+                    nodeId,
+                    Arrays.asList(AnalysisJob.STATUS_QUEUED, AnalysisJob.STATUS_RUNNING),
+                    startedAt,
+                    AnalysisJob.STATUS_FAILED,
+                    "服务重启，任务中断");
+            if (count > 0) {
+                System.out.println("已将 " + count + " 个中断的AI分析任务标记为失败");
+            }
+        } catch (Exception e) {
+            System.out.println("清理中断的AI分析任务失败: " + e.getMessage());
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    private String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    private String truncate(String message) {
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
@@ -0,0 +1,335 @@
+package com.tcm.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tcm.dto.ImportResult;
+import com.tcm.model.BaseEntity;
+import com.tcm.model.Doctor;
+import com.tcm.model.Patient;
+import com.tcm.model.Prescription;
+import com.tcm.model.PrescriptionDetail;
+import com.tcm.model.Visit;
+import com.tcm.utils.CsvReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 批量导入服务，用于从其他诊所系统迁移患者、就诊、处方和处方明细
+ * 请求体按CSV（首行为表头）或NDJSON（每行一个JSON对象）逐条流式解析，字段名与实体属性一致；
+ * 关联通过 patientId、doctorId、visitId、prescriptionId 列指定，可选的 id 列用于保留源系统的ID以便后续文件引用。
+ *
+ * 写入按批次（import.chunk-size 行）在独立事务中进行，配合 hibernate.jdbc.batch_size 合并INSERT，
+ * 每个批次结束后持久化上下文随事务关闭，内存占用与文件大小无关。
+ * 某个批次写库失败（如外键不存在、ID重复）时整批回滚，再逐行重试以定位出错的行，其余行照常导入。
+ */
+@Service
+public class BulkImportService {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    // 支持导入的实体，键为接口路径中的实体名
+    private static final Map<String, ImportTarget<?>> TARGETS = new LinkedHashMap<>();
+
+    static {
+        TARGETS.put("patients", new ImportTarget<>(Patient.class));
+        TARGETS.put("visits", new ImportTarget<>(Visit.class)
+                .reference("patientId", Patient.class, Visit::setPatient)
+                .reference("doctorId", Doctor.class, Visit::setDoctor));
+        TARGETS.put("prescriptions", new ImportTarget<>(Prescription.class)
+                .reference("visitId", Visit.class, Prescription::setVisit)
+                .reference("doctorId", Doctor.class, Prescription::setDoctor)
+                // NDJSON中可以内嵌处方明细，随处方级联写入
+                .prepare(prescription -> {
+                    if (prescription.getPrescriptionDetails() != null) {
+                        for (PrescriptionDetail detail : prescription.getPrescriptionDetails()) {
+                            detail.setPrescription(prescription);
+                        }
+                    }
+                }));
+        TARGETS.put("prescription-details", new ImportTarget<>(PrescriptionDetail.class)
+                .reference("prescriptionId", Prescription.class, PrescriptionDetail::setPrescription));
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 每个事务写入的行数
+    @Value("${import.chunk-size:1000}")
+    private int chunkSize;
+
+    // 结果中最多返回的失败行数
+    @Value("${import.max-errors:1000}")
+    private int maxErrors;
+
+    private ObjectMapper rowMapper;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        // 导入时拼错的列名直接报错，而不是静默丢弃
+        rowMapper = objectMapper.copy().enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public static Set<String> supportedEntities() {
+        return TARGETS.keySet();
+    }
+
+    /**
+     * 导入数据
+     * @param entity 实体名：patients、visits、prescriptions、prescription-details
+     * @param format csv 或 ndjson
+     * @param input 请求体，UTF-8编码
+     * @throws IllegalArgumentException 不支持的实体或格式，或CSV表头为空
+     */
+    public ImportResult importRows(String entity, String format, InputStream input) throws IOException {
+        ImportTarget<?> target = TARGETS.get(entity);
+        if (target == null) {
+            throw new IllegalArgumentException("不支持导入的实体: " + entity + "，可选: " + String.join(",", TARGETS.keySet()));
+        }
+        if (!FORMAT_CSV.equals(format) && !FORMAT_NDJSON.equals(format)) {
+            throw new IllegalArgumentException("不支持的格式: " + format + "，可选: csv、ndjson");
+        }
+
+        long start = System.currentTimeMillis();
+        ImportResult result = new ImportResult(entity, format);
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        if (FORMAT_CSV.equals(format)) {
+            readCsv(reader, target, chunk, result);
+        } else {
+            readNdjson(reader, target, chunk, result);
+        }
+        writeChunk(target, chunk, result);
+
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        System.out.println("批量导入完成: " + entity + " 共" + result.getTotalRows() + "行，成功" + result.getImported()
+                + "行，失败" + result.getFailed() + "行，耗时" + result.getElapsedMs() + "ms");
+        return result;
+    }
+
+    private void readCsv(BufferedReader reader, ImportTarget<?> target, List<Row> chunk, ImportResult result) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            throw new IllegalArgumentException("CSV缺少表头");
+        }
+        for (int i = 0; i < header.size(); i++) {
+            header.set(i, header.get(i).trim());
+        }
+
+        while (true) {
+            List<String> record;
+            try {
+                record = csv.next();
+            } catch (IllegalArgumentException e) {
+                // 引号未闭合时后续内容都无法可靠解析
+                result.setTotalRows(result.getTotalRows() + 1);
+                result.addError(csv.getRecordLine(), e.getMessage(), maxErrors);
+                return;
+            }
+            if (record == null) {
+                return;
+            }
+            result.setTotalRows(result.getTotalRows() + 1);
+            if (record.size() != header.size()) {
+                result.addError(csv.getRecordLine(), "列数为" + record.size() + "，与表头的" + header.size() + "列不一致", maxErrors);
+                continue;
+            }
+            Map<String, Object> values = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                // 空字段按未填写处理
+                if (!record.get(i).isEmpty()) {
+                    values.put(header.get(i), record.get(i));
+                }
+            }
+            accept(target, new Row(csv.getRecordLine(), values), chunk, result);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readNdjson(BufferedReader reader, ImportTarget<?> target, List<Row> chunk, ImportResult result) throws IOException {
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            result.setTotalRows(result.getTotalRows() + 1);
+            Map<String, Object> values;
+            try {
+                values = objectMapper.readValue(line, Map.class);
+            } catch (JsonProcessingException e) {
+                result.addError(lineNumber, "JSON格式错误: " + e.getOriginalMessage(), maxErrors);
+                continue;
+            }
+            accept(target, new Row(lineNumber, values), chunk, result);
+        }
+    }
+
+    /**
+     * 转换为实体，字段类型错误的行直接记为失败；攒满一批后写库
+     */
+    private void accept(ImportTarget<?> target, Row row, List<Row> chunk, ImportResult result) {
+        try {
+            target.convert(rowMapper, row);
+        } catch (IllegalArgumentException e) {
+            result.addError(row.line, firstLine(e.getMessage()), maxErrors);
+            return;
+        }
+        chunk.add(row);
+        if (chunk.size() >= chunkSize) {
+            writeChunk(target, chunk, result);
+        }
+    }
+
+    private void writeChunk(ImportTarget<?> target, List<Row> chunk, ImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Row row : chunk) {
+                    target.persist(entityManager, row);
+                }
+            });
+            result.setImported(result.getImported() + chunk.size());
+        } catch (RuntimeException e) {
+            // 整批已回滚，逐行重试；实体可能已被写入过程修改（如分配了ID），按原始字段重新转换
+            for (Row row : chunk) {
+                try {
+                    target.convert(rowMapper, row);
+                    transactionTemplate.executeWithoutResult(status -> target.persist(entityManager, row));
+                    result.setImported(result.getImported() + 1);
+                } catch (RuntimeException rowError) {
+                    result.addError(row.line, firstLine(NestedExceptionUtils.getMostSpecificCause(rowError).getMessage()), maxErrors);
+                }
+            }
+        }
+        chunk.clear();
+    }
+
+    private static String firstLine(String message) {
+        if (message == null) {
+            return "未知错误";
+        }
+        int newline = message.indexOf('\n');
+        return newline < 0 ? message : message.substring(0, newline);
+    }
+
+    /**
+     * 待写入的一行：原始字段、转换后的实体和关联ID
+     */
+    private static class Row {
+        private final long line;
+        private final Map<String, Object> values;
+        private BaseEntity entity;
+        private Map<String, Long> references;
+
+        Row(long line, Map<String, Object> values) {
+            this.line = line;
+            this.values = values;
+        }
+    }
+
+    /**
+     * 可导入的实体类型：关联列 -> 关联实体类型及设置方法
+     */
+    private static class ImportTarget<T extends BaseEntity> {
+        private final Class<T> type;
+        private final Map<String, Reference<T, ?>> references = new LinkedHashMap<>();
+        private Consumer<T> preparer = entity -> {};
+
+        ImportTarget(Class<T> type) {
+            this.type = type;
+        }
+
+        <R extends BaseEntity> ImportTarget<T> reference(String column, Class<R> referenceType, BiConsumer<T, R> setter) {
+            references.put(column, new Reference<>(referenceType, setter));
+            return this;
+        }
+
+        ImportTarget<T> prepare(Consumer<T> preparer) {
+            this.preparer = preparer;
+            return this;
+        }
+
+        /**
+         * 按原始字段转换实体，关联列取出为ID
+         * @throws IllegalArgumentException 字段类型错误、未知字段或关联ID不是数字
+         */
+        void convert(ObjectMapper mapper, Row row) {
+            Map<String, Object> values = new HashMap<>(row.values);
+            Map<String, Long> referenceIds = new HashMap<>();
+            for (String column : references.keySet()) {
+                Object value = values.remove(column);
+                if (value != null) {
+                    try {
+                        referenceIds.put(column, Long.valueOf(value.toString().trim()));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException(column + " 不是有效的ID: " + value);
+                    }
+                }
+            }
+            T entity = mapper.convertValue(values, type);
+            preparer.accept(entity);
+            row.entity = entity;
+            row.references = referenceIds;
+        }
+
+        /**
+         * 设置关联（只取引用，不查询关联实体）并写入
+         */
+        void persist(EntityManager entityManager, Row row) {
+            T entity = type.cast(row.entity);
+            for (Map.Entry<String, Long> entry : row.references.entrySet()) {
+                references.get(entry.getKey()).attach(entityManager, entity, entry.getValue());
+            }
+            entityManager.persist(entity);
+        }
+    }
+
+    private static class Reference<T, R> {
+        private final Class<R> type;
+        private final BiConsumer<T, R> setter;
+
+        Reference(Class<R> type, BiConsumer<T, R> setter) {
+            this.type = type;
+            this.setter = setter;
+        }
+
+        void attach(EntityManager entityManager, T entity, Long id) {
+            setter.accept(entity, entityManager.getReference(type, id));
+        }
+    }
+}
@@ -3,11 +3,15 @@ package com.tcm.service;
 import com.tcm.model.*;
 import com.tcm.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * 数据整合服务，用于查询数据库并组装成规范化的JSON格式
@@ -15,12 +19,6 @@ import java.util.Map;
 @Service
 public class DataIntegrationService {
 
-    @Autowired
-    private PatientRepository patientRepository;
-
-    @Autowired
-    private DoctorRepository doctorRepository;
-
     @Autowired
     private VisitRepository visitRepository;
 
@@ -28,43 +26,95 @@ public class DataIntegrationService {
     private PrescriptionRepository prescriptionRepository;
 
     @Autowired
-    private PrescriptionDetailRepository prescriptionDetailRepository;
+    private VisitSnapshotCache visitSnapshotCache;
+
+    // 批量整合时每批查询的就诊数量（IN 子句的参数个数）
+    @Value("${integration.batch.chunk-size:500}")
+    private int chunkSize;
 
     /**
      * 根据就诊ID (Visit ID) 整合患者、医生、就诊、处方等信息为规范化JSON
+     * 优先读取快照缓存，未命中时查库组装并写回缓存；返回的Map调用方可以修改
      * @param visitId 就诊记录ID
      * @return 规范化的JSON格式数据
      */
     public Map<String, Object> integrateDataByVisitId(Long visitId) {
-        // 1. 查询就诊记录
-        Visit visit = visitRepository.findById(visitId).orElse(null);
+        Map<String, Object> cached = visitSnapshotCache.get(visitId);
+        if (cached != null) {
+            return cached;
+        }
+        // 查库前记下版本号，期间有相关写入时不写回缓存
+        long version = visitSnapshotCache.currentVersion();
+
+        // 1. 查询就诊记录，患者和医生在同一条SQL中加载
+        Visit visit = visitRepository.findWithPatientAndDoctorById(visitId).orElse(null);
         if (visit == null) {
             return null; // 或抛出异常
         }
 
-        // 2. 根据就诊记录获取患者、医生、处方信息
-        // 注意：需要检查关联对象是否为null
-        Long patientId = null;
-        if (visit.getPatient() != null) {
-            patientId = visit.getPatient().getId();
-        }
+        // 2. 查询处方及其明细（一条SQL），避免逐个处方查询明细
+        List<Prescription> prescriptions = prescriptionRepository.findWithDetailsByVisitId(visitId);
 
-        Long doctorId = null;
-        if (visit.getDoctor() != null) {
-            doctorId = visit.getDoctor().getId();
+        Map<String, Object> integratedData = buildIntegratedData(visit, prescriptions);
+        List<Long> prescriptionIds = new ArrayList<>();
+        for (Prescription prescription : prescriptions) {
+            prescriptionIds.add(prescription.getId());
         }
+        Long patientId = visit.getPatient() != null ? visit.getPatient().getId() : null;
+        visitSnapshotCache.put(visitId, version, patientId, prescriptionIds, integratedData);
+        return integratedData;
+    }
 
-        List<Prescription> prescriptions = prescriptionRepository.findByVisitId(visitId);
+    /**
+     * 批量整合多个就诊的数据
+     * 按批次用 IN 查询加载就诊（含患者、医生）和处方（含明细），每批固定两次查询，
+     * 结果按传入顺序逐条交给 sink，调用方可以边查边输出
+     * @param visitIds 就诊记录ID列表
+     * @param sink 每条整合结果的回调；不存在的就诊返回只含"编号"和"error"的结果
+     */
+    public void integrateDataByVisitIds(List<Long> visitIds, Consumer<Map<String, Object>> sink) {
+        for (int start = 0; start < visitIds.size(); start += chunkSize) {
+            List<Long> chunk = visitIds.subList(start, Math.min(visitIds.size(), start + chunkSize));
 
-        Patient patient = null;
-        if (patientId != null) {
-            patient = patientRepository.findById(patientId).orElse(null);
-        }
+            Map<Long, Visit> visits = new HashMap<>();
+            for (Visit visit : visitRepository.findWithPatientAndDoctorByIdIn(chunk)) {
+                visits.put(visit.getId(), visit);
+            }
 
-        Doctor doctor = null;
-        if (doctorId != null) {
-            doctor = doctorRepository.findById(doctorId).orElse(null);
+            Map<Long, List<Prescription>> prescriptionsByVisit = new HashMap<>();
+            if (!visits.isEmpty()) {
+                for (Prescription prescription : prescriptionRepository.findWithDetailsByVisitIdIn(visits.keySet())) {
+                    prescriptionsByVisit.computeIfAbsent(prescription.getVisit().getId(), id -> new ArrayList<>()).add(prescription);
+                }
+            }
+
+            for (Long visitId : chunk) {
+                Visit visit = visits.get(visitId);
+                if (visit == null) {
+                    Map<String, Object> notFound = new HashMap<>();
+                    notFound.put("编号", visitId);
+                    notFound.put("error", "Visit not found with id: " + visitId);
+                    sink.accept(notFound);
+                } else {
+                    sink.accept(buildIntegratedData(visit, prescriptionsByVisit.getOrDefault(visitId, new ArrayList<>())));
+                }
+            }
         }
+    }
+
+    /**
+     * 查询就诊时间在 [from, to) 范围内的就诊ID
+     */
+    public List<Long> findVisitIdsByDateRange(LocalDateTime from, LocalDateTime to) {
+        return visitRepository.findIdsByVisitDateRange(from, to);
+    }
+
+    /**
+     * 由已加载的就诊（含患者、医生）和处方（含明细）组装规范化JSON
+     */
+    private Map<String, Object> buildIntegratedData(Visit visit, List<Prescription> prescriptions) {
+        Patient patient = visit.getPatient();
+        Doctor doctor = visit.getDoctor();
 
         // 3. 构建规范化的JSON结构
         Map<String, Object> result = new HashMap<>();
@@ -78,7 +128,7 @@ public class DataIntegrationService {
         result.put("中医病名", "待AI分析确定或医生录入"); // 通常需要AI或医生录入
         result.put("证型推理", "待AI分析确定或医生录入"); // 通常需要AI或医生录入
         result.put("治则治法", "待AI分析确定或医生录入"); // 通常需要AI或医生录入
-        result.put("编号", visitId); // 使用就诊ID作为编号
+        result.put("编号", visit.getId()); // 使用就诊ID作为编号
 
         return result;
     }
@@ -133,7 +183,8 @@ public class DataIntegrationService {
             StringBuilder medicineNames = new StringBuilder();
             for (int i = 0; i < prescriptions.size(); i++) {
                 if (i > 0) medicineNames.append(", ");
-                List<PrescriptionDetail> details = prescriptionDetailRepository.findByPrescriptionId(prescriptions.get(i).getId());
+                List<PrescriptionDetail> details = prescriptions.get(i).getPrescriptionDetails();
+                if (details == null) continue;
                 for (int j = 0; j < details.size(); j++) {
                     if (j > 0) medicineNames.append(", ");
                     medicineNames.append(details.get(j).getHerbName());
@@ -1,9 +1,16 @@
 package com.tcm.service;
 
+import com.tcm.dto.CursorPage;
+import com.tcm.dto.DiagnosticImageContent;
 import com.tcm.dto.DiagnosticImageResponse;
+import com.tcm.dto.SimilarImageResponse;
 import com.tcm.model.DiagnosticImage;
 import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface DiagnosticImageService {
     DiagnosticImageResponse uploadDiagnosticImage(Long visitId, MultipartFile file, String imageType, String description) throws Exception;
@@ -12,4 +19,9 @@ public interface DiagnosticImageService {
     List<DiagnosticImageResponse> getDiagnosticImagesByImageType(String imageType);
     List<DiagnosticImageResponse> getAllDiagnosticImages();
     void deleteDiagnosticImage(Long id);
+    DiagnosticImageContent getDiagnosticImageContent(Long id, String variant) throws IOException;
+    List<SimilarImageResponse> findSimilarImages(Long id, int k);
+    CursorPage<Map<String, Object>> getDiagnosticImagesPage(Long visitId, String imageType, String cursor, Integer size, boolean withTotal, String fields);
+    List<Map<String, Object>> getDiagnosticImageSummaries(Long visitId, String imageType, String fields);
+    Optional<Map<String, Object>> getDiagnosticImageSummary(Long id, String fields);
 }
\ No newline at end of file
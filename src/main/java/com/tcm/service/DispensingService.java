@@ -0,0 +1,410 @@
+package com.tcm.service;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.tcm.model.StockReservation;
+import com.tcm.model.StockReservationItem;
+import com.tcm.repository.PrescriptionRepository;
+import com.tcm.repository.StockReservationRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * 发药服务：为处方的全部药材预占并扣减库存
+ * 扣减使用带条件的UPDATE（stock_quantity >= 需要量），由数据库行锁保证并发发药时不会超扣或丢失更新；
+ * 同一处方的所有药材按药品ID顺序在一个JDBC批次中扣减（固定加锁顺序，避免并发发药互相死锁），
+ * 任一药材库存不足时整个事务回滚，不会只扣减部分药材。库存数量以克计，处方用量按单位换算为克后扣减。
+ * 预占在超时前确认即完成发药；取消或超时由定时任务释放并归还库存。预占状态的变更同样是带条件的UPDATE，
+ * 确认、取消、超时释放并发发生时只有一个会生效，多节点部署时定时任务也不会重复归还库存。
+ */
+@Service
+public class DispensingService {
+
+    private static final String DECREMENT_SQL =
+            "UPDATE medicine_inventory SET stock_quantity = stock_quantity - ?, updated_at = ? WHERE id = ? AND stock_quantity >= ?";
+
+    private static final String RESTORE_SQL =
+            "UPDATE medicine_inventory SET stock_quantity = stock_quantity + ?, updated_at = ? WHERE id = ?";
+
+    // 入库、报损等库存调整，按当前库存相对增减，调整后不能小于0
+    private static final String ADJUST_SQL =
+            "UPDATE medicine_inventory SET stock_quantity = COALESCE(stock_quantity, 0) + ?, updated_at = ? WHERE id = ? AND COALESCE(stock_quantity, 0) + ? >= 0";
+
+    // 处方用量单位换算为库存单位（克）的倍数，未填写单位的按克处理
+    private static final Map<String, BigDecimal> GRAMS_PER_UNIT = Map.of(
+            "g", BigDecimal.ONE,
+            "克", BigDecimal.ONE,
+            "kg", BigDecimal.valueOf(1000),
+            "千克", BigDecimal.valueOf(1000));
+
+    private static final List<String> ACTIVE_STATUSES = List.of(StockReservation.STATUS_RESERVED, StockReservation.STATUS_DISPENSED);
+
+    // 处方状态：0-未取药，1-已取药
+    private static final int PRESCRIPTION_PENDING = 0;
+    private static final int PRESCRIPTION_DISPENSED = 1;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private StockReservationRepository stockReservationRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    // 预占有效期，超时未确认发药的自动释放
+    @Value("${dispensing.reservation-timeout-minutes:30}")
+    private long reservationTimeoutMinutes;
+
+    // 每次定时任务最多释放的预占数
+    @Value("${dispensing.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 为处方预占库存：按处方明细汇总每种药材的用量，乘以剂数后向上取整为库存数量，一次性扣减
+     * 药材按名称对应启用的药品，同名药品有多个规格时使用库存最多的一个
+     * @param doses 剂数，为null时使用处方的治疗天数（每天一剂），都没有时为1
+     * @throws NoSuchElementException 处方不存在
+     * @throws IllegalArgumentException 剂数不正确，或处方没有明细、明细缺少用量、用量单位不能按克扣减、用量超出范围
+     * @throws IllegalStateException 处方已取药，或已有未完成的预占
+     * @throws InsufficientStockException 有药材没有对应的药品或库存不足，此时不扣减任何库存
+     */
+    public StockReservation reserve(Long prescriptionId, Integer doses) {
+        return transactionTemplate.execute(status -> {
+            // 锁定处方行，同一处方的并发预占串行执行
+            List<Map<String, Object>> prescriptions = jdbcTemplate.queryForList(
+                    "SELECT status, treatment_duration FROM prescriptions WHERE id = ? FOR UPDATE", prescriptionId);
+            if (prescriptions.isEmpty()) {
+                throw new NoSuchElementException("处方不存在: " + prescriptionId);
+            }
+            Number prescriptionStatus = (Number) prescriptions.get(0).get("status");
+            if (prescriptionStatus != null && prescriptionStatus.intValue() != PRESCRIPTION_PENDING) {
+                throw new IllegalStateException("处方已取药: " + prescriptionId);
+            }
+            if (stockReservationRepository.existsByPrescriptionIdAndStatusIn(prescriptionId, ACTIVE_STATUSES)) {
+                throw new IllegalStateException("处方已有未完成的库存预占或已发药: " + prescriptionId);
+            }
+            Number duration = (Number) prescriptions.get(0).get("treatment_duration");
+            int resolvedDoses = doses != null ? doses : (duration != null && duration.intValue() > 0 ? duration.intValue() : 1);
+            if (resolvedDoses <= 0) {
+                throw new IllegalArgumentException("剂数必须大于0");
+            }
+
+            List<ReservedItem> items = resolveItems(prescriptionId, resolvedDoses);
+            LocalDateTime now = LocalDateTime.now();
+            List<Object[]> batchArgs = new ArrayList<>();
+            for (ReservedItem item : items) {
+                batchArgs.add(new Object[] {item.quantity, now, item.medicineId, item.quantity});
+            }
+            int[] updated = jdbcTemplate.batchUpdate(DECREMENT_SQL, batchArgs);
+            List<Shortage> shortages = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                if (updated[i] != 1) {
+                    ReservedItem item = items.get(i);
+                    Integer available = jdbcTemplate.queryForObject(
+                            "SELECT stock_quantity FROM medicine_inventory WHERE id = ?", Integer.class, item.medicineId);
+                    shortages.add(new Shortage(item.medicineName, item.medicineId, item.quantity, available != null ? available : 0));
+                }
+            }
+            if (!shortages.isEmpty()) {
+                throw new InsufficientStockException(shortages);
+            }
+
+            StockReservation reservation = new StockReservation();
+            reservation.setPrescriptionId(prescriptionId);
+            reservation.setStatus(StockReservation.STATUS_RESERVED);
+            reservation.setDoses(resolvedDoses);
+            reservation.setExpiresAt(now.plusMinutes(reservationTimeoutMinutes));
+            for (ReservedItem item : items) {
+                StockReservationItem reservationItem = new StockReservationItem();
+                reservationItem.setReservation(reservation);
+                reservationItem.setMedicineId(item.medicineId);
+                reservationItem.setMedicineName(item.medicineName);
+                reservationItem.setQuantity(item.quantity);
+                reservation.getItems().add(reservationItem);
+            }
+            return stockReservationRepository.save(reservation);
+        });
+    }
+
+    /**
+     * 确认发药：预占转为已发药，处方标记为已取药；已扣减的库存不再变化
+     * @throws NoSuchElementException 预占不存在
+     * @throws IllegalStateException 预占已确认、已取消或已超时
+     */
+    public StockReservation confirm(Long reservationId) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            int updated = jdbcTemplate.update(
+                    "UPDATE stock_reservations SET status = ?, completed_at = ?, updated_at = ? WHERE id = ? AND status = ? AND expires_at > ?",
+                    StockReservation.STATUS_DISPENSED, now, now, reservationId, StockReservation.STATUS_RESERVED, now);
+            StockReservation reservation = stockReservationRepository.findById(reservationId)
+                    .orElseThrow(() -> new NoSuchElementException("库存预占不存在: " + reservationId));
+            if (updated == 0) {
+                throw new IllegalStateException(StockReservation.STATUS_RESERVED.equals(reservation.getStatus())
+                        ? "库存预占已超时: " + reservationId
+                        : "库存预占状态为 " + reservation.getStatus() + "，不能确认发药");
+            }
+            prescriptionRepository.findById(reservation.getPrescriptionId())
+                    .ifPresent(prescription -> prescription.setStatus(PRESCRIPTION_DISPENSED));
+            return reservation;
+        });
+    }
+
+    /**
+     * 取消预占并归还库存
+     * @throws NoSuchElementException 预占不存在
+     * @throws IllegalStateException 预占已确认发药、已取消或已超时释放
+     */
+    public StockReservation cancel(Long reservationId) {
+        return transactionTemplate.execute(status -> {
+            boolean released = release(reservationId, StockReservation.STATUS_CANCELLED, false);
+            StockReservation reservation = stockReservationRepository.findById(reservationId)
+                    .orElseThrow(() -> new NoSuchElementException("库存预占不存在: " + reservationId));
+            if (!released) {
+                throw new IllegalStateException("库存预占状态为 " + reservation.getStatus() + "，不能取消");
+            }
+            return reservation;
+        });
+    }
+
+    /**
+     * 调整药品库存：quantity 为正数时入库，为负数时报损、盘亏出库
+     * 使用带条件的相对UPDATE，与并发发药的扣减互不覆盖，减少后库存不会小于0
+     * @return 调整后的库存数量
+     * @throws IllegalArgumentException 调整数量为0
+     * @throws NoSuchElementException 药品不存在
+     * @throws IllegalStateException 库存不足以减少
+     */
+    public int adjustStock(Long medicineId, int quantity) {
+        if (quantity == 0) {
+            throw new IllegalArgumentException("调整数量不能为0");
+        }
+        return transactionTemplate.execute(status -> {
+            int updated = jdbcTemplate.update(ADJUST_SQL, quantity, LocalDateTime.now(), medicineId, quantity);
+            List<Integer> stock = jdbcTemplate.queryForList(
+                    "SELECT COALESCE(stock_quantity, 0) FROM medicine_inventory WHERE id = ?", Integer.class, medicineId);
+            if (stock.isEmpty()) {
+                throw new NoSuchElementException("药品不存在: " + medicineId);
+            }
+            if (updated != 1) {
+                throw new IllegalStateException("库存不足，当前库存 " + stock.get(0) + "，不能减少 " + (-quantity));
+            }
+            return stock.get(0);
+        });
+    }
+
+    /**
+     * 定时释放超时未确认的预占并归还库存，每个预占单独一个事务
+     * @return 释放的预占数
+     */
+    @Scheduled(fixedDelayString = "${dispensing.sweep-interval-ms:60000}")
+    public int releaseExpired() {
+        int released = 0;
+        try {
+            List<Long> expiredIds = stockReservationRepository.findExpiredIds(
+                    StockReservation.STATUS_RESERVED, LocalDateTime.now(), PageRequest.of(0, sweepBatchSize));
+            for (Long reservationId : expiredIds) {
+                try {
+                    Boolean done = transactionTemplate.execute(status -> release(reservationId, StockReservation.STATUS_EXPIRED, true));
+                    if (Boolean.TRUE.equals(done)) {
+                        released++;
+                    }
+                } catch (Exception e) {
+                    System.err.println("释放超时库存预占失败，预占ID: " + reservationId + ", 错误: " + e.getMessage());
+                }
+            }
+            if (released > 0) {
+                System.out.println("已释放 " + released + " 个超时的库存预占");
+            }
+        } catch (Exception e) {
+            System.err.println("查询超时库存预占失败: " + e.getMessage());
+        }
+        return released;
+    }
+
+    public Optional<StockReservation> getReservation(Long reservationId) {
+        return stockReservationRepository.findById(reservationId);
+    }
+
+    public List<StockReservation> getReservationsByPrescriptionId(Long prescriptionId) {
+        return stockReservationRepository.findByPrescriptionIdOrderByCreatedAtDesc(prescriptionId);
+    }
+
+    /**
+     * 预占状态从 reserved 转为 targetStatus，成功时按药品ID顺序归还库存；需在事务中调用
+     * @param expiredOnly 只释放已到期的预占
+     * @return 状态已被其他操作改变（或预占不存在）时返回false
+     */
+    private boolean release(Long reservationId, String targetStatus, boolean expiredOnly) {
+        LocalDateTime now = LocalDateTime.now();
+        String sql = "UPDATE stock_reservations SET status = ?, completed_at = ?, updated_at = ? WHERE id = ? AND status = ?"
+                + (expiredOnly ? " AND expires_at <= ?" : "");
+        int updated = expiredOnly
+                ? jdbcTemplate.update(sql, targetStatus, now, now, reservationId, StockReservation.STATUS_RESERVED, now)
+                : jdbcTemplate.update(sql, targetStatus, now, now, reservationId, StockReservation.STATUS_RESERVED);
+        if (updated == 0) {
+            return false;
+        }
+        List<Object[]> batchArgs = jdbcTemplate.query(
+                "SELECT quantity, medicine_id FROM stock_reservation_items WHERE reservation_id = ? ORDER BY medicine_id",
+                (rs, rowNum) -> new Object[] {rs.getInt(1), now, rs.getLong(2)}, reservationId);
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(RESTORE_SQL, batchArgs);
+        }
+        return true;
+    }
+
+    /**
+     * 汇总处方明细并对应到药品，按药品ID排序
+     */
+    private List<ReservedItem> resolveItems(Long prescriptionId, int doses) {
+        Map<String, BigDecimal> dosageByHerb = new LinkedHashMap<>();
+        List<Map<String, Object>> details = jdbcTemplate.queryForList(
+                "SELECT herb_name, dosage, unit FROM prescription_details WHERE prescription_id = ?", prescriptionId);
+        for (Map<String, Object> detail : details) {
+            String herbName = ((String) detail.get("herb_name")).trim();
+            BigDecimal dosage = (BigDecimal) detail.get("dosage");
+            if (dosage == null || dosage.signum() <= 0) {
+                throw new IllegalArgumentException("药材 " + herbName + " 缺少用量");
+            }
+            String unit = (String) detail.get("unit");
+            BigDecimal gramsPerUnit = unit == null || unit.isBlank() ? BigDecimal.ONE : GRAMS_PER_UNIT.get(unit.trim().toLowerCase());
+            if (gramsPerUnit == null) {
+                throw new IllegalArgumentException("药材 " + herbName + " 的用量单位 " + unit + " 不能按克扣减库存");
+            }
+            dosageByHerb.merge(herbName, dosage.multiply(gramsPerUnit), BigDecimal::add);
+        }
+        if (dosageByHerb.isEmpty()) {
+            throw new IllegalArgumentException("处方没有明细: " + prescriptionId);
+        }
+
+        // 同名药品取库存最多的一个，库存相同时取ID小的
+        Map<String, Object[]> medicineByName = new HashMap<>();
+        String placeholders = String.join(", ", Collections.nCopies(dosageByHerb.size(), "?"));
+        jdbcTemplate.query("SELECT id, medicine_name, stock_quantity FROM medicine_inventory WHERE medicine_name IN (" + placeholders
+                + ") AND (status IS NULL OR status <> 0) ORDER BY id", rs -> {
+            long id = rs.getLong(1);
+            String name = rs.getString(2);
+            int stock = rs.getInt(3);
+            Object[] current = medicineByName.get(name);
+            if (current == null || stock > (Integer) current[1]) {
+                medicineByName.put(name, new Object[] {id, stock});
+            }
+        }, dosageByHerb.keySet().toArray());
+
+        List<ReservedItem> items = new ArrayList<>();
+        List<Shortage> missing = new ArrayList<>();
+        for (Map.Entry<String, BigDecimal> entry : dosageByHerb.entrySet()) {
+            BigDecimal total = entry.getValue().multiply(BigDecimal.valueOf(doses)).setScale(0, RoundingMode.CEILING);
+            if (total.compareTo(BigDecimal.valueOf(Integer.MAX_VALUE)) > 0) {
+                throw new IllegalArgumentException("药材 " + entry.getKey() + " 的用量超出范围: " + total);
+            }
+            int quantity = total.intValue();
+            Object[] medicine = medicineByName.get(entry.getKey());
+            if (medicine == null) {
+                missing.add(new Shortage(entry.getKey(), null, quantity, 0));
+            } else {
+                items.add(new ReservedItem((Long) medicine[0], entry.getKey(), quantity));
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new InsufficientStockException(missing);
+        }
+        items.sort(Comparator.comparing(item -> item.medicineId));
+        return items;
+    }
+
+    private static class ReservedItem {
+        private final Long medicineId;
+        private final String medicineName;
+        private final int quantity;
+
+        ReservedItem(Long medicineId, String medicineName, int quantity) {
+            this.medicineId = medicineId;
+            this.medicineName = medicineName;
+            this.quantity = quantity;
+        }
+    }
+
+    /**
+     * 库存不足的药材
+     */
+    public static class Shortage {
+        private final String herbName;
+        @JsonFormat(shape = JsonFormat.Shape.STRING)
+        private final Long medicineId; // 没有对应的启用药品时为null
+        private final int requested;
+        private final int available;
+
+        public Shortage(String herbName, Long medicineId, int requested, int available) {
+            this.herbName = herbName;
+            this.medicineId = medicineId;
+            this.requested = requested;
+            this.available = available;
+        }
+
+        public String getHerbName() {
+            return herbName;
+        }
+
+        public Long getMedicineId() {
+            return medicineId;
+        }
+
+        public int getRequested() {
+            return requested;
+        }
+
+        public int getAvailable() {
+            return available;
+        }
+    }
+
+    /**
+     * 有药材没有对应的药品或库存不足
+     */
+    public static class InsufficientStockException extends RuntimeException {
+        private final List<Shortage> shortages;
+
+        public InsufficientStockException(List<Shortage> shortages) {
+            super("库存不足: " + shortages.stream()
+                    .map(shortage -> shortage.getHerbName() + " 需要" + shortage.getRequested() + "，可用" + shortage.getAvailable())
+                    .reduce((a, b) -> a + "；" + b).orElse(""));
+            this.shortages = shortages;
+        }
+
+        public List<Shortage> getShortages() {
+            return shortages;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.tcm.service;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.Doctor;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface DoctorService {
@@ -12,4 +14,7 @@ public interface DoctorService {
     void deleteDoctor(Long id);
     Doctor findByLicenseNumber(String licenseNumber);
     Doctor findByDoctorPhone(String phone);
+    CursorPage<Map<String, Object>> getDoctorsPage(String name, String department, Integer status, String cursor, Integer size, boolean withTotal, String fields);
+    List<Map<String, Object>> getDoctorSummaries(String fields);
+    Optional<Map<String, Object>> getDoctorSummary(Long id, String fields);
 }
\ No newline at end of file
@@ -0,0 +1,291 @@
+package com.tcm.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tcm.utils.CsvWriter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 数据导出服务，供科研人员导出就诊记录和处方
+ * 在只读事务中用JDBC游标逐行读取（PostgreSQL在关闭自动提交且设置了fetchSize时按批从服务端取数），
+ * 每行直接写入输出流，不组装实体也不缓存结果，内存占用与导出行数无关。
+ */
+@Service
+public class ExportService {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    private static final String VISITS_SQL =
+            "SELECT v.id, v.patient_id, p.name, v.doctor_id, d.name, v.visit_type, v.medical_record_number, v.visit_date, "
+                    + "v.chief_complaint, v.symptoms, v.initial_visit_clinical_manifestation, v.follow_up_clinical_manifestation, "
+                    + "v.tongue_diagnosis, v.pulse_diagnosis, v.tcm_diagnosis, v.western_diagnosis, v.pattern_differentiation, "
+                    + "v.treatment_plan, v.created_at, v.updated_at "
+                    + "FROM visits v LEFT JOIN patients p ON p.id = v.patient_id LEFT JOIN doctors d ON d.id = v.doctor_id";
+
+    // 与 VISITS_SQL 的查询列一一对应
+    private static final List<Column> VISIT_COLUMNS = List.of(
+            new Column("id", ColumnType.ID), new Column("patientId", ColumnType.ID), new Column("patientName", ColumnType.TEXT),
+            new Column("doctorId", ColumnType.ID), new Column("doctorName", ColumnType.TEXT), new Column("visitType", ColumnType.INTEGER),
+            new Column("medicalRecordNumber", ColumnType.TEXT), new Column("visitDate", ColumnType.DATETIME),
+            new Column("chiefComplaint", ColumnType.TEXT), new Column("symptoms", ColumnType.TEXT),
+            new Column("initialVisitClinicalManifestation", ColumnType.TEXT), new Column("followUpClinicalManifestation", ColumnType.TEXT),
+            new Column("tongueDiagnosis", ColumnType.TEXT), new Column("pulseDiagnosis", ColumnType.TEXT),
+            new Column("tcmDiagnosis", ColumnType.TEXT), new Column("westernDiagnosis", ColumnType.TEXT),
+            new Column("patternDifferentiation", ColumnType.TEXT), new Column("treatmentPlan", ColumnType.TEXT),
+            new Column("createdAt", ColumnType.DATETIME), new Column("updatedAt", ColumnType.DATETIME));
+
+    // 每个处方明细一行，没有明细的处方也输出一行（明细列为空）
+    private static final String PRESCRIPTIONS_SQL =
+            "SELECT pr.id, pr.visit_id, v.visit_date, pr.doctor_id, pr.prescription_name, pr.decoction_method, "
+                    + "pr.treatment_duration, pr.doctor_advice, pr.status, "
+                    + "pd.id, pd.herb_name, pd.dosage, pd.unit, pd.properties, pd.usage_instructions "
+                    + "FROM prescriptions pr LEFT JOIN visits v ON v.id = pr.visit_id "
+                    + "LEFT JOIN prescription_details pd ON pd.prescription_id = pr.id";
+
+    private static final List<Column> PRESCRIPTION_COLUMNS = List.of(
+            new Column("prescriptionId", ColumnType.ID), new Column("visitId", ColumnType.ID),
+            new Column("visitDate", ColumnType.DATETIME), new Column("doctorId", ColumnType.ID),
+            new Column("prescriptionName", ColumnType.TEXT), new Column("decoctionMethod", ColumnType.TEXT),
+            new Column("treatmentDuration", ColumnType.INTEGER), new Column("doctorAdvice", ColumnType.TEXT),
+            new Column("status", ColumnType.INTEGER), new Column("detailId", ColumnType.ID),
+            new Column("herbName", ColumnType.TEXT), new Column("dosage", ColumnType.DECIMAL), new Column("unit", ColumnType.TEXT),
+            new Column("properties", ColumnType.TEXT), new Column("usageInstructions", ColumnType.TEXT));
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 每次从数据库游标取回的行数
+    @Value("${export.fetch-size:1000}")
+    private int fetchSize;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // 游标只在事务内（关闭自动提交）有效
+        transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 导出就诊时间在 [from, to) 范围内的就诊记录，按就诊时间排序；不含AI原始响应
+     * @param from 起始时间，为null时不限
+     * @param to 结束时间，为null时不限
+     * @return 导出的行数
+     */
+    public long exportVisits(LocalDateTime from, LocalDateTime to, String format, OutputStream output) throws IOException {
+        return export(VISITS_SQL, "v.visit_date", "v.visit_date, v.id", from, to, VISIT_COLUMNS, format, output);
+    }
+
+    /**
+     * 导出就诊时间在 [from, to) 范围内的处方及明细，每个明细一行，按就诊时间、处方排序
+     * @return 导出的行数
+     */
+    public long exportPrescriptions(LocalDateTime from, LocalDateTime to, String format, OutputStream output) throws IOException {
+        return export(PRESCRIPTIONS_SQL, "v.visit_date", "v.visit_date, pr.id, pd.id", from, to, PRESCRIPTION_COLUMNS, format, output);
+    }
+
+    private long export(String baseSql, String dateColumn, String orderBy, LocalDateTime from, LocalDateTime to,
+                        List<Column> columns, String format, OutputStream output) throws IOException {
+        if (!FORMAT_CSV.equals(format) && !FORMAT_NDJSON.equals(format)) {
+            throw new IllegalArgumentException("不支持的格式: " + format + "，可选: csv、ndjson");
+        }
+        StringBuilder sql = new StringBuilder(baseSql);
+        List<Object> args = new ArrayList<>();
+        if (from != null) {
+            sql.append(" WHERE ").append(dateColumn).append(" >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(from != null ? " AND " : " WHERE ").append(dateColumn).append(" < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        sql.append(" ORDER BY ").append(orderBy);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024);
+        RowWriter rowWriter = FORMAT_CSV.equals(format) ? new CsvRowWriter(writer, columns) : new NdjsonRowWriter(writer, columns);
+        long[] count = {0};
+        try {
+            rowWriter.start();
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> {
+                try {
+                    rowWriter.write(rs);
+                } catch (IOException e) {
+                    // 客户端断开时终止查询
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            }, args.toArray()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        rowWriter.finish();
+        writer.flush();
+        return count[0];
+    }
+
+    private enum ColumnType { ID, TEXT, INTEGER, DECIMAL, DATETIME }
+
+    private static class Column {
+        private final String name;
+        private final ColumnType type;
+
+        Column(String name, ColumnType type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    private interface RowWriter {
+        void start() throws IOException;
+
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * CSV：首行为表头，带UTF-8 BOM便于Excel识别中文
+     */
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+        private final CsvWriter csv;
+        private final List<Column> columns;
+
+        CsvRowWriter(Writer writer, List<Column> columns) {
+            this.writer = writer;
+            this.csv = new CsvWriter(writer);
+            this.columns = columns;
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.write('\uFEFF');
+            for (Column column : columns) {
+                csv.field(column.name);
+            }
+            csv.endRow();
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                int index = i + 1;
+                String value;
+                switch (columns.get(i).type) {
+                    case DECIMAL:
+                        BigDecimal decimal = rs.getBigDecimal(index);
+                        value = decimal != null ? decimal.toPlainString() : null;
+                        break;
+                    case DATETIME:
+                        Timestamp timestamp = rs.getTimestamp(index);
+                        value = timestamp != null ? timestamp.toLocalDateTime().toString() : null;
+                        break;
+                    default:
+                        value = rs.getString(index);
+                }
+                csv.field(value);
+            }
+            csv.endRow();
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * NDJSON：每行一个JSON对象，ID按字符串输出，与接口返回的实体一致
+     */
+    private class NdjsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private final List<Column> columns;
+        private JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer, List<Column> columns) {
+            this.writer = writer;
+            this.columns = columns;
+        }
+
+        @Override
+        public void start() throws IOException {
+            generator = objectMapper.getFactory().createGenerator(writer);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.size(); i++) {
+                Column column = columns.get(i);
+                int index = i + 1;
+                generator.writeFieldName(column.name);
+                switch (column.type) {
+                    case INTEGER:
+                        int number = rs.getInt(index);
+                        if (rs.wasNull()) {
+                            generator.writeNull();
+                        } else {
+                            generator.writeNumber(number);
+                        }
+                        break;
+                    case DECIMAL:
+                        BigDecimal decimal = rs.getBigDecimal(index);
+                        if (decimal == null) {
+                            generator.writeNull();
+                        } else {
+                            generator.writeNumber(decimal);
+                        }
+                        break;
+                    case DATETIME:
+                        Timestamp timestamp = rs.getTimestamp(index);
+                        generator.writeString(timestamp != null ? timestamp.toLocalDateTime().toString() : null);
+                        break;
+                    default:
+                        generator.writeString(rs.getString(index));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.tcm.service;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.FollowUp;
 import java.util.List;
 import java.util.Optional;
@@ -11,4 +12,5 @@ public interface FollowUpService {
     FollowUp updateFollowUp(Long id, FollowUp followUp);
     void deleteFollowUp(Long id);
     List<FollowUp> getFollowUpsByVisitId(Long visitId);
+    CursorPage<FollowUp> getFollowUpsPage(Long visitId, String cursor, Integer size, boolean withTotal);
 }
\ No newline at end of file
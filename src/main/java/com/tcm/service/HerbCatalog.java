@@ -0,0 +1,220 @@
+package com.tcm.service;
+
+import com.tcm.dto.HerbSuggestion;
+import com.tcm.model.MedicineInventory;
+import com.tcm.repository.MedicineInventoryRepository;
+import com.tcm.utils.PinyinUtil;
+import com.tcm.utils.PrefixIndex;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 内存药品目录，供开方时输入联想
+ * 启动时从 medicine_inventory 加载启用的药品，按名称、编码、全拼和拼音首字母建前缀索引；
+ * 药品通过JPA写入后（事务提交后）在后台重建索引，短时间内的多次变更只重建一次，
+ * 另外定时从数据库全量刷新，兜底绕过JPA的修改（如库存扣减）。
+ */
+@Service
+public class HerbCatalog {
+
+    // 有库存的排在前面，其次名称短的（更接近输入）在前
+    private static final Comparator<HerbSuggestion> ORDER = Comparator
+            .comparing((HerbSuggestion herb) -> herb.getStockQuantity() == null || herb.getStockQuantity() <= 0)
+            .thenComparingInt(herb -> herb.getMedicineName().length())
+            .thenComparing(HerbSuggestion::getMedicineName)
+            .thenComparing(HerbSuggestion::getId);
+
+    @Autowired
+    private MedicineInventoryRepository medicineInventoryRepository;
+
+    @Value("${herb-catalog.enabled:true}")
+    private boolean enabled;
+
+    @Value("${herb-catalog.max-results:20}")
+    private int maxResults;
+
+    private final Map<Long, HerbSuggestion> herbs = new ConcurrentHashMap<>();
+
+    private volatile PrefixIndex<HerbSuggestion> index = PrefixIndex.<HerbSuggestion>builder(ORDER, 1).build();
+
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    private ExecutorService rebuildExecutorService;
+
+    private Executor rebuildExecutor;
+
+    @PostConstruct
+    public void init() {
+        rebuildExecutorService = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "herb-catalog-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebuildExecutor = rebuildExecutorService;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (rebuildExecutorService != null) {
+            rebuildExecutorService.shutdownNow();
+        }
+    }
+
+    /**
+     * 服务启动时加载药品目录
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    /**
+     * 定时从数据库全量刷新
+     */
+    @Scheduled(fixedDelayString = "${herb-catalog.reload-interval-ms:300000}", initialDelayString = "${herb-catalog.reload-interval-ms:300000}")
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<MedicineInventory> medicines = medicineInventoryRepository.findAll();
+            Map<Long, HerbSuggestion> loaded = new HashMap<>();
+            for (MedicineInventory medicine : medicines) {
+                if (isListed(medicine)) {
+                    loaded.put(medicine.getId(), toSuggestion(medicine));
+                }
+            }
+            synchronized (this) {
+                herbs.keySet().retainAll(loaded.keySet());
+                herbs.putAll(loaded);
+                rebuild();
+            }
+            System.out.println("药品目录已加载，共 " + loaded.size() + " 种药品");
+        } catch (Exception e) {
+            System.out.println("加载药品目录失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按前缀联想药品：匹配药品名称、药品编码、全拼或拼音首字母（不区分大小写）
+     * @param limit 最多返回的个数，不超过 herb-catalog.max-results
+     */
+    public List<HerbSuggestion> suggest(String query, Integer limit) {
+        String key = normalize(query);
+        int resultLimit = limit == null || limit <= 0 ? maxResults : Math.min(limit, maxResults);
+        return index.search(key, resultLimit);
+    }
+
+    public int size() {
+        return herbs.size();
+    }
+
+    /**
+     * 药品新增或修改，事务提交后生效；停用的药品从目录中移除
+     */
+    public void medicineChanged(MedicineInventory medicine) {
+        Long id = medicine.getId();
+        HerbSuggestion herb = isListed(medicine) ? toSuggestion(medicine) : null;
+        afterCommit(() -> {
+            if (herb != null) {
+                herbs.put(id, herb);
+            } else {
+                herbs.remove(id);
+            }
+            scheduleRebuild();
+        });
+    }
+
+    /**
+     * 药品删除，事务提交后生效
+     */
+    public void medicineRemoved(Long id) {
+        afterCommit(() -> {
+            herbs.remove(id);
+            scheduleRebuild();
+        });
+    }
+
+    private void afterCommit(Runnable change) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    /**
+     * 提交后台重建；已有重建在排队时不重复提交，排队的重建会包含之后的变更
+     */
+    private void scheduleRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuildExecutor.execute(() -> {
+                rebuildPending.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    /**
+     * 用当前目录构建新的索引并替换，查询不加锁
+     */
+    private synchronized void rebuild() {
+        PrefixIndex.Builder<HerbSuggestion> builder = PrefixIndex.builder(ORDER, maxResults);
+        for (HerbSuggestion herb : herbs.values()) {
+            String name = normalize(herb.getMedicineName());
+            builder.add(name, herb);
+            builder.add(normalize(herb.getMedicineCode()), herb);
+            for (String pinyin : PinyinUtil.fullPinyin(name)) {
+                builder.add(pinyin, herb);
+            }
+            for (String initials : PinyinUtil.initials(name)) {
+                builder.add(initials, herb);
+            }
+        }
+        index = builder.build();
+    }
+
+    private static boolean isListed(MedicineInventory medicine) {
+        return medicine.getMedicineName() != null && (medicine.getStatus() == null || medicine.getStatus() != 0);
+    }
+
+    private static HerbSuggestion toSuggestion(MedicineInventory medicine) {
+        return new HerbSuggestion(medicine.getId(), medicine.getMedicineCode(), medicine.getMedicineName(),
+                medicine.getSpecification(), medicine.getStockQuantity(), medicine.getUnitPrice());
+    }
+
+    // 全角转半角、转小写并去掉空白，索引和查询使用相同的规则
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase().replaceAll("\\s+", "");
+    }
+}
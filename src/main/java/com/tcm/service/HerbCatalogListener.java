@@ -0,0 +1,34 @@
+package com.tcm.service;
+
+import com.tcm.model.MedicineInventory;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 药品库存实体的监听器，药品写入数据库后通知 HerbCatalog 更新联想索引
+ * 由Hibernate通过Spring容器创建
+ */
+@Component
+public class HerbCatalogListener {
+
+    @Autowired
+    private HerbCatalog herbCatalog;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(MedicineInventory medicine) {
+        if (herbCatalog != null) {
+            herbCatalog.medicineChanged(medicine);
+        }
+    }
+
+    @PostRemove
+    public void onRemove(MedicineInventory medicine) {
+        if (herbCatalog != null) {
+            herbCatalog.medicineRemoved(medicine.getId());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.tcm.service;
+
+import com.tcm.repository.ImageBlobRepository;
+import com.tcm.utils.ImageProcessingUtil;
+import com.tcm.utils.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按内容寻址的图片存储
+ * 上传内容以SHA-256命名，按哈希前两个字节分两级目录存放（如 ab/cd/abcd...），单个目录下的文件数保持在可控范围；
+ * 相同内容只保存一份，image_blobs表记录引用计数，最后一个引用释放时删除文件及其派生的变体。
+ *
+ * 同一进程内按哈希分段加锁，保证"放置文件+增加引用"与"删除记录+删除文件"互斥；
+ * 引用计数本身由数据库单条语句原子更新。
+ */
+@Service
+public class ImageBlobStore {
+
+    // 分段锁数量
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${image.storage.root:uploads/diagnostic_images/}")
+    private String storageRoot;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public ImageBlobStore() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 存储结果
+     */
+    public static class StoredBlob {
+        private final String contentHash;
+        private final String path;
+        private final long size;
+
+        public StoredBlob(String contentHash, String path, long size) {
+            this.contentHash = contentHash;
+            this.path = path;
+            this.size = size;
+        }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        // 相对路径，使用"/"分隔，可直接保存到DiagnosticImage.imagePath
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * 流式写入内容并增加一次引用，写入的同时计算SHA-256
+     * 内容已存在时丢弃本次写入的临时文件，只增加引用计数
+     */
+    public StoredBlob store(InputStream in) throws IOException {
+        Path tempDir = Paths.get(storageRoot, "tmp");
+        Files.createDirectories(tempDir);
+        Path tempFile = tempDir.resolve(UUID.randomUUID().toString());
+
+        MessageDigest digest = sha256();
+        long size;
+        try (DigestInputStream digestIn = new DigestInputStream(in, digest)) {
+            size = ImageProcessingUtil.writeTo(digestIn, tempFile);
+        }
+        String contentHash = toHex(digest.digest());
+        Path target = blobPath(contentHash);
+        String path = toStoragePath(target);
+
+        ReentrantLock lock = lockFor(contentHash);
+        lock.lock();
+        boolean duplicate;
+        try {
+            duplicate = Files.exists(target);
+            if (duplicate) {
+                Files.delete(tempFile);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            imageBlobRepository.addReference(SnowflakeIdGenerator.getInstance().nextId(), contentHash, path, size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+        DistributionSummary.builder("tcm.image.upload.bytes")
+                .description("上传图片大小")
+                .baseUnit("bytes")
+                .tag("duplicate", String.valueOf(duplicate))
+                .register(meterRegistry)
+                .record(size);
+        return new StoredBlob(contentHash, path, size);
+    }
+
+    /**
+     * 释放一次引用，最后一个引用释放时删除内容文件及同名前缀的变体文件
+     * @return 是否已删除文件
+     */
+    public boolean release(String contentHash) {
+        ReentrantLock lock = lockFor(contentHash);
+        lock.lock();
+        try {
+            imageBlobRepository.releaseReference(contentHash);
+            if (imageBlobRepository.deleteIfUnreferenced(contentHash) == 0) {
+                return false;
+            }
+            Path target = blobPath(contentHash);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(target.getParent(), contentHash + "*")) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException e) {
+                // 记录已删除，残留文件不影响正确性
+                System.out.println("删除图片文件失败: " + target + ", 错误: " + e.getMessage());
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 释放一次引用
+     * 当前存在事务时在事务提交后再释放，事务回滚时引用和文件保持不变
+     */
+    public void releaseAfterCommit(String contentHash) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    release(contentHash);
+                }
+            });
+        } else {
+            release(contentHash);
+        }
+    }
+
+    /**
+     * 内容文件路径：根目录/哈希前2位/哈希3-4位/完整哈希
+     */
+    public Path blobPath(String contentHash) {
+        return Paths.get(storageRoot, contentHash.substring(0, 2), contentHash.substring(2, 4), contentHash);
+    }
+
+    private String toStoragePath(Path path) {
+        return path.toString().replace('\\', '/');
+    }
+
+    private ReentrantLock lockFor(String contentHash) {
+        return locks[Integer.parseInt(contentHash.substring(0, 2), 16) % LOCK_STRIPES];
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    private String toHex(byte[] hash) {
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,274 @@
+package com.tcm.service;
+
+import com.tcm.model.DiagnosticImage;
+import com.tcm.repository.DiagnosticImageRepository;
+import com.tcm.utils.ImageProcessingUtil;
+import com.tcm.utils.TongueFeatureExtractor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 诊断图片变体处理服务
+ * 上传接口只负责保存原图，512*512模型输入图、缩略图和预览图由后台线程池并行生成，
+ * 舌象图片同时计算感知哈希和图像特征；全部完成后把各变体路径和处理状态写回DiagnosticImage。
+ */
+@Service
+public class ImageVariantService {
+
+    @Autowired
+    private DiagnosticImageRepository diagnosticImageRepository;
+
+    @Autowired
+    private TongueSimilarityIndex tongueSimilarityIndex;
+
+    @Autowired
+    @Qualifier("imageProcessingExecutor")
+    private ThreadPoolTaskExecutor imageProcessingExecutor;
+
+    @Value("${image.variant.thumbnail-size:160}")
+    private int thumbnailSize;
+
+    @Value("${image.variant.preview-size:1024}")
+    private int previewSize;
+
+    /**
+     * 提交变体生成任务
+     * 当前存在事务时在事务提交后再提交，保证后台线程能读到已保存的图片记录
+     * @param image 已保存的图片，imagePath为原图路径
+     */
+    public void submitAfterCommit(DiagnosticImage image) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(image);
+                }
+            });
+        } else {
+            submit(image);
+        }
+    }
+
+    /**
+     * 并行生成三个变体（舌象图片另加感知哈希和图像特征），全部结束后统一记录结果
+     */
+    public void submit(DiagnosticImage image) {
+        Long imageId = image.getId();
+        Path original = Paths.get(image.getImagePath());
+        String baseName = baseName(original);
+
+        CompletableFuture<String> processed;
+        CompletableFuture<String> thumbnail;
+        CompletableFuture<String> preview;
+        CompletableFuture<Long> perceptualHash;
+        CompletableFuture<byte[]> tongueFeatures;
+        boolean tongue = TongueSimilarityIndex.IMAGE_TYPE.equals(image.getImageType());
+        try {
+            processed = variant(original, baseName + "_512.png",
+                    target -> ImageProcessingUtil.processImage(original, target));
+            thumbnail = variant(original, baseName + "_thumb.jpg",
+                    target -> ImageProcessingUtil.createScaledVariant(original, target, thumbnailSize, "jpg"));
+            preview = variant(original, baseName + "_preview.jpg",
+                    target -> ImageProcessingUtil.createScaledVariant(original, target, previewSize, "jpg"));
+            perceptualHash = tongue
+                    ? CompletableFuture.supplyAsync(() -> differenceHash(original), imageProcessingExecutor)
+                    : CompletableFuture.completedFuture(null);
+            tongueFeatures = tongue
+                    ? CompletableFuture.supplyAsync(() -> extractFeatures(original), imageProcessingExecutor)
+                    : CompletableFuture.completedFuture(null);
+        } catch (TaskRejectedException e) {
+            System.out.println("图片处理队列已满，图片ID: " + imageId);
+            markFailed(imageId);
+            return;
+        }
+
+        CompletableFuture.allOf(processed, thumbnail, preview, perceptualHash, tongueFeatures).whenComplete((ignored, error) -> {
+            try {
+                recordVariants(imageId, valueOrNull(processed), valueOrNull(thumbnail), valueOrNull(preview),
+                        valueOrNull(perceptualHash), valueOrNull(tongueFeatures), error == null);
+            } catch (Exception e) {
+                System.out.println("记录图片变体失败，图片ID: " + imageId + ", 错误: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 服务启动时重新提交上次运行中未完成的图片
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resubmitPending() {
+        try {
+            List<DiagnosticImage> pending = diagnosticImageRepository.findByProcessingStatus(DiagnosticImage.PROCESSING_PENDING);
+            for (DiagnosticImage image : pending) {
+                submit(image);
+            }
+            if (!pending.isEmpty()) {
+                System.out.println("已重新提交 " + pending.size() + " 张未完成处理的诊断图片");
+            }
+        } catch (Exception e) {
+            System.out.println("重新提交未完成的图片处理任务失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 为相关功能上线前已处理完成、但还没有感知哈希或图像特征的舌象图片补算
+     * 在相似度索引重建之后执行；队列满时停止，剩余图片下次启动时继续
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillTongueImageFeatures() {
+        try {
+            List<DiagnosticImage> missing = diagnosticImageRepository.findMissingImageFeatures(TongueSimilarityIndex.IMAGE_TYPE);
+            int submitted = 0;
+            for (DiagnosticImage image : missing) {
+                if (image.getProcessingStatus() != null && !DiagnosticImage.PROCESSING_DONE.equals(image.getProcessingStatus())) {
+                    // 待处理的图片会在变体处理中计算，处理失败的图片原图不可读
+                    continue;
+                }
+                Long imageId = image.getId();
+                Path original = Paths.get(image.getImagePath());
+                boolean needHash = image.getPerceptualHash() == null;
+                boolean needFeatures = image.getTongueFeatures() == null;
+                imageProcessingExecutor.execute(() -> {
+                    try {
+                        recordImageFeatures(imageId,
+                                needHash ? differenceHash(original) : null,
+                                needFeatures ? extractFeatures(original) : null);
+                    } catch (Exception e) {
+                        System.out.println("补算舌象图片特征失败，图片ID: " + imageId + ", 错误: " + e.getMessage());
+                    }
+                });
+                submitted++;
+            }
+            if (submitted > 0) {
+                System.out.println("已提交 " + submitted + " 张舌象图片补算感知哈希和图像特征");
+            }
+        } catch (TaskRejectedException e) {
+            System.out.println("图片处理队列已满，剩余舌象图片下次启动时补算");
+        } catch (Exception e) {
+            System.out.println("补算舌象图片特征失败: " + e.getMessage());
+        }
+    }
+
+    private CompletableFuture<String> variant(Path original, String fileName, VariantWriter writer) {
+        Path target = original.resolveSibling(fileName);
+        String path = target.toString().replace('\\', '/');
+        if (Files.exists(target)) {
+            // 相同内容的图片之前已生成过该变体
+            return CompletableFuture.completedFuture(path);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            // 先写临时文件再原子替换，其他请求不会读到写了一半的变体
+            Path temp = target.resolveSibling(fileName + "." + UUID.randomUUID() + ".tmp");
+            try {
+                writer.write(temp);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                return path;
+            } catch (IOException e) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // 忽略临时文件清理失败
+                }
+                throw new UncheckedIOException(e);
+            }
+        }, imageProcessingExecutor);
+    }
+
+    private void recordVariants(Long imageId, String processedPath, String thumbnailPath, String previewPath,
+                                Long perceptualHash, byte[] tongueFeatures, boolean success) {
+        DiagnosticImage image = diagnosticImageRepository.findById(imageId).orElse(null);
+        if (image == null) {
+            // 图片在处理期间已被删除
+            return;
+        }
+        image.setProcessedPath(processedPath);
+        image.setThumbnailPath(thumbnailPath);
+        image.setPreviewPath(previewPath);
+        image.setPerceptualHash(perceptualHash);
+        image.setTongueFeatures(tongueFeatures);
+        image.setProcessingStatus(success ? DiagnosticImage.PROCESSING_DONE : DiagnosticImage.PROCESSING_FAILED);
+        diagnosticImageRepository.save(image);
+        if (perceptualHash != null) {
+            tongueSimilarityIndex.add(imageId, perceptualHash);
+        }
+        if (!success) {
+            System.out.println("部分图片变体生成失败，图片ID: " + imageId);
+        }
+    }
+
+    private void recordImageFeatures(Long imageId, Long perceptualHash, byte[] tongueFeatures) {
+        DiagnosticImage image = diagnosticImageRepository.findById(imageId).orElse(null);
+        if (image == null) {
+            return;
+        }
+        if (perceptualHash != null) {
+            image.setPerceptualHash(perceptualHash);
+        }
+        if (tongueFeatures != null) {
+            image.setTongueFeatures(tongueFeatures);
+        }
+        diagnosticImageRepository.save(image);
+        if (perceptualHash != null) {
+            tongueSimilarityIndex.add(imageId, perceptualHash);
+        }
+    }
+
+    /**
+     * 从512*512模型输入图中提取舌象特征，编码为字节数组
+     */
+    private byte[] extractFeatures(Path original) {
+        try {
+            return TongueFeatureExtractor.encode(TongueFeatureExtractor.extract(ImageProcessingUtil.cropForModel(original)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Long differenceHash(Path original) {
+        try {
+            return ImageProcessingUtil.differenceHash(original);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void markFailed(Long imageId) {
+        diagnosticImageRepository.findById(imageId).ifPresent(image -> {
+            image.setProcessingStatus(DiagnosticImage.PROCESSING_FAILED);
+            diagnosticImageRepository.save(image);
+        });
+    }
+
+    private <T> T valueOrNull(CompletableFuture<T> future) {
+        return future.isCompletedExceptionally() ? null : future.join();
+    }
+
+    private String baseName(Path path) {
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    @FunctionalInterface
+    private interface VariantWriter {
+        void write(Path target) throws IOException;
+    }
+}
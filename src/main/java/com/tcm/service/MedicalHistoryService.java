@@ -1,5 +1,6 @@
 package com.tcm.service;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.MedicalHistory;
 import java.util.List;
 import java.util.Optional;
@@ -11,4 +12,5 @@ public interface MedicalHistoryService {
     MedicalHistory updateMedicalHistory(Long id, MedicalHistory medicalHistory);
     void deleteMedicalHistory(Long id);
     MedicalHistory findByPatientId(Long patientId);
+    CursorPage<MedicalHistory> getMedicalHistoriesPage(Long patientId, String cursor, Integer size, boolean withTotal);
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package com.tcm.service;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.MedicineInventory;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface MedicineInventoryService {
@@ -12,4 +14,7 @@ public interface MedicineInventoryService {
     void deleteMedicineInventory(Long id);
     MedicineInventory findByMedicineCode(String medicineCode);
     MedicineInventory findByMedicineName(String medicineName);
+    CursorPage<Map<String, Object>> getMedicineInventoryPage(String medicineName, String supplier, Integer status, String cursor, Integer size, boolean withTotal, String fields);
+    List<Map<String, Object>> getMedicineInventorySummaries(String fields);
+    Optional<Map<String, Object>> getMedicineInventorySummary(Long id, String fields);
 }
\ No newline at end of file
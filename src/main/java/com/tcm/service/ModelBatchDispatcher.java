@@ -0,0 +1,251 @@
+package com.tcm.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tcm.client.ModelServerTransport;
+import com.tcm.config.VirtualThreadConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模型请求批量调度器
+ * 在一个很短的时间窗口内收集待分析请求，按批次并发发送到模型服务，
+ * 并通过信号量限制同时在途的请求数，避免逐个串行调用导致GPU利用率低。
+ */
+@Component
+public class ModelBatchDispatcher {
+
+    @Autowired
+    private ModelServerTransport modelServerTransport;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${ai.model.batch.max-size:8}")
+    private int maxBatchSize;
+
+    @Value("${ai.model.batch.window-ms:20}")
+    private long windowMs;
+
+    @Value("${ai.model.batch.max-in-flight:8}")
+    private int maxInFlight;
+
+    @Value("${ai.model.batch.queue-capacity:1000}")
+    private int queueCapacity;
+
+    // 模型服务是否提供 /batch/process 批量接口
+    @Value("${ai.model.batch.use-batch-endpoint:false}")
+    private boolean useBatchEndpoint;
+
+    private BlockingQueue<PendingRequest> queue;
+    private Semaphore inFlight;
+    private ExecutorService senders;
+    private Thread dispatcherThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        inFlight = new Semaphore(maxInFlight);
+        if (VirtualThreadConfig.isEnabled(environment)) {
+            // 发送线程大部分时间阻塞在模型响应上，虚拟线程模式下改用虚拟线程，在途数仍由信号量限制
+            senders = Executors.newFixedThreadPool(maxInFlight, VirtualThreadConfig.threadFactory("model-sender-"));
+        } else {
+            AtomicInteger threadIndex = new AtomicInteger();
+            senders = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+                Thread thread = new Thread(runnable, "model-sender-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        running = true;
+        dispatcherThread = new Thread(this::dispatchLoop, "model-batch-dispatcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        dispatcherThread.interrupt();
+        senders.shutdown();
+        PendingRequest pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new RejectedExecutionException("模型调度器已关闭"));
+        }
+    }
+
+    /**
+     * 提交一次聊天补全请求
+     * 调用方等待超时后应取消返回的future，未发送的请求会从队列中移除，不再发送
+     * @param requestData OpenAI兼容格式的请求体
+     * @return 模型服务返回的原始JSON字符串
+     */
+    public CompletableFuture<String> submit(Map<String, Object> requestData) {
+        PendingRequest pending = new PendingRequest(requestData);
+        if (!running || !queue.offer(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException("模型请求队列已满，请稍后重试"));
+            return pending.future;
+        }
+        pending.future.whenComplete((result, error) -> {
+            if (pending.future.isCancelled()) {
+                queue.remove(pending);
+            }
+        });
+        return pending.future;
+    }
+
+    /**
+     * 调度循环：取到第一个请求后，在时间窗口内继续收集，直到达到批次上限
+     */
+    private void dispatchLoop() {
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        List<PendingRequest> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingRequest first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                dispatch(new ArrayList<>(batch));
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failPending(batch, new RejectedExecutionException("模型调度器已关闭"));
+                break;
+            } catch (Exception e) {
+                // 调度线程不能退出，失败的批次直接返回异常给调用方
+                failPending(batch, e);
+                batch.clear();
+            }
+        }
+    }
+
+    private void failPending(List<PendingRequest> batch, Throwable cause) {
+        for (PendingRequest pending : batch) {
+            pending.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 发送一个批次；获取不到在途许可时阻塞调度线程，形成背压
+     * 已被调用方取消（等待超时）的请求不再发送
+     */
+    private void dispatch(List<PendingRequest> batch) throws InterruptedException {
+        batch.removeIf(pending -> pending.future.isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (useBatchEndpoint && batch.size() > 1) {
+            int permits = Math.min(batch.size(), maxInFlight);
+            inFlight.acquire(permits);
+            senders.execute(() -> {
+                try {
+                    sendBatch(batch);
+                } finally {
+                    inFlight.release(permits);
+                }
+            });
+            return;
+        }
+
+        for (PendingRequest pending : batch) {
+            inFlight.acquire();
+            if (pending.future.isDone()) {
+                inFlight.release();
+                continue;
+            }
+            senders.execute(() -> {
+                try {
+                    sendSingle(pending);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+    }
+
+    private void sendSingle(PendingRequest pending) {
+        try {
+            pending.future.complete(objectMapper.writeValueAsString(modelServerTransport.chatCompletions(pending.requestData)));
+        } catch (Exception e) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 通过模型服务的批量接口发送，约定请求体为 {"requests": [...]}，
+     * 响应体为 {"results": [...]}，results 与 requests 一一对应。
+     * 与单个请求一样经过 ModelServerTransport，占用模型服务并发许可；
+     * 等待许可超时时整批返回"繁忙"，批量接口失败或返回数量不一致时，退回逐个发送。
+     */
+    private void sendBatch(List<PendingRequest> batch) {
+        try {
+            List<Map<String, Object>> requests = new ArrayList<>(batch.size());
+            for (PendingRequest pending : batch) {
+                requests.add(pending.requestData);
+            }
+            Map<String, Object> batchData = new HashMap<>();
+            batchData.put("requests", requests);
+
+            JsonNode results = modelServerTransport.batchProcess(batchData).path("results");
+            if (results.isArray() && results.size() == batch.size()) {
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).future.complete(objectMapper.writeValueAsString(results.get(i)));
+                }
+                return;
+            }
+            System.out.println("警告：批量接口返回结果数量不一致，改为逐个发送");
+        } catch (RejectedExecutionException e) {
+            failPending(batch, e);
+            return;
+        } catch (Exception e) {
+            System.out.println("警告：批量接口调用失败，改为逐个发送: " + e.getMessage());
+        }
+
+        for (PendingRequest pending : batch) {
+            if (!pending.future.isDone()) {
+                sendSingle(pending);
+            }
+        }
+    }
+
+    /**
+     * 等待发送的请求
+     */
+    private static class PendingRequest {
+        private final Map<String, Object> requestData;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        PendingRequest(Map<String, Object> requestData) {
+            this.requestData = requestData;
+        }
+    }
+}
@@ -6,16 +6,17 @@ import com.tcm.model.Visit;
 import com.tcm.repository.DiagnosticImageRepository;
 import com.tcm.repository.PatientRepository;
 import com.tcm.repository.VisitRepository;
+import com.tcm.utils.ImageProcessingUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.transaction.Transactional;
+import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.InputStream;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -44,8 +45,11 @@ public class PatientSelfDiagnosisService {
     @Autowired
     private AIAnalysisService aiAnalysisService; // 重新注入AI分析服务
 
-    // 上传目录
-    private static final String UPLOAD_DIR = "uploads/diagnostic_images/";
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private ImageBlobStore imageBlobStore;
 
     /**
      * 上传舌象图片
@@ -63,12 +67,6 @@ public class PatientSelfDiagnosisService {
         }
         Visit visit = visitOpt.get();
 
-        // 创建上传目录
-        Path uploadPath = Paths.get(UPLOAD_DIR);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-
         // 生成文件名，首先验证文件类型
         String originalFilename = file.getOriginalFilename();
         if (originalFilename == null) {
@@ -95,49 +93,51 @@ public class PatientSelfDiagnosisService {
         }
         String newFileName = "tongue_" + visitId + "_" + System.currentTimeMillis() + fileExtension;
 
-        // 保存文件，使用安全的路径
-        Path filePath = uploadPath.resolve(newFileName).normalize();
-        if (!filePath.startsWith(uploadPath)) {
-            throw new RuntimeException("非法文件路径");
+        // 按内容寻址流式写入，不把整个文件读入内存；患者重复上传同一张照片时只增加引用计数
+        ImageBlobStore.StoredBlob blob;
+        try (InputStream in = file.getInputStream()) {
+            blob = imageBlobStore.store(in);
         }
 
-        Files.write(filePath, file.getBytes());
-
         // 保存到数据库
         DiagnosticImage diagnosticImage = new DiagnosticImage();
         diagnosticImage.setVisit(visit);
         diagnosticImage.setImageName(newFileName);
-        diagnosticImage.setImagePath(UPLOAD_DIR + newFileName);
+        diagnosticImage.setImagePath(blob.getPath());
+        diagnosticImage.setContentHash(blob.getContentHash());
         diagnosticImage.setImageType("tongue"); // 舌象类型
         diagnosticImage.setDescription(description != null ? description : "自诊舌象图片");
         diagnosticImage.setCreatedAt(LocalDateTime.now());
+        diagnosticImage.setProcessedFormat(fileExtension.substring(1).toUpperCase());
 
-        // 设置图片的其他属性
+        // 设置图片的其他属性，尺寸只从已写入文件的文件头读取，不解码像素
         try {
-            java.awt.image.BufferedImage img = javax.imageio.ImageIO.read(file.getInputStream());
-            if (img != null) {
-                diagnosticImage.setWidth(img.getWidth());
-                diagnosticImage.setHeight(img.getHeight());
-                diagnosticImage.setProcessedFormat(fileExtension.substring(1).toUpperCase());
+            Dimension dimensions = ImageProcessingUtil.readDimensions(Paths.get(blob.getPath()));
+            if (dimensions != null) {
+                diagnosticImage.setWidth(dimensions.width);
+                diagnosticImage.setHeight(dimensions.height);
             } else {
                 // 如果图片无法读取，仍然保存基本信息
                 System.out.println("Warning: Could not read image file, saving with basic info only");
                 diagnosticImage.setWidth(0);
                 diagnosticImage.setHeight(0);
-                diagnosticImage.setProcessedFormat(fileExtension.substring(1).toUpperCase());
             }
         } catch (Exception e) {
             // 即使图片处理失败，也记录基本信息以确保流程继续
             System.out.println("Warning: Error processing image file: " + e.getMessage());
             diagnosticImage.setWidth(0);
             diagnosticImage.setHeight(0);
-            diagnosticImage.setProcessedFormat(fileExtension.substring(1).toUpperCase());
         }
 
         // 始终设置文件大小
-        diagnosticImage.setImageSize(file.getSize());
+        diagnosticImage.setImageSize(blob.getSize());
+        diagnosticImage.setProcessingStatus(DiagnosticImage.PROCESSING_PENDING);
+
+        DiagnosticImage savedImage = diagnosticImageRepository.save(diagnosticImage);
 
-        return diagnosticImageRepository.save(diagnosticImage);
+        // 事务提交后由后台线程池生成模型输入图、缩略图和预览图
+        imageVariantService.submitAfterCommit(savedImage);
+        return savedImage;
     }
 
     /**
@@ -1,7 +1,9 @@
 package com.tcm.service;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.Patient;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface PatientService {
@@ -12,4 +14,7 @@ public interface PatientService {
     void deletePatient(Long id);
     Patient findByPatientIdCard(String idCard);
     Patient findByPatientPhone(String phone);
+    CursorPage<Map<String, Object>> getPatientsPage(String name, Integer gender, String phone, String cursor, Integer size, boolean withTotal, String fields);
+    List<Map<String, Object>> getPatientSummaries(String fields);
+    Optional<Map<String, Object>> getPatientSummary(Long id, String fields);
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.tcm.service;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.PrescriptionDetail;
 import java.util.List;
 import java.util.Optional;
@@ -11,4 +12,5 @@ public interface PrescriptionDetailService {
     PrescriptionDetail updatePrescriptionDetail(Long id, PrescriptionDetail prescriptionDetail);
     void deletePrescriptionDetail(Long id);
     List<PrescriptionDetail> getPrescriptionDetailsByPrescriptionId(Long prescriptionId);
+    CursorPage<PrescriptionDetail> getPrescriptionDetailsPage(Long prescriptionId, String herbName, String cursor, Integer size, boolean withTotal);
 }
\ No newline at end of file
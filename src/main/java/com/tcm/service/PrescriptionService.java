@@ -1,7 +1,9 @@
 package com.tcm.service;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.Prescription;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface PrescriptionService {
@@ -12,4 +14,7 @@ public interface PrescriptionService {
     void deletePrescription(Long id);
     List<Prescription> getPrescriptionsByVisitId(Long visitId);
     List<Prescription> getPrescriptionsByDoctorId(Long doctorId);
+    CursorPage<Map<String, Object>> getPrescriptionsPage(Long visitId, Long doctorId, Integer status, String cursor, Integer size, boolean withTotal, String fields);
+    List<Map<String, Object>> getPrescriptionSummaries(Long visitId, Long doctorId, String fields);
+    Optional<Map<String, Object>> getPrescriptionSummary(Long id, String fields);
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.tcm.service;
+
+import com.tcm.repository.DiagnosticImageRepository;
+import com.tcm.utils.HammingBkTree;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 舌象图片相似度索引
+ * 内存中以BK树保存所有舌象图片的感知哈希，启动时从数据库重建，新图片生成哈希后实时加入
+ */
+@Service
+public class TongueSimilarityIndex {
+
+    public static final String IMAGE_TYPE = "tongue";
+
+    @Autowired
+    private DiagnosticImageRepository diagnosticImageRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private HammingBkTree tree = new HammingBkTree();
+
+    /**
+     * 服务启动时从数据库重建索引，先于其他启动任务执行，避免覆盖补算后加入的哈希
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void rebuild() {
+        try {
+            List<Object[]> rows = diagnosticImageRepository.findPerceptualHashesByImageType(IMAGE_TYPE);
+            HammingBkTree rebuilt = new HammingBkTree();
+            for (Object[] row : rows) {
+                rebuilt.add((Long) row[1], (Long) row[0]);
+            }
+            lock.writeLock().lock();
+            try {
+                tree = rebuilt;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("舌象相似度索引已重建，共 " + rebuilt.size() + " 张图片");
+        } catch (Exception e) {
+            System.out.println("重建舌象相似度索引失败: " + e.getMessage());
+        }
+    }
+
+    public void add(Long imageId, long hash) {
+        lock.writeLock().lock();
+        try {
+            tree.add(hash, imageId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long imageId, long hash) {
+        lock.writeLock().lock();
+        try {
+            tree.remove(hash, imageId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询与给定哈希最接近的k张图片，按汉明距离升序
+     */
+    public List<HammingBkTree.Match> nearest(long hash, int k, Long excludeId) {
+        lock.readLock().lock();
+        try {
+            return tree.nearest(hash, k, excludeId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tree.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
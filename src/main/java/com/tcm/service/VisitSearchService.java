@@ -0,0 +1,260 @@
+package com.tcm.service;
+
+import com.tcm.dto.CursorPage;
+import com.tcm.utils.ChineseNgramTokenizer;
+import com.tcm.utils.KeysetPagination;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 就诊记录检索服务
+ * 主诉、症状、中医诊断、证型由 {@link ChineseNgramTokenizer} 切分后保存在 visits.search_tokens，
+ * 数据库据此生成 tsvector 列 search_vector 并建GIN索引，检索词同样切分后全部命中才算匹配，按 ts_rank_cd 排序；
+ * 药材名称通过 pg_trgm 三元组索引做模糊匹配，可单独检索药材名称，也可用于筛选开过该药材的就诊记录。
+ * 索引在启动时创建，pg_trgm 扩展不可用时药材名称退化为包含匹配。
+ */
+@Service
+public class VisitSearchService {
+
+    // 检索结果只返回摘要字段，完整记录通过 /api/visits/{id} 获取
+    private static final String SELECT_SQL =
+            "SELECT v.id, v.visit_date, v.visit_type, v.medical_record_number, v.patient_id, p.name AS patient_name, "
+                    + "v.doctor_id, d.name AS doctor_name, v.chief_complaint, v.tcm_diagnosis, v.pattern_differentiation, h.score "
+                    + "FROM (%s) h JOIN visits v ON v.id = h.id "
+                    + "LEFT JOIN patients p ON p.id = v.patient_id LEFT JOIN doctors d ON d.id = v.doctor_id";
+
+    // 开过与给定名称相近的药材的就诊
+    private static final String HERB_VISITS_SQL =
+            "SELECT pr.visit_id FROM prescription_details pd JOIN prescriptions pr ON pr.id = pd.prescription_id WHERE ";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${search.index.enabled:true}")
+    private boolean indexEnabled;
+
+    @Value("${search.backfill.batch-size:1000}")
+    private int backfillBatchSize;
+
+    @Value("${search.herb.max-results:20}")
+    private int maxHerbResults;
+
+    private volatile boolean trigramAvailable;
+
+    /**
+     * 服务启动时创建检索列和索引（已存在时跳过），并在后台为功能上线前的就诊记录补算分词
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initIndexes() {
+        if (!indexEnabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute("ALTER TABLE visits ADD COLUMN IF NOT EXISTS search_vector tsvector "
+                    + "GENERATED ALWAYS AS (to_tsvector('simple', coalesce(search_tokens, ''))) STORED");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_visits_search_vector ON visits USING GIN (search_vector)");
+        } catch (Exception e) {
+            System.err.println("创建就诊记录全文索引失败: " + e.getMessage());
+        }
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        } catch (Exception e) {
+            // 数据库账号没有创建扩展的权限时需由DBA手动安装
+            System.err.println("安装 pg_trgm 扩展失败: " + e.getMessage());
+        }
+        try {
+            Integer installed = jdbcTemplate.queryForObject("SELECT count(*) FROM pg_extension WHERE extname = 'pg_trgm'", Integer.class);
+            trigramAvailable = installed != null && installed > 0;
+            if (trigramAvailable) {
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_prescription_details_herb_name_trgm "
+                        + "ON prescription_details USING GIN (herb_name gin_trgm_ops)");
+            } else {
+                System.err.println("pg_trgm 扩展不可用，药材名称只支持包含匹配");
+            }
+        } catch (Exception e) {
+            System.err.println("创建药材名称三元组索引失败: " + e.getMessage());
+        }
+
+        Thread backfill = new Thread(() -> {
+            try {
+                int updated = backfillSearchTokens();
+                if (updated > 0) {
+                    System.out.println("已为 " + updated + " 条就诊记录补算检索分词");
+                }
+            } catch (Exception e) {
+                System.err.println("补算就诊记录检索分词失败: " + e.getMessage());
+            }
+        }, "visit-search-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    /**
+     * 为 search_tokens 为空的就诊记录补算分词，分批更新
+     * 只更新仍为空的行，期间通过接口修改过的记录以实体保存时生成的分词为准
+     * @return 更新的行数
+     */
+    public int backfillSearchTokens() {
+        int total = 0;
+        while (true) {
+            List<Object[]> batch = jdbcTemplate.query(
+                    "SELECT id, chief_complaint, symptoms, tcm_diagnosis, pattern_differentiation FROM visits "
+                            + "WHERE search_tokens IS NULL LIMIT ?",
+                    (rs, rowNum) -> new Object[] {
+                            ChineseNgramTokenizer.indexTokens(rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5)),
+                            rs.getLong(1)
+                    },
+                    backfillBatchSize);
+            if (batch.isEmpty()) {
+                return total;
+            }
+            jdbcTemplate.batchUpdate("UPDATE visits SET search_tokens = ? WHERE id = ? AND search_tokens IS NULL", batch);
+            total += batch.size();
+        }
+    }
+
+    /**
+     * 检索就诊记录，按相关度倒序、相关度相同时按ID（即创建时间）倒序
+     * @param query 检索内容，匹配主诉、症状、中医诊断、证型
+     * @param herb 药材名称，模糊匹配；只传药材时按ID倒序
+     * @param cursor 上一页返回的 nextCursor
+     * @param size 每页条数，默认20、最大200
+     * @throws IllegalArgumentException 检索内容和药材都为空，或游标格式不正确
+     */
+    public CursorPage<Map<String, Object>> searchVisits(String query, String herb, String cursor, Integer size) {
+        List<String> tokens = ChineseNgramTokenizer.queryTokens(query);
+        boolean hasHerb = herb != null && !herb.trim().isEmpty();
+        if (tokens.isEmpty() && !hasHerb) {
+            throw new IllegalArgumentException("检索内容不能为空");
+        }
+        int pageSize = size == null || size <= 0 ? KeysetPagination.DEFAULT_PAGE_SIZE : Math.min(size, KeysetPagination.MAX_PAGE_SIZE);
+
+        List<Object> args = new ArrayList<>();
+        StringBuilder inner = new StringBuilder();
+        if (!tokens.isEmpty()) {
+            // 分词结果只含汉字和字母数字，plainto_tsquery 按空格拆分后以 AND 连接
+            String tsQuery = String.join(" ", tokens);
+            inner.append("SELECT v.id, ts_rank_cd(v.search_vector, plainto_tsquery('simple', ?), 1)::float8 AS score ")
+                    .append("FROM visits v WHERE v.search_vector @@ plainto_tsquery('simple', ?)");
+            args.add(tsQuery);
+            args.add(tsQuery);
+        } else {
+            inner.append("SELECT v.id, 0::float8 AS score FROM visits v WHERE TRUE");
+        }
+        if (hasHerb) {
+            inner.append(" AND v.id IN (").append(HERB_VISITS_SQL).append(herbCondition("pd.herb_name", herb.trim(), args)).append(")");
+        }
+
+        StringBuilder sql = new StringBuilder(String.format(SELECT_SQL, inner));
+        if (cursor != null && !cursor.isEmpty()) {
+            double score;
+            long id;
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = decoded.lastIndexOf('_');
+                score = Double.parseDouble(decoded.substring(0, separator));
+                id = Long.parseLong(decoded.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("无效的分页游标: " + cursor);
+            }
+            sql.append(" WHERE h.score < ? OR (h.score = ? AND h.id < ?)");
+            args.add(score);
+            args.add(score);
+            args.add(id);
+        }
+        sql.append(" ORDER BY h.score DESC, h.id DESC LIMIT ?");
+        args.add(pageSize + 1);
+
+        List<Map<String, Object>> rows = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> toVisitHit(rs), args.toArray());
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            Map<String, Object> last = rows.get(rows.size() - 1);
+            String raw = last.get("score") + "_" + last.get("id");
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        return new CursorPage<>(rows, nextCursor, hasMore, pageSize, null);
+    }
+
+    /**
+     * 模糊检索处方明细中出现过的药材名称，按与检索内容的相似度倒序
+     * @return 每项包含 herbName 和 similarity（pg_trgm 不可用时为null）
+     */
+    public List<Map<String, Object>> searchHerbNames(String query, Integer limit) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("药材名称不能为空");
+        }
+        String name = query.trim();
+        int resultLimit = limit == null || limit <= 0 ? maxHerbResults : Math.min(limit, maxHerbResults);
+        List<Object> args = new ArrayList<>();
+        String score = trigramAvailable ? "similarity(h.herb_name, ?)" : "NULL::float8";
+        if (trigramAvailable) {
+            args.add(name);
+        }
+        String condition = herbCondition("herb_name", name, args);
+        String sql = "SELECT h.herb_name, " + score + " AS score FROM "
+                + "(SELECT DISTINCT herb_name FROM prescription_details WHERE " + condition + ") h "
+                + "ORDER BY score DESC NULLS LAST, length(h.herb_name), h.herb_name LIMIT ?";
+        args.add(resultLimit);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("herbName", rs.getString(1));
+            double similarity = rs.getDouble(2);
+            row.put("similarity", rs.wasNull() ? null : similarity);
+            return row;
+        }, args.toArray());
+    }
+
+    /**
+     * 药材名称匹配条件：三元组相似（% 运算符，可走GIN索引）或包含检索内容
+     */
+    private String herbCondition(String column, String name, List<Object> args) {
+        String like = "%" + name.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        if (trigramAvailable) {
+            args.add(name);
+            args.add(like);
+            return "(" + column + " % ? OR " + column + " LIKE ? ESCAPE '\\')";
+        }
+        args.add(like);
+        return column + " LIKE ? ESCAPE '\\'";
+    }
+
+    private Map<String, Object> toVisitHit(ResultSet rs) throws SQLException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        // ID与实体接口一致按字符串返回
+        row.put("id", String.valueOf(rs.getLong("id")));
+        Timestamp visitDate = rs.getTimestamp("visit_date");
+        row.put("visitDate", visitDate != null ? visitDate.toLocalDateTime() : null);
+        int visitType = rs.getInt("visit_type");
+        row.put("visitType", rs.wasNull() ? null : visitType);
+        row.put("medicalRecordNumber", rs.getString("medical_record_number"));
+        long patientId = rs.getLong("patient_id");
+        row.put("patientId", rs.wasNull() ? null : String.valueOf(patientId));
+        row.put("patientName", rs.getString("patient_name"));
+        long doctorId = rs.getLong("doctor_id");
+        row.put("doctorId", rs.wasNull() ? null : String.valueOf(doctorId));
+        row.put("doctorName", rs.getString("doctor_name"));
+        row.put("chiefComplaint", rs.getString("chief_complaint"));
+        row.put("tcmDiagnosis", rs.getString("tcm_diagnosis"));
+        row.put("patternDifferentiation", rs.getString("pattern_differentiation"));
+        row.put("score", rs.getDouble("score"));
+        return row;
+    }
+}
@@ -1,7 +1,10 @@
 package com.tcm.service;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.Visit;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface VisitService {
@@ -12,4 +15,7 @@ public interface VisitService {
     void deleteVisit(Long id);
     List<Visit> getVisitsByPatientId(Long patientId);
     List<Visit> getVisitsByDoctorId(Long doctorId);
+    CursorPage<Map<String, Object>> getVisitsPage(Long patientId, Long doctorId, Integer visitType, LocalDateTime from, LocalDateTime to, String cursor, Integer size, boolean withTotal, String fields);
+    List<Map<String, Object>> getVisitSummaries(Long patientId, Long doctorId, String fields);
+    Optional<Map<String, Object>> getVisitSummary(Long id, String fields);
 }
\ No newline at end of file
@@ -0,0 +1,248 @@
+package com.tcm.service;
+
+import com.tcm.utils.TtlLruCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 就诊整合数据快照缓存
+ * 按就诊ID缓存 DataIntegrationService 组装好的整合数据，命中时不再查询就诊、患者、处方、处方明细四张表。
+ * 就诊、患者、处方、处方明细变更时由 VisitSnapshotListener 通知，只失效受影响就诊的快照，下次读取时重新组装。
+ *
+ * 一致性：每次失效都会递增版本号。读取方在查库前记下版本号，写回时版本号已变化则放弃写回，
+ * 避免把与并发写入交错读到的数据放进缓存；写事务提交后再失效一次，覆盖提交前被其他线程读到旧数据的情况。
+ * 快照以副本形式存取，调用方修改返回的Map不会影响缓存。
+ */
+@Service
+public class VisitSnapshotCache {
+
+    @Value("${integration.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${integration.snapshot.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${integration.snapshot.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private TtlLruCache<Long, Snapshot> snapshots;
+
+    // 患者ID -> 已缓存快照的就诊ID，处方ID -> 就诊ID，用于把患者、处方明细的变更定位到就诊；由实例锁保护
+    private final Map<Long, Set<Long>> visitsByPatient = new HashMap<>();
+    private final Map<Long, Long> visitByPrescription = new HashMap<>();
+
+    private long version;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        snapshots = new TtlLruCache<>(maxEntries, ttlMinutes * 60_000L);
+    }
+
+    /**
+     * 查询快照
+     * @return 整合数据的副本；未命中返回null
+     */
+    public Map<String, Object> get(Long visitId) {
+        if (!enabled) {
+            return null;
+        }
+        Snapshot snapshot = snapshots.get(visitId);
+        if (snapshot == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copy(snapshot.data);
+    }
+
+    /**
+     * 当前版本号，查库组装快照前调用，写回时传给 {@link #put}
+     */
+    public synchronized long currentVersion() {
+        return version;
+    }
+
+    /**
+     * 写入快照
+     * @param readVersion 查库前通过 {@link #currentVersion()} 取得的版本号
+     * @param patientId 就诊所属患者ID，可以为null
+     * @param prescriptionIds 就诊下的处方ID
+     * @param data 整合数据，保存的是副本
+     * @return 是否写入；期间有过失效时不写入
+     */
+    public synchronized boolean put(Long visitId, long readVersion, Long patientId, Collection<Long> prescriptionIds,
+                                    Map<String, Object> data) {
+        if (!enabled || readVersion != version) {
+            return false;
+        }
+        // 索引只随失效清理，被LRU淘汰的就诊会留下索引项；超过容量一定倍数时整体重建
+        if (visitByPrescription.size() > maxEntries * 8 || visitsByPatient.size() > maxEntries * 2) {
+            clear();
+        }
+        removeIndex(visitId, snapshots.get(visitId));
+        Snapshot snapshot = new Snapshot(patientId, new ArrayList<>(prescriptionIds), copy(data));
+        snapshots.put(visitId, snapshot);
+        if (patientId != null) {
+            visitsByPatient.computeIfAbsent(patientId, id -> new HashSet<>()).add(visitId);
+        }
+        for (Long prescriptionId : snapshot.prescriptionIds) {
+            visitByPrescription.put(prescriptionId, visitId);
+        }
+        return true;
+    }
+
+    /**
+     * 就诊新增、修改或删除
+     */
+    public void visitChanged(Long visitId) {
+        invalidate(() -> visitId == null ? Collections.emptyList() : List.of(visitId));
+    }
+
+    /**
+     * 患者修改或删除，失效该患者所有已缓存的就诊
+     */
+    public void patientChanged(Long patientId) {
+        invalidate(() -> {
+            Set<Long> visitIds = visitsByPatient.get(patientId);
+            return visitIds == null ? Collections.emptyList() : new ArrayList<>(visitIds);
+        });
+    }
+
+    /**
+     * 处方新增、修改或删除
+     * @param visitId 处方当前所属的就诊，可以为null；处方改挂到其他就诊时原就诊也会失效
+     */
+    public void prescriptionChanged(Long prescriptionId, Long visitId) {
+        invalidate(() -> {
+            List<Long> visitIds = new ArrayList<>();
+            if (visitId != null) {
+                visitIds.add(visitId);
+            }
+            Long indexed = visitByPrescription.get(prescriptionId);
+            if (indexed != null && !indexed.equals(visitId)) {
+                visitIds.add(indexed);
+            }
+            return visitIds;
+        });
+    }
+
+    /**
+     * 处方明细新增、修改或删除
+     */
+    public void prescriptionDetailChanged(Long prescriptionId) {
+        invalidate(() -> {
+            Long visitId = visitByPrescription.get(prescriptionId);
+            return visitId == null ? Collections.emptyList() : List.of(visitId);
+        });
+    }
+
+    public synchronized void clear() {
+        version++;
+        snapshots.clear();
+        visitsByPatient.clear();
+        visitByPrescription.clear();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return snapshots.size();
+    }
+
+    /**
+     * 立即失效一次；处于事务中时在提交后再失效一次
+     */
+    private void invalidate(AffectedVisits affected) {
+        List<Long> visitIds = invalidateNow(affected);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateNow(() -> visitIds);
+                }
+            });
+        }
+    }
+
+    private synchronized List<Long> invalidateNow(AffectedVisits affected) {
+        version++;
+        List<Long> visitIds = affected.visitIds();
+        for (Long visitId : visitIds) {
+            removeIndex(visitId, snapshots.remove(visitId));
+        }
+        return visitIds;
+    }
+
+    private void removeIndex(Long visitId, Snapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        if (snapshot.patientId != null) {
+            Set<Long> visitIds = visitsByPatient.get(snapshot.patientId);
+            if (visitIds != null) {
+                visitIds.remove(visitId);
+                if (visitIds.isEmpty()) {
+                    visitsByPatient.remove(snapshot.patientId);
+                }
+            }
+        }
+        for (Long prescriptionId : snapshot.prescriptionIds) {
+            visitByPrescription.remove(prescriptionId, visitId);
+        }
+    }
+
+    /**
+     * 逐层复制嵌套的Map，整合数据中只有Map和不可变的值
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> copy(Map<String, Object> data) {
+        Map<String, Object> copy = new HashMap<>(data);
+        for (Map.Entry<String, Object> entry : copy.entrySet()) {
+            if (entry.getValue() instanceof Map) {
+                entry.setValue(copy((Map<String, Object>) entry.getValue()));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * 在实例锁内计算受影响的就诊
+     */
+    private interface AffectedVisits {
+        List<Long> visitIds();
+    }
+
+    private static class Snapshot {
+        private final Long patientId;
+        private final List<Long> prescriptionIds;
+        private final Map<String, Object> data;
+
+        Snapshot(Long patientId, List<Long> prescriptionIds, Map<String, Object> data) {
+            this.patientId = patientId;
+            this.prescriptionIds = prescriptionIds;
+            this.data = data;
+        }
+    }
+}
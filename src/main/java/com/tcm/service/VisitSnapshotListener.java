@@ -0,0 +1,45 @@
+package com.tcm.service;
+
+import com.tcm.model.Patient;
+import com.tcm.model.Prescription;
+import com.tcm.model.PrescriptionDetail;
+import com.tcm.model.Visit;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 就诊整合数据相关实体的监听器，实体写入数据库后通知 VisitSnapshotCache 失效受影响的快照
+ * 由Hibernate通过Spring容器创建；关联对象只取ID，不会触发懒加载
+ */
+@Component
+public class VisitSnapshotListener {
+
+    @Autowired
+    private VisitSnapshotCache visitSnapshotCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        if (visitSnapshotCache == null) {
+            return;
+        }
+        if (entity instanceof Visit) {
+            visitSnapshotCache.visitChanged(((Visit) entity).getId());
+        } else if (entity instanceof Patient) {
+            visitSnapshotCache.patientChanged(((Patient) entity).getId());
+        } else if (entity instanceof Prescription) {
+            Prescription prescription = (Prescription) entity;
+            Long visitId = prescription.getVisit() != null ? prescription.getVisit().getId() : null;
+            visitSnapshotCache.prescriptionChanged(prescription.getId(), visitId);
+        } else if (entity instanceof PrescriptionDetail) {
+            PrescriptionDetail detail = (PrescriptionDetail) entity;
+            if (detail.getPrescription() != null) {
+                visitSnapshotCache.prescriptionDetailChanged(detail.getPrescription().getId());
+            }
+        }
+    }
+}
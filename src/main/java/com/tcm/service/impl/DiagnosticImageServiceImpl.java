@@ -1,39 +1,74 @@
 package com.tcm.service.impl;
 
+import com.tcm.dto.CursorPage;
+import com.tcm.dto.DiagnosticImageContent;
 import com.tcm.dto.DiagnosticImageResponse;
+import com.tcm.dto.SimilarImageResponse;
 import com.tcm.model.DiagnosticImage;
 import com.tcm.model.Visit;
 import com.tcm.repository.DiagnosticImageRepository;
 import com.tcm.repository.VisitRepository;
 import com.tcm.service.DiagnosticImageService;
+import com.tcm.service.ImageBlobStore;
+import com.tcm.service.ImageVariantService;
+import com.tcm.service.TongueSimilarityIndex;
+import com.tcm.utils.FieldProjection;
+import com.tcm.utils.HammingBkTree;
+import com.tcm.utils.ImageProcessingUtil;
+import com.tcm.utils.KeysetPagination;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.File;
+import java.awt.Dimension;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class DiagnosticImageServiceImpl implements DiagnosticImageService {
 
+    /**
+     * 诊断图片可查询的字段，与 DiagnosticImageResponse 一致，列表默认只返回摘要字段；
+     * 舌象特征向量、感知哈希等检索用的列不对外提供，也不会随列表读出
+     */
+    static final FieldProjection<DiagnosticImage> IMAGE_FIELDS = new FieldProjection<>(DiagnosticImage.class, imageAttributes(), List.of(
+            "id", "visitId", "imageType", "imageName", "imageSize", "width", "height", "thumbnailPath", "processingStatus", "createdAt"));
+
+    private static final Sort SUMMARY_SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
     @Autowired
     private DiagnosticImageRepository diagnosticImageRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Autowired
     private VisitRepository visitRepository;
 
-    // 图片存储路径
-    private static final String UPLOAD_DIR = "uploads/diagnostic_images/";
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private ImageBlobStore imageBlobStore;
+
+    @Autowired
+    private TongueSimilarityIndex tongueSimilarityIndex;
 
     @Override
     public DiagnosticImageResponse uploadDiagnosticImage(Long visitId, MultipartFile file, String imageType, String description) throws Exception {
@@ -55,77 +90,56 @@ public class DiagnosticImageServiceImpl implements DiagnosticImageService {
         }
         Visit visit = visitOptional.get();
 
-        // 处理图片 - 转换格式和调整尺寸
-        File processedFile = processImage(file);
-
-        // 生成唯一的文件名
         String originalFileName = file.getOriginalFilename();
         String fileExtension = getFileExtension(originalFileName);
-        String uniqueFileName = UUID.randomUUID().toString() + ".png"; // 统一转换为PNG格式
-        String filePath = UPLOAD_DIR + uniqueFileName;
 
-        // 创建上传目录（如果不存在）
-        Path uploadPath = Paths.get(UPLOAD_DIR);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+        // 原图按内容寻址流式写入磁盘，重复上传的相同图片只增加引用计数；尺寸只从文件头读取
+        ImageBlobStore.StoredBlob blob;
+        try (InputStream in = file.getInputStream()) {
+            blob = imageBlobStore.store(in);
+        }
+        // 图片记录保存失败时撤销本次增加的引用，避免引用计数和文件泄漏
+        DiagnosticImage savedImage;
+        try {
+            Dimension dimensions = ImageProcessingUtil.readDimensions(Paths.get(blob.getPath()));
+            if (dimensions == null) {
+                throw new IllegalArgumentException("无法识别的图片格式");
+            }
+
+            // 创建诊断图片实体
+            DiagnosticImage diagnosticImage = new DiagnosticImage();
+            diagnosticImage.setVisit(visit);
+            diagnosticImage.setImageType(imageType);
+            diagnosticImage.setImagePath(blob.getPath());
+            diagnosticImage.setImageName(originalFileName);
+            diagnosticImage.setImageSize(blob.getSize());
+            diagnosticImage.setContentHash(blob.getContentHash());
+            diagnosticImage.setWidth(dimensions.width);
+            diagnosticImage.setHeight(dimensions.height);
+            diagnosticImage.setOriginalFormat(fileExtension);
+            diagnosticImage.setProcessedFormat("png");
+            diagnosticImage.setDescription(description);
+            diagnosticImage.setProcessingStatus(DiagnosticImage.PROCESSING_PENDING);
+
+            // 保存到数据库
+            savedImage = diagnosticImageRepository.save(diagnosticImage);
+        } catch (Exception e) {
+            imageBlobStore.release(blob.getContentHash());
+            throw e;
         }
 
-        // 保存处理后的图片到文件系统
-        File destinationFile = new File(filePath);
-        Files.copy(processedFile.toPath(), destinationFile.toPath());
-
-        // 创建诊断图片实体
-        DiagnosticImage diagnosticImage = new DiagnosticImage();
-        diagnosticImage.setVisit(visit);
-        diagnosticImage.setImageType(imageType);
-        diagnosticImage.setImagePath(filePath);
-        diagnosticImage.setImageName(originalFileName);
-        diagnosticImage.setImageSize(destinationFile.length());
-        diagnosticImage.setOriginalFormat(fileExtension);
-        diagnosticImage.setProcessedFormat("png");
-        diagnosticImage.setDescription(description);
-
-        // 保存到数据库
-        DiagnosticImage savedImage = diagnosticImageRepository.save(diagnosticImage);
+        // 后台生成512*512模型输入图、缩略图和预览图
+        imageVariantService.submitAfterCommit(savedImage);
         
         // 构建响应对象，不包含关联实体以避免序列化问题
-        return new DiagnosticImageResponse(
-                savedImage.getId(),
-                visitId,  // 使用传入的ID而不是实体中的关联对象
-                savedImage.getImageType(),
-                savedImage.getImagePath(),
-                savedImage.getImageName(),
-                savedImage.getImageSize(),
-                savedImage.getWidth(),
-                savedImage.getHeight(),
-                savedImage.getOriginalFormat(),
-                savedImage.getProcessedFormat(),
-                savedImage.getDescription(),
-                savedImage.getCreatedAt(),
-                savedImage.getUpdatedAt()
-        );
+        return toResponse(savedImage);
     }
 
     @Override
     public DiagnosticImageResponse getDiagnosticImageById(Long id) {
         Optional<DiagnosticImage> imageOpt = diagnosticImageRepository.findById(id);
         if (imageOpt.isPresent()) {
-            DiagnosticImage image = imageOpt.get();
-            return new DiagnosticImageResponse(
-                    image.getId(),
-                    image.getVisit() != null ? image.getVisit().getId() : null,
-                    image.getImageType(),
-                    image.getImagePath(),
-                    image.getImageName(),
-                    image.getImageSize(),
-                    image.getWidth(),
-                    image.getHeight(),
-                    image.getOriginalFormat(),
-                    image.getProcessedFormat(),
-                    image.getDescription(),
-                    image.getCreatedAt(),
-                    image.getUpdatedAt()
-            );
+            return toResponse(imageOpt.get());
         }
         return null;
     }
@@ -134,21 +148,7 @@ public class DiagnosticImageServiceImpl implements DiagnosticImageService {
     public List<DiagnosticImageResponse> getDiagnosticImagesByVisitId(Long visitId) {
         List<DiagnosticImage> images = diagnosticImageRepository.findByVisitId(visitId);
         return images.stream()
-                .map(image -> new DiagnosticImageResponse(
-                        image.getId(),
-                        visitId,  // 使用参数ID而不是实体关联
-                        image.getImageType(),
-                        image.getImagePath(),
-                        image.getImageName(),
-                        image.getImageSize(),
-                        image.getWidth(),
-                        image.getHeight(),
-                        image.getOriginalFormat(),
-                        image.getProcessedFormat(),
-                        image.getDescription(),
-                        image.getCreatedAt(),
-                        image.getUpdatedAt()
-                ))
+                .map(this::toResponse)
                 .collect(Collectors.toList());
     }
 
@@ -156,21 +156,7 @@ public class DiagnosticImageServiceImpl implements DiagnosticImageService {
     public List<DiagnosticImageResponse> getDiagnosticImagesByImageType(String imageType) {
         List<DiagnosticImage> images = diagnosticImageRepository.findByImageType(imageType);
         return images.stream()
-                .map(image -> new DiagnosticImageResponse(
-                        image.getId(),
-                        image.getVisit() != null ? image.getVisit().getId() : null,
-                        image.getImageType(),
-                        image.getImagePath(),
-                        image.getImageName(),
-                        image.getImageSize(),
-                        image.getWidth(),
-                        image.getHeight(),
-                        image.getOriginalFormat(),
-                        image.getProcessedFormat(),
-                        image.getDescription(),
-                        image.getCreatedAt(),
-                        image.getUpdatedAt()
-                ))
+                .map(this::toResponse)
                 .collect(Collectors.toList());
     }
 
@@ -178,27 +164,118 @@ public class DiagnosticImageServiceImpl implements DiagnosticImageService {
     public List<DiagnosticImageResponse> getAllDiagnosticImages() {
         List<DiagnosticImage> images = diagnosticImageRepository.findAll();
         return images.stream()
-                .map(image -> new DiagnosticImageResponse(
-                        image.getId(),
-                        image.getVisit() != null ? image.getVisit().getId() : null,
-                        image.getImageType(),
-                        image.getImagePath(),
-                        image.getImageName(),
-                        image.getImageSize(),
-                        image.getWidth(),
-                        image.getHeight(),
-                        image.getOriginalFormat(),
-                        image.getProcessedFormat(),
-                        image.getDescription(),
-                        image.getCreatedAt(),
-                        image.getUpdatedAt()
-                ))
+                .map(this::toResponse)
                 .collect(Collectors.toList());
     }
 
     @Override
     public void deleteDiagnosticImage(Long id) {
-        diagnosticImageRepository.deleteById(id);
+        Optional<DiagnosticImage> imageOpt = diagnosticImageRepository.findById(id);
+        if (!imageOpt.isPresent()) {
+            return;
+        }
+        diagnosticImageRepository.delete(imageOpt.get());
+        if (imageOpt.get().getPerceptualHash() != null) {
+            tongueSimilarityIndex.remove(id, imageOpt.get().getPerceptualHash());
+        }
+        // 最后一个引用删除后回收图片文件；在事务中删除时等事务提交后再回收，回滚后文件仍然可用
+        if (imageOpt.get().getContentHash() != null) {
+            imageBlobStore.releaseAfterCommit(imageOpt.get().getContentHash());
+        }
+    }
+
+    @Override
+    public DiagnosticImageContent getDiagnosticImageContent(Long id, String variant) throws IOException {
+        Optional<DiagnosticImage> imageOpt = diagnosticImageRepository.findById(id);
+        if (!imageOpt.isPresent()) {
+            return null;
+        }
+        DiagnosticImage image = imageOpt.get();
+
+        String path;
+        MediaType contentType;
+        switch (variant) {
+            case "original":
+                path = image.getImagePath();
+                contentType = MediaTypeFactory.getMediaType(image.getImageName()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+                break;
+            case "512":
+                path = image.getProcessedPath();
+                contentType = MediaType.IMAGE_PNG;
+                break;
+            case "thumb":
+                path = image.getThumbnailPath();
+                contentType = MediaType.IMAGE_JPEG;
+                break;
+            case "preview":
+                path = image.getPreviewPath();
+                contentType = MediaType.IMAGE_JPEG;
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的图片变体: " + variant + "，可选值: original, 512, thumb, preview");
+        }
+        if (path == null) {
+            throw new IllegalStateException("图片变体尚未生成: " + variant);
+        }
+        Path file = Paths.get(path);
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalStateException("图片文件不存在: " + variant);
+        }
+
+        // 按内容寻址的图片，哈希+变体即可唯一确定内容；旧图片退化为按修改时间生成ETag
+        if (image.getContentHash() != null) {
+            return new DiagnosticImageContent(file, contentType, image.getContentHash() + "-" + variant, true);
+        }
+        String etag = image.getId() + "-" + variant + "-" + Files.getLastModifiedTime(file).toMillis();
+        return new DiagnosticImageContent(file, contentType, etag, false);
+    }
+
+    @Override
+    public List<SimilarImageResponse> findSimilarImages(Long id, int k) {
+        Optional<DiagnosticImage> imageOpt = diagnosticImageRepository.findById(id);
+        if (!imageOpt.isPresent()) {
+            return null;
+        }
+        DiagnosticImage image = imageOpt.get();
+        if (!TongueSimilarityIndex.IMAGE_TYPE.equals(image.getImageType())) {
+            throw new IllegalArgumentException("仅支持舌象图片的相似检索");
+        }
+        if (image.getPerceptualHash() == null) {
+            throw new IllegalStateException("图片尚未完成处理，暂无感知哈希");
+        }
+
+        List<HammingBkTree.Match> matches = tongueSimilarityIndex.nearest(image.getPerceptualHash(), k, id);
+        if (matches.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 一次查询取回全部匹配图片及其就诊记录
+        Map<Long, DiagnosticImage> imagesById = diagnosticImageRepository.findWithVisitByIdIn(
+                        matches.stream().map(HammingBkTree.Match::getId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(DiagnosticImage::getId, Function.identity()));
+
+        List<SimilarImageResponse> responses = new ArrayList<>();
+        for (HammingBkTree.Match match : matches) {
+            DiagnosticImage similar = imagesById.get(match.getId());
+            if (similar == null) {
+                // 索引中存在但记录已被删除
+                continue;
+            }
+            SimilarImageResponse response = new SimilarImageResponse();
+            response.setImageId(similar.getId());
+            response.setDistance(match.getDistance());
+            response.setSimilarity(1.0 - match.getDistance() / 64.0);
+            response.setThumbnailPath(similar.getThumbnailPath());
+            response.setCreatedAt(similar.getCreatedAt());
+            Visit visit = similar.getVisit();
+            if (visit != null) {
+                response.setVisitId(visit.getId());
+                response.setPatternDifferentiation(visit.getPatternDifferentiation());
+                response.setTcmDiagnosis(visit.getTcmDiagnosis());
+            }
+            responses.add(response);
+        }
+        return responses;
     }
 
     /**
@@ -211,81 +288,65 @@ public class DiagnosticImageServiceImpl implements DiagnosticImageService {
         return fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
     }
 
-    /**
-     * 处理图片 - 转换格式为PNG并调整尺寸
-     */
-    private File processImage(MultipartFile originalFile) throws IOException {
-        // 将MultipartFile转换为BufferedImage
-        BufferedImage originalImage = ImageIO.read(originalFile.getInputStream());
-
-        // 获取原始图片尺寸
-        int originalWidth = originalImage.getWidth();
-        int originalHeight = originalImage.getHeight();
+    @Override
+    public CursorPage<Map<String, Object>> getDiagnosticImagesPage(Long visitId, String imageType, String cursor, Integer size, boolean withTotal, String fields) {
+        List<String> selected = IMAGE_FIELDS.resolve(fields);
+        Specification<DiagnosticImage> filter = Specification.where(KeysetPagination.<DiagnosticImage>equal("visit.id", visitId))
+                .and(KeysetPagination.<DiagnosticImage>equal("imageType", imageType));
+        return KeysetPagination.fetch(entityManager, IMAGE_FIELDS, filter, selected, cursor, size, withTotal);
+    }
 
-        // 目标尺寸
-        int targetSize = 512;
+    @Override
+    public List<Map<String, Object>> getDiagnosticImageSummaries(Long visitId, String imageType, String fields) {
+        List<String> selected = IMAGE_FIELDS.resolve(fields);
+        Specification<DiagnosticImage> filter = Specification.where(KeysetPagination.<DiagnosticImage>equal("visit.id", visitId))
+                .and(KeysetPagination.<DiagnosticImage>equal("imageType", imageType));
+        return IMAGE_FIELDS.select(entityManager, filter, selected, SUMMARY_SORT, 0);
+    }
 
-        BufferedImage processedImage;
+    @Override
+    public Optional<Map<String, Object>> getDiagnosticImageSummary(Long id, String fields) {
+        List<String> selected = IMAGE_FIELDS.resolve(fields);
+        List<Map<String, Object>> rows = IMAGE_FIELDS.select(entityManager,
+                (root, query, cb) -> cb.equal(root.get("id"), id), selected, null, 1);
+        return rows.stream().findFirst();
+    }
 
-        if (originalWidth > targetSize || originalHeight > targetSize) {
-            // 如果原始图片尺寸超过目标尺寸，进行中心裁剪
-            processedImage = cropCenterToSize(originalImage, targetSize, targetSize);
-        } else {
-            // 如果原始图片尺寸不超过目标尺寸，直接使用原图
-            processedImage = originalImage;
+    private static Map<String, String> imageAttributes() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("id", "id");
+        attributes.put("visitId", "visit.id");
+        for (String attribute : List.of("imageType", "imagePath", "imageName", "imageSize", "width", "height", "originalFormat",
+                "processedFormat", "description", "processedPath", "thumbnailPath", "previewPath", "processingStatus",
+                "createdAt", "updatedAt")) {
+            attributes.put(attribute, attribute);
         }
-
-        // 创建临时文件保存处理后的图片
-        File tempFile = File.createTempFile("processed_image_", ".png");
-        ImageIO.write(processedImage, "png", tempFile);
-
-        return tempFile;
+        return attributes;
     }
 
     /**
-     * 从图片中心裁剪到指定尺寸
+     * 实体转换为响应DTO
      */
-    private BufferedImage cropCenterToSize(BufferedImage originalImage, int targetWidth, int targetHeight) {
-        int originalWidth = originalImage.getWidth();
-        int originalHeight = originalImage.getHeight();
-
-        // 计算从中心裁剪的起始坐标
-        int startX = Math.max(0, (originalWidth - targetWidth) / 2);
-        int startY = Math.max(0, (originalHeight - targetHeight) / 2);
-
-        // 确保裁剪区域不超出原图边界
-        int cropWidth = Math.min(targetWidth, originalWidth - startX);
-        int cropHeight = Math.min(targetHeight, originalHeight - startY);
-
-        // 如果原图尺寸小于目标尺寸，则创建新图像并居中放置原图
-        if (originalWidth < targetWidth || originalHeight < targetHeight) {
-            BufferedImage newImage = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g2d = newImage.createGraphics();
-            // 设置背景为白色
-            g2d.setPaint(Color.WHITE);
-            g2d.fillRect(0, 0, targetWidth, targetHeight);
-            
-            // 计算居中位置
-            int centeredX = (targetWidth - originalWidth) / 2;
-            int centeredY = (targetHeight - originalHeight) / 2;
-            
-            // 绘制原图到新图像的中心位置
-            g2d.drawImage(originalImage, centeredX, centeredY, null);
-            g2d.dispose();
-            return newImage;
-        } else {
-            // 如果原图尺寸大于等于目标尺寸，进行中心裁剪
-            BufferedImage croppedImage = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
-
-            // 使用Graphics2D绘制裁剪后的图像
-            Graphics2D g2d = croppedImage.createGraphics();
-
-            // 绘制裁剪区域
-            g2d.drawImage(originalImage.getSubimage(startX, startY, cropWidth, cropHeight), 0, 0, null);
-
-            g2d.dispose();
-
-            return croppedImage;
-        }
+    private DiagnosticImageResponse toResponse(DiagnosticImage image) {
+        DiagnosticImageResponse response = new DiagnosticImageResponse(
+                image.getId(),
+                image.getVisit() != null ? image.getVisit().getId() : null,
+                image.getImageType(),
+                image.getImagePath(),
+                image.getImageName(),
+                image.getImageSize(),
+                image.getWidth(),
+                image.getHeight(),
+                image.getOriginalFormat(),
+                image.getProcessedFormat(),
+                image.getDescription(),
+                image.getCreatedAt(),
+                image.getUpdatedAt()
+        );
+        response.setProcessedPath(image.getProcessedPath());
+        response.setThumbnailPath(image.getThumbnailPath());
+        response.setPreviewPath(image.getPreviewPath());
+        response.setProcessingStatus(image.getProcessingStatus());
+        return response;
     }
 }
\ No newline at end of file
@@ -1,19 +1,39 @@
 package com.tcm.service.impl;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.Doctor;
 import com.tcm.repository.DoctorRepository;
 import com.tcm.service.DoctorService;
+import com.tcm.utils.FieldProjection;
+import com.tcm.utils.KeysetPagination;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class DoctorServiceImpl implements DoctorService {
+
+    /**
+     * 医生可查询的字段，列表默认只返回摘要字段；执业资格证号、联系方式只在 fields 中显式指定时返回
+     */
+    static final FieldProjection<Doctor> DOCTOR_FIELDS = new FieldProjection<>(Doctor.class, doctorAttributes(), List.of(
+            "id", "name", "department", "title", "status", "createdAt"));
+
+    private static final Sort SUMMARY_SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
     
     @Autowired
     private DoctorRepository doctorRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     
     @Override
     public List<Doctor> getAllDoctors() {
@@ -53,4 +73,35 @@ public class DoctorServiceImpl implements DoctorService {
     public Doctor findByDoctorPhone(String phone) {
         return doctorRepository.findByPhone(phone);
     }
+
+    @Override
+    public CursorPage<Map<String, Object>> getDoctorsPage(String name, String department, Integer status, String cursor, Integer size, boolean withTotal, String fields) {
+        List<String> selected = DOCTOR_FIELDS.resolve(fields);
+        Specification<Doctor> filter = Specification.where(KeysetPagination.<Doctor>contains("name", name))
+                .and(KeysetPagination.<Doctor>equal("department", department))
+                .and(KeysetPagination.<Doctor>equal("status", status));
+        return KeysetPagination.fetch(entityManager, DOCTOR_FIELDS, filter, selected, cursor, size, withTotal);
+    }
+
+    @Override
+    public List<Map<String, Object>> getDoctorSummaries(String fields) {
+        return DOCTOR_FIELDS.select(entityManager, null, DOCTOR_FIELDS.resolve(fields), SUMMARY_SORT, 0);
+    }
+
+    @Override
+    public Optional<Map<String, Object>> getDoctorSummary(Long id, String fields) {
+        List<String> selected = DOCTOR_FIELDS.resolve(fields);
+        List<Map<String, Object>> rows = DOCTOR_FIELDS.select(entityManager,
+                (root, query, cb) -> cb.equal(root.get("id"), id), selected, null, 1);
+        return rows.stream().findFirst();
+    }
+
+    private static Map<String, String> doctorAttributes() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (String attribute : List.of("id", "name", "department", "title", "licenseNumber", "phone", "email", "status",
+                "createdAt", "updatedAt")) {
+            attributes.put(attribute, attribute);
+        }
+        return attributes;
+    }
 }
\ No newline at end of file
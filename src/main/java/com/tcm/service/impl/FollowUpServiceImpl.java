@@ -1,9 +1,12 @@
 package com.tcm.service.impl;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.FollowUp;
 import com.tcm.repository.FollowUpRepository;
 import com.tcm.service.FollowUpService;
+import com.tcm.utils.KeysetPagination;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -48,4 +51,10 @@ public class FollowUpServiceImpl implements FollowUpService {
     public List<FollowUp> getFollowUpsByVisitId(Long visitId) {
         return followUpRepository.findByVisitId(visitId);
     }
+
+    @Override
+    public CursorPage<FollowUp> getFollowUpsPage(Long visitId, String cursor, Integer size, boolean withTotal) {
+        Specification<FollowUp> filter = Specification.where(KeysetPagination.<FollowUp>equal("visit.id", visitId));
+        return KeysetPagination.fetch(followUpRepository, filter, cursor, size, withTotal);
+    }
 }
\ No newline at end of file
@@ -1,9 +1,12 @@
 package com.tcm.service.impl;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.MedicalHistory;
 import com.tcm.repository.MedicalHistoryRepository;
 import com.tcm.service.MedicalHistoryService;
+import com.tcm.utils.KeysetPagination;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -48,4 +51,10 @@ public class MedicalHistoryServiceImpl implements MedicalHistoryService {
     public MedicalHistory findByPatientId(Long patientId) {
         return medicalHistoryRepository.findByPatientId(patientId);
     }
+
+    @Override
+    public CursorPage<MedicalHistory> getMedicalHistoriesPage(Long patientId, String cursor, Integer size, boolean withTotal) {
+        Specification<MedicalHistory> filter = Specification.where(KeysetPagination.<MedicalHistory>equal("patient.id", patientId));
+        return KeysetPagination.fetch(medicalHistoryRepository, filter, cursor, size, withTotal);
+    }
 }
\ No newline at end of file
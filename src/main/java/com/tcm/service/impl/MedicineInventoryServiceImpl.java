@@ -1,19 +1,39 @@
 package com.tcm.service.impl;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.MedicineInventory;
 import com.tcm.repository.MedicineInventoryRepository;
 import com.tcm.service.MedicineInventoryService;
+import com.tcm.utils.FieldProjection;
+import com.tcm.utils.KeysetPagination;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class MedicineInventoryServiceImpl implements MedicineInventoryService {
+
+    /**
+     * 药品可查询的字段，列表默认只返回摘要字段；供应商、生产日期、药品描述等只在 fields 中显式指定时返回
+     */
+    static final FieldProjection<MedicineInventory> MEDICINE_FIELDS = new FieldProjection<>(MedicineInventory.class, medicineAttributes(), List.of(
+            "id", "medicineCode", "medicineName", "specification", "stockQuantity", "unitPrice", "expiryDate", "status", "createdAt"));
+
+    private static final Sort SUMMARY_SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
     
     @Autowired
     private MedicineInventoryRepository medicineInventoryRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     
     @Override
     public List<MedicineInventory> getAllMedicineInventory() {
@@ -30,13 +50,32 @@ public class MedicineInventoryServiceImpl implements MedicineInventoryService {
         return medicineInventoryRepository.save(medicineInventory);
     }
     
+    /**
+     * 修改药品信息，不修改库存数量
+     * 库存只通过发药和库存调整（DispensingService.adjustStock）带条件的UPDATE变更，这里用请求中的旧库存覆盖会丢失并发发药的扣减
+     * @throws IllegalArgumentException 请求中的库存数量与当前库存不一致
+     */
     @Override
     public MedicineInventory updateMedicineInventory(Long id, MedicineInventory medicineInventory) {
-        if (medicineInventoryRepository.existsById(id)) {
-            medicineInventory.setId(id);
-            return medicineInventoryRepository.save(medicineInventory);
+        Optional<MedicineInventory> existing = medicineInventoryRepository.findById(id);
+        if (existing.isEmpty()) {
+            return null; // 或抛出异常
+        }
+        MedicineInventory medicine = existing.get();
+        if (medicineInventory.getStockQuantity() != null && !medicineInventory.getStockQuantity().equals(medicine.getStockQuantity())) {
+            throw new IllegalArgumentException("不能通过修改药品信息变更库存（当前库存 " + medicine.getStockQuantity()
+                    + "），请使用库存调整接口");
         }
-        return null; // 或抛出异常
+        medicine.setMedicineCode(medicineInventory.getMedicineCode());
+        medicine.setMedicineName(medicineInventory.getMedicineName());
+        medicine.setSpecification(medicineInventory.getSpecification());
+        medicine.setSupplier(medicineInventory.getSupplier());
+        medicine.setProductionDate(medicineInventory.getProductionDate());
+        medicine.setExpiryDate(medicineInventory.getExpiryDate());
+        medicine.setUnitPrice(medicineInventory.getUnitPrice());
+        medicine.setStatus(medicineInventory.getStatus());
+        medicine.setDescription(medicineInventory.getDescription());
+        return medicineInventoryRepository.save(medicine);
     }
     
     @Override
@@ -53,4 +92,35 @@ public class MedicineInventoryServiceImpl implements MedicineInventoryService {
     public MedicineInventory findByMedicineName(String medicineName) {
         return medicineInventoryRepository.findByMedicineName(medicineName);
     }
+
+    @Override
+    public CursorPage<Map<String, Object>> getMedicineInventoryPage(String medicineName, String supplier, Integer status, String cursor, Integer size, boolean withTotal, String fields) {
+        List<String> selected = MEDICINE_FIELDS.resolve(fields);
+        Specification<MedicineInventory> filter = Specification.where(KeysetPagination.<MedicineInventory>contains("medicineName", medicineName))
+                .and(KeysetPagination.<MedicineInventory>equal("supplier", supplier))
+                .and(KeysetPagination.<MedicineInventory>equal("status", status));
+        return KeysetPagination.fetch(entityManager, MEDICINE_FIELDS, filter, selected, cursor, size, withTotal);
+    }
+
+    @Override
+    public List<Map<String, Object>> getMedicineInventorySummaries(String fields) {
+        return MEDICINE_FIELDS.select(entityManager, null, MEDICINE_FIELDS.resolve(fields), SUMMARY_SORT, 0);
+    }
+
+    @Override
+    public Optional<Map<String, Object>> getMedicineInventorySummary(Long id, String fields) {
+        List<String> selected = MEDICINE_FIELDS.resolve(fields);
+        List<Map<String, Object>> rows = MEDICINE_FIELDS.select(entityManager,
+                (root, query, cb) -> cb.equal(root.get("id"), id), selected, null, 1);
+        return rows.stream().findFirst();
+    }
+
+    private static Map<String, String> medicineAttributes() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (String attribute : List.of("id", "medicineCode", "medicineName", "specification", "stockQuantity", "supplier",
+                "productionDate", "expiryDate", "unitPrice", "status", "description", "createdAt", "updatedAt")) {
+            attributes.put(attribute, attribute);
+        }
+        return attributes;
+    }
 }
\ No newline at end of file
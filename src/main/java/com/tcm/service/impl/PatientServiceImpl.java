@@ -1,19 +1,39 @@
 package com.tcm.service.impl;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.Patient;
 import com.tcm.repository.PatientRepository;
 import com.tcm.service.PatientService;
+import com.tcm.utils.FieldProjection;
+import com.tcm.utils.KeysetPagination;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class PatientServiceImpl implements PatientService {
+
+    /**
+     * 患者可查询的字段，列表默认只返回摘要字段；身份证号、住址等只在 fields 中显式指定时返回
+     */
+    static final FieldProjection<Patient> PATIENT_FIELDS = new FieldProjection<>(Patient.class, patientAttributes(), List.of(
+            "id", "name", "gender", "age", "phone", "createdAt"));
+
+    private static final Sort SUMMARY_SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
     
     @Autowired
     private PatientRepository patientRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     
     @Override
     public List<Patient> getAllPatients() {
@@ -117,4 +137,35 @@ public class PatientServiceImpl implements PatientService {
     public Patient findByPatientPhone(String phone) {
         return patientRepository.findByPhone(phone);
     }
+
+    @Override
+    public CursorPage<Map<String, Object>> getPatientsPage(String name, Integer gender, String phone, String cursor, Integer size, boolean withTotal, String fields) {
+        List<String> selected = PATIENT_FIELDS.resolve(fields);
+        Specification<Patient> filter = Specification.where(KeysetPagination.<Patient>contains("name", name))
+                .and(KeysetPagination.<Patient>equal("gender", gender))
+                .and(KeysetPagination.<Patient>equal("phone", phone));
+        return KeysetPagination.fetch(entityManager, PATIENT_FIELDS, filter, selected, cursor, size, withTotal);
+    }
+
+    @Override
+    public List<Map<String, Object>> getPatientSummaries(String fields) {
+        return PATIENT_FIELDS.select(entityManager, null, PATIENT_FIELDS.resolve(fields), SUMMARY_SORT, 0);
+    }
+
+    @Override
+    public Optional<Map<String, Object>> getPatientSummary(Long id, String fields) {
+        List<String> selected = PATIENT_FIELDS.resolve(fields);
+        List<Map<String, Object>> rows = PATIENT_FIELDS.select(entityManager,
+                (root, query, cb) -> cb.equal(root.get("id"), id), selected, null, 1);
+        return rows.stream().findFirst();
+    }
+
+    private static Map<String, String> patientAttributes() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (String attribute : List.of("id", "name", "gender", "age", "birthDate", "idCard", "phone", "address",
+                "occupation", "maritalStatus", "createdAt", "updatedAt")) {
+            attributes.put(attribute, attribute);
+        }
+        return attributes;
+    }
 }
\ No newline at end of file
@@ -1,9 +1,12 @@
 package com.tcm.service.impl;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.PrescriptionDetail;
 import com.tcm.repository.PrescriptionDetailRepository;
 import com.tcm.service.PrescriptionDetailService;
+import com.tcm.utils.KeysetPagination;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -48,4 +51,11 @@ public class PrescriptionDetailServiceImpl implements PrescriptionDetailService
     public List<PrescriptionDetail> getPrescriptionDetailsByPrescriptionId(Long prescriptionId) {
         return prescriptionDetailRepository.findByPrescriptionId(prescriptionId);
     }
+
+    @Override
+    public CursorPage<PrescriptionDetail> getPrescriptionDetailsPage(Long prescriptionId, String herbName, String cursor, Integer size, boolean withTotal) {
+        Specification<PrescriptionDetail> filter = Specification.where(KeysetPagination.<PrescriptionDetail>equal("prescription.id", prescriptionId))
+                .and(KeysetPagination.<PrescriptionDetail>contains("herbName", herbName));
+        return KeysetPagination.fetch(prescriptionDetailRepository, filter, cursor, size, withTotal);
+    }
 }
\ No newline at end of file
@@ -1,19 +1,41 @@
 package com.tcm.service.impl;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.Prescription;
 import com.tcm.repository.PrescriptionRepository;
 import com.tcm.service.PrescriptionService;
+import com.tcm.utils.FieldProjection;
+import com.tcm.utils.KeysetPagination;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class PrescriptionServiceImpl implements PrescriptionService {
+
+    /**
+     * 处方可查询的字段，列表默认只返回摘要字段（患者、医生以姓名和ID返回）；
+     * 煎药方法、医嘱只在 fields 中显式指定时返回，处方明细通过处方明细接口查询
+     */
+    static final FieldProjection<Prescription> PRESCRIPTION_FIELDS = new FieldProjection<>(Prescription.class, prescriptionAttributes(), List.of(
+            "id", "visitId", "patientId", "patientName", "doctorId", "doctorName", "prescriptionName", "treatmentDuration",
+            "status", "createdAt"));
+
+    private static final Sort SUMMARY_SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
     
     @Autowired
     private PrescriptionRepository prescriptionRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     
     @Override
     public List<Prescription> getAllPrescriptions() {
@@ -53,4 +75,47 @@ public class PrescriptionServiceImpl implements PrescriptionService {
     public List<Prescription> getPrescriptionsByDoctorId(Long doctorId) {
         return prescriptionRepository.findByDoctorId(doctorId);
     }
+
+    @Override
+    public CursorPage<Map<String, Object>> getPrescriptionsPage(Long visitId, Long doctorId, Integer status, String cursor, Integer size, boolean withTotal, String fields) {
+        List<String> selected = PRESCRIPTION_FIELDS.resolve(fields);
+        Specification<Prescription> filter = Specification.where(KeysetPagination.<Prescription>equal("visit.id", visitId))
+                .and(KeysetPagination.<Prescription>equal("doctor.id", doctorId))
+                .and(KeysetPagination.<Prescription>equal("status", status));
+        return KeysetPagination.fetch(entityManager, PRESCRIPTION_FIELDS, filter, selected, cursor, size, withTotal);
+    }
+
+    @Override
+    public List<Map<String, Object>> getPrescriptionSummaries(Long visitId, Long doctorId, String fields) {
+        List<String> selected = PRESCRIPTION_FIELDS.resolve(fields);
+        Specification<Prescription> filter = Specification.where(KeysetPagination.<Prescription>equal("visit.id", visitId))
+                .and(KeysetPagination.<Prescription>equal("doctor.id", doctorId));
+        return PRESCRIPTION_FIELDS.select(entityManager, filter, selected, SUMMARY_SORT, 0);
+    }
+
+    @Override
+    public Optional<Map<String, Object>> getPrescriptionSummary(Long id, String fields) {
+        List<String> selected = PRESCRIPTION_FIELDS.resolve(fields);
+        List<Map<String, Object>> rows = PRESCRIPTION_FIELDS.select(entityManager,
+                (root, query, cb) -> cb.equal(root.get("id"), id), selected, null, 1);
+        return rows.stream().findFirst();
+    }
+
+    private static Map<String, String> prescriptionAttributes() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("id", "id");
+        attributes.put("visitId", "visit.id");
+        attributes.put("patientId", "visit.patient.id");
+        attributes.put("patientName", "visit.patient.name");
+        attributes.put("doctorId", "doctor.id");
+        attributes.put("doctorName", "doctor.name");
+        attributes.put("prescriptionName", "prescriptionName");
+        attributes.put("decoctionMethod", "decoctionMethod");
+        attributes.put("treatmentDuration", "treatmentDuration");
+        attributes.put("doctorAdvice", "doctorAdvice");
+        attributes.put("status", "status");
+        attributes.put("createdAt", "createdAt");
+        attributes.put("updatedAt", "updatedAt");
+        return attributes;
+    }
 }
\ No newline at end of file
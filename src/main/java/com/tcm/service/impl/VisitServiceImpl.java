@@ -1,19 +1,42 @@
 package com.tcm.service.impl;
 
+import com.tcm.dto.CursorPage;
 import com.tcm.model.Visit;
 import com.tcm.repository.VisitRepository;
 import com.tcm.service.VisitService;
+import com.tcm.utils.FieldProjection;
+import com.tcm.utils.KeysetPagination;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class VisitServiceImpl implements VisitService {
+
+    /**
+     * 就诊记录可查询的字段，列表默认只返回摘要字段；
+     * aiAnalysisRawResponse 为完整的AI原始响应，只在 fields 中显式指定时返回
+     */
+    static final FieldProjection<Visit> VISIT_FIELDS = new FieldProjection<>(Visit.class, visitAttributes(), List.of(
+            "id", "visitDate", "visitType", "medicalRecordNumber", "patientId", "patientName", "doctorId", "doctorName",
+            "chiefComplaint", "tcmDiagnosis", "patternDifferentiation", "createdAt"));
+
+    private static final Sort SUMMARY_SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
     
     @Autowired
     private VisitRepository visitRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     
     @Override
     public List<Visit> getAllVisits() {
@@ -53,4 +76,57 @@ public class VisitServiceImpl implements VisitService {
     public List<Visit> getVisitsByDoctorId(Long doctorId) {
         return visitRepository.findByDoctorId(doctorId);
     }
+
+    @Override
+    public CursorPage<Map<String, Object>> getVisitsPage(Long patientId, Long doctorId, Integer visitType, LocalDateTime from, LocalDateTime to, String cursor, Integer size, boolean withTotal, String fields) {
+        List<String> selected = VISIT_FIELDS.resolve(fields);
+        Specification<Visit> filter = Specification.where(KeysetPagination.<Visit>equal("patient.id", patientId))
+                .and(KeysetPagination.<Visit>equal("doctor.id", doctorId))
+                .and(KeysetPagination.<Visit>equal("visitType", visitType))
+                .and(KeysetPagination.<Visit>between("visitDate", from, to));
+        return KeysetPagination.fetch(entityManager, VISIT_FIELDS, filter, selected, cursor, size, withTotal);
+    }
+
+    @Override
+    public List<Map<String, Object>> getVisitSummaries(Long patientId, Long doctorId, String fields) {
+        List<String> selected = VISIT_FIELDS.resolve(fields);
+        Specification<Visit> filter = Specification.where(KeysetPagination.<Visit>equal("patient.id", patientId))
+                .and(KeysetPagination.<Visit>equal("doctor.id", doctorId));
+        return VISIT_FIELDS.select(entityManager, filter, selected, SUMMARY_SORT, 0);
+    }
+
+    @Override
+    public Optional<Map<String, Object>> getVisitSummary(Long id, String fields) {
+        List<String> selected = VISIT_FIELDS.resolve(fields);
+        List<Map<String, Object>> rows = VISIT_FIELDS.select(entityManager,
+                (root, query, cb) -> cb.equal(root.get("id"), id), selected, null, 1);
+        return rows.stream().findFirst();
+    }
+
+    private static Map<String, String> visitAttributes() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("id", "id");
+        attributes.put("visitDate", "visitDate");
+        attributes.put("visitType", "visitType");
+        attributes.put("medicalRecordNumber", "medicalRecordNumber");
+        attributes.put("patientId", "patient.id");
+        attributes.put("patientName", "patient.name");
+        attributes.put("doctorId", "doctor.id");
+        attributes.put("doctorName", "doctor.name");
+        attributes.put("chiefComplaint", "chiefComplaint");
+        attributes.put("symptoms", "symptoms");
+        attributes.put("initialVisitClinicalManifestation", "initialVisitClinicalManifestation");
+        attributes.put("followUpClinicalManifestation", "followUpClinicalManifestation");
+        attributes.put("tongueDiagnosis", "tongueDiagnosis");
+        attributes.put("pulseDiagnosis", "pulseDiagnosis");
+        attributes.put("tcmDiagnosis", "tcmDiagnosis");
+        attributes.put("westernDiagnosis", "westernDiagnosis");
+        attributes.put("patternDifferentiation", "patternDifferentiation");
+        attributes.put("treatmentPlan", "treatmentPlan");
+        attributes.put("tongueImagePath", "tongueImagePath");
+        attributes.put("aiAnalysisRawResponse", "aiAnalysisRawResponse");
+        attributes.put("createdAt", "createdAt");
+        attributes.put("updatedAt", "updatedAt");
+        return attributes;
+    }
 }
\ No newline at end of file
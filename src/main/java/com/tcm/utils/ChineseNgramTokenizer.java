@@ -0,0 +1,100 @@
+package com.tcm.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 中文n-gram分词
+ * 临床文本没有空格分词，按汉字连续片段切成二元组（"恶寒发热" -> 恶寒 寒发 发热），并保留单字以支持单字查询；
+ * 字母和数字的连续片段作为一个词（统一小写）。标点、空白作为分隔符。
+ * 写入时用 {@link #indexTokens} 生成 visits.search_tokens，查询时用 {@link #queryTokens} 生成检索词，
+ * 两者切分规则一致，数据库端只需用 'simple' 配置按空格建 tsvector。
+ */
+public final class ChineseNgramTokenizer {
+
+    private ChineseNgramTokenizer() {}
+
+    /**
+     * 生成索引词：汉字的单字和二元组，以及字母数字词，按原文顺序以空格连接
+     * 不去重，词频和相邻位置用于数据库端排序
+     * @param texts 要索引的字段，null忽略
+     */
+    public static String indexTokens(String... texts) {
+        List<String> tokens = new ArrayList<>();
+        for (String text : texts) {
+            for (String run : runs(text)) {
+                if (isHan(run.codePointAt(0))) {
+                    int[] codePoints = run.codePoints().toArray();
+                    for (int i = 0; i < codePoints.length; i++) {
+                        tokens.add(new String(codePoints, i, 1));
+                        if (i + 1 < codePoints.length) {
+                            tokens.add(new String(codePoints, i, 2));
+                        }
+                    }
+                } else {
+                    tokens.add(run);
+                }
+            }
+        }
+        return String.join(" ", tokens);
+    }
+
+    /**
+     * 生成检索词：两个字以上的汉字片段只取二元组（比单字更有区分度），单个汉字取单字
+     * @return 去重后的检索词，全部命中才算匹配；没有可检索内容时为空列表
+     */
+    public static List<String> queryTokens(String query) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String run : runs(query)) {
+            if (isHan(run.codePointAt(0))) {
+                int[] codePoints = run.codePoints().toArray();
+                if (codePoints.length == 1) {
+                    tokens.add(run);
+                }
+                for (int i = 0; i + 1 < codePoints.length; i++) {
+                    tokens.add(new String(codePoints, i, 2));
+                }
+            } else {
+                tokens.add(run);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /**
+     * 按字符类别切分为汉字片段和字母数字片段；全角字符先转为半角，字母转小写
+     */
+    private static List<String> runs(String text) {
+        List<String> runs = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return runs;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder run = new StringBuilder();
+        int runType = 0; // 0-无，1-汉字，2-字母数字
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            int type = isHan(codePoint) ? 1 : (Character.isLetterOrDigit(codePoint) ? 2 : 0);
+            if (type != runType && run.length() > 0) {
+                runs.add(run.toString());
+                run.setLength(0);
+            }
+            runType = type;
+            if (type != 0) {
+                run.appendCodePoint(codePoint);
+            }
+        }
+        if (run.length() > 0) {
+            runs.add(run.toString());
+        }
+        return runs;
+    }
+
+    private static boolean isHan(int codePoint) {
+        return Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN;
+    }
+}
@@ -0,0 +1,96 @@
+package com.tcm.utils;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 按并发许可发放连接的数据源包装
+ * 获取连接前先取得一个许可，连接关闭（归还连接池）时释放许可，许可数与连接池大小一致。
+ * 上千个虚拟线程同时请求连接时，超过等待时间的请求在这里快速失败，而不是各自在连接池中等满超时时间。
+ */
+public class ConcurrencyLimitedDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private final ConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitedDataSource(DataSource target, ConcurrencyLimiter limiter) {
+        super(target);
+        this.limiter = limiter;
+    }
+
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        ConcurrencyLimiter.Permit permit = acquire();
+        try {
+            return limited(obtainTargetDataSource().getConnection(), permit);
+        } catch (SQLException | RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        ConcurrencyLimiter.Permit permit = acquire();
+        try {
+            return limited(obtainTargetDataSource().getConnection(username, password), permit);
+        } catch (SQLException | RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 容器关闭时关闭被包装的连接池
+     */
+    @Override
+    public void close() throws Exception {
+        if (obtainTargetDataSource() instanceof AutoCloseable) {
+            ((AutoCloseable) obtainTargetDataSource()).close();
+        }
+    }
+
+    private ConcurrencyLimiter.Permit acquire() throws SQLException {
+        try {
+            return limiter.acquire();
+        } catch (RejectedExecutionException e) {
+            // 与连接池等待超时相同的异常类型，上层的事务和异常转换逻辑不变
+            throw new SQLTransientConnectionException(e.getMessage(), e);
+        }
+    }
+
+    private Connection limited(Connection target, ConcurrencyLimiter.Permit permit) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                        try {
+                            target.close();
+                        } finally {
+                            permit.close();
+                        }
+                        return null;
+                    }
+                    if ("equals".equals(method.getName()) && method.getParameterCount() == 1) {
+                        return proxy == args[0];
+                    }
+                    if ("hashCode".equals(method.getName()) && method.getParameterCount() == 0) {
+                        return System.identityHashCode(proxy);
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,95 @@
+package com.tcm.utils;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 下游并发限制
+ * 用公平信号量限制同时访问某个下游（数据库、模型服务、微信接口）的调用数。
+ * 平台线程池的线程数本身就限制了并发，改用虚拟线程后请求数不再受线程数约束，需要在下游入口按其容量限流；
+ * 等待超过上限时间仍拿不到许可时抛出RejectedExecutionException，由调用方返回"系统繁忙"。
+ *
+ * 用法：try (ConcurrencyLimiter.Permit permit = limiter.acquire()) { ... }
+ */
+public class ConcurrencyLimiter {
+
+    private final String name;
+    private final int maxConcurrency;
+    private final long acquireTimeoutMs;
+    private final Semaphore semaphore;
+
+    /**
+     * @param name 下游名称，用于错误信息
+     * @param maxConcurrency 最大并发数
+     * @param acquireTimeoutMs 等待许可的最长时间（毫秒）
+     */
+    public ConcurrencyLimiter(String name, int maxConcurrency, long acquireTimeoutMs) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException(name + "并发上限必须大于0");
+        }
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.semaphore = new Semaphore(maxConcurrency, true);
+    }
+
+    /**
+     * 获取一个许可，最多等待acquireTimeoutMs
+     * @throws RejectedExecutionException 等待超时或被中断
+     */
+    public Permit acquire() {
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("等待" + name + "并发许可时被中断");
+        }
+        if (!acquired) {
+            throw new RejectedExecutionException(name + "并发已达上限(" + maxConcurrency + ")，请稍后重试");
+        }
+        return new Permit();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public long getAcquireTimeoutMs() {
+        return acquireTimeoutMs;
+    }
+
+    // 当前正在使用的许可数
+    public int getActive() {
+        return maxConcurrency - semaphore.availablePermits();
+    }
+
+    // 正在等待许可的线程数（估计值）
+    public int getWaiting() {
+        return semaphore.getQueueLength();
+    }
+
+    /**
+     * 已获取的许可，关闭时归还；重复关闭只归还一次
+     */
+    public class Permit implements AutoCloseable {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.tcm.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式CSV读取（RFC 4180）
+ * 逐条读取记录，不把整个文件读入内存；支持双引号包裹的字段、字段内的逗号和换行，以及 "" 转义的双引号。
+ * 记录的行号为该记录在文件中起始的物理行号，用于导入时定位出错的行。
+ */
+public class CsvReader {
+
+    private final Reader reader;
+    private final StringBuilder field = new StringBuilder();
+    private int pending = -2; // 预读的字符，-2 表示没有
+    private long line = 1;
+    private long recordLine;
+
+    /**
+     * @param reader 调用方负责缓冲（如 BufferedReader）和关闭
+     */
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * 读取下一条记录
+     * 首条记录开头的UTF-8 BOM会被去掉；空行跳过
+     * @return 字段列表；文件结束时返回null
+     * @throws IllegalArgumentException 引号未闭合
+     */
+    public List<String> next() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            if (c == '\r' || c == '\n') {
+                consumeNewline(c);
+                continue;
+            }
+            if (line == 1 && recordLine == 0 && c == '\uFEFF') {
+                continue;
+            }
+            unread(c);
+            break;
+        }
+
+        recordLine = line;
+        List<String> record = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean inQuotes = false;
+        while (true) {
+            int c = read();
+            if (inQuotes) {
+                if (c == -1) {
+                    throw new IllegalArgumentException("第" + recordLine + "行的引号未闭合");
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                        unread(next);
+                    }
+                } else {
+                    if (c == '\n' || (c == '\r' && peek() != '\n')) {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !quoted) {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+                quoted = false;
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                record.add(field.toString());
+                if (c != -1) {
+                    consumeNewline(c);
+                }
+                return record;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * 最近一条记录的起始行号
+     */
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    private void consumeNewline(int c) throws IOException {
+        if (c == '\r') {
+            int next = read();
+            if (next != '\n') {
+                unread(next);
+            }
+        }
+        line++;
+    }
+
+    private int read() throws IOException {
+        if (pending != -2) {
+            int c = pending;
+            pending = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private int peek() throws IOException {
+        int c = read();
+        unread(c);
+        return c;
+    }
+
+    private void unread(int c) {
+        pending = c;
+    }
+}
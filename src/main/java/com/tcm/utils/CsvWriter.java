@@ -0,0 +1,61 @@
+package com.tcm.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 流式CSV写出（RFC 4180），与 CsvReader 对应
+ * 包含逗号、双引号、换行的字段用双引号包裹，字段内的双引号写为 ""；null 写为空字段。
+ * 行尾使用 \r\n，便于Excel直接打开。
+ */
+public class CsvWriter {
+
+    private final Writer writer;
+    private boolean firstField = true;
+
+    /**
+     * @param writer 调用方负责缓冲和关闭
+     */
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * 写出当前行的下一个字段
+     */
+    public CsvWriter field(String value) throws IOException {
+        if (!firstField) {
+            writer.write(',');
+        }
+        firstField = false;
+        if (value == null || value.isEmpty()) {
+            return this;
+        }
+        if (needsQuoting(value)) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(value);
+        }
+        return this;
+    }
+
+    /**
+     * 结束当前行
+     */
+    public void endRow() throws IOException {
+        writer.write("\r\n");
+        firstField = true;
+    }
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,184 @@
+package com.tcm.utils;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按字段投影的只读查询
+ * 只查询响应需要的列，结果为 字段名->值 的有序Map，不加载实体，也不会触发懒加载代理。
+ * 可选字段由白名单给出（响应字段名->实体属性路径），关联属性（如 patient.name）按LEFT JOIN查询；
+ * ID类字段（id、patient.id 等）转为字符串返回，与实体序列化保持一致，避免前端丢失Long精度。
+ */
+public final class FieldProjection<T> {
+
+    private final Class<T> entityType;
+    private final Map<String, String> attributes;
+    private final List<String> defaultFields;
+
+    /**
+     * @param entityType 实体类型
+     * @param attributes 可选字段白名单，响应字段名->实体属性路径，按响应中的字段顺序排列
+     * @param defaultFields 未指定 fields 时返回的字段
+     */
+    public FieldProjection(Class<T> entityType, Map<String, String> attributes, List<String> defaultFields) {
+        this.entityType = entityType;
+        this.attributes = new LinkedHashMap<>(attributes);
+        this.defaultFields = List.copyOf(defaultFields);
+    }
+
+    /**
+     * 白名单中的全部字段，按响应中的字段顺序排列
+     */
+    public List<String> availableFields() {
+        return List.copyOf(attributes.keySet());
+    }
+
+    /**
+     * 解析 fields 参数（逗号分隔）
+     * 为空时返回默认字段；结果按白名单顺序排列并去重
+     * @throws IllegalArgumentException 包含不在白名单中的字段
+     */
+    public List<String> resolve(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return defaultFields;
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!attributes.containsKey(name)) {
+                throw new IllegalArgumentException("不支持的字段: " + name + "，可选字段: " + String.join(",", attributes.keySet()));
+            }
+            requested.add(name);
+        }
+        if (requested.isEmpty()) {
+            return defaultFields;
+        }
+        List<String> resolved = new ArrayList<>();
+        for (String name : attributes.keySet()) {
+            if (requested.contains(name)) {
+                resolved.add(name);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * 按条件查询字段
+     * @param filter 筛选条件，可以为null
+     * @param fields 经 resolve 得到的字段
+     * @param sort 排序，按实体属性
+     * @param limit 最多返回条数，小于等于0时不限
+     */
+    public List<Map<String, Object>> select(EntityManager entityManager, Specification<T> filter, List<String> fields,
+                                            Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> root = query.from(entityType);
+
+        // 同一关联只JOIN一次
+        Map<String, From<?, ?>> joins = new HashMap<>();
+        List<Selection<?>> selections = new ArrayList<>();
+        for (String field : fields) {
+            selections.add(path(root, joins, attributes.get(field)).alias(field));
+        }
+        query.multiselect(selections);
+
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        if (sort != null && sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (limit > 0) {
+            typedQuery.setMaxResults(limit);
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Tuple tuple : typedQuery.getResultList()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String field : fields) {
+                row.put(field, toValue(field, tuple.get(field)));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * 统计满足条件的记录数
+     */
+    public long count(EntityManager entityManager, Specification<T> filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(entityType);
+        query.select(cb.count(root));
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    /**
+     * 字段值转换：ID类字段转字符串，其余原样返回
+     */
+    Object toValue(String field, Object value) {
+        if (value instanceof Long && isIdAttribute(attributes.get(field))) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    private static boolean isIdAttribute(String attribute) {
+        return attribute.equals("id") || attribute.endsWith(".id");
+    }
+
+    private static Path<?> path(Root<?> root, Map<String, From<?, ?>> joins, String attribute) {
+        String[] parts = attribute.split("\\.");
+        if (parts.length == 1) {
+            return root.get(attribute);
+        }
+        // 关联ID直接取外键列，不需要JOIN
+        if (parts.length == 2 && parts[1].equals("id")) {
+            return root.get(parts[0]).get("id");
+        }
+        From<?, ?> from = root;
+        StringBuilder joinPath = new StringBuilder();
+        for (String part : Arrays.copyOf(parts, parts.length - 1)) {
+            joinPath.append(joinPath.length() == 0 ? "" : ".").append(part);
+            From<?, ?> parent = from;
+            from = joins.computeIfAbsent(joinPath.toString(), key -> parent.join(part, JoinType.LEFT));
+        }
+        return from.get(parts[parts.length - 1]);
+    }
+}
@@ -0,0 +1,152 @@
+package com.tcm.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 基于汉明距离的BK树，用于64位感知哈希的近邻查询
+ * 每个节点保存一个哈希及拥有该哈希的全部ID，子节点按与父节点的距离分组；
+ * 查询时利用三角不等式跳过不可能更近的子树，不需要逐个比较全部哈希。
+ * 非线程安全，由调用方加锁。
+ */
+public class HammingBkTree {
+
+    private static class Node {
+        private final long hash;
+        private final List<Long> ids = new ArrayList<>(1);
+        private final Map<Integer, Node> children = new HashMap<>();
+
+        private Node(long hash) {
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * 查询结果
+     */
+    public static class Match {
+        private final Long id;
+        private final long hash;
+        private final int distance;
+
+        public Match(Long id, long hash, int distance) {
+            this.id = id;
+            this.hash = hash;
+            this.distance = distance;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    public void add(long hash, Long id) {
+        size++;
+        if (root == null) {
+            root = new Node(hash);
+            root.ids.add(id);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int d = distance(node.hash, hash);
+            if (d == 0) {
+                node.ids.add(id);
+                return;
+            }
+            Node child = node.children.get(d);
+            if (child == null) {
+                child = new Node(hash);
+                child.ids.add(id);
+                node.children.put(d, child);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * 删除ID；节点本身保留作为路由，只是不再返回该ID
+     */
+    public boolean remove(long hash, Long id) {
+        Node node = root;
+        while (node != null) {
+            int d = distance(node.hash, hash);
+            if (d == 0) {
+                boolean removed = node.ids.remove(id);
+                if (removed) {
+                    size--;
+                }
+                return removed;
+            }
+            node = node.children.get(d);
+        }
+        return false;
+    }
+
+    /**
+     * 查询距离最近的k个ID，按距离升序排列
+     * @param excludeId 不参与返回的ID（通常是查询图片本身），可为null
+     */
+    public List<Match> nearest(long hash, int k, Long excludeId) {
+        if (root == null || k <= 0) {
+            return Collections.emptyList();
+        }
+        // 大顶堆保存当前最近的k个结果，堆顶是其中最远的
+        PriorityQueue<Match> best = new PriorityQueue<>(k + 1,
+                Comparator.comparingInt(Match::getDistance).reversed());
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int d = distance(node.hash, hash);
+            for (Long id : node.ids) {
+                if (id.equals(excludeId)) {
+                    continue;
+                }
+                if (best.size() < k || d < best.peek().getDistance()) {
+                    best.offer(new Match(id, node.hash, d));
+                    if (best.size() > k) {
+                        best.poll();
+                    }
+                }
+            }
+            int radius = best.size() < k ? Integer.MAX_VALUE : best.peek().getDistance();
+            for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+                // 三角不等式：子树中的哈希与查询的距离不小于 |边长 - d|
+                if (Math.abs(child.getKey() - d) <= radius) {
+                    pending.push(child.getValue());
+                }
+            }
+        }
+        List<Match> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingInt(Match::getDistance).thenComparing(Match::getId));
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -1,50 +1,237 @@
 package com.tcm.utils;
 
-import org.springframework.web.multipart.MultipartFile;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
-import java.awt.geom.AffineTransform;
-import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 图片处理工具类
  * 实现图片格式转换（统一为PNG）和尺寸调整（裁剪到512*512）
+ *
+ * 上传的图片先通过NIO通道流式写入磁盘，之后的尺寸读取和裁剪都直接基于磁盘文件：
+ * 读取尺寸只解析文件头，裁剪只解码中心区域，整个过程不会把上传内容整体读入内存。
+ * 解码、编码耗时记录到Micrometer全局注册表（Spring Boot会把应用的注册表加入其中）。
  */
 public class ImageProcessingUtil {
 
+    // 模型输入图片的边长
+    public static final int TARGET_SIZE = 512;
+
+    // 流式写入磁盘时使用的缓冲区大小
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final Timer DECODE_TIMER = Timer.builder("tcm.image.decode")
+            .description("图片解码耗时")
+            .register(Metrics.globalRegistry);
+
     /**
-     * 处理上传的图片：转换格式为PNG并调整尺寸
-     * 如果图片尺寸超过512*512，则从中心向边缘裁剪到512*512
+     * 将输入流通过NIO通道写入目标文件，只占用一个固定大小的缓冲区
+     * 目标文件已存在时抛出异常，避免覆盖已有图片
+     * @return 写入的字节数
      */
-    public static File processImage(MultipartFile originalFile) throws IOException {
-        // 将MultipartFile转换为BufferedImage
-        BufferedImage originalImage = ImageIO.read(originalFile.getInputStream());
+    public static long writeTo(InputStream in, Path target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+        long written = 0;
+        try (ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel destination = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    written += destination.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        return written;
+    }
 
-        // 获取原始图片尺寸
-        int originalWidth = originalImage.getWidth();
-        int originalHeight = originalImage.getHeight();
+    /**
+     * 只解析文件头读取图片尺寸，不解码像素数据
+     * @return 图片尺寸；无法识别的格式返回null
+     */
+    public static Dimension readDimensions(Path imagePath) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imagePath.toFile())) {
+            ImageReader reader = findReader(input);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(input, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
 
-        // 目标尺寸
-        int targetSize = 512;
+    /**
+     * 处理磁盘上的图片：转换格式为PNG并调整尺寸，结果直接写入目标文件
+     * 如果图片尺寸超过512*512，则从中心向边缘裁剪到512*512；
+     * 解码时只读取中心区域，大图不会整幅解码到内存
+     */
+    public static void processImage(Path source, Path target) throws IOException {
+        BufferedImage processedImage = cropForModel(source);
 
-        BufferedImage processedImage;
+        if (!encode(processedImage, "png", target)) {
+            throw new IOException("PNG编码失败: " + target.getFileName());
+        }
+    }
 
-        if (originalWidth > targetSize || originalHeight > targetSize) {
-            // 如果原始图片尺寸超过目标尺寸，进行中心裁剪
-            processedImage = cropCenterToSize(originalImage, targetSize, targetSize);
-        } else {
-            // 如果原始图片尺寸不超过目标尺寸，直接使用原图
-            processedImage = originalImage;
+    /**
+     * 生成模型输入图（不写文件）：超过512*512时只解码中心区域并补白到512*512，否则按原图解码
+     */
+    public static BufferedImage cropForModel(Path source) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            ImageReader reader = findReader(input);
+            if (reader == null) {
+                throw new IOException("无法识别的图片格式: " + source.getFileName());
+            }
+            try {
+                reader.setInput(input, true, true);
+                int originalWidth = reader.getWidth(0);
+                int originalHeight = reader.getHeight(0);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (originalWidth > TARGET_SIZE || originalHeight > TARGET_SIZE) {
+                    int regionWidth = Math.min(TARGET_SIZE, originalWidth);
+                    int regionHeight = Math.min(TARGET_SIZE, originalHeight);
+                    param.setSourceRegion(new Rectangle((originalWidth - regionWidth) / 2, (originalHeight - regionHeight) / 2,
+                            regionWidth, regionHeight));
+                    // 中心区域已在解码时裁出，这里只负责补白和统一为RGB
+                    return cropCenterToSize(decode(reader, param), TARGET_SIZE, TARGET_SIZE);
+                }
+                // 如果原始图片尺寸不超过目标尺寸，直接使用原图
+                return decode(reader, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 生成等比缩放的变体（缩略图、预览图），最长边不超过maxSize，结果直接写入目标文件
+     * 大图解码时按比例隔行隔列采样，只解码到目标尺寸的两倍左右，再平滑缩放到目标尺寸
+     * @param format 输出格式，如 "jpg"、"png"
+     */
+    public static void createScaledVariant(Path source, Path target, int maxSize, String format) throws IOException {
+        BufferedImage decoded = decodeSubsampled(source, maxSize * 2);
+
+        double scale = Math.min(1.0, (double) maxSize / Math.max(decoded.getWidth(), decoded.getHeight()));
+        int width = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+
+        BufferedImage scaledImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = scaledImage.createGraphics();
+        // 透明背景统一填充为白色
+        g2d.setPaint(Color.WHITE);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(decoded, 0, 0, width, height, null);
+        g2d.dispose();
+
+        if (!encode(scaledImage, format, target)) {
+            throw new IOException("不支持的输出格式: " + format);
         }
+    }
 
-        // 创建临时文件保存处理后的图片
-        File tempFile = File.createTempFile("processed_image_", ".png");
-        ImageIO.write(processedImage, "png", tempFile);
+    /**
+     * 计算图片的差值感知哈希（dHash）
+     * 缩小为9*8灰度图后逐行比较相邻像素亮度，得到64位指纹；
+     * 内容相近的图片（重新压缩、轻微缩放或调色）指纹的汉明距离很小
+     */
+    public static long differenceHash(Path source) throws IOException {
+        BufferedImage decoded = decodeSubsampled(source, 64);
 
-        return tempFile;
+        BufferedImage gray = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g2d = gray.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(decoded, 0, 0, 9, 8, null);
+        g2d.dispose();
+
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int left = gray.getRaster().getSample(x, y, 0);
+                int right = gray.getRaster().getSample(x + 1, y, 0);
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 按比例隔行隔列采样解码，最长边约为minLongestSide到其两倍之间，小图按原尺寸解码
+     */
+    private static BufferedImage decodeSubsampled(Path source, int minLongestSide) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            ImageReader reader = findReader(input);
+            if (reader == null) {
+                throw new IOException("无法识别的图片格式: " + source.getFileName());
+            }
+            try {
+                reader.setInput(input, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longestSide / minLongestSide);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return decode(reader, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage decode(ImageReader reader, ImageReadParam param) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return reader.read(0, param);
+        } finally {
+            DECODE_TIMER.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 编码并写入目标文件，按输出格式分别记录耗时
+     * @return 是否有支持该格式的编码器
+     */
+    private static boolean encode(BufferedImage image, String format, Path target) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return ImageIO.write(image, format, target.toFile());
+        } finally {
+            Timer.builder("tcm.image.encode")
+                    .description("图片编码耗时")
+                    .tag("format", format.toLowerCase())
+                    .register(Metrics.globalRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static ImageReader findReader(ImageInputStream input) {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        return readers.hasNext() ? readers.next() : null;
     }
 
     /**
@@ -121,4 +308,4 @@ public class ImageProcessingUtil {
 
         return originalImage.getSubimage(startX, startY, size, size);
     }
-}
\ No newline at end of file
+}
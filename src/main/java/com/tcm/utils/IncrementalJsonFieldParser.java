@@ -0,0 +1,173 @@
+package com.tcm.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 增量JSON字段解析器
+ * 用于流式AI响应：模型逐段输出JSON文本，每当根对象中的某个顶层字段完整输出后立即返回该字段，
+ * 不必等待整个JSON结束。根对象之前的内容（如 ```json 代码块标记）会被忽略。
+ * 非线程安全，每个流使用一个实例。
+ */
+public class IncrementalJsonFieldParser {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // 根对象内的解析阶段
+    private static final int EXPECT_KEY = 0;
+    private static final int IN_KEY = 1;
+    private static final int EXPECT_COLON = 2;
+    private static final int EXPECT_VALUE = 3;
+    private static final int IN_STRING_VALUE = 4;
+    private static final int IN_NESTED_VALUE = 5;
+    private static final int IN_SCALAR_VALUE = 6;
+    private static final int AFTER_VALUE = 7;
+
+    private final StringBuilder buffer = new StringBuilder();
+    private int position = 0;
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escape = false;
+    private boolean rootClosed = false;
+    private int phase = EXPECT_KEY;
+    private int tokenStart = -1;
+    private String currentKey;
+
+    /**
+     * 追加一段文本，返回本次新完成的顶层字段（按出现顺序）
+     * @param chunk 模型新输出的文本片段
+     * @return 字段名与字段值
+     */
+    public List<Map.Entry<String, JsonNode>> feed(CharSequence chunk) {
+        List<Map.Entry<String, JsonNode>> completed = new ArrayList<>();
+        buffer.append(chunk);
+
+        for (; position < buffer.length() && !rootClosed; position++) {
+            char c = buffer.charAt(position);
+
+            if (depth == 0) {
+                // 根对象开始之前的内容直接跳过
+                if (c == '{') {
+                    depth = 1;
+                    phase = EXPECT_KEY;
+                }
+                continue;
+            }
+
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (c == '\\') {
+                    escape = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (depth == 1 && phase == IN_KEY) {
+                        currentKey = readString(tokenStart, position + 1);
+                        phase = EXPECT_COLON;
+                    } else if (depth == 1 && phase == IN_STRING_VALUE) {
+                        emit(completed, tokenStart, position + 1);
+                        phase = AFTER_VALUE;
+                    }
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"':
+                    inString = true;
+                    if (depth == 1 && phase == EXPECT_KEY) {
+                        tokenStart = position;
+                        phase = IN_KEY;
+                    } else if (depth == 1 && phase == EXPECT_VALUE) {
+                        tokenStart = position;
+                        phase = IN_STRING_VALUE;
+                    }
+                    break;
+                case '{':
+                case '[':
+                    if (depth == 1 && phase == EXPECT_VALUE) {
+                        tokenStart = position;
+                        phase = IN_NESTED_VALUE;
+                    }
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    if (depth == 1 && phase == IN_NESTED_VALUE) {
+                        emit(completed, tokenStart, position + 1);
+                        phase = AFTER_VALUE;
+                    } else if (depth == 0) {
+                        if (phase == IN_SCALAR_VALUE) {
+                            emit(completed, tokenStart, position);
+                        }
+                        rootClosed = true;
+                    }
+                    break;
+                case ':':
+                    if (depth == 1 && phase == EXPECT_COLON) {
+                        phase = EXPECT_VALUE;
+                    }
+                    break;
+                case ',':
+                    if (depth == 1) {
+                        if (phase == IN_SCALAR_VALUE) {
+                            emit(completed, tokenStart, position);
+                        }
+                        phase = EXPECT_KEY;
+                    }
+                    break;
+                default:
+                    if (depth == 1 && phase == EXPECT_VALUE && !Character.isWhitespace(c)) {
+                        // 数字、true/false/null 等标量
+                        tokenStart = position;
+                        phase = IN_SCALAR_VALUE;
+                    }
+                    break;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * 根对象是否已经完整结束
+     */
+    public boolean isComplete() {
+        return rootClosed;
+    }
+
+    /**
+     * 到目前为止收到的全部文本
+     */
+    public String getText() {
+        return buffer.toString();
+    }
+
+    private void emit(List<Map.Entry<String, JsonNode>> completed, int start, int end) {
+        if (currentKey == null) {
+            return;
+        }
+        try {
+            JsonNode value = MAPPER.readTree(buffer.substring(start, end).trim());
+            if (value != null) {
+                completed.add(new AbstractMap.SimpleImmutableEntry<>(currentKey, value));
+            }
+        } catch (Exception e) {
+            // 字段值不是合法JSON（模型输出异常），跳过该字段，最终结果仍由完整解析兜底
+        }
+        currentKey = null;
+    }
+
+    private String readString(int start, int end) {
+        try {
+            return MAPPER.readValue(buffer.substring(start, end), String.class);
+        } catch (Exception e) {
+            return buffer.substring(start + 1, end - 1);
+        }
+    }
+}
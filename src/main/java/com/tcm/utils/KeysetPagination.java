@@ -0,0 +1,183 @@
+package com.tcm.utils;
+
+import com.tcm.dto.CursorPage;
+import com.tcm.model.BaseEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.Path;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 (created_at, id) 的游标分页（keyset分页）
+ * 以上一页最后一条记录的创建时间和ID作为游标，查询条件为 (created_at, id) < (游标时间, 游标ID)，
+ * 配合 (created_at, id) 索引，翻到任意深度都只扫描一页数据，不使用OFFSET。
+ * 总数只在调用方需要时才查询。
+ */
+public final class KeysetPagination {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final Sort SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    private KeysetPagination() {}
+
+    /**
+     * 查询一页数据
+     * @param repository 实体仓库
+     * @param filter 筛选条件，可以为null
+     * @param cursor 上一页返回的 nextCursor，第一页传null
+     * @param size 每页条数，为空时使用默认值，超过上限时按上限处理
+     * @param withTotal 是否同时查询满足筛选条件的总数
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    public static <T extends BaseEntity> CursorPage<T> fetch(JpaSpecificationExecutor<T> repository, Specification<T> filter,
+                                                             String cursor, Integer size, boolean withTotal) {
+        int pageSize = pageSize(size);
+        Specification<T> spec = pageSpec(filter, cursor);
+
+        // 多取一条用于判断是否还有下一页
+        List<T> rows = new ArrayList<>(repository.findBy(spec, query -> query.sortBy(SORT).limit(pageSize + 1).all()));
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        String nextCursor = hasMore ? encodeCursor(rows.get(rows.size() - 1)) : null;
+        Long total = withTotal ? repository.count(Specification.where(filter)) : null;
+        return new CursorPage<>(rows, nextCursor, hasMore, pageSize, total);
+    }
+
+    /**
+     * 按字段投影查询一页数据，分页规则与 {@link #fetch(JpaSpecificationExecutor, Specification, String, Integer, boolean)} 相同
+     * 游标需要的 id、createdAt 即使未请求也会查询，组装游标后从结果中去掉
+     * @param projection 字段投影，白名单中必须包含 id 和 createdAt
+     * @param fields 经 {@link FieldProjection#resolve(String)} 得到的字段
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    public static <T extends BaseEntity> CursorPage<Map<String, Object>> fetch(EntityManager entityManager, FieldProjection<T> projection,
+                                                                               Specification<T> filter, List<String> fields,
+                                                                               String cursor, Integer size, boolean withTotal) {
+        int pageSize = pageSize(size);
+        Specification<T> spec = pageSpec(filter, cursor);
+
+        List<String> queryFields = new ArrayList<>(fields);
+        for (String keyField : List.of("id", "createdAt")) {
+            if (!queryFields.contains(keyField)) {
+                queryFields.add(keyField);
+            }
+        }
+
+        List<Map<String, Object>> rows = projection.select(entityManager, spec, queryFields, SORT, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            Map<String, Object> last = rows.get(rows.size() - 1);
+            nextCursor = encodeCursor(last.get("createdAt"), last.get("id"));
+        }
+        if (queryFields.size() > fields.size()) {
+            for (Map<String, Object> row : rows) {
+                row.keySet().retainAll(fields);
+            }
+        }
+        Long total = withTotal ? projection.count(entityManager, Specification.where(filter)) : null;
+        return new CursorPage<>(rows, nextCursor, hasMore, pageSize, total);
+    }
+
+    /**
+     * 字段等于给定值；值为null时不加条件。attribute 支持 "visit.id" 形式的关联属性
+     */
+    public static <T> Specification<T> equal(String attribute, Object value) {
+        if (value == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(path(root, attribute), value);
+    }
+
+    /**
+     * 字段包含给定文本（不区分大小写）；值为空时不加条件
+     */
+    public static <T> Specification<T> contains(String attribute, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        String pattern = "%" + value.toLowerCase().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return (root, query, cb) -> cb.like(cb.lower(path(root, attribute)), pattern, '\\');
+    }
+
+    /**
+     * 时间字段在 [from, to) 范围内；任一端为null时该端不限
+     */
+    public static <T> Specification<T> between(String attribute, LocalDateTime from, LocalDateTime to) {
+        if (from == null && to == null) {
+            return null;
+        }
+        return (root, query, cb) -> {
+            Path<LocalDateTime> path = path(root, attribute);
+            if (from == null) {
+                return cb.lessThan(path, to);
+            }
+            if (to == null) {
+                return cb.greaterThanOrEqualTo(path, from);
+            }
+            return cb.and(cb.greaterThanOrEqualTo(path, from), cb.lessThan(path, to));
+        };
+    }
+
+    private static int pageSize(Integer size) {
+        return size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    private static <T> Specification<T> pageSpec(Specification<T> filter, String cursor) {
+        Specification<T> spec = Specification.where(filter);
+        if (cursor != null && !cursor.isEmpty()) {
+            spec = spec.and(after(cursor));
+        }
+        return spec;
+    }
+
+    private static <T> Specification<T> after(String cursor) {
+        LocalDateTime createdAt;
+        long id;
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('_');
+            createdAt = LocalDateTime.parse(decoded.substring(0, separator));
+            id = Long.parseLong(decoded.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor);
+        }
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), createdAt),
+                cb.and(cb.equal(root.get("createdAt"), createdAt), cb.lessThan(root.get("id"), id)));
+    }
+
+    private static String encodeCursor(BaseEntity last) {
+        return encodeCursor(last.getCreatedAt(), last.getId());
+    }
+
+    private static String encodeCursor(Object createdAt, Object id) {
+        String raw = createdAt + "_" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static <Y> Path<Y> path(Path<?> root, String attribute) {
+        Path<?> path = root;
+        for (String part : attribute.split("\\.")) {
+            path = path.get(part);
+        }
+        @SuppressWarnings("unchecked")
+        Path<Y> typed = (Path<Y>) path;
+        return typed;
+    }
+}
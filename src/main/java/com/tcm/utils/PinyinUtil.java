@@ -0,0 +1,97 @@
+package com.tcm.utils;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 汉字转拼音工具类
+ * 多音字（如"白术"的"术"读 zhu/shu）按所有读音组合输出，组合数超过上限时只保留前面的组合；
+ * 字母和数字原样保留（小写），其他字符忽略。
+ */
+public class PinyinUtil {
+
+    // 单个词最多输出的读音组合数
+    private static final int MAX_COMBINATIONS = 16;
+
+    private static final HanyuPinyinOutputFormat FORMAT = new HanyuPinyinOutputFormat();
+
+    static {
+        FORMAT.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        FORMAT.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+        FORMAT.setVCharType(HanyuPinyinVCharType.WITH_V);
+    }
+
+    private PinyinUtil() {}
+
+    /**
+     * 全拼，如 "黄芪" -> [huangqi]
+     */
+    public static Set<String> fullPinyin(String text) {
+        return combine(readings(text), false);
+    }
+
+    /**
+     * 拼音首字母，如 "黄芪" -> [hq]，"白术" -> [bz, bs]
+     */
+    public static Set<String> initials(String text) {
+        return combine(readings(text), true);
+    }
+
+    private static List<List<String>> readings(String text) {
+        List<List<String>> readings = new ArrayList<>();
+        if (text == null) {
+            return readings;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128) {
+                if (Character.isLetterOrDigit(c)) {
+                    readings.add(List.of(String.valueOf(Character.toLowerCase(c))));
+                }
+                continue;
+            }
+            String[] pinyin;
+            try {
+                pinyin = PinyinHelper.toHanyuPinyinStringArray(c, FORMAT);
+            } catch (BadHanyuPinyinOutputFormatCombination e) {
+                throw new IllegalStateException(e);
+            }
+            if (pinyin == null || pinyin.length == 0) {
+                continue;
+            }
+            // 去掉声调后可能重复，如"重"的 zhong4/zhong4
+            readings.add(new ArrayList<>(new LinkedHashSet<>(List.of(pinyin))));
+        }
+        return readings;
+    }
+
+    private static Set<String> combine(List<List<String>> readings, boolean initialsOnly) {
+        Set<String> results = new LinkedHashSet<>();
+        if (readings.isEmpty()) {
+            return results;
+        }
+        results.add("");
+        for (List<String> options : readings) {
+            Set<String> next = new LinkedHashSet<>();
+            for (String prefix : results) {
+                for (String option : options) {
+                    if (next.size() >= MAX_COMBINATIONS) {
+                        break;
+                    }
+                    next.add(prefix + (initialsOnly ? option.substring(0, 1) : option));
+                }
+            }
+            results = next;
+        }
+        return results;
+    }
+}
@@ -0,0 +1,95 @@
+package com.tcm.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 前缀索引（字典树），用于输入联想
+ * 每个值可以用多个键索引（如名称、拼音、拼音首字母）；构建时在每个节点预先保存以该前缀开头的前 maxResults 个值（已排序去重），
+ * 查询只需沿输入字符走到对应节点，耗时只与输入长度有关，与值的总数无关。
+ * 构建后不可修改，可被多个线程同时查询；数据变化时重新构建并替换引用。
+ */
+public class PrefixIndex<T> {
+
+    private static class Node<T> {
+        private final Map<Character, Node<T>> children = new HashMap<>();
+        private Set<T> pending = new LinkedHashSet<>(); // 仅构建时使用
+        private List<T> top = Collections.emptyList();
+    }
+
+    private final Node<T> root;
+
+    private PrefixIndex(Node<T> root) {
+        this.root = root;
+    }
+
+    /**
+     * 查询以 prefix 开头的键对应的值，按构建时的顺序
+     * @param limit 最多返回的个数，不超过构建时的 maxResults
+     */
+    public List<T> search(String prefix, int limit) {
+        if (prefix == null || prefix.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Node<T> node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        return node.top.size() <= limit ? node.top : node.top.subList(0, limit);
+    }
+
+    public static <T> Builder<T> builder(Comparator<? super T> order, int maxResults) {
+        return new Builder<>(order, maxResults);
+    }
+
+    public static class Builder<T> {
+        private final Comparator<? super T> order;
+        private final int maxResults;
+        private final Node<T> root = new Node<>();
+
+        private Builder(Comparator<? super T> order, int maxResults) {
+            this.order = order;
+            this.maxResults = maxResults;
+        }
+
+        /**
+         * 以 key 索引 value；空键忽略，同一值可以用多个键添加
+         */
+        public Builder<T> add(String key, T value) {
+            if (key == null || key.isEmpty()) {
+                return this;
+            }
+            Node<T> node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node<>());
+                node.pending.add(value);
+            }
+            return this;
+        }
+
+        public PrefixIndex<T> build() {
+            List<Node<T>> stack = new ArrayList<>();
+            stack.add(root);
+            while (!stack.isEmpty()) {
+                Node<T> node = stack.remove(stack.size() - 1);
+                if (!node.pending.isEmpty()) {
+                    List<T> values = new ArrayList<>(node.pending);
+                    values.sort(order);
+                    node.top = Collections.unmodifiableList(new ArrayList<>(values.subList(0, Math.min(maxResults, values.size()))));
+                }
+                node.pending = null;
+                stack.addAll(node.children.values());
+            }
+            return new PrefixIndex<>(root);
+        }
+    }
+}
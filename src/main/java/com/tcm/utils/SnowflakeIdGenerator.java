@@ -1,105 +1,194 @@
 package com.tcm.utils;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * 雪花算法ID生成器
  * 用于生成分布式唯一ID
+ *
+ * 时间戳和毫秒内序列号打包在一个AtomicLong中，通过CAS推进，多线程并发生成时不加锁。
+ * 同一毫秒内序列号用尽时直接借用下一毫秒（逻辑时钟），不自旋等待；
+ * 系统时钟小幅回退时继续沿用逻辑时钟，回退超过允许范围时拒绝生成；
+ * 逻辑时钟因借用而领先系统时钟达到允许范围时，短暂等待系统时钟追上。
+ * 机器ID通过租约获得时，租约到期时间记录在逻辑时钟上（见 {@link #setLeaseExpiry}），到期后拒绝生成，直到续期成功。
+ * 整个进程应只使用一个实例（见 {@link #getInstance()}），机器ID和数据中心ID在启动时通过 {@link #configure} 设置。
  */
 public class SnowflakeIdGenerator {
-    
+
     // 起始时间戳 (2023-01-01)
-    private final long twepoch = 1672531200000L;
-    
+    private static final long TWEPOCH = 1672531200000L;
+
     // 机器ID所占位数
-    private final long workerIdBits = 5L;
-    
+    private static final long WORKER_ID_BITS = 5L;
+
     // 数据中心ID所占位数
-    private final long datacenterIdBits = 5L;
-    
+    private static final long DATACENTER_ID_BITS = 5L;
+
     // 支持的最大机器ID
-    private final long maxWorkerId = -1L ^ (-1L << workerIdBits);
-    
+    public static final long MAX_WORKER_ID = -1L ^ (-1L << WORKER_ID_BITS);
+
     // 支持的最大数据中心ID
-    private final long maxDatacenterId = -1L ^ (-1L << datacenterIdBits);
-    
+    public static final long MAX_DATACENTER_ID = -1L ^ (-1L << DATACENTER_ID_BITS);
+
     // 序列号所占位数
-    private final long sequenceBits = 12L;
-    
+    private static final long SEQUENCE_BITS = 12L;
+
     // 机器ID偏移量
-    private final long workerIdShift = sequenceBits;
-    
+    private static final long WORKER_ID_SHIFT = SEQUENCE_BITS;
+
     // 数据中心ID偏移量
-    private final long datacenterIdShift = sequenceBits + workerIdBits;
-    
+    private static final long DATACENTER_ID_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
+
     // 时间戳偏移量
-    private final long timestampLeftShift = sequenceBits + workerIdBits + datacenterIdBits;
-    
+    private static final long TIMESTAMP_LEFT_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS + DATACENTER_ID_BITS;
+
     // 序列号掩码
-    private final long sequenceMask = -1L ^ (-1L << sequenceBits);
-    
-    private long workerId;
-    private long datacenterId;
-    private long sequence = 0L;
-    private long lastTimestamp = -1L;
-    
+    private static final long SEQUENCE_MASK = -1L ^ (-1L << SEQUENCE_BITS);
+
+    // 默认允许逻辑时钟领先系统时钟的最大毫秒数
+    public static final long DEFAULT_MAX_CLOCK_DRIFT_MS = 5000L;
+
+    private static volatile SnowflakeIdGenerator instance;
+
+    /**
+     * 逻辑时钟，重新配置时新旧生成器共用
+     */
+    private static class LogicalClock {
+        // 高位为相对起始时间戳的毫秒数，低12位为毫秒内序列号
+        private final AtomicLong state = new AtomicLong();
+
+        // 观察到的最大系统时间（相对起始时间戳），用于区分时钟回退和序列号借用导致的领先
+        private volatile long lastWallClock;
+
+        // 机器ID租约的到期时间（系统时间毫秒），未使用租约时不限制
+        private volatile long leaseExpiry = Long.MAX_VALUE;
+    }
+
+    private final long workerId;
+    private final long datacenterId;
+    private final long maxClockDriftMs;
+    private final LogicalClock clock;
+
     public SnowflakeIdGenerator(long workerId, long datacenterId) {
-        if (workerId > maxWorkerId || workerId < 0) {
-            throw new IllegalArgumentException(String.format("worker Id can't be greater than %d or less than 0", maxWorkerId));
+        this(workerId, datacenterId, DEFAULT_MAX_CLOCK_DRIFT_MS);
+    }
+
+    public SnowflakeIdGenerator(long workerId, long datacenterId, long maxClockDriftMs) {
+        this(workerId, datacenterId, maxClockDriftMs, new LogicalClock());
+    }
+
+    private SnowflakeIdGenerator(long workerId, long datacenterId, long maxClockDriftMs, LogicalClock clock) {
+        if (workerId > MAX_WORKER_ID || workerId < 0) {
+            throw new IllegalArgumentException(String.format("worker Id can't be greater than %d or less than 0", MAX_WORKER_ID));
         }
-        if (datacenterId > maxDatacenterId || datacenterId < 0) {
-            throw new IllegalArgumentException(String.format("datacenter Id can't be greater than %d or less than 0", maxDatacenterId));
+        if (datacenterId > MAX_DATACENTER_ID || datacenterId < 0) {
+            throw new IllegalArgumentException(String.format("datacenter Id can't be greater than %d or less than 0", MAX_DATACENTER_ID));
         }
         this.workerId = workerId;
         this.datacenterId = datacenterId;
+        this.maxClockDriftMs = maxClockDriftMs;
+        this.clock = clock;
     }
-    
-    public synchronized long nextId() {
-        long timestamp = timeGen();
-        
-        // 如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退过
-        if (timestamp < lastTimestamp) {
-            throw new RuntimeException(
-                String.format("Clock moved backwards.  Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
-        }
-        
-        // 如果是同一时间生成的，则进行毫秒内序列
-        if (lastTimestamp == timestamp) {
-            sequence = (sequence + 1) & sequenceMask;
-            // 毫秒内序列溢出
-            if (sequence == 0) {
-                // 阻塞到下一个毫秒,获得新的时间戳
-                timestamp = tilNextMillis(lastTimestamp);
+
+    /**
+     * 获取进程内共享的生成器
+     * 未调用 {@link #configure} 时使用机器ID 1、数据中心ID 1
+     */
+    public static SnowflakeIdGenerator getInstance() {
+        SnowflakeIdGenerator current = instance;
+        if (current == null) {
+            synchronized (SnowflakeIdGenerator.class) {
+                current = instance;
+                if (current == null) {
+                    current = new SnowflakeIdGenerator(1, 1);
+                    instance = current;
+                }
             }
-        } else {
-            // 时间戳改变，毫秒内序列重置
-            sequence = 0L;
         }
-        
-        // 上次生成ID的时间截
-        lastTimestamp = timestamp;
-        
-        // 移位并通过或运算拼到一起组成64位的ID
-        return ((timestamp - twepoch) << timestampLeftShift) 
-            | (datacenterId << datacenterIdShift) 
-            | (workerId << workerIdShift) 
-            | sequence;
+        return current;
+    }
+
+    /**
+     * 设置进程内共享生成器的机器ID和数据中心ID
+     * 新生成器与旧生成器共用同一个逻辑时钟：切换前已取得旧实例的线程仍可能用旧实例生成ID，
+     * 新旧实例在同一个状态上CAS推进，时间戳和序列号的组合不会重复，重新配置为相同ID时也不会生成重复ID
+     */
+    public static synchronized SnowflakeIdGenerator configure(long workerId, long datacenterId, long maxClockDriftMs) {
+        SnowflakeIdGenerator previous = instance;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(workerId, datacenterId, maxClockDriftMs,
+                previous != null ? previous.clock : new LogicalClock());
+        instance = generator;
+        return generator;
+    }
+
+    /**
+     * 设置机器ID租约的到期时间，到期后 {@link #nextId()} 抛出异常，直到再次设置更晚的到期时间
+     * 到期时间记录在共用的逻辑时钟上，对重新配置前后的实例同时生效
+     */
+    public void setLeaseExpiry(long expiresAtMillis) {
+        clock.leaseExpiry = expiresAtMillis;
     }
-    
-    protected long tilNextMillis(long lastTimestamp) {
-        long timestamp = timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = timeGen();
+
+    public long nextId() {
+        AtomicLong state = clock.state;
+        while (true) {
+            long current = state.get();
+            long lastTimestamp = current >>> SEQUENCE_BITS;
+            long now = timeGen();
+            if (now >= clock.leaseExpiry) {
+                throw new IllegalStateException(String.format(
+                        "Worker id lease expired.  Refusing to generate id for worker %d", workerId));
+            }
+            long timestamp = now - TWEPOCH;
+
+            long next;
+            if (timestamp > lastTimestamp) {
+                // 时间戳前进，毫秒内序列重置
+                next = timestamp << SEQUENCE_BITS;
+            } else {
+                // 同一毫秒，或系统时钟回退：沿用逻辑时钟
+                long rollback = clock.lastWallClock - timestamp;
+                if (rollback > maxClockDriftMs) {
+                    throw new IllegalStateException(String.format(
+                            "Clock moved backwards.  Refusing to generate id for %d milliseconds", rollback));
+                }
+                if (lastTimestamp - timestamp >= maxClockDriftMs) {
+                    // 持续超过每毫秒4096个的速率，逻辑时钟已领先太多，等待系统时钟追上
+                    Thread.onSpinWait();
+                    continue;
+                }
+                // 序列号用尽时进位到下一毫秒
+                next = current + 1;
+            }
+
+            if (state.compareAndSet(current, next)) {
+                if (timestamp > clock.lastWallClock) {
+                    clock.lastWallClock = timestamp;
+                }
+                return ((next >>> SEQUENCE_BITS) << TIMESTAMP_LEFT_SHIFT)
+                    | (datacenterId << DATACENTER_ID_SHIFT)
+                    | (workerId << WORKER_ID_SHIFT)
+                    | (next & SEQUENCE_MASK);
+            }
         }
-        return timestamp;
     }
-    
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    public long getDatacenterId() {
+        return datacenterId;
+    }
+
     protected long timeGen() {
         return System.currentTimeMillis();
     }
-    
+
     public static void main(String[] args) {
-        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(1, 1);
+        SnowflakeIdGenerator idGenerator = getInstance();
         for (int i = 0; i < 10; i++) {
             System.out.println(idGenerator.nextId());
         }
     }
-}
\ No newline at end of file
+}
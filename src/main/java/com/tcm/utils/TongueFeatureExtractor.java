@@ -0,0 +1,176 @@
+package com.tcm.utils;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * 舌象图像特征提取
+ * 从512*512模型输入图中提取颜色直方图、舌色、舌苔和纹理统计，共19个float，
+ * 以小端字节序编码为76字节保存到数据库，分析时转换为一行文字写入提示词，
+ * 模型无需接收原始图片即可获得图像信息。
+ *
+ * 特征顺序：
+ * 0-7 色相直方图（8档，各档像素占比）；
+ * 8-11 饱和度均值、饱和度标准差、亮度均值、亮度标准差；
+ * 12-14 舌色占比：红、淡白、紫暗；
+ * 15-16 舌苔占比：白苔、黄苔；
+ * 17-18 纹理：平均梯度强度、边缘像素占比。
+ */
+public class TongueFeatureExtractor {
+
+    public static final int FEATURE_LENGTH = 19;
+
+    private static final int HUE_BINS = 8;
+
+    // 梯度超过该值（0-1亮度差）的像素计为边缘，用于衡量裂纹、芒刺等纹理
+    private static final float EDGE_THRESHOLD = 0.08f;
+
+    /**
+     * 提取特征，跳过裁剪补白区域和过暗的背景像素
+     */
+    public static float[] extract(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        float[] features = new float[FEATURE_LENGTH];
+        float[] brightness = new float[width * height];
+        boolean[] valid = new boolean[width * height];
+        float[] hsb = new float[3];
+
+        int count = 0;
+        double sumS = 0, sumS2 = 0, sumV = 0, sumV2 = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = image.getRGB(x, y);
+                Color.RGBtoHSB((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, hsb);
+                float hue = hsb[0] * 360f;
+                float s = hsb[1];
+                float v = hsb[2];
+                brightness[y * width + x] = v;
+                if (v < 0.15f || (s < 0.03f && v > 0.97f)) {
+                    continue;
+                }
+                valid[y * width + x] = true;
+                count++;
+
+                features[Math.min(HUE_BINS - 1, (int) (hsb[0] * HUE_BINS))]++;
+                sumS += s;
+                sumS2 += s * s;
+                sumV += v;
+                sumV2 += v * v;
+
+                boolean redHue = hue < 20f || hue >= 340f;
+                if (redHue && s >= 0.35f) {
+                    features[12]++;
+                } else if (redHue && v >= 0.6f) {
+                    features[13]++;
+                } else if (hue >= 270f && hue < 340f) {
+                    features[14]++;
+                }
+                if (s < 0.2f && v >= 0.65f) {
+                    features[15]++;
+                } else if (hue >= 30f && hue < 65f && s >= 0.2f && v >= 0.5f) {
+                    features[16]++;
+                }
+            }
+        }
+        if (count == 0) {
+            return features;
+        }
+
+        for (int i = 0; i < HUE_BINS; i++) {
+            features[i] /= count;
+        }
+        double meanS = sumS / count;
+        double meanV = sumV / count;
+        features[8] = (float) meanS;
+        features[9] = (float) Math.sqrt(Math.max(0, sumS2 / count - meanS * meanS));
+        features[10] = (float) meanV;
+        features[11] = (float) Math.sqrt(Math.max(0, sumV2 / count - meanV * meanV));
+        for (int i = 12; i <= 16; i++) {
+            features[i] /= count;
+        }
+
+        // 亮度的水平、垂直差分近似梯度
+        double gradientSum = 0;
+        int edges = 0;
+        int gradientCount = 0;
+        for (int y = 0; y < height - 1; y++) {
+            for (int x = 0; x < width - 1; x++) {
+                int index = y * width + x;
+                // 只统计舌体内部，忽略与补白、背景交界处的梯度
+                if (!valid[index] || !valid[index + 1] || !valid[index + width]) {
+                    continue;
+                }
+                float gx = brightness[index + 1] - brightness[index];
+                float gy = brightness[index + width] - brightness[index];
+                float gradient = (float) Math.sqrt(gx * gx + gy * gy);
+                gradientSum += gradient;
+                if (gradient > EDGE_THRESHOLD) {
+                    edges++;
+                }
+                gradientCount++;
+            }
+        }
+        if (gradientCount > 0) {
+            features[17] = (float) (gradientSum / gradientCount);
+            features[18] = (float) edges / gradientCount;
+        }
+        return features;
+    }
+
+    public static byte[] encode(float[] features) {
+        ByteBuffer buffer = ByteBuffer.allocate(features.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (float feature : features) {
+            buffer.putFloat(feature);
+        }
+        return buffer.array();
+    }
+
+    public static float[] decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        float[] features = new float[bytes.length / Float.BYTES];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = buffer.getFloat();
+        }
+        return features;
+    }
+
+    /**
+     * 转换为写入提示词的一行文字，如 "舌色 红42%/淡白10%/紫暗3%; 舌苔 白18%/黄6%; ..."
+     */
+    public static String describe(float[] features) {
+        if (features.length < FEATURE_LENGTH) {
+            throw new IllegalArgumentException("特征长度不正确: " + features.length);
+        }
+        StringBuilder text = new StringBuilder();
+        text.append("舌色 红").append(percent(features[12]))
+                .append("/淡白").append(percent(features[13]))
+                .append("/紫暗").append(percent(features[14]));
+        text.append("; 舌苔 白").append(percent(features[15]))
+                .append("/黄").append(percent(features[16]));
+        text.append("; 饱和度 ").append(decimal(features[8])).append("±").append(decimal(features[9]));
+        text.append("; 亮度 ").append(decimal(features[10])).append("±").append(decimal(features[11]));
+        text.append("; 纹理 梯度").append(decimal(features[17]))
+                .append("/边缘").append(percent(features[18]));
+        text.append("; 色相直方图 [");
+        for (int i = 0; i < HUE_BINS; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(Math.round(features[i] * 100));
+        }
+        text.append(']');
+        return text.toString();
+    }
+
+    private static String percent(float value) {
+        return Math.round(value * 100) + "%";
+    }
+
+    private static String decimal(float value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
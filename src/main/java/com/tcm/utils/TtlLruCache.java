@@ -0,0 +1,70 @@
+package com.tcm.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 带过期时间的LRU缓存
+ * 超过容量时淘汰最久未访问的条目，超过存活时间的条目在读取时视为不存在。
+ * 所有操作在实例锁内完成，适合读写都很轻量的进程内缓存。
+ */
+public class TtlLruCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> map;
+
+    /**
+     * @param maxEntries 最大条目数
+     * @param ttlMillis 存活时间（毫秒），小于等于0表示不过期
+     */
+    public TtlLruCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > TtlLruCache.this.maxEntries;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (ttlMillis > 0 && System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+            map.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        map.put(key, new Entry<>(value, System.currentTimeMillis()));
+    }
+
+    public synchronized V remove(K key) {
+        Entry<V> entry = map.remove(key);
+        return entry != null ? entry.value : null;
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long createdAt;
+
+        Entry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.tcm.utils;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -12,6 +14,7 @@ import java.net.URL;
 
 /**
  * 微信小程序工具类
+ * 每次调用微信接口占用一个并发许可，避免突发请求触发微信接口频率限制
  */
 @Component
 public class WechatUtil {
@@ -30,6 +33,10 @@ public class WechatUtil {
 
     private static final String SEND_MESSAGE_URL = "https://api.weixin.qq.com/cgi-bin/message/subscribe/send";
 
+    @Autowired
+    @Qualifier("wechatLimiter")
+    private ConcurrencyLimiter wechatLimiter;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
@@ -39,20 +46,22 @@ public class WechatUtil {
         String urlStr = String.format("%s?appid=%s&secret=%s&js_code=%s&grant_type=authorization_code",
                 CODE_TO_SESSION_URL, appid, secret, code);
 
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-
-        BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        String inputLine;
-        StringBuilder content = new StringBuilder();
-        while ((inputLine = in.readLine()) != null) {
-            content.append(inputLine);
+        try (ConcurrencyLimiter.Permit permit = wechatLimiter.acquire()) {
+            URL url = new URL(urlStr);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setRequestMethod("GET");
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+            String inputLine;
+            StringBuilder content = new StringBuilder();
+            while ((inputLine = in.readLine()) != null) {
+                content.append(inputLine);
+            }
+            in.close();
+            conn.disconnect();
+
+            return objectMapper.readTree(content.toString());
         }
-        in.close();
-        conn.disconnect();
-
-        return objectMapper.readTree(content.toString());
     }
 
     /**
@@ -62,20 +71,22 @@ public class WechatUtil {
         String urlStr = String.format("%s?grant_type=client_credential&appid=%s&secret=%s",
                 ACCESS_TOKEN_URL, appid, secret);
 
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-
-        BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        String inputLine;
-        StringBuilder content = new StringBuilder();
-        while ((inputLine = in.readLine()) != null) {
-            content.append(inputLine);
+        try (ConcurrencyLimiter.Permit permit = wechatLimiter.acquire()) {
+            URL url = new URL(urlStr);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setRequestMethod("GET");
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+            String inputLine;
+            StringBuilder content = new StringBuilder();
+            while ((inputLine = in.readLine()) != null) {
+                content.append(inputLine);
+            }
+            in.close();
+            conn.disconnect();
+
+            return objectMapper.readTree(content.toString());
         }
-        in.close();
-        conn.disconnect();
-
-        return objectMapper.readTree(content.toString());
     }
 
     /**
@@ -84,21 +95,23 @@ public class WechatUtil {
     public byte[] getQrCode(String scene, String page, String accessToken) throws Exception {
         String urlStr = String.format("%s?access_token=%s", GET_QRCODE_URL, accessToken);
 
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setDoOutput(true);
+        try (ConcurrencyLimiter.Permit permit = wechatLimiter.acquire()) {
+            URL url = new URL(urlStr);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", "application/json");
+            conn.setDoOutput(true);
 
-        String body = String.format("{\"scene\":\"%s\",\"page\":\"%s\",\"need_qr_code\":true}", scene, page);
+            String body = String.format("{\"scene\":\"%s\",\"page\":\"%s\",\"need_qr_code\":true}", scene, page);
 
-        conn.getOutputStream().write(body.getBytes("UTF-8"));
+            conn.getOutputStream().write(body.getBytes("UTF-8"));
 
-        int responseCode = conn.getResponseCode();
-        if (responseCode == HttpURLConnection.HTTP_OK) {
-            return conn.getInputStream().readAllBytes();
-        } else {
-            throw new RuntimeException("请求失败: " + responseCode);
+            int responseCode = conn.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                return conn.getInputStream().readAllBytes();
+            } else {
+                throw new RuntimeException("请求失败: " + responseCode);
+            }
         }
     }
 
@@ -108,26 +121,28 @@ public class WechatUtil {
     public JsonNode sendMessage(String touser, String templateId, Object data, String accessToken) throws Exception {
         String urlStr = String.format("%s?access_token=%s", SEND_MESSAGE_URL, accessToken);
 
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setDoOutput(true);
+        try (ConcurrencyLimiter.Permit permit = wechatLimiter.acquire()) {
+            URL url = new URL(urlStr);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", "application/json");
+            conn.setDoOutput(true);
 
-        String body = String.format("{\"touser\":\"%s\",\"template_id\":\"%s\",\"data\":%s}",
-                touser, templateId, objectMapper.writeValueAsString(data));
+            String body = String.format("{\"touser\":\"%s\",\"template_id\":\"%s\",\"data\":%s}",
+                    touser, templateId, objectMapper.writeValueAsString(data));
 
-        conn.getOutputStream().write(body.getBytes("UTF-8"));
+            conn.getOutputStream().write(body.getBytes("UTF-8"));
 
-        BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        String inputLine;
-        StringBuilder content = new StringBuilder();
-        while ((inputLine = in.readLine()) != null) {
-            content.append(inputLine);
-        }
-        in.close();
-        conn.disconnect();
+            BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+            String inputLine;
+            StringBuilder content = new StringBuilder();
+            while ((inputLine = in.readLine()) != null) {
+                content.append(inputLine);
+            }
+            in.close();
+            conn.disconnect();
 
-        return objectMapper.readTree(content.toString());
+            return objectMapper.readTree(content.toString());
+        }
     }
 }
\ No newline at end of file
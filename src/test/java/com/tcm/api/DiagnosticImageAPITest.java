@@ -0,0 +1,100 @@
+package com.tcm.api;
+
+import com.tcm.dto.DiagnosticImageContent;
+import com.tcm.service.DiagnosticImageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class DiagnosticImageAPITest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private DiagnosticImageService diagnosticImageService;
+
+    @InjectMocks
+    private DiagnosticImageAPI diagnosticImageAPI;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(diagnosticImageAPI).build();
+
+        Path file = tempDir.resolve("abc_thumb.jpg");
+        Files.writeString(file, "0123456789");
+        when(diagnosticImageService.getDiagnosticImageContent(1L, "thumb"))
+                .thenReturn(new DiagnosticImageContent(file, MediaType.IMAGE_JPEG, "abc-thumb", true));
+    }
+
+    @Test
+    void testServesContentWithCachingHeaders() throws Exception {
+        mockMvc.perform(get("/api/diagnostic-images/1/content").param("variant", "thumb"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_JPEG))
+                .andExpect(content().string("0123456789"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"abc-thumb\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("private")))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"));
+    }
+
+    @Test
+    void testRangeAndConditionalRequests() throws Exception {
+        mockMvc.perform(get("/api/diagnostic-images/1/content").param("variant", "thumb")
+                        .header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(content().string("2345"));
+
+        mockMvc.perform(get("/api/diagnostic-images/1/content").param("variant", "thumb")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"abc-thumb\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void testFullDownloadIsHandedToSendfileWhenSupported() throws Exception {
+        mockMvc.perform(get("/api/diagnostic-images/1/content").param("variant", "thumb")
+                        .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10L))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", tempDir.resolve("abc_thumb.jpg").toAbsolutePath().toString()))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.end", 10L))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void testErrors() throws Exception {
+        when(diagnosticImageService.getDiagnosticImageContent(1L, "huge"))
+                .thenThrow(new IllegalArgumentException("不支持的图片变体: huge"));
+        when(diagnosticImageService.getDiagnosticImageContent(1L, "512"))
+                .thenThrow(new IllegalStateException("图片变体尚未生成: 512"));
+
+        mockMvc.perform(get("/api/diagnostic-images/1/content").param("variant", "huge"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid variant"));
+        mockMvc.perform(get("/api/diagnostic-images/1/content").param("variant", "512"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/diagnostic-images/2/content"))
+                .andExpect(status().isNotFound());
+    }
+}
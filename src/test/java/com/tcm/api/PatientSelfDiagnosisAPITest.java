@@ -0,0 +1,122 @@
+package com.tcm.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tcm.client.ModelServerTransport;
+import com.tcm.model.DiagnosticImage;
+import com.tcm.repository.DiagnosticImageRepository;
+import com.tcm.service.AIAnalysisService;
+import com.tcm.service.AIDiagnosisCache;
+import com.tcm.service.DataIntegrationService;
+import com.tcm.service.ModelBatchDispatcher;
+import com.tcm.service.PatientSelfDiagnosisService;
+import com.tcm.utils.ConcurrencyLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class PatientSelfDiagnosisAPITest {
+
+    @Mock
+    private PatientSelfDiagnosisService patientSelfDiagnosisService;
+
+    @Mock
+    private DataIntegrationService dataIntegrationService;
+
+    @Mock
+    private DiagnosticImageRepository diagnosticImageRepository;
+
+    @Mock
+    private AIDiagnosisCache aiDiagnosisCache;
+
+    @InjectMocks
+    private PatientSelfDiagnosisAPI patientSelfDiagnosisAPI;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 模型服务只有一个并发许可，等待50毫秒超时
+    private final ConcurrencyLimiter modelServerLimiter = new ConcurrencyLimiter("模型服务", 1, 50);
+
+    private ModelBatchDispatcher modelBatchDispatcher;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        ModelServerTransport transport = new ModelServerTransport();
+        ReflectionTestUtils.setField(transport, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(transport, "modelServerLimiter", modelServerLimiter);
+        ReflectionTestUtils.setField(transport, "meterRegistry", meterRegistry);
+
+        modelBatchDispatcher = new ModelBatchDispatcher();
+        ReflectionTestUtils.setField(modelBatchDispatcher, "modelServerTransport", transport);
+        ReflectionTestUtils.setField(modelBatchDispatcher, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(modelBatchDispatcher, "environment", new MockEnvironment());
+        ReflectionTestUtils.setField(modelBatchDispatcher, "maxBatchSize", 8);
+        ReflectionTestUtils.setField(modelBatchDispatcher, "windowMs", 20L);
+        ReflectionTestUtils.setField(modelBatchDispatcher, "maxInFlight", 8);
+        ReflectionTestUtils.setField(modelBatchDispatcher, "queueCapacity", 100);
+        modelBatchDispatcher.start();
+
+        AIAnalysisService aiAnalysisService = new AIAnalysisService();
+        ReflectionTestUtils.setField(aiAnalysisService, "dataIntegrationService", dataIntegrationService);
+        ReflectionTestUtils.setField(aiAnalysisService, "diagnosticImageRepository", diagnosticImageRepository);
+        ReflectionTestUtils.setField(aiAnalysisService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(aiAnalysisService, "modelBatchDispatcher", modelBatchDispatcher);
+        ReflectionTestUtils.setField(aiAnalysisService, "aiDiagnosisCache", aiDiagnosisCache);
+        ReflectionTestUtils.setField(aiAnalysisService, "modelServerTransport", transport);
+        ReflectionTestUtils.setField(aiAnalysisService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(aiAnalysisService, "mockResponseEnabled", false);
+        ReflectionTestUtils.setField(aiAnalysisService, "modelResultTimeoutMs", 5000L);
+
+        Map<String, Object> integratedData = new HashMap<>();
+        integratedData.put("临床表现", new HashMap<>(Map.of("症状体征", "头痛")));
+        when(dataIntegrationService.integrateDataByVisitId(1L)).thenReturn(integratedData);
+        when(aiDiagnosisCache.buildKey(anyMap(), anyString())).thenReturn("key");
+
+        DiagnosticImage image = new DiagnosticImage();
+        image.setId(10L);
+        when(patientSelfDiagnosisService.uploadTongueImage(eq(1L), any(), any())).thenReturn(image);
+        when(patientSelfDiagnosisService.triggerAIAnalysis(1L))
+                .thenAnswer(invocation -> aiAnalysisService.analyzeAndProcess(1L));
+
+        mockMvc = MockMvcBuilders.standaloneSetup(patientSelfDiagnosisAPI).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        modelBatchDispatcher.stop();
+    }
+
+    @Test
+    void testModelLimiterTimeoutReturns503() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "tongue.png", "image/png", new byte[]{1, 2, 3});
+
+        // 模型服务唯一的许可被占用，分析请求等待许可超时
+        try (ConcurrencyLimiter.Permit busy = modelServerLimiter.acquire()) {
+            mockMvc.perform(multipart("/api/self-diagnosis/upload-tongue-image/1").file(file))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.error").value("系统繁忙"))
+                    .andExpect(jsonPath("$.message").value("模型服务并发已达上限(1)，请稍后重试"));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.tcm.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.tcm.service.AIAnalysisService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI响应解析基准测试
+ * parseAIResponse 解析完整的 chat.completion 响应（Jackson解析两次），
+ * parseJsonResponse/splitJsonPairs 是逐字符扫描的手写解析；
+ * short 为模拟响应的诊断内容，long 为证型推理、临床表现较长的诊断内容
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Djmh.args="AIResponseParsingBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AIResponseParsingBenchmark {
+
+    @Param({"short", "long"})
+    private String content;
+
+    private AIAnalysisService service;
+    private MethodHandle parseAIResponse;
+    private MethodHandle parseJsonResponse;
+    private MethodHandle splitJsonPairs;
+
+    // 完整的 chat.completion 响应
+    private String rawResponse;
+    // 助手消息内容，即诊断JSON
+    private String assistantContent;
+    // 去掉首尾花括号后的诊断JSON，splitJsonPairs 的输入
+    private String pairsContent;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        service = new AIAnalysisService();
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        parseAIResponse = BenchmarkSupport.privateMethod(AIAnalysisService.class, "parseAIResponse", String.class);
+        parseJsonResponse = BenchmarkSupport.privateMethod(AIAnalysisService.class, "parseJsonResponse", String.class);
+        splitJsonPairs = BenchmarkSupport.privateMethod(AIAnalysisService.class, "splitJsonPairs", String.class);
+
+        String mockResponse = (String) ReflectionTestUtils.getField(AIAnalysisService.class, "MOCK_VLLM_RESPONSE");
+        ObjectNode response = (ObjectNode) objectMapper.readTree(mockResponse);
+        ObjectNode message = (ObjectNode) response.path("choices").path(0).path("message");
+        ObjectNode diagnosis = (ObjectNode) objectMapper.readTree(message.path("content").asText());
+        if ("long".equals(content)) {
+            diagnosis.put("证型推理", repeat(diagnosis.path("证型推理").asText(), 40));
+            diagnosis.put("临床表现", repeat(diagnosis.path("临床表现").asText(), 40));
+        }
+        assistantContent = objectMapper.writeValueAsString(diagnosis);
+        message.put("content", assistantContent);
+        rawResponse = objectMapper.writeValueAsString(response);
+        pairsContent = assistantContent.substring(1, assistantContent.length() - 1);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> parseAIResponse() throws Throwable {
+        return (Map<String, Object>) parseAIResponse.invoke(service, rawResponse);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> parseJsonResponse() throws Throwable {
+        return (Map<String, Object>) parseJsonResponse.invoke(service, assistantContent);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<String> splitJsonPairs() throws Throwable {
+        return (List<String>) splitJsonPairs.invoke(service, pairsContent);
+    }
+
+    private String repeat(String text, int times) {
+        return String.join("；", Collections.nCopies(times, text));
+    }
+}
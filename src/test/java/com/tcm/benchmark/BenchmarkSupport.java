@@ -0,0 +1,24 @@
+package com.tcm.benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+
+/**
+ * 基准测试辅助方法
+ * 被测的解析、组装方法多为私有方法，通过MethodHandle调用，开销远小于每次反射调用
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static MethodHandle privateMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = type.getDeclaredMethod(name, parameterTypes);
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup()).unreflect(method);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("找不到方法: " + type.getSimpleName() + "." + name, e);
+        }
+    }
+}
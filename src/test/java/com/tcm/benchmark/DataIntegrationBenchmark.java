@@ -0,0 +1,96 @@
+package com.tcm.benchmark;
+
+import com.tcm.model.Doctor;
+import com.tcm.model.Patient;
+import com.tcm.model.Prescription;
+import com.tcm.model.PrescriptionDetail;
+import com.tcm.model.Visit;
+import com.tcm.service.DataIntegrationService;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整合数据组装基准测试
+ * 测量由已加载的就诊、患者、医生、处方明细组装规范化Map的开销（不含数据库查询），
+ * 每个就诊的处方数和每个处方的药材数可调
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Djmh.args="DataIntegrationBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataIntegrationBenchmark {
+
+    @Param({"1", "3"})
+    private int prescriptionCount;
+
+    @Param({"8", "20"})
+    private int herbsPerPrescription;
+
+    private DataIntegrationService service;
+    private MethodHandle buildIntegratedData;
+    private Visit visit;
+    private List<Prescription> prescriptions;
+
+    @Setup
+    public void setUp() {
+        service = new DataIntegrationService();
+        buildIntegratedData = BenchmarkSupport.privateMethod(DataIntegrationService.class, "buildIntegratedData",
+                Visit.class, List.class);
+
+        Patient patient = new Patient();
+        patient.setId(1L);
+        patient.setName("测试患者");
+        patient.setGender(1);
+        patient.setAge(45);
+
+        Doctor doctor = new Doctor();
+        doctor.setId(2L);
+        doctor.setName("测试医生");
+
+        visit = new Visit();
+        visit.setId(3L);
+        visit.setPatient(patient);
+        visit.setDoctor(doctor);
+        visit.setChiefComplaint("恶寒发热三天，头痛，鼻塞流清涕");
+        visit.setTongueDiagnosis("舌淡红，苔薄白");
+        visit.setPulseDiagnosis("脉浮紧");
+        visit.setInitialVisitClinicalManifestation("恶寒重，发热轻，无汗，肢节酸疼");
+        visit.setFollowUpClinicalManifestation("发热已退，仍有咳嗽");
+        visit.setWesternDiagnosis("上呼吸道感染");
+
+        prescriptions = new ArrayList<>();
+        for (int p = 0; p < prescriptionCount; p++) {
+            Prescription prescription = new Prescription();
+            prescription.setId(100L + p);
+            prescription.setVisit(visit);
+            prescription.setPrescriptionName("荆防败毒散加减");
+            List<PrescriptionDetail> details = new ArrayList<>();
+            for (int h = 0; h < herbsPerPrescription; h++) {
+                PrescriptionDetail detail = new PrescriptionDetail();
+                detail.setId(1000L + p * 100 + h);
+                detail.setPrescription(prescription);
+                detail.setHerbName("药材" + h);
+                detail.setDosage(BigDecimal.TEN);
+                detail.setUnit("g");
+                details.add(detail);
+            }
+            prescription.setPrescriptionDetails(details);
+            prescriptions.add(prescription);
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> buildIntegratedData() throws Throwable {
+        return (Map<String, Object>) buildIntegratedData.invoke(service, visit, prescriptions);
+    }
+}
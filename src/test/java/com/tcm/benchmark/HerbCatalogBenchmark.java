@@ -0,0 +1,79 @@
+package com.tcm.benchmark;
+
+import com.tcm.dto.HerbSuggestion;
+import com.tcm.model.MedicineInventory;
+import com.tcm.repository.MedicineInventoryRepository;
+import com.tcm.service.HerbCatalog;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 药品联想基准测试
+ * 测量内存药品目录按名称、拼音首字母、全拼前缀查询的耗时，以及目录变更后重建索引的耗时
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Djmh.args="HerbCatalogBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HerbCatalogBenchmark {
+
+    private static final String[] HERBS = {"黄芪", "黄芩", "黄连", "白术", "白芍", "当归", "川芎", "熟地黄", "党参", "茯苓",
+            "甘草", "柴胡", "半夏", "陈皮", "桂枝", "麻黄", "杏仁", "石膏", "知母", "生地黄"};
+
+    // 药品数，同名药品按不同规格重复
+    @Param({"2000", "20000"})
+    private int medicineCount;
+
+    private HerbCatalog catalog;
+
+    @Setup
+    public void setUp() {
+        List<MedicineInventory> medicines = new ArrayList<>();
+        for (int i = 0; i < medicineCount; i++) {
+            MedicineInventory medicine = new MedicineInventory();
+            medicine.setId((long) i + 1);
+            medicine.setMedicineCode("M" + i);
+            medicine.setMedicineName(HERBS[i % HERBS.length] + (i / HERBS.length));
+            medicine.setStockQuantity(i % 7);
+            medicine.setStatus(1);
+            medicines.add(medicine);
+        }
+        MedicineInventoryRepository repository = Mockito.mock(MedicineInventoryRepository.class);
+        Mockito.when(repository.findAll()).thenReturn(medicines);
+        catalog = new HerbCatalog();
+        ReflectionTestUtils.setField(catalog, "medicineInventoryRepository", repository);
+        ReflectionTestUtils.setField(catalog, "enabled", true);
+        ReflectionTestUtils.setField(catalog, "maxResults", 20);
+        catalog.reload();
+    }
+
+    @Benchmark
+    public List<HerbSuggestion> suggestByName() {
+        return catalog.suggest("黄芪1", 20);
+    }
+
+    @Benchmark
+    public List<HerbSuggestion> suggestByInitials() {
+        return catalog.suggest("hq", 20);
+    }
+
+    @Benchmark
+    public List<HerbSuggestion> suggestByFullPinyin() {
+        return catalog.suggest("huangq", 20);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void reload() {
+        catalog.reload();
+    }
+}
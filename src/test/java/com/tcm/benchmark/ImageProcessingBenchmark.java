@@ -0,0 +1,91 @@
+package com.tcm.benchmark;
+
+import com.tcm.utils.ImageProcessingUtil;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 图片处理基准测试
+ * processImage 从磁盘上的JPEG生成512*512模型输入图并编码为PNG，cropCenterToSize 只测内存中的裁剪补白；
+ * 输入尺寸覆盖手机常见的几种分辨率
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Djmh.args="ImageProcessingBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageProcessingBenchmark {
+
+    // 输入图片尺寸，宽x高
+    @Param({"480x640", "1080x1440", "3024x4032"})
+    private String size;
+
+    private Path directory;
+    private Path source;
+    private Path target;
+    private BufferedImage decoded;
+    private MethodHandle cropCenterToSize;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        decoded = createImage(width, height);
+
+        directory = Files.createTempDirectory("image-benchmark");
+        source = directory.resolve("source.jpg");
+        target = directory.resolve("target.png");
+        ImageIO.write(decoded, "jpg", source.toFile());
+
+        cropCenterToSize = BenchmarkSupport.privateMethod(ImageProcessingUtil.class, "cropCenterToSize",
+                BufferedImage.class, int.class, int.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long processImage() throws IOException {
+        ImageProcessingUtil.processImage(source, target);
+        return Files.size(target);
+    }
+
+    @Benchmark
+    public BufferedImage cropCenterToSize() throws Throwable {
+        return (BufferedImage) cropCenterToSize.invoke(decoded, ImageProcessingUtil.TARGET_SIZE, ImageProcessingUtil.TARGET_SIZE);
+    }
+
+    /**
+     * 生成带噪点的渐变图，JPEG编码后的体积接近真实照片
+     */
+    private BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(200, 90, 90), width, height, new Color(240, 200, 180)));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        Random random = new Random(42);
+        for (int i = 0; i < width * height / 20; i++) {
+            image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt(0xFFFFFF));
+        }
+        return image;
+    }
+}
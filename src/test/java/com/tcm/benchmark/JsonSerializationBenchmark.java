@@ -0,0 +1,81 @@
+package com.tcm.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tcm.model.Doctor;
+import com.tcm.model.Patient;
+import com.tcm.model.Visit;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实体JSON序列化基准测试
+ * ObjectMapper的配置与 application.properties 中的Jackson配置一致（JavaTimeModule、fail-on-empty-beans=false），
+ * 对应接口直接返回 Visit、Patient 实体时的序列化开销
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Djmh.args="JsonSerializationBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Visit visit;
+    private Patient patient;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().failOnEmptyBeans(false).build();
+
+        patient = new Patient();
+        patient.setId(1858000000000000001L);
+        patient.setName("测试患者");
+        patient.setGender(1);
+        patient.setAge(45);
+        patient.setBirthDate(LocalDate.of(1980, 5, 1));
+        patient.setIdCard("110101198005010011");
+        patient.setPhone("13800000000");
+        patient.setAddress("北京市东城区");
+        patient.setOccupation("教师");
+        patient.setCreatedAt(LocalDateTime.of(2024, 1, 1, 9, 0));
+        patient.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 9, 0));
+
+        Doctor doctor = new Doctor();
+        doctor.setId(1858000000000000002L);
+        doctor.setName("测试医生");
+
+        visit = new Visit();
+        visit.setId(1858000000000000003L);
+        visit.setPatient(patient);
+        visit.setDoctor(doctor);
+        visit.setVisitType(0);
+        visit.setMedicalRecordNumber("MR20240101001");
+        visit.setChiefComplaint("恶寒发热三天，头痛，鼻塞流清涕");
+        visit.setSymptoms("恶寒重，发热轻，无汗，头痛，肢节酸疼");
+        visit.setTongueDiagnosis("舌淡红，苔薄白");
+        visit.setPulseDiagnosis("脉浮紧");
+        visit.setTcmDiagnosis("感冒");
+        visit.setWesternDiagnosis("上呼吸道感染");
+        visit.setPatternDifferentiation("风寒束表证");
+        visit.setTreatmentPlan("疏风散寒，宣肺解表");
+        visit.setVisitDate(LocalDateTime.of(2024, 1, 1, 9, 30));
+        visit.setCreatedAt(LocalDateTime.of(2024, 1, 1, 9, 30));
+        visit.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 9, 30));
+    }
+
+    @Benchmark
+    public byte[] serializeVisit() throws Exception {
+        return objectMapper.writeValueAsBytes(visit);
+    }
+
+    @Benchmark
+    public byte[] serializePatient() throws Exception {
+        return objectMapper.writeValueAsBytes(patient);
+    }
+}
@@ -0,0 +1,199 @@
+package com.tcm.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.tcm.TcmApplication;
+import com.tcm.model.Patient;
+import com.tcm.model.Visit;
+import com.tcm.repository.PatientRepository;
+import com.tcm.repository.VisitRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并发自诊提交的端到端负载测试：平台线程与虚拟线程对比
+ * 启动完整应用，经真实的Tomcat和上传接口走完 舌象上传 -> PatientSelfDiagnosisService -> AIAnalysisService
+ * -> 批量调度器 -> ModelServerTransport 的同步自诊流程；模型服务替换为进程内的HTTP桩，固定延迟后返回聊天补全响应，
+ * 本身不限制并发。线程池、批量调度和下游并发上限全部使用 application.properties 中的生产配置，
+ * 只关闭诊断结果缓存，保证每个请求都调用模型服务。
+ * 一次操作同时提交 submissions 个上传请求（每个请求对应不同的就诊记录和图片），结果为全部响应返回的耗时，
+ * 返回值为非200响应（如503系统繁忙）的个数。
+ * 数据库使用 application.properties 中的PostgreSQL，可通过环境变量 SPRING_DATASOURCE_URL、SPRING_DATASOURCE_USERNAME、
+ * SPRING_DATASOURCE_PASSWORD 指向压测库（每轮测试会写入就诊记录和图片记录）。virtual 模式需要JDK 21及以上运行，JDK 17上与 platform 相同。
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Djmh.args="SelfDiagnosisLoadBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SelfDiagnosisLoadBenchmark {
+
+    @Param({"platform", "virtual"})
+    private String threading;
+
+    // 同时提交的自诊请求数
+    @Param({"1000"})
+    private int submissions;
+
+    // 模型服务桩的响应延迟
+    @Param({"100"})
+    private long modelMillis;
+
+    private static final String BOUNDARY = "----tcm-benchmark-boundary";
+
+    private static final String MODEL_RESPONSE = "{\"id\":\"chatcmpl-benchmark\",\"object\":\"chat.completion\",\"model\":\"qwen3-8b-union\","
+            + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":"
+            + "\"{\\\"中医病名\\\":\\\"感冒\\\",\\\"证型推理\\\":\\\"风寒束表证\\\",\\\"治则治法\\\":\\\"疏风散寒\\\","
+            + "\\\"最终结果\\\":{\\\"处方名称\\\":\\\"荆防败毒散\\\",\\\"处方组成\\\":\\\"荆芥10g，防风10g\\\"}}\"},"
+            + "\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":100,\"completion_tokens\":50,\"total_tokens\":150}}";
+
+    private HttpServer modelServer;
+    private ExecutorService modelServerExecutor;
+    private ConfigurableApplicationContext context;
+    private Path storageRoot;
+    private HttpClient client;
+    private List<HttpRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        modelServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        modelServerExecutor = Executors.newCachedThreadPool();
+        modelServer.setExecutor(modelServerExecutor);
+        modelServer.createContext("/v1/chat/completions", this::respondChatCompletion);
+        modelServer.start();
+
+        storageRoot = Files.createTempDirectory("tcm-self-diagnosis-benchmark");
+        context = new SpringApplicationBuilder(TcmApplication.class).run(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + "virtual".equals(threading),
+                "--ai.model.mock-response.enabled=false",
+                "--ai.model.service.url=http://127.0.0.1:" + modelServer.getAddress().getPort(),
+                "--ai.cache.enabled=false",
+                "--image.storage.root=" + storageRoot.toString().replace('\\', '/') + "/",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.com.tcm=WARN",
+                "--logging.level.org.springframework.web=WARN");
+        int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+
+        Patient patient = new Patient();
+        patient.setName("压测患者");
+        patient = context.getBean(PatientRepository.class).save(patient);
+        List<Visit> visits = new ArrayList<>(submissions);
+        for (int i = 0; i < submissions; i++) {
+            Visit visit = new Visit();
+            visit.setPatient(patient);
+            visit.setVisitType(0);
+            visit.setChiefComplaint("恶寒发热，头痛 #" + i);
+            visits.add(visit);
+        }
+        visits = context.getBean(VisitRepository.class).saveAll(visits);
+
+        // 每个请求上传内容不同的图片，避免全部命中同一个内容块
+        Random random = new Random(42);
+        requests = new ArrayList<>(submissions);
+        for (Visit visit : visits) {
+            requests.add(HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port
+                            + "/api/self-diagnosis/upload-tongue-image/" + visit.getId()))
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(multipartBody(tongueImage(random))))
+                    .build());
+        }
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        if (modelServer != null) {
+            modelServer.stop(0);
+            modelServerExecutor.shutdownNow();
+        }
+        try {
+            FileSystemUtils.deleteRecursively(storageRoot);
+        } catch (IOException e) {
+            // 临时目录清理失败不影响结果
+        }
+    }
+
+    @Benchmark
+    public int submitConcurrently() {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(requests.size());
+        for (HttpRequest request : requests) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        int failed = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() != 200) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 模型服务桩：读完请求体，等待 modelMillis 后返回固定的聊天补全响应
+     */
+    private void respondChatCompletion(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        try {
+            Thread.sleep(modelMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = MODEL_RESPONSE.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] tongueImage(Random random) throws IOException {
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, 0xC06070 ^ random.nextInt(0x101010));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] multipartBody(byte[] image) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"tongue.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(image);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+}
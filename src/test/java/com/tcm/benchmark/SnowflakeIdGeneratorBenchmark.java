@@ -0,0 +1,45 @@
+package com.tcm.benchmark;
+
+import com.tcm.utils.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 雪花ID生成吞吐量基准测试
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Djmh.args="SnowflakeIdGeneratorBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnowflakeIdGeneratorBenchmark {
+
+    private SnowflakeIdGenerator generator;
+
+    @Setup
+    public void setUp() {
+        generator = new SnowflakeIdGenerator(1, 1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long nextIdSingleThread() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long nextIdEightThreads() {
+        return generator.nextId();
+    }
+
+    // 线程数等于CPU核数，竞争最激烈的情况
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long nextIdAllCores() {
+        return generator.nextId();
+    }
+}
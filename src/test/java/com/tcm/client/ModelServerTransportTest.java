@@ -0,0 +1,274 @@
+package com.tcm.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.tcm.config.ModelHttpClientConfig;
+import com.tcm.utils.ConcurrencyLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModelServerTransportTest {
+
+    private HttpServer server;
+
+    private ModelServerTransport transport;
+
+    private ConcurrencyLimiter limiter;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 每个测试设置的模型服务响应
+    private final AtomicReference<HttpHandler> handler = new AtomicReference<>();
+
+    // 模型服务收到的请求体
+    private final AtomicReference<JsonNode> receivedBody = new AtomicReference<>();
+
+    // 用于让慢响应在测试结束时退出
+    private final CountDownLatch testDone = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            receivedBody.set(objectMapper.readTree(exchange.getRequestBody()));
+            handler.get().handle(exchange);
+        });
+        server.start();
+
+        ModelHttpClientConfig clientConfig = new ModelHttpClientConfig();
+        ReflectionTestUtils.setField(clientConfig, "connectTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(clientConfig, "clientThreads", 2);
+        HttpClient httpClient = clientConfig.modelHttpClient();
+
+        limiter = new ConcurrencyLimiter("模型服务", 2, 1000);
+        meterRegistry = new SimpleMeterRegistry();
+        transport = new ModelServerTransport();
+        ReflectionTestUtils.setField(transport, "modelHttpClient", httpClient);
+        ReflectionTestUtils.setField(transport, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(transport, "modelServerLimiter", limiter);
+        ReflectionTestUtils.setField(transport, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(transport, "aiModelServiceUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(transport, "aiApiKey", "test-key");
+        ReflectionTestUtils.setField(transport, "readTimeoutMs", 500L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        testDone.countDown();
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, Object> request() {
+        return Map.of("model", "qwen3-8b-union", "messages", List.of(Map.of("role", "user", "content", "头痛")));
+    }
+
+    private long requestCount(String mode, String outcome) {
+        return meterRegistry.get("tcm.model.requests").tag("mode", mode).tag("outcome", outcome).timer().count();
+    }
+
+    private double tokens(String type) {
+        return meterRegistry.get("tcm.model.tokens").tag("type", type).summary().totalAmount();
+    }
+
+    @Test
+    void testChatCompletionsReturnsResponseAndRecordsUsage() throws Exception {
+        handler.set(exchange -> respond(exchange, 200, "application/json",
+                "{\"choices\":[{\"message\":{\"content\":\"感冒\"}}],\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":30}}"));
+
+        JsonNode result = transport.chatCompletions(request());
+
+        assertEquals("感冒", result.path("choices").path(0).path("message").path("content").asText());
+        assertEquals("qwen3-8b-union", receivedBody.get().path("model").asText());
+        assertFalse(receivedBody.get().has("stream"));
+        assertEquals(1, requestCount("blocking", "success"));
+        assertEquals(12, tokens("prompt"));
+        assertEquals(30, tokens("completion"));
+        assertEquals(0, limiter.getActive());
+    }
+
+    @Test
+    void testNon2xxStatusIsMappedToIOException() {
+        handler.set(exchange -> respond(exchange, 503, "application/json", "{\"error\":\"overloaded\"}"));
+
+        IOException e = assertThrows(IOException.class, () -> transport.chatCompletions(request()));
+
+        assertEquals("模型服务返回状态码: 503", e.getMessage());
+        assertEquals(1, requestCount("blocking", "error"));
+        assertEquals(0, limiter.getActive());
+    }
+
+    @Test
+    void testNon2xxStatusOnStreamIsMappedToIOException() {
+        handler.set(exchange -> respond(exchange, 400, "application/json", "{\"error\":\"bad request\"}"));
+        List<JsonNode> chunks = new ArrayList<>();
+
+        IOException e = assertThrows(IOException.class, () -> transport.streamChatCompletions(request(), chunks::add));
+
+        assertEquals("模型服务返回状态码: 400", e.getMessage());
+        assertTrue(chunks.isEmpty());
+        assertEquals(1, requestCount("stream", "error"));
+        assertEquals(0, limiter.getActive());
+    }
+
+    @Test
+    void testSlowResponseTimesOutAndReleasesPermit() {
+        handler.set(exchange -> {
+            try {
+                // 超过 readTimeoutMs 仍不返回响应头
+                testDone.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+
+        long start = System.nanoTime();
+        assertThrows(HttpTimeoutException.class, () -> transport.chatCompletions(request()));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(4), "应在读取超时后返回");
+        assertEquals(1, requestCount("blocking", "error"));
+        assertEquals(0, limiter.getActive());
+    }
+
+    @Test
+    void testStreamParsesChunksUntilDoneSentinel() throws Exception {
+        String sse = ": keep-alive\n\n"
+                + "data: {\"choices\":[{\"delta\":{\"content\":\"中医\"}}]}\n\n"
+                + "event: message\n"
+                + "data:{\"choices\":[{\"delta\":{\"content\":\"病名\"}}]}\n\n"
+                + "data: {\"choices\":[],\"usage\":{\"prompt_tokens\":20,\"completion_tokens\":2}}\n\n"
+                + "data: [DONE]\n\n"
+                // [DONE] 之后的内容不再处理
+                + "data: {\"choices\":[{\"delta\":{\"content\":\"多余\"}}]}\n\n";
+        handler.set(exchange -> respond(exchange, 200, "text/event-stream", sse));
+        List<JsonNode> chunks = new ArrayList<>();
+
+        transport.streamChatCompletions(request(), chunks::add);
+
+        assertEquals(3, chunks.size());
+        assertEquals("中医", chunks.get(0).path("choices").path(0).path("delta").path("content").asText());
+        assertEquals("病名", chunks.get(1).path("choices").path(0).path("delta").path("content").asText());
+        assertTrue(receivedBody.get().path("stream").asBoolean());
+        assertTrue(receivedBody.get().path("stream_options").path("include_usage").asBoolean());
+        assertEquals(1, requestCount("stream", "success"));
+        assertEquals(20, tokens("prompt"));
+        assertEquals(2, tokens("completion"));
+        assertEquals(0, limiter.getActive());
+    }
+
+    @Test
+    void testStreamEndingWithoutDoneSentinel() throws Exception {
+        handler.set(exchange -> respond(exchange, 200, "text/event-stream",
+                "data: {\"choices\":[{\"delta\":{\"content\":\"感冒\"}}]}\n\n"));
+        List<JsonNode> chunks = new ArrayList<>();
+
+        transport.streamChatCompletions(request(), chunks::add);
+
+        assertEquals(1, chunks.size());
+        assertEquals(1, requestCount("stream", "success"));
+    }
+
+    @Test
+    void testMalformedChunkFailsStream() {
+        handler.set(exchange -> respond(exchange, 200, "text/event-stream",
+                "data: {\"choices\":[{\"delta\":{\"content\":\"感\"}}]}\n\n"
+                        + "data: {\"choices\":[{\"delta\":\n\n"
+                        + "data: [DONE]\n\n"));
+        List<JsonNode> chunks = new ArrayList<>();
+
+        assertThrows(IOException.class, () -> transport.streamChatCompletions(request(), chunks::add));
+
+        // 已收到的数据块已经回调，格式错误的数据块之后停止
+        assertEquals(1, chunks.size());
+        assertEquals(1, requestCount("stream", "error"));
+        assertEquals(0, limiter.getActive());
+    }
+
+    @Test
+    void testBatchProcessHoldsLimiterPermit() throws Exception {
+        AtomicReference<Integer> activeDuringRequest = new AtomicReference<>();
+        server.createContext("/batch/process", exchange -> {
+            receivedBody.set(objectMapper.readTree(exchange.getRequestBody()));
+            activeDuringRequest.set(limiter.getActive());
+            respond(exchange, 200, "application/json", "{\"results\":[{\"id\":\"a\"},{\"id\":\"b\"}]}");
+        });
+
+        JsonNode response = transport.batchProcess(Map.of("requests", List.of(request(), request())));
+
+        assertEquals(2, response.path("results").size());
+        assertEquals(2, receivedBody.get().path("requests").size());
+        assertEquals(1, activeDuringRequest.get());
+        assertEquals(0, limiter.getActive());
+    }
+
+    @Test
+    void testBatchProcessRecordsMetrics() throws Exception {
+        server.createContext("/batch/process", exchange -> respond(exchange, 200, "application/json",
+                "{\"results\":["
+                        + "{\"choices\":[{\"message\":{\"content\":\"感冒\"}}],\"usage\":{\"prompt_tokens\":10,\"completion_tokens\":3}},"
+                        + "{\"choices\":[{\"message\":{\"content\":\"咳嗽\"}}],\"usage\":{\"prompt_tokens\":15,\"completion_tokens\":4}}]}"));
+
+        transport.batchProcess(Map.of("requests", List.of(request(), request())));
+
+        assertEquals(1, requestCount("batch", "success"));
+        assertEquals(25, tokens("prompt"));
+        assertEquals(7, tokens("completion"));
+    }
+
+    @Test
+    void testBatchProcessErrorRecordsFailedRequest() {
+        server.createContext("/batch/process", exchange -> respond(exchange, 500, "application/json", "{}"));
+
+        assertThrows(IOException.class, () -> transport.batchProcess(Map.of("requests", List.of(request()))));
+
+        assertEquals(1, requestCount("batch", "error"));
+        assertEquals(0, limiter.getActive());
+    }
+
+    @Test
+    void testHttpClientConfiguration() {
+        ModelHttpClientConfig clientConfig = new ModelHttpClientConfig();
+        ReflectionTestUtils.setField(clientConfig, "connectTimeoutMs", 1500L);
+        ReflectionTestUtils.setField(clientConfig, "clientThreads", 1);
+
+        HttpClient httpClient = clientConfig.modelHttpClient();
+
+        assertEquals(HttpClient.Version.HTTP_2, httpClient.version());
+        assertEquals(Duration.ofMillis(1500), httpClient.connectTimeout().orElse(null));
+        assertEquals(HttpClient.Redirect.NEVER, httpClient.followRedirects());
+        assertTrue(httpClient.executor().isPresent());
+    }
+}
@@ -0,0 +1,44 @@
+package com.tcm.config;
+
+import com.tcm.utils.ConcurrencyLimitedDataSource;
+import com.tcm.utils.ConcurrencyLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class DownstreamLimitConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(DownstreamLimitConfig.class)
+            .withBean("dataSource", DataSource.class, () -> new DriverManagerDataSource("jdbc:h2:mem:downstream"));
+
+    @Test
+    void testDataSourceIsNotWrappedWithPlatformThreads() {
+        contextRunner.run(context -> {
+            assertFalse(context.getBean(DataSource.class) instanceof ConcurrencyLimitedDataSource);
+            assertFalse(context.containsBean("databaseLimiter"));
+            assertTrue(context.containsBean("modelServerLimiter"));
+        });
+    }
+
+    @Test
+    void testDataSourceIsWrappedWithVirtualThreads() {
+        assumeTrue(Runtime.version().feature() >= 21, "虚拟线程需要JDK 21及以上");
+        contextRunner
+                .withPropertyValues("spring.threads.virtual.enabled=true",
+                        "spring.datasource.hikari.maximum-pool-size=20",
+                        "spring.datasource.hikari.connection-timeout=12000")
+                .run(context -> {
+                    DataSource dataSource = context.getBean(DataSource.class);
+                    assertTrue(dataSource instanceof ConcurrencyLimitedDataSource);
+                    ConcurrencyLimiter limiter = ((ConcurrencyLimitedDataSource) dataSource).getLimiter();
+                    assertEquals(20, limiter.getMaxConcurrency());
+                    assertEquals(12000L, limiter.getAcquireTimeoutMs());
+                });
+    }
+}
@@ -0,0 +1,85 @@
+package com.tcm.config;
+
+import com.tcm.utils.SnowflakeIdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+public class IdGeneratorConfigTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private IdGeneratorConfig config;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        config = new IdGeneratorConfig();
+        ReflectionTestUtils.setField(config, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(config, "workerId", 1L);
+        ReflectionTestUtils.setField(config, "datacenterId", 1L);
+        ReflectionTestUtils.setField(config, "maxClockDriftMs", SnowflakeIdGenerator.DEFAULT_MAX_CLOCK_DRIFT_MS);
+        ReflectionTestUtils.setField(config, "leaseEnabled", true);
+        // 有效期1秒、余量900毫秒：上次成功续期100毫秒后停止发号
+        ReflectionTestUtils.setField(config, "leaseTtlSeconds", 1L);
+        ReflectionTestUtils.setField(config, "leaseSafetyMarginMs", 900L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SnowflakeIdGenerator.configure(1, 1, SnowflakeIdGenerator.DEFAULT_MAX_CLOCK_DRIFT_MS)
+                .setLeaseExpiry(Long.MAX_VALUE);
+    }
+
+    @Test
+    void testIdsStopWhenLeaseCannotBeRenewedAndResumeAfterRenewal() throws Exception {
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(0, 0, 1);
+        config.init();
+        SnowflakeIdGenerator generator = SnowflakeIdGenerator.getInstance();
+        assertEquals(2, generator.getWorkerId());
+        generator.nextId();
+
+        // 数据库不可用：续期失败后仍保留机器ID，但超过有效期后拒绝发号
+        when(jdbcTemplate.update(startsWith("UPDATE"), any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+        config.renewLease();
+        Thread.sleep(150);
+        config.renewLease();
+        assertThrows(IllegalStateException.class, generator::nextId);
+        assertThrows(IllegalStateException.class, () -> SnowflakeIdGenerator.getInstance().nextId());
+
+        // 数据库恢复后续期成功，继续使用原机器ID发号
+        reset(jdbcTemplate);
+        when(jdbcTemplate.update(startsWith("UPDATE"), any(Object[].class))).thenReturn(1);
+        config.renewLease();
+        assertEquals(2, (SnowflakeIdGenerator.getInstance().nextId() >>> 12) & 31);
+        assertDoesNotThrow(generator::nextId);
+    }
+
+    @Test
+    void testLostLeaseIsReacquiredWithFreshExpiry() throws Exception {
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+        config.init();
+        Thread.sleep(150);
+        assertThrows(IllegalStateException.class, () -> SnowflakeIdGenerator.getInstance().nextId());
+
+        // 租约已被其他节点占用：重新租用后恢复发号
+        when(jdbcTemplate.update(startsWith("UPDATE"), any(Object[].class))).thenReturn(0);
+        config.renewLease();
+        assertDoesNotThrow(() -> SnowflakeIdGenerator.getInstance().nextId());
+    }
+
+    @Test
+    void testSafetyMarginMustBeShorterThanTtl() {
+        ReflectionTestUtils.setField(config, "leaseSafetyMarginMs", 1000L);
+        assertThrows(IllegalStateException.class, config::init);
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
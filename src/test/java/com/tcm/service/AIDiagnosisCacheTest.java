@@ -0,0 +1,93 @@
+package com.tcm.service;
+
+import com.tcm.repository.AIDiagnosisCacheRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AIDiagnosisCacheTest {
+
+    @Mock
+    private AIDiagnosisCacheRepository aiDiagnosisCacheRepository;
+
+    @InjectMocks
+    private AIDiagnosisCache aiDiagnosisCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(aiDiagnosisCache, "enabled", true);
+        ReflectionTestUtils.setField(aiDiagnosisCache, "maxEntries", 100);
+        ReflectionTestUtils.setField(aiDiagnosisCache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(aiDiagnosisCache, "persistentEnabled", false);
+        aiDiagnosisCache.init();
+    }
+
+    private Map<String, Object> visitData(String name, String age, String symptoms) {
+        Map<String, Object> patientInfo = new HashMap<>();
+        patientInfo.put("姓名", name);
+        patientInfo.put("性别", "男");
+        patientInfo.put("年龄", age);
+
+        Map<String, Object> clinicalInfo = new HashMap<>();
+        clinicalInfo.put("症状体征", symptoms);
+        clinicalInfo.put("舌象", "舌淡红，苔薄白");
+        clinicalInfo.put("脉象", "浮紧");
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("患者信息", patientInfo);
+        data.put("临床表现", clinicalInfo);
+        return data;
+    }
+
+    @Test
+    void testKeyIgnoresNameAndNormalizesInput() {
+        String key1 = aiDiagnosisCache.buildKey(visitData("张三", "35岁", "恶寒发热，头痛"), "v1");
+        String key2 = aiDiagnosisCache.buildKey(visitData("李四", "38", "  恶寒发热,  头痛 "), "v1");
+
+        assertEquals(64, key1.length());
+        assertEquals(key1, key2);
+    }
+
+    @Test
+    void testKeyChangesWithClinicalInputOrPrompt() {
+        String base = aiDiagnosisCache.buildKey(visitData("张三", "35岁", "恶寒发热，头痛"), "v1");
+
+        assertNotEquals(base, aiDiagnosisCache.buildKey(visitData("张三", "45岁", "恶寒发热，头痛"), "v1"));
+        assertNotEquals(base, aiDiagnosisCache.buildKey(visitData("张三", "35岁", "恶寒发热，咳嗽"), "v1"));
+        assertNotEquals(base, aiDiagnosisCache.buildKey(visitData("张三", "35岁", "恶寒发热，头痛"), "v2"));
+    }
+
+    @Test
+    void testTongueImageFeaturesOnlyAffectKeyWhenPresent() {
+        Map<String, Object> withoutFeatures = visitData("张三", "35岁", "恶寒发热，头痛");
+        Map<String, Object> withFeatures = visitData("张三", "35岁", "恶寒发热，头痛");
+        withFeatures.put(AIAnalysisService.TONGUE_IMAGE_FEATURES_KEY, "舌色 红60%/淡白10%/紫暗0%");
+        Map<String, Object> otherFeatures = visitData("张三", "35岁", "恶寒发热，头痛");
+        otherFeatures.put(AIAnalysisService.TONGUE_IMAGE_FEATURES_KEY, "舌色 红20%/淡白50%/紫暗0%");
+
+        String base = aiDiagnosisCache.buildKey(withoutFeatures, "v1");
+        assertNotEquals(base, aiDiagnosisCache.buildKey(withFeatures, "v1"));
+        assertNotEquals(aiDiagnosisCache.buildKey(withFeatures, "v1"), aiDiagnosisCache.buildKey(otherFeatures, "v1"));
+    }
+
+    @Test
+    void testGetAndPutCountHitsAndMisses() {
+        assertNull(aiDiagnosisCache.get("k"));
+        aiDiagnosisCache.put("k", "response");
+        assertEquals("response", aiDiagnosisCache.get("k"));
+
+        assertEquals(1, aiDiagnosisCache.getMemoryHits());
+        assertEquals(1, aiDiagnosisCache.getMisses());
+        verifyNoInteractions(aiDiagnosisCacheRepository);
+    }
+}
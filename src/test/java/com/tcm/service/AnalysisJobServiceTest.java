@@ -0,0 +1,144 @@
+package com.tcm.service;
+
+import com.tcm.model.AnalysisJob;
+import com.tcm.repository.AnalysisJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class AnalysisJobServiceTest {
+
+    @Mock
+    private AnalysisJobRepository analysisJobRepository;
+
+    @Mock
+    private AIAnalysisService aiAnalysisService;
+
+    @Mock
+    private ThreadPoolTaskExecutor analysisExecutor;
+
+    @InjectMocks
+    private AnalysisJobService analysisJobService;
+
+    // 每次保存时的状态快照（同一个实体对象会被多次修改后保存）
+    private final List<String> savedStatuses = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(analysisJobService, "nodeId", "node-a");
+        when(analysisJobRepository.save(any(AnalysisJob.class))).thenAnswer(invocation -> {
+            AnalysisJob job = invocation.getArgument(0);
+            if (job.getId() == null) {
+                job.setId(100L);
+            }
+            savedStatuses.add(job.getStatus());
+            return job;
+        });
+    }
+
+    @Test
+    void testSubmitQueuesJobAndRunsAnalysis() {
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+        AnalysisJob job = analysisJobService.submit(5L);
+
+        assertEquals(100L, job.getId());
+        assertEquals(5L, job.getVisitId());
+        assertEquals("node-a", job.getNodeId());
+        assertEquals(List.of(AnalysisJob.STATUS_QUEUED), savedStatuses);
+        verify(analysisExecutor).execute(task.capture());
+        verify(aiAnalysisService, never()).analyzeAndProcess(anyLong());
+
+        // 线程池执行任务：running -> done
+        when(analysisJobRepository.findById(100L)).thenReturn(Optional.of(job));
+        task.getValue().run();
+
+        verify(aiAnalysisService).analyzeAndProcess(5L);
+        assertEquals(List.of(AnalysisJob.STATUS_QUEUED, AnalysisJob.STATUS_RUNNING, AnalysisJob.STATUS_DONE), savedStatuses);
+        assertNotNull(job.getStartedAt());
+        assertNotNull(job.getFinishedAt());
+    }
+
+    @Test
+    void testFailedAnalysisRecordsRootCause() {
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        AnalysisJob job = analysisJobService.submit(5L);
+        verify(analysisExecutor).execute(task.capture());
+        when(analysisJobRepository.findById(100L)).thenReturn(Optional.of(job));
+        doThrow(new RuntimeException("AI分析处理失败", new IllegalStateException("模型服务不可用")))
+                .when(aiAnalysisService).analyzeAndProcess(5L);
+
+        task.getValue().run();
+
+        assertEquals(AnalysisJob.STATUS_FAILED, job.getStatus());
+        assertEquals("模型服务不可用", job.getErrorMessage());
+        assertNotNull(job.getFinishedAt());
+    }
+
+    @Test
+    void testQueueFullRejectsAndMarksJobFailed() {
+        doThrow(new TaskRejectedException("queue full")).when(analysisExecutor).execute(any(Runnable.class));
+
+        RejectedExecutionException e = assertThrows(RejectedExecutionException.class, () -> analysisJobService.submit(5L));
+
+        assertEquals("AI分析队列已满，请稍后重试", e.getMessage());
+        assertEquals(List.of(AnalysisJob.STATUS_QUEUED, AnalysisJob.STATUS_FAILED), savedStatuses);
+        verify(aiAnalysisService, never()).analyzeAndProcess(anyLong());
+    }
+
+    @Test
+    void testGetJob() {
+        AnalysisJob job = new AnalysisJob();
+        job.setId(42L);
+        job.setStatus(AnalysisJob.STATUS_RUNNING);
+        when(analysisJobRepository.findById(42L)).thenReturn(Optional.of(job));
+        when(analysisJobRepository.findById(43L)).thenReturn(Optional.empty());
+
+        assertSame(job, analysisJobService.getJob(42L).orElse(null));
+        assertFalse(analysisJobService.getJob(43L).isPresent());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFailInterruptedJobsOnlyTouchesThisNode() {
+        ArgumentCaptor<Collection<String>> statuses = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<LocalDateTime> before = ArgumentCaptor.forClass(LocalDateTime.class);
+        when(analysisJobRepository.updateStatusByNodeWhereStatusIn(anyString(), anyCollection(), any(), anyString(), anyString()))
+                .thenReturn(2);
+
+        analysisJobService.failInterruptedJobs();
+
+        verify(analysisJobRepository).updateStatusByNodeWhereStatusIn(eq("node-a"), statuses.capture(), before.capture(),
+                eq(AnalysisJob.STATUS_FAILED), anyString());
+        assertTrue(statuses.getValue().contains(AnalysisJob.STATUS_QUEUED));
+        assertTrue(statuses.getValue().contains(AnalysisJob.STATUS_RUNNING));
+        // 只清理本次启动之前创建的任务，启动后新提交的任务不受影响
+        assertFalse(before.getValue().isAfter(LocalDateTime.now()));
+    }
+
+    @Test
+    void testNodeIdDefaultsToHostName() {
+        ReflectionTestUtils.setField(analysisJobService, "nodeId", "");
+        analysisJobService.init();
+        assertNotNull(analysisJobService.getNodeId());
+        assertFalse(analysisJobService.getNodeId().isBlank());
+    }
+}
@@ -0,0 +1,161 @@
+package com.tcm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tcm.dto.ImportResult;
+import com.tcm.model.Patient;
+import com.tcm.model.Prescription;
+import com.tcm.model.PrescriptionDetail;
+import com.tcm.model.Visit;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BulkImportServiceTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BulkImportService bulkImportService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        bulkImportService = new BulkImportService();
+        ReflectionTestUtils.setField(bulkImportService, "entityManager", entityManager);
+        ReflectionTestUtils.setField(bulkImportService, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(bulkImportService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(bulkImportService, "chunkSize", 2);
+        ReflectionTestUtils.setField(bulkImportService, "maxErrors", 10);
+        bulkImportService.init();
+    }
+
+    private InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testCsvRowsAreWrittenInChunks() throws Exception {
+        String csv = "name,gender,age,birthDate\n"
+                + "张三,1,45,1980-05-01\n"
+                + "李四,0,,\n"
+                + "王五,1,abc,\n"
+                + "赵六,1,30,\n";
+
+        ImportResult result = bulkImportService.importRows("patients", "csv", body(csv));
+
+        assertEquals(4, result.getTotalRows());
+        assertEquals(3, result.getImported());
+        assertEquals(1, result.getFailed());
+        // 字段类型错误的行在写库前就被剔除
+        assertEquals(4, result.getErrors().get(0).getLine());
+        ArgumentCaptor<Patient> captor = ArgumentCaptor.forClass(Patient.class);
+        verify(entityManager, times(3)).persist(captor.capture());
+        assertEquals(45, captor.getAllValues().get(0).getAge());
+        // 3行分两个批次，各一个事务
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void testFailedChunkIsRetriedRowByRow() throws Exception {
+        Patient patient = new Patient();
+        when(entityManager.getReference(Patient.class, 1L)).thenReturn(patient);
+        doThrow(new PersistenceException("违反外键约束"))
+                .when(entityManager).persist(argThat(entity -> "bad".equals(((Visit) entity).getChiefComplaint())));
+        String ndjson = "{\"patientId\":\"1\",\"chiefComplaint\":\"bad\"}\n"
+                + "{\"patientId\":\"1\",\"chiefComplaint\":\"恶寒发热\",\"visitDate\":\"2020-01-01T09:00:00\"}\n"
+                + "\n"
+                + "{not json}\n";
+
+        ImportResult result = bulkImportService.importRows("visits", "ndjson", body(ndjson));
+
+        assertEquals(3, result.getTotalRows());
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertEquals(1, result.getErrors().get(0).getLine());
+        assertEquals("违反外键约束", result.getErrors().get(0).getMessage());
+        assertEquals(4, result.getErrors().get(1).getLine());
+        // 整批写入失败回滚后两行各自一个事务重试，出错的行再回滚一次
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+        ArgumentCaptor<Visit> captor = ArgumentCaptor.forClass(Visit.class);
+        verify(entityManager, atLeastOnce()).persist(captor.capture());
+        assertSame(patient, captor.getAllValues().get(captor.getAllValues().size() - 1).getPatient());
+    }
+
+    @Test
+    void testSourceTimestampsSurvivePersist() throws Exception {
+        String ndjson = "{\"id\":\"1001\",\"name\":\"张三\",\"createdAt\":\"2015-03-02T08:30:00\",\"updatedAt\":\"2019-11-20T16:00:00\"}\n"
+                + "{\"name\":\"李四\"}\n";
+
+        ImportResult result = bulkImportService.importRows("patients", "ndjson", body(ndjson));
+
+        assertEquals(2, result.getImported());
+        ArgumentCaptor<Patient> captor = ArgumentCaptor.forClass(Patient.class);
+        verify(entityManager, times(2)).persist(captor.capture());
+        // 模拟写库时的 @PrePersist 回调
+        Patient imported = captor.getAllValues().get(0);
+        ReflectionTestUtils.invokeMethod(imported, "onCreate");
+        assertEquals(1001L, imported.getId());
+        assertEquals(LocalDateTime.of(2015, 3, 2, 8, 30), imported.getCreatedAt());
+        assertEquals(LocalDateTime.of(2019, 11, 20, 16, 0), imported.getUpdatedAt());
+        // 源数据没有时间的行仍取当前时间
+        Patient withoutTimestamps = captor.getAllValues().get(1);
+        ReflectionTestUtils.invokeMethod(withoutTimestamps, "onCreate");
+        assertNotNull(withoutTimestamps.getCreatedAt());
+        assertEquals(withoutTimestamps.getCreatedAt(), withoutTimestamps.getUpdatedAt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testNestedPrescriptionDetailsAreLinked() throws Exception {
+        String ndjson = "{\"prescriptionName\":\"桂枝汤\",\"prescriptionDetails\":[{\"herbName\":\"桂枝\"},{\"herbName\":\"白芍\"}]}\n";
+
+        ImportResult result = bulkImportService.importRows("prescriptions", "ndjson", body(ndjson));
+
+        assertEquals(1, result.getImported());
+        ArgumentCaptor<Prescription> captor = ArgumentCaptor.forClass(Prescription.class);
+        verify(entityManager).persist(captor.capture());
+        List<PrescriptionDetail> details = captor.getValue().getPrescriptionDetails();
+        assertEquals(2, details.size());
+        assertSame(captor.getValue(), details.get(1).getPrescription());
+    }
+
+    @Test
+    void testUnknownColumnAndEntityAreRejected() throws Exception {
+        ImportResult result = bulkImportService.importRows("patients", "csv", body("name,nmae\n张三,x\n"));
+        assertEquals(1, result.getFailed());
+        verify(entityManager, never()).persist(any());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> bulkImportService.importRows("doctors", "csv", body("name\n")));
+        assertThrows(IllegalArgumentException.class,
+                () -> bulkImportService.importRows("patients", "xml", body("")));
+        verify(entityManager, never()).getReference(eq(Patient.class), any());
+    }
+}
@@ -0,0 +1,100 @@
+package com.tcm.service;
+
+import com.tcm.model.Doctor;
+import com.tcm.model.Patient;
+import com.tcm.model.Prescription;
+import com.tcm.model.PrescriptionDetail;
+import com.tcm.model.Visit;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 整合数据的SQL条数回归测试
+ * 使用H2内存数据库执行真实的仓库查询，由Hibernate统计实际准备的SQL语句数，处方和明细再多也只能有两条
+ */
+@DataJpaTest
+@Import({DataIntegrationService.class, VisitSnapshotCache.class})
+@TestPropertySource(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+})
+public class DataIntegrationServiceJpaTest {
+
+    @Autowired
+    private DataIntegrationService dataIntegrationService;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testIntegrateIssuesTwoStatementsRegardlessOfPrescriptionCount() {
+        Patient patient = new Patient();
+        patient.setName("测试患者");
+        patient.setGender(1);
+        patient.setAge(30);
+        testEntityManager.persist(patient);
+        Doctor doctor = new Doctor();
+        doctor.setName("测试医生");
+        testEntityManager.persist(doctor);
+        Visit visit = new Visit();
+        visit.setPatient(patient);
+        visit.setDoctor(doctor);
+        visit.setChiefComplaint("恶寒发热");
+        testEntityManager.persist(visit);
+        persistPrescription(visit, doctor, "荆防败毒散", "荆芥", "防风");
+        persistPrescription(visit, doctor, "桂枝汤", "桂枝", "白芍", "甘草");
+        persistPrescription(visit, doctor, "二陈汤", "半夏", "陈皮");
+        // 清空持久化上下文，保证下面的读取全部走数据库
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Map<String, Object> result = dataIntegrationService.integrateDataByVisitId(visit.getId());
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        Map<String, Object> patientInfo = (Map<String, Object>) result.get("患者信息");
+        Map<String, Object> finalResult = (Map<String, Object>) result.get("最终结果");
+        assertEquals("测试患者", patientInfo.get("姓名"));
+        assertEquals("荆防败毒散", finalResult.get("处方名称"));
+        assertEquals("荆芥, 防风, 桂枝, 白芍, 甘草, 半夏, 陈皮", finalResult.get("处方组成"));
+    }
+
+    private void persistPrescription(Visit visit, Doctor doctor, String name, String... herbs) {
+        Prescription prescription = new Prescription();
+        prescription.setVisit(visit);
+        prescription.setDoctor(doctor);
+        prescription.setPrescriptionName(name);
+        testEntityManager.persist(prescription);
+        List<PrescriptionDetail> details = new ArrayList<>();
+        for (String herb : herbs) {
+            PrescriptionDetail detail = new PrescriptionDetail();
+            detail.setPrescription(prescription);
+            detail.setHerbName(herb);
+            testEntityManager.persist(detail);
+            details.add(detail);
+        }
+        prescription.setPrescriptionDetails(details);
+    }
+}
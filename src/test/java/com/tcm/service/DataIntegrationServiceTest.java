@@ -0,0 +1,165 @@
+package com.tcm.service;
+
+import com.tcm.model.Doctor;
+import com.tcm.model.Patient;
+import com.tcm.model.Prescription;
+import com.tcm.model.PrescriptionDetail;
+import com.tcm.model.Visit;
+import com.tcm.repository.PrescriptionRepository;
+import com.tcm.repository.VisitRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * 整合数据的查询次数回归测试：无论处方和明细有多少条，都只能有两次仓库查询
+ */
+public class DataIntegrationServiceTest {
+
+    @Mock
+    private VisitRepository visitRepository;
+
+    @Mock
+    private PrescriptionRepository prescriptionRepository;
+
+    @InjectMocks
+    private DataIntegrationService dataIntegrationService;
+
+    private VisitSnapshotCache visitSnapshotCache;
+
+    private Visit visit;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        visitSnapshotCache = new VisitSnapshotCache();
+        ReflectionTestUtils.setField(visitSnapshotCache, "enabled", true);
+        ReflectionTestUtils.setField(visitSnapshotCache, "maxEntries", 100);
+        ReflectionTestUtils.setField(visitSnapshotCache, "ttlMinutes", 30L);
+        visitSnapshotCache.init();
+        ReflectionTestUtils.setField(dataIntegrationService, "visitSnapshotCache", visitSnapshotCache);
+
+        Patient patient = new Patient();
+        patient.setId(1L);
+        patient.setName("测试患者");
+        patient.setGender(1);
+        patient.setAge(30);
+
+        Doctor doctor = new Doctor();
+        doctor.setId(2L);
+        doctor.setName("测试医生");
+
+        visit = new Visit();
+        visit.setId(3L);
+        visit.setPatient(patient);
+        visit.setDoctor(doctor);
+        visit.setChiefComplaint("恶寒发热");
+    }
+
+    private Prescription prescription(String name, String... herbs) {
+        Prescription prescription = new Prescription();
+        prescription.setVisit(visit);
+        prescription.setPrescriptionName(name);
+        List<PrescriptionDetail> details = new ArrayList<>();
+        for (String herb : herbs) {
+            PrescriptionDetail detail = new PrescriptionDetail();
+            detail.setHerbName(herb);
+            details.add(detail);
+        }
+        prescription.setPrescriptionDetails(details);
+        return prescription;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testIntegrateUsesTwoQueriesRegardlessOfPrescriptionCount() {
+        when(visitRepository.findWithPatientAndDoctorById(3L)).thenReturn(Optional.of(visit));
+        when(prescriptionRepository.findWithDetailsByVisitId(3L)).thenReturn(Arrays.asList(
+                prescription("荆防败毒散", "荆芥", "防风"),
+                prescription("桂枝汤", "桂枝", "白芍", "甘草"),
+                prescription("二陈汤", "半夏")));
+
+        Map<String, Object> result = dataIntegrationService.integrateDataByVisitId(3L);
+
+        Map<String, Object> patientInfo = (Map<String, Object>) result.get("患者信息");
+        Map<String, Object> finalResult = (Map<String, Object>) result.get("最终结果");
+        assertEquals("测试患者", patientInfo.get("姓名"));
+        assertEquals("荆防败毒散", finalResult.get("处方名称"));
+        assertEquals("荆芥, 防风, 桂枝, 白芍, 甘草, 半夏", finalResult.get("处方组成"));
+
+        verify(visitRepository, times(1)).findWithPatientAndDoctorById(3L);
+        verify(prescriptionRepository, times(1)).findWithDetailsByVisitId(3L);
+        verifyNoMoreInteractions(visitRepository, prescriptionRepository);
+    }
+
+    @Test
+    void testMissingVisitStopsAfterOneQuery() {
+        when(visitRepository.findWithPatientAndDoctorById(4L)).thenReturn(Optional.empty());
+
+        assertNull(dataIntegrationService.integrateDataByVisitId(4L));
+
+        verify(visitRepository, times(1)).findWithPatientAndDoctorById(4L);
+        verifyNoInteractions(prescriptionRepository);
+    }
+
+    @Test
+    void testBulkIntegrateUsesTwoQueriesPerChunk() {
+        ReflectionTestUtils.setField(dataIntegrationService, "chunkSize", 2);
+        Visit other = new Visit();
+        other.setId(5L);
+        when(visitRepository.findWithPatientAndDoctorByIdIn(anyCollection())).thenReturn(Arrays.asList(visit, other));
+        when(prescriptionRepository.findWithDetailsByVisitIdIn(anyCollection())).thenReturn(Arrays.asList(
+                prescription("荆防败毒散", "荆芥", "防风")));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        dataIntegrationService.integrateDataByVisitIds(Arrays.asList(3L, 5L, 3L, 6L), results::add);
+
+        // 4个ID分两批，每批一次就诊查询、一次处方查询
+        verify(visitRepository, times(2)).findWithPatientAndDoctorByIdIn(anyCollection());
+        verify(prescriptionRepository, times(2)).findWithDetailsByVisitIdIn(anyCollection());
+        verifyNoMoreInteractions(visitRepository, prescriptionRepository);
+
+        assertEquals(4, results.size());
+        assertEquals(3L, results.get(0).get("编号"));
+        assertEquals(5L, results.get(1).get("编号"));
+        assertNotNull(results.get(3).get("error"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRepeatedReadIsServedFromSnapshot() {
+        Prescription prescription = prescription("荆防败毒散", "荆芥", "防风");
+        prescription.setId(10L);
+        when(visitRepository.findWithPatientAndDoctorById(3L)).thenReturn(Optional.of(visit));
+        when(prescriptionRepository.findWithDetailsByVisitId(3L)).thenReturn(Arrays.asList(prescription));
+
+        Map<String, Object> first = dataIntegrationService.integrateDataByVisitId(3L);
+        // 调用方修改返回结果（如附加舌象特征）不影响缓存
+        first.put("舌象图像特征", "附加字段");
+        Map<String, Object> second = dataIntegrationService.integrateDataByVisitId(3L);
+
+        assertNull(second.get("舌象图像特征"));
+        assertEquals("荆芥, 防风", ((Map<String, Object>) second.get("最终结果")).get("处方组成"));
+        verify(visitRepository, times(1)).findWithPatientAndDoctorById(3L);
+        verify(prescriptionRepository, times(1)).findWithDetailsByVisitId(3L);
+
+        // 处方明细变更后重新查库
+        visitSnapshotCache.prescriptionDetailChanged(10L);
+        dataIntegrationService.integrateDataByVisitId(3L);
+        verify(visitRepository, times(2)).findWithPatientAndDoctorById(3L);
+        verify(prescriptionRepository, times(2)).findWithDetailsByVisitId(3L);
+    }
+}
@@ -0,0 +1,117 @@
+package com.tcm.service;
+
+import com.tcm.model.DiagnosticImage;
+import com.tcm.model.Visit;
+import com.tcm.repository.DiagnosticImageRepository;
+import com.tcm.repository.VisitRepository;
+import com.tcm.service.impl.DiagnosticImageServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DiagnosticImageServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private DiagnosticImageRepository diagnosticImageRepository;
+
+    @Mock
+    private VisitRepository visitRepository;
+
+    @Mock
+    private ImageVariantService imageVariantService;
+
+    @Mock
+    private ImageBlobStore imageBlobStore;
+
+    @Mock
+    private TongueSimilarityIndex tongueSimilarityIndex;
+
+    @InjectMocks
+    private DiagnosticImageServiceImpl diagnosticImageService;
+
+    private MockMultipartFile file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        Visit visit = new Visit();
+        visit.setId(1L);
+        when(visitRepository.findById(1L)).thenReturn(Optional.of(visit));
+
+        Path png = tempDir.resolve("abc");
+        ImageIO.write(new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB), "png", png.toFile());
+        file = new MockMultipartFile("file", "tongue.png", "image/png", Files.readAllBytes(png));
+        when(imageBlobStore.store(any(InputStream.class)))
+                .thenReturn(new ImageBlobStore.StoredBlob("abc", png.toString(), Files.size(png)));
+    }
+
+    @Test
+    void testUploadSavesImageAndKeepsReference() throws Exception {
+        when(diagnosticImageRepository.save(any(DiagnosticImage.class))).thenAnswer(invocation -> {
+            DiagnosticImage image = invocation.getArgument(0);
+            image.setId(10L);
+            return image;
+        });
+
+        assertEquals(10L, diagnosticImageService.uploadDiagnosticImage(1L, file, "tongue", null).getId());
+
+        verify(imageVariantService).submitAfterCommit(any(DiagnosticImage.class));
+        verify(imageBlobStore, never()).release(any());
+        verify(imageBlobStore, never()).releaseAfterCommit(any());
+    }
+
+    @Test
+    void testFailedSaveReleasesStoredBlob() throws Exception {
+        when(diagnosticImageRepository.save(any(DiagnosticImage.class))).thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class, () -> diagnosticImageService.uploadDiagnosticImage(1L, file, "tongue", null));
+
+        verify(imageBlobStore).release("abc");
+        verify(imageVariantService, never()).submitAfterCommit(any());
+    }
+
+    @Test
+    void testUnreadableImageReleasesStoredBlob() throws Exception {
+        Path notImage = tempDir.resolve("def");
+        Files.writeString(notImage, "not an image");
+        when(imageBlobStore.store(any(InputStream.class)))
+                .thenReturn(new ImageBlobStore.StoredBlob("def", notImage.toString(), Files.size(notImage)));
+
+        assertThrows(IllegalArgumentException.class, () -> diagnosticImageService.uploadDiagnosticImage(1L, file, "tongue", null));
+
+        verify(imageBlobStore).release("def");
+        verify(diagnosticImageRepository, never()).save(any());
+    }
+
+    @Test
+    void testDeleteReleasesBlobAfterCommit() {
+        DiagnosticImage image = new DiagnosticImage();
+        image.setId(10L);
+        image.setContentHash("abc");
+        when(diagnosticImageRepository.findById(10L)).thenReturn(Optional.of(image));
+
+        diagnosticImageService.deleteDiagnosticImage(10L);
+
+        verify(diagnosticImageRepository).delete(image);
+        verify(imageBlobStore).releaseAfterCommit("abc");
+        verify(imageBlobStore, never()).release(any());
+    }
+}
@@ -0,0 +1,465 @@
+package com.tcm.service;
+
+import com.tcm.api.MedicineInventoryAPI;
+import com.tcm.model.MedicineInventory;
+import com.tcm.model.Prescription;
+import com.tcm.model.PrescriptionDetail;
+import com.tcm.model.StockReservation;
+import com.tcm.repository.MedicineInventoryRepository;
+import com.tcm.repository.PrescriptionRepository;
+import com.tcm.repository.StockReservationRepository;
+import com.tcm.service.impl.MedicineInventoryServiceImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 发药并发测试
+ * 使用H2内存数据库（PostgreSQL兼容模式）验证带条件扣减在多线程同时发药时不会超扣、丢失更新或死锁
+ */
+public class DispensingServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+    private JpaRepositoryFactory repositoryFactory;
+    private DispensingService dispensingService;
+    private MedicineInventoryRepository medicineInventoryRepository;
+    private MedicineInventoryServiceImpl medicineInventoryService;
+    private MedicineInventoryAPI medicineInventoryAPI;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:dispensing-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000");
+        dataSource.setDriverClassName("org.h2.Driver");
+
+        entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(dataSource);
+        entityManagerFactoryBean.setPackagesToScan("com.tcm.model");
+        entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Properties properties = new Properties();
+        properties.put("hibernate.hbm2ddl.auto", "create");
+        properties.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        entityManagerFactoryBean.setJpaProperties(properties);
+        entityManagerFactoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        transactionManager.setDataSource(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        repositoryFactory = new JpaRepositoryFactory(entityManager);
+
+        dispensingService = new DispensingService();
+        ReflectionTestUtils.setField(dispensingService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(dispensingService, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(dispensingService, "stockReservationRepository", repositoryFactory.getRepository(StockReservationRepository.class));
+        ReflectionTestUtils.setField(dispensingService, "prescriptionRepository", repositoryFactory.getRepository(PrescriptionRepository.class));
+        ReflectionTestUtils.setField(dispensingService, "reservationTimeoutMinutes", 30L);
+        ReflectionTestUtils.setField(dispensingService, "sweepBatchSize", 500);
+        dispensingService.init();
+
+        medicineInventoryRepository = repositoryFactory.getRepository(MedicineInventoryRepository.class);
+        medicineInventoryService = new MedicineInventoryServiceImpl();
+        ReflectionTestUtils.setField(medicineInventoryService, "medicineInventoryRepository", medicineInventoryRepository);
+        medicineInventoryAPI = new MedicineInventoryAPI();
+        ReflectionTestUtils.setField(medicineInventoryAPI, "medicineInventoryService", medicineInventoryService);
+        ReflectionTestUtils.setField(medicineInventoryAPI, "dispensingService", dispensingService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        entityManagerFactoryBean.destroy();
+    }
+
+    @Test
+    void testConcurrentReservationsNeverOversell() throws Exception {
+        Long huangqi = createMedicine("黄芪", 1000);
+        Long gancao = createMedicine("甘草", 1000);
+        int prescriptionCount = 200;
+        List<Long> prescriptionIds = new ArrayList<>();
+        for (int i = 0; i < prescriptionCount; i++) {
+            // 每张处方：黄芪 3.5g x 2剂 = 7，甘草 3 x 2剂 = 6（两条明细合并）
+            prescriptionIds.add(createPrescription(Map.of("黄芪", "3.5"), Map.of("甘草", "1.5"), Map.of("甘草", "1.5")));
+        }
+
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger insufficient = new AtomicInteger();
+        runConcurrently(prescriptionIds.stream().map(id -> (Callable<Void>) () -> {
+            try {
+                dispensingService.reserve(id, 2);
+                reserved.incrementAndGet();
+            } catch (DispensingService.InsufficientStockException e) {
+                insufficient.incrementAndGet();
+            }
+            return null;
+        }).toList());
+
+        // 黄芪限制了可发药的处方数：1000 / 7 = 142
+        assertEquals(142, reserved.get());
+        assertEquals(prescriptionCount - 142, insufficient.get());
+        assertEquals(1000 - 142 * 7, stockOf(huangqi));
+        assertEquals(1000 - 142 * 6, stockOf(gancao));
+        // 库存不足的处方不会留下部分扣减或预占记录
+        assertEquals(142, jdbcTemplate.queryForObject("SELECT count(*) FROM stock_reservations", Integer.class));
+        assertEquals(142 * 7, jdbcTemplate.queryForObject(
+                "SELECT sum(quantity) FROM stock_reservation_items WHERE medicine_id = ?", Integer.class, huangqi));
+    }
+
+    @Test
+    void testConcurrentCrossOrderedPrescriptionsDoNotDeadlock() throws Exception {
+        List<String> herbs = List.of("当归", "川芎", "白芍", "熟地黄", "茯苓", "白术");
+        List<Long> medicineIds = new ArrayList<>();
+        for (String herb : herbs) {
+            medicineIds.add(createMedicine(herb, 10000));
+        }
+        List<Long> prescriptionIds = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            // 明细顺序各不相同，扣减仍按药品ID顺序加锁
+            List<Map<String, String>> details = new ArrayList<>();
+            for (int j = 0; j < herbs.size(); j++) {
+                details.add(Map.of(herbs.get((i + j) % herbs.size()), "10"));
+            }
+            if (i % 2 == 1) {
+                java.util.Collections.reverse(details);
+            }
+            prescriptionIds.add(createPrescription(details.toArray(new Map[0])));
+        }
+
+        runConcurrently(prescriptionIds.stream().map(id -> (Callable<Void>) () -> {
+            dispensingService.reserve(id, 1);
+            return null;
+        }).toList());
+
+        for (Long medicineId : medicineIds) {
+            assertEquals(10000 - 120 * 10, stockOf(medicineId));
+        }
+    }
+
+    @Test
+    void testSamePrescriptionIsReservedOnlyOnce() throws Exception {
+        Long medicineId = createMedicine("柴胡", 100);
+        Long prescriptionId = createPrescription(Map.of("柴胡", "10"));
+
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            tasks.add(() -> {
+                try {
+                    dispensingService.reserve(prescriptionId, 1);
+                    reserved.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        runConcurrently(tasks);
+
+        assertEquals(1, reserved.get());
+        assertEquals(THREADS - 1, rejected.get());
+        assertEquals(90, stockOf(medicineId));
+    }
+
+    @Test
+    void testConfirmCancelAndExpiryRaceReleasesStockAtMostOnce() throws Exception {
+        Long medicineId = createMedicine("半夏", 1000);
+        List<Long> reservationIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            reservationIds.add(dispensingService.reserve(createPrescription(Map.of("半夏", "9")), 1).getId());
+        }
+        // 全部预占设为已到期，确认、取消、超时释放同时进行
+        jdbcTemplate.update("UPDATE stock_reservations SET expires_at = ?", java.time.LocalDateTime.now().minusMinutes(1));
+        assertEquals(1000 - 50 * 9, stockOf(medicineId));
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Long reservationId : reservationIds) {
+            tasks.add(() -> {
+                try {
+                    dispensingService.cancel(reservationId);
+                } catch (IllegalStateException ignored) {
+                    // 已被超时释放
+                }
+                return null;
+            });
+            tasks.add(() -> {
+                try {
+                    dispensingService.confirm(reservationId);
+                } catch (IllegalStateException ignored) {
+                    // 已超时的预占不能确认
+                }
+                return null;
+            });
+        }
+        tasks.add(() -> {
+            dispensingService.releaseExpired();
+            return null;
+        });
+        runConcurrently(tasks);
+
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM stock_reservations WHERE status IN ('reserved', 'dispensed')", Integer.class));
+        assertEquals(1000, stockOf(medicineId));
+    }
+
+    @Test
+    void testConfirmMarksPrescriptionDispensedAndExpiredReservationsAreReleased() {
+        Long medicineId = createMedicine("桂枝", 100);
+        Long firstPrescription = createPrescription(Map.of("桂枝", "6"));
+        Long secondPrescription = createPrescription(Map.of("桂枝", "6"));
+
+        StockReservation confirmed = dispensingService.confirm(dispensingService.reserve(firstPrescription, 3).getId());
+        assertEquals(StockReservation.STATUS_DISPENSED, confirmed.getStatus());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT status FROM prescriptions WHERE id = ?", Integer.class, firstPrescription));
+        assertThrows(IllegalStateException.class, () -> dispensingService.reserve(firstPrescription, 1));
+        assertThrows(IllegalStateException.class, () -> dispensingService.cancel(confirmed.getId()));
+
+        ReflectionTestUtils.setField(dispensingService, "reservationTimeoutMinutes", -1L);
+        StockReservation expiring = dispensingService.reserve(secondPrescription, 1);
+        assertEquals(100 - 18 - 6, stockOf(medicineId));
+        assertThrows(IllegalStateException.class, () -> dispensingService.confirm(expiring.getId()));
+
+        assertEquals(1, dispensingService.releaseExpired());
+        assertEquals(100 - 18, stockOf(medicineId));
+        assertEquals(StockReservation.STATUS_EXPIRED, dispensingService.getReservation(expiring.getId()).get().getStatus());
+        // 释放后可以重新预占
+        ReflectionTestUtils.setField(dispensingService, "reservationTimeoutMinutes", 30L);
+        assertEquals(StockReservation.STATUS_RESERVED, dispensingService.reserve(secondPrescription, 1).getStatus());
+    }
+
+    @Test
+    void testUnknownHerbAndMissingPrescriptionAreRejected() {
+        Long medicineId = createMedicine("麻黄", 100);
+        Long prescriptionId = createPrescription(Map.of("麻黄", "6"), Map.of("不存在的药材", "3"));
+
+        DispensingService.InsufficientStockException e = assertThrows(DispensingService.InsufficientStockException.class,
+                () -> dispensingService.reserve(prescriptionId, 1));
+        assertEquals(1, e.getShortages().size());
+        assertEquals("不存在的药材", e.getShortages().get(0).getHerbName());
+        assertNull(e.getShortages().get(0).getMedicineId());
+        assertEquals(100, stockOf(medicineId));
+
+        assertThrows(NoSuchElementException.class, () -> dispensingService.reserve(-1L, 1));
+        assertThrows(NoSuchElementException.class, () -> dispensingService.cancel(-1L));
+    }
+
+    @Test
+    void testDosageUnitsAreConvertedToGramsOrRejected() {
+        Long medicineId = createMedicine("黄芪", 5000);
+        Long kilogramPrescription = createPrescription(Map.of("黄芪", "0.03"));
+        setUnit(kilogramPrescription, "黄芪", "kg");
+        dispensingService.reserve(kilogramPrescription, 2);
+        assertEquals(4940, stockOf(medicineId));
+
+        Long millilitrePrescription = createPrescription(Map.of("黄芪", "10"));
+        setUnit(millilitrePrescription, "黄芪", "ml");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> dispensingService.reserve(millilitrePrescription, 1));
+        assertTrue(e.getMessage().contains("ml"));
+        assertEquals(4940, stockOf(medicineId));
+    }
+
+    @Test
+    void testOversizedQuantityIsRejected() {
+        Long medicineId = createMedicine("甘草", 100);
+        Long prescriptionId = createPrescription(Map.of("甘草", "30000000"));
+
+        // 用量乘以剂数超出库存数量的范围
+        assertThrows(IllegalArgumentException.class, () -> dispensingService.reserve(prescriptionId, 100));
+        assertEquals(100, stockOf(medicineId));
+    }
+
+    @Test
+    void testInventoryUpdateDoesNotOverwriteDispensedStock() {
+        Long medicineId = createMedicine("当归", 100);
+        MedicineInventory loaded = transactionTemplate.execute(status -> medicineInventoryRepository.findById(medicineId).orElseThrow());
+
+        // 编辑页面打开后发生了发药
+        dispensingService.reserve(createPrescription(Map.of("当归", "6")), 1);
+        assertEquals(94, stockOf(medicineId));
+
+        // 请求带着打开页面时的旧库存，拒绝而不是静默忽略
+        loaded.setUnitPrice(new BigDecimal("0.80"));
+        ResponseEntity<?> rejected = transactionTemplate.execute(status -> medicineInventoryAPI.updateMedicineInventory(medicineId, loaded));
+        assertEquals(HttpStatus.BAD_REQUEST, rejected.getStatusCode());
+        assertEquals(94, stockOf(medicineId));
+
+        // 不带库存或库存与当前一致时只修改药品信息
+        loaded.setStockQuantity(null);
+        ResponseEntity<?> updated = transactionTemplate.execute(status -> medicineInventoryAPI.updateMedicineInventory(medicineId, loaded));
+        assertEquals(HttpStatus.OK, updated.getStatusCode());
+        assertEquals(0, new BigDecimal("0.80").compareTo(((MedicineInventory) updated.getBody()).getUnitPrice()));
+        loaded.setStockQuantity(94);
+        assertEquals(HttpStatus.OK, transactionTemplate.execute(status -> medicineInventoryAPI.updateMedicineInventory(medicineId, loaded)).getStatusCode());
+        assertEquals(94, stockOf(medicineId));
+
+        // 直接保存带旧库存的实体同样不会覆盖库存
+        loaded.setStockQuantity(100);
+        transactionTemplate.executeWithoutResult(status -> medicineInventoryRepository.save(loaded));
+        assertEquals(94, stockOf(medicineId));
+        assertEquals(HttpStatus.NOT_FOUND, transactionTemplate.execute(status -> medicineInventoryAPI.updateMedicineInventory(-1L, loaded)).getStatusCode());
+    }
+
+    @Test
+    void testStockAdjustmentsRestockAndWriteOff() {
+        Long medicineId = createMedicine("白术", 10);
+
+        ResponseEntity<?> restocked = medicineInventoryAPI.adjustStock(medicineId, 500);
+        assertEquals(HttpStatus.OK, restocked.getStatusCode());
+        assertEquals(510, ((MedicineInventory) restocked.getBody()).getStockQuantity());
+
+        assertEquals(HttpStatus.OK, medicineInventoryAPI.adjustStock(medicineId, -10).getStatusCode());
+        assertEquals(500, stockOf(medicineId));
+
+        // 减少后库存不能小于0
+        assertEquals(HttpStatus.CONFLICT, medicineInventoryAPI.adjustStock(medicineId, -501).getStatusCode());
+        assertEquals(500, stockOf(medicineId));
+        assertEquals(HttpStatus.BAD_REQUEST, medicineInventoryAPI.adjustStock(medicineId, 0).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, medicineInventoryAPI.adjustStock(-1L, 10).getStatusCode());
+    }
+
+    @Test
+    void testConcurrentStockAdjustmentsAndReservationsKeepEveryChange() throws Exception {
+        Long medicineId = createMedicine("茯苓", 100);
+        List<Long> prescriptionIds = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            prescriptionIds.add(createPrescription(Map.of("茯苓", "10")));
+        }
+
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger writtenOff = new AtomicInteger();
+        AtomicInteger rejectedWriteOffs = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Long prescriptionId : prescriptionIds) {
+            tasks.add(() -> {
+                try {
+                    dispensingService.reserve(prescriptionId, 1);
+                    reserved.incrementAndGet();
+                } catch (DispensingService.InsufficientStockException e) {
+                    // 库存不足
+                }
+                return null;
+            });
+            // 每张处方对应一次入库和一次报损
+            tasks.add(() -> {
+                assertEquals(HttpStatus.OK, medicineInventoryAPI.adjustStock(medicineId, 5).getStatusCode());
+                return null;
+            });
+            tasks.add(() -> {
+                HttpStatus status = (HttpStatus) medicineInventoryAPI.adjustStock(medicineId, -20).getStatusCode();
+                if (status == HttpStatus.OK) {
+                    writtenOff.incrementAndGet();
+                } else {
+                    assertEquals(HttpStatus.CONFLICT, status);
+                    rejectedWriteOffs.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        runConcurrently(tasks);
+
+        // 入库、报损和发药互不覆盖，库存始终不小于0
+        int expected = 100 + 30 * 5 - reserved.get() * 10 - writtenOff.get() * 20;
+        assertEquals(expected, stockOf(medicineId));
+        assertTrue(expected >= 0);
+        assertEquals(30, writtenOff.get() + rejectedWriteOffs.get());
+    }
+
+    private Long createMedicine(String name, int stock) {
+        return transactionTemplate.execute(status -> {
+            MedicineInventory medicine = new MedicineInventory();
+            medicine.setMedicineCode(UUID.randomUUID().toString().substring(0, 12));
+            medicine.setMedicineName(name);
+            medicine.setStockQuantity(stock);
+            medicine.setStatus(1);
+            entityManager.persist(medicine);
+            return medicine.getId();
+        });
+    }
+
+    @SafeVarargs
+    private Long createPrescription(Map<String, String>... details) {
+        return transactionTemplate.execute(status -> {
+            Prescription prescription = new Prescription();
+            prescription.setStatus(0);
+            entityManager.persist(prescription);
+            for (Map<String, String> detail : details) {
+                for (Map.Entry<String, String> herb : detail.entrySet()) {
+                    PrescriptionDetail prescriptionDetail = new PrescriptionDetail();
+                    prescriptionDetail.setPrescription(prescription);
+                    prescriptionDetail.setHerbName(herb.getKey());
+                    prescriptionDetail.setDosage(new BigDecimal(herb.getValue()));
+                    entityManager.persist(prescriptionDetail);
+                }
+            }
+            return prescription.getId();
+        });
+    }
+
+    private void setUnit(Long prescriptionId, String herbName, String unit) {
+        jdbcTemplate.update("UPDATE prescription_details SET unit = ? WHERE prescription_id = ? AND herb_name = ?", unit, prescriptionId, herbName);
+    }
+
+    private int stockOf(Long medicineId) {
+        return jdbcTemplate.queryForObject("SELECT stock_quantity FROM medicine_inventory WHERE id = ?", Integer.class, medicineId);
+    }
+
+    /**
+     * 用固定线程数同时开始执行全部任务，任务抛出的异常原样抛出
+     */
+    private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.tcm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+public class ExportServiceTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement statement;
+
+    @Mock
+    private ResultSet resultSet;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ExportService exportService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+
+        exportService = new ExportService();
+        ReflectionTestUtils.setField(exportService, "dataSource", dataSource);
+        ReflectionTestUtils.setField(exportService, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(exportService, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+        ReflectionTestUtils.setField(exportService, "fetchSize", 500);
+        exportService.init();
+    }
+
+    private void prescriptionRow() throws Exception {
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getString(anyInt())).thenReturn(null);
+        when(resultSet.getString(1)).thenReturn("1858000000000000001");
+        when(resultSet.getString(5)).thenReturn("桂枝汤,加减");
+        when(resultSet.getString(11)).thenReturn("桂枝");
+        when(resultSet.getTimestamp(3)).thenReturn(Timestamp.valueOf(LocalDateTime.of(2024, 1, 1, 9, 30)));
+        when(resultSet.getInt(anyInt())).thenReturn(0);
+        when(resultSet.wasNull()).thenReturn(true);
+        when(resultSet.getBigDecimal(12)).thenReturn(new BigDecimal("9.50"));
+    }
+
+    @Test
+    void testCsvExportStreamsWithFetchSize() throws Exception {
+        prescriptionRow();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long rows = exportService.exportPrescriptions(LocalDateTime.of(2024, 1, 1, 0, 0), null, "csv", output);
+
+        assertEquals(1, rows);
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertTrue(lines[0].startsWith("\uFEFFprescriptionId,visitId,visitDate"));
+        assertEquals("1858000000000000001,,2024-01-01T09:30,,\"桂枝汤,加减\",,,,,,桂枝,9.50,,,", lines[1]);
+        // 服务端游标：设置fetchSize，并在只读事务内执行
+        verify(statement).setFetchSize(500);
+        verify(connection).prepareStatement(argThat(sql -> sql.contains("WHERE v.visit_date >= ?") && !sql.contains("<")));
+        verify(transactionManager).getTransaction(argThat(definition -> definition.isReadOnly()));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testNdjsonExportWritesIdsAsStrings() throws Exception {
+        prescriptionRow();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        exportService.exportPrescriptions(null, null, "ndjson", output);
+
+        String json = output.toString(StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{\"prescriptionId\":\"1858000000000000001\",\"visitId\":null,\"visitDate\":\"2024-01-01T09:30\""));
+        assertTrue(json.contains("\"treatmentDuration\":null"));
+        assertTrue(json.contains("\"dosage\":9.50"));
+        assertTrue(json.endsWith("}\n"));
+        verify(connection).prepareStatement(argThat(sql -> !sql.contains("WHERE")));
+    }
+
+    @Test
+    void testUnsupportedFormatIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> exportService.exportVisits(null, null, "xlsx", new ByteArrayOutputStream()));
+        verifyNoInteractions(dataSource);
+    }
+}
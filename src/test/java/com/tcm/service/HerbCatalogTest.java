@@ -0,0 +1,106 @@
+package com.tcm.service;
+
+import com.tcm.dto.HerbSuggestion;
+import com.tcm.model.MedicineInventory;
+import com.tcm.repository.MedicineInventoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class HerbCatalogTest {
+
+    @Mock
+    private MedicineInventoryRepository medicineInventoryRepository;
+
+    private HerbCatalog herbCatalog;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        herbCatalog = new HerbCatalog();
+        ReflectionTestUtils.setField(herbCatalog, "medicineInventoryRepository", medicineInventoryRepository);
+        ReflectionTestUtils.setField(herbCatalog, "enabled", true);
+        ReflectionTestUtils.setField(herbCatalog, "maxResults", 20);
+        // 重建在调用线程中同步执行
+        ReflectionTestUtils.setField(herbCatalog, "rebuildExecutor", (Executor) Runnable::run);
+
+        when(medicineInventoryRepository.findAll()).thenReturn(List.of(
+                medicine(1L, "H001", "黄芪", 100, 1),
+                medicine(2L, "H002", "黄芩", 0, 1),
+                medicine(3L, "B001", "白术", 50, 1),
+                medicine(4L, "H003", "黄连", 30, 0)));
+        herbCatalog.reload();
+    }
+
+    @Test
+    void testSuggestByNamePinyinInitialsAndCode() {
+        assertEquals(3, herbCatalog.size());
+        // 停用的黄连不出现，无库存的黄芩排在后面
+        assertEquals(List.of("黄芪", "黄芩"), names(herbCatalog.suggest("黄", null)));
+        assertEquals(List.of("黄芪", "黄芩"), names(herbCatalog.suggest("hq", null)));
+        assertEquals(List.of("黄芪", "黄芩"), names(herbCatalog.suggest("huangq", null)));
+        assertEquals(List.of("黄芩"), names(herbCatalog.suggest("HuangQin", null)));
+        assertEquals(List.of("白术"), names(herbCatalog.suggest("bz", null)));
+        assertEquals(List.of("白术"), names(herbCatalog.suggest("b00", null)));
+        assertEquals(List.of("黄芪"), names(herbCatalog.suggest("hq", 1)));
+        assertTrue(herbCatalog.suggest("  ", null).isEmpty());
+    }
+
+    @Test
+    void testChangesAreAppliedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            herbCatalog.medicineChanged(medicine(5L, "D001", "当归", 10, 1));
+            herbCatalog.medicineChanged(medicine(1L, "H001", "黄芪", 100, 0));
+            herbCatalog.medicineRemoved(3L);
+            // 提交前不可见
+            assertEquals(List.of("黄芪", "黄芩"), names(herbCatalog.suggest("h", null)));
+            assertTrue(herbCatalog.suggest("dg", null).isEmpty());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(List.of("当归"), names(herbCatalog.suggest("dg", null)));
+        assertEquals(List.of("黄芩"), names(herbCatalog.suggest("h", null)));
+        assertTrue(herbCatalog.suggest("白", null).isEmpty());
+    }
+
+    @Test
+    void testReloadReplacesCatalog() {
+        when(medicineInventoryRepository.findAll()).thenReturn(List.of(medicine(3L, "B001", "白术", 0, 1)));
+        herbCatalog.reload();
+
+        assertEquals(1, herbCatalog.size());
+        assertTrue(herbCatalog.suggest("黄", null).isEmpty());
+        assertEquals(0, herbCatalog.suggest("白", null).get(0).getStockQuantity());
+    }
+
+    private MedicineInventory medicine(Long id, String code, String name, int stock, int status) {
+        MedicineInventory medicine = new MedicineInventory();
+        medicine.setId(id);
+        medicine.setMedicineCode(code);
+        medicine.setMedicineName(name);
+        medicine.setStockQuantity(stock);
+        medicine.setStatus(status);
+        return medicine;
+    }
+
+    private List<String> names(List<HerbSuggestion> suggestions) {
+        return suggestions.stream().map(HerbSuggestion::getMedicineName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,144 @@
+package com.tcm.service;
+
+import com.tcm.repository.ImageBlobRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ImageBlobStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private ImageBlobRepository imageBlobRepository;
+
+    @InjectMocks
+    private ImageBlobStore imageBlobStore;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(imageBlobStore, "storageRoot", tempDir.toString());
+        ReflectionTestUtils.setField(imageBlobStore, "meterRegistry", meterRegistry);
+    }
+
+    private ImageBlobStore.StoredBlob store(String content) throws IOException {
+        return imageBlobStore.store(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    void testDuplicateContentIsStoredOnceInShardedPath() throws IOException {
+        ImageBlobStore.StoredBlob first = store("tongue photo");
+        ImageBlobStore.StoredBlob second = store("tongue photo");
+
+        assertEquals(first.getContentHash(), second.getContentHash());
+        assertEquals(first.getPath(), second.getPath());
+        assertEquals(12, first.getSize());
+        String hash = first.getContentHash();
+        assertEquals(64, hash.length());
+        assertEquals(tempDir.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash), Paths.get(first.getPath()));
+        assertEquals(1, countFiles());
+        verify(imageBlobRepository, times(2)).addReference(anyLong(), eq(hash), eq(first.getPath()), eq(12L));
+        assertEquals(1, meterRegistry.get("tcm.image.upload.bytes").tag("duplicate", "true").summary().count());
+        assertEquals(24, meterRegistry.get("tcm.image.upload.bytes").summaries().stream()
+                .mapToDouble(summary -> summary.totalAmount()).sum());
+
+        ImageBlobStore.StoredBlob other = store("another photo");
+        assertNotEquals(hash, other.getContentHash());
+        assertEquals(2, countFiles());
+    }
+
+    @Test
+    void testReleaseDeletesFileAndVariantsOnlyWhenUnreferenced() throws IOException {
+        ImageBlobStore.StoredBlob blob = store("tongue photo");
+        Path path = Paths.get(blob.getPath());
+        Files.writeString(path.resolveSibling(blob.getContentHash() + "_thumb.jpg"), "thumb");
+
+        when(imageBlobRepository.deleteIfUnreferenced(blob.getContentHash())).thenReturn(0);
+        assertFalse(imageBlobStore.release(blob.getContentHash()));
+        assertTrue(Files.exists(path));
+
+        when(imageBlobRepository.deleteIfUnreferenced(blob.getContentHash())).thenReturn(1);
+        assertTrue(imageBlobStore.release(blob.getContentHash()));
+        assertEquals(0, countFiles());
+        verify(imageBlobRepository, times(2)).releaseReference(blob.getContentHash());
+    }
+
+    @Test
+    void testFailedReferenceDoesNotLeaveTempFile() throws IOException {
+        doThrow(new IllegalStateException("db down")).when(imageBlobRepository).addReference(anyLong(), anyString(), anyString(), anyLong());
+
+        assertThrows(IllegalStateException.class, () -> store("tongue photo"));
+        try (Stream<Path> temp = Files.list(tempDir.resolve("tmp"))) {
+            assertEquals(0, temp.count());
+        }
+    }
+
+    @Test
+    void testReleaseAfterCommitWaitsForCommit() throws IOException {
+        ImageBlobStore.StoredBlob blob = store("tongue photo");
+        when(imageBlobRepository.deleteIfUnreferenced(blob.getContentHash())).thenReturn(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            imageBlobStore.releaseAfterCommit(blob.getContentHash());
+            // 事务提交前文件和引用保持不变
+            verify(imageBlobRepository, never()).releaseReference(anyString());
+            assertEquals(1, countFiles());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(imageBlobRepository).releaseReference(blob.getContentHash());
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void testReleaseAfterCommitIsDroppedOnRollback() throws IOException {
+        ImageBlobStore.StoredBlob blob = store("tongue photo");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            imageBlobStore.releaseAfterCommit(blob.getContentHash());
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(imageBlobRepository, never()).releaseReference(anyString());
+        assertEquals(1, countFiles());
+    }
+}
@@ -0,0 +1,113 @@
+package com.tcm.service;
+
+import com.tcm.model.DiagnosticImage;
+import com.tcm.repository.DiagnosticImageRepository;
+import com.tcm.utils.TongueFeatureExtractor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ImageVariantServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private DiagnosticImageRepository diagnosticImageRepository;
+
+    @Mock
+    private TongueSimilarityIndex tongueSimilarityIndex;
+
+    @InjectMocks
+    private ImageVariantService imageVariantService;
+
+    private ThreadPoolTaskExecutor executor;
+
+    private DiagnosticImage image;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(10);
+        executor.initialize();
+        ReflectionTestUtils.setField(imageVariantService, "imageProcessingExecutor", executor);
+        ReflectionTestUtils.setField(imageVariantService, "thumbnailSize", 160);
+        ReflectionTestUtils.setField(imageVariantService, "previewSize", 1024);
+
+        image = new DiagnosticImage();
+        image.setId(7L);
+        image.setImageType("tongue");
+        image.setProcessingStatus(DiagnosticImage.PROCESSING_PENDING);
+        when(diagnosticImageRepository.findById(7L)).thenReturn(Optional.of(image));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testSubmitRecordsAllVariants() throws IOException {
+        Path original = tempDir.resolve("tongue.png");
+        ImageIO.write(new BufferedImage(2000, 1500, BufferedImage.TYPE_INT_RGB), "png", original.toFile());
+
+        image.setImagePath(original.toString());
+
+        imageVariantService.submitAfterCommit(image);
+
+        ArgumentCaptor<DiagnosticImage> saved = ArgumentCaptor.forClass(DiagnosticImage.class);
+        verify(diagnosticImageRepository, timeout(10_000)).save(saved.capture());
+        assertEquals(DiagnosticImage.PROCESSING_DONE, saved.getValue().getProcessingStatus());
+
+        BufferedImage processed = ImageIO.read(Paths.get(image.getProcessedPath()).toFile());
+        BufferedImage thumbnail = ImageIO.read(Paths.get(image.getThumbnailPath()).toFile());
+        BufferedImage preview = ImageIO.read(Paths.get(image.getPreviewPath()).toFile());
+        assertEquals(512, processed.getWidth());
+        assertEquals(512, processed.getHeight());
+        assertEquals(160, thumbnail.getWidth());
+        assertEquals(120, thumbnail.getHeight());
+        assertEquals(1024, preview.getWidth());
+        assertEquals(768, preview.getHeight());
+        assertNotNull(image.getPerceptualHash());
+        assertEquals(TongueFeatureExtractor.FEATURE_LENGTH * 4, image.getTongueFeatures().length);
+        verify(tongueSimilarityIndex).add(7L, image.getPerceptualHash());
+    }
+
+    @Test
+    void testUnreadableOriginalMarksFailed() throws IOException {
+        Path original = tempDir.resolve("broken.png");
+        Files.writeString(original, "not an image");
+
+        image.setImagePath(original.toString());
+
+        imageVariantService.submit(image);
+
+        verify(diagnosticImageRepository, timeout(10_000)).save(image);
+        assertEquals(DiagnosticImage.PROCESSING_FAILED, image.getProcessingStatus());
+        assertNull(image.getProcessedPath());
+        assertNull(image.getThumbnailPath());
+        assertNull(image.getPerceptualHash());
+        verifyNoInteractions(tongueSimilarityIndex);
+    }
+}
@@ -0,0 +1,180 @@
+package com.tcm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tcm.client.ModelServerTransport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ModelBatchDispatcherTest {
+
+    @Mock
+    private ModelServerTransport modelServerTransport;
+
+    @InjectMocks
+    private ModelBatchDispatcher dispatcher;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private void start(int maxBatchSize, long windowMs, boolean useBatchEndpoint) {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(dispatcher, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(dispatcher, "environment", new MockEnvironment());
+        ReflectionTestUtils.setField(dispatcher, "maxBatchSize", maxBatchSize);
+        ReflectionTestUtils.setField(dispatcher, "windowMs", windowMs);
+        ReflectionTestUtils.setField(dispatcher, "maxInFlight", 8);
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 100);
+        ReflectionTestUtils.setField(dispatcher, "useBatchEndpoint", useBatchEndpoint);
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.stop();
+    }
+
+    private static Map<String, Object> request(int n) {
+        Map<String, Object> requestData = new HashMap<>();
+        requestData.put("n", n);
+        return requestData;
+    }
+
+    /**
+     * 批量接口按请求顺序返回 {"n": 序号}
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> echoResults(Map<String, Object> batchData) {
+        List<Object> results = new ArrayList<>();
+        for (Map<String, Object> requestData : (List<Map<String, Object>>) batchData.get("requests")) {
+            results.add(Map.of("n", requestData.get("n")));
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
+        return response;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlushesWhenBatchIsFull() throws Exception {
+        // 窗口很长，只有凑满批次才会立即发送
+        start(3, 60_000, true);
+        when(modelServerTransport.batchProcess(anyMap())).thenAnswer(invocation -> objectMapper.valueToTree(echoResults(invocation.getArgument(0))));
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(dispatcher.submit(request(i)));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals("{\"n\":" + i + "}", futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+
+        ArgumentCaptor<Map<String, Object>> batch = ArgumentCaptor.forClass(Map.class);
+        verify(modelServerTransport, times(1)).batchProcess(batch.capture());
+        assertEquals(3, ((List<Object>) batch.getValue().get("requests")).size());
+        verify(modelServerTransport, never()).chatCompletions(anyMap());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlushesPartialBatchWhenWindowExpires() throws Exception {
+        start(8, 50, true);
+        when(modelServerTransport.batchProcess(anyMap())).thenAnswer(invocation -> objectMapper.valueToTree(echoResults(invocation.getArgument(0))));
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<String> first = dispatcher.submit(request(0));
+        CompletableFuture<String> second = dispatcher.submit(request(1));
+
+        assertEquals("{\"n\":0}", first.get(5, TimeUnit.SECONDS));
+        assertEquals("{\"n\":1}", second.get(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(50), "批次未满时应等到窗口结束");
+
+        ArgumentCaptor<Map<String, Object>> batch = ArgumentCaptor.forClass(Map.class);
+        verify(modelServerTransport, times(1)).batchProcess(batch.capture());
+        assertEquals(2, ((List<Object>) batch.getValue().get("requests")).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFallsBackToSingleCallsWhenBatchFails() throws Exception {
+        start(2, 60_000, true);
+        when(modelServerTransport.batchProcess(anyMap())).thenThrow(new IOException("模型服务返回状态码: 503"));
+        when(modelServerTransport.chatCompletions(anyMap())).thenAnswer(invocation ->
+                objectMapper.valueToTree(Map.of("single", ((Map<String, Object>) invocation.getArgument(0)).get("n"))));
+
+        CompletableFuture<String> first = dispatcher.submit(request(0));
+        CompletableFuture<String> second = dispatcher.submit(request(1));
+
+        assertEquals("{\"single\":0}", first.get(5, TimeUnit.SECONDS));
+        assertEquals("{\"single\":1}", second.get(5, TimeUnit.SECONDS));
+        verify(modelServerTransport, times(1)).batchProcess(anyMap());
+        verify(modelServerTransport, times(2)).chatCompletions(anyMap());
+    }
+
+    @Test
+    void testBatchRejectedByLimiterFailsWholeBatch() throws Exception {
+        start(2, 60_000, true);
+        when(modelServerTransport.batchProcess(anyMap()))
+                .thenThrow(new RejectedExecutionException("模型服务并发已达上限(16)，请稍后重试"));
+
+        CompletableFuture<String> first = dispatcher.submit(request(0));
+        CompletableFuture<String> second = dispatcher.submit(request(1));
+
+        // 等待许可超时时不再逐个重试
+        ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        verify(modelServerTransport, never()).chatCompletions(anyMap());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCancelledRequestIsNotSent() throws Exception {
+        start(1, 0, false);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(modelServerTransport.chatCompletions(anyMap())).thenAnswer(invocation -> {
+            blocked.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return objectMapper.valueToTree(Map.of("ok", true));
+        });
+        // 在途上限为1：第一个请求发送中，第二个请求留在队列里
+        ReflectionTestUtils.setField(dispatcher, "inFlight", new Semaphore(1));
+
+        CompletableFuture<String> first = dispatcher.submit(request(0));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = dispatcher.submit(request(1));
+        // 调用方等待超时后取消
+        second.cancel(true);
+        release.countDown();
+
+        assertEquals("{\"ok\":true}", first.get(5, TimeUnit.SECONDS));
+        CompletableFuture<String> third = dispatcher.submit(request(2));
+        assertEquals("{\"ok\":true}", third.get(5, TimeUnit.SECONDS));
+
+        ArgumentCaptor<Map<String, Object>> sent = ArgumentCaptor.forClass(Map.class);
+        verify(modelServerTransport, times(2)).chatCompletions(sent.capture());
+        assertEquals(0, sent.getAllValues().get(0).get("n"));
+        assertEquals(2, sent.getAllValues().get(1).get("n"));
+    }
+}
@@ -0,0 +1,125 @@
+package com.tcm.service;
+
+import com.tcm.dto.CursorPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class VisitSearchServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private VisitSearchService visitSearchService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        visitSearchService = new VisitSearchService();
+        ReflectionTestUtils.setField(visitSearchService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(visitSearchService, "backfillBatchSize", 2);
+        ReflectionTestUtils.setField(visitSearchService, "maxHerbResults", 20);
+        ReflectionTestUtils.setField(visitSearchService, "trigramAvailable", true);
+    }
+
+    @Test
+    void testSearchVisitsRanksByTokensAndReturnsCursor() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(hit("3", 0.5));
+        rows.add(hit("2", 0.25));
+        rows.add(hit("1", 0.25));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(rows);
+
+        CursorPage<Map<String, Object>> page = visitSearchService.searchVisits("恶寒发热", null, null, 2);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).query(sql.capture(), any(RowMapper.class), args.capture());
+        assertTrue(sql.getValue().contains("search_vector @@ plainto_tsquery('simple', ?)"));
+        assertTrue(sql.getValue().endsWith("ORDER BY h.score DESC, h.id DESC LIMIT ?"));
+        assertArrayEquals(new Object[] {"恶寒 寒发 发热", "恶寒 寒发 发热", 3}, args.getValue());
+
+        assertEquals(2, page.getItems().size());
+        assertTrue(page.isHasMore());
+        assertNotNull(page.getNextCursor());
+
+        // 下一页从上一页最后一条的相关度和ID之后开始
+        reset(jdbcTemplate);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(new ArrayList<>());
+        visitSearchService.searchVisits("恶寒发热", null, page.getNextCursor(), 2);
+        verify(jdbcTemplate).query(sql.capture(), any(RowMapper.class), args.capture());
+        assertTrue(sql.getValue().contains("WHERE h.score < ? OR (h.score = ? AND h.id < ?)"));
+        assertArrayEquals(new Object[] {"恶寒 寒发 发热", "恶寒 寒发 发热", 0.25, 0.25, 2L, 3}, args.getValue());
+    }
+
+    @Test
+    void testSearchVisitsByHerbOnlyEscapesLikePattern() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(new ArrayList<>());
+
+        visitSearchService.searchVisits(null, " 桂枝_% ", null, null);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).query(sql.capture(), any(RowMapper.class), args.capture());
+        assertFalse(sql.getValue().contains("search_vector"));
+        assertTrue(sql.getValue().contains("(pd.herb_name % ? OR pd.herb_name LIKE ? ESCAPE '\\')"));
+        assertArrayEquals(new Object[] {"桂枝_%", "%桂枝\\_\\%%", 21}, args.getValue());
+    }
+
+    @Test
+    void testSearchVisitsRejectsEmptyQueryAndBadCursor() {
+        assertThrows(IllegalArgumentException.class, () -> visitSearchService.searchVisits("，。", null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> visitSearchService.searchVisits("头痛", null, "not-a-cursor", null));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testSearchHerbNamesFallsBackToContainsWithoutTrigram() {
+        ReflectionTestUtils.setField(visitSearchService, "trigramAvailable", false);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(new ArrayList<>());
+
+        visitSearchService.searchHerbNames("黄芪", 50);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).query(sql.capture(), any(RowMapper.class), args.capture());
+        assertFalse(sql.getValue().contains("similarity"));
+        assertArrayEquals(new Object[] {"%黄芪%", 20}, args.getValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBackfillUpdatesInBatchesUntilNoneLeft() {
+        List<Object[]> first = List.of(new Object[] {"咳 咳嗽 嗽", 1L}, new Object[] {"", 2L});
+        List<Object[]> second = List.<Object[]>of(new Object[] {"痛", 3L});
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(2)))
+                .thenReturn((List) first, (List) second, (List) List.of());
+
+        assertEquals(3, visitSearchService.backfillSearchTokens());
+
+        verify(jdbcTemplate).batchUpdate("UPDATE visits SET search_tokens = ? WHERE id = ? AND search_tokens IS NULL", first);
+        verify(jdbcTemplate).batchUpdate("UPDATE visits SET search_tokens = ? WHERE id = ? AND search_tokens IS NULL", second);
+    }
+
+    private Map<String, Object> hit(String id, double score) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("score", score);
+        return row;
+    }
+}
@@ -0,0 +1,85 @@
+package com.tcm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VisitSnapshotCacheTest {
+
+    private VisitSnapshotCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new VisitSnapshotCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 30L);
+        cache.init();
+    }
+
+    private Map<String, Object> data(String name) {
+        Map<String, Object> patientInfo = new HashMap<>();
+        patientInfo.put("姓名", name);
+        Map<String, Object> data = new HashMap<>();
+        data.put("患者信息", patientInfo);
+        return data;
+    }
+
+    @Test
+    void testSnapshotIsCopiedOnPutAndGet() {
+        Map<String, Object> data = data("张三");
+        cache.put(1L, cache.currentVersion(), 10L, Collections.emptyList(), data);
+        data.put("编号", 1L);
+
+        Map<String, Object> cached = cache.get(1L);
+        assertNull(cached.get("编号"));
+        cached.put("编号", 2L);
+        assertNull(cache.get(1L).get("编号"));
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    void testStaleReadIsNotWrittenBack() {
+        long version = cache.currentVersion();
+        // 查库期间有相关写入
+        cache.visitChanged(1L);
+
+        assertFalse(cache.put(1L, version, 10L, Collections.emptyList(), data("旧数据")));
+        assertNull(cache.get(1L));
+        assertTrue(cache.put(1L, cache.currentVersion(), 10L, Collections.emptyList(), data("新数据")));
+    }
+
+    @Test
+    void testPatientAndPrescriptionChangesInvalidateOwningVisits() {
+        cache.put(1L, cache.currentVersion(), 10L, List.of(100L), data("张三"));
+        cache.put(2L, cache.currentVersion(), 10L, List.of(200L), data("张三"));
+        cache.put(3L, cache.currentVersion(), 20L, List.of(300L), data("李四"));
+
+        cache.patientChanged(10L);
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+        assertNotNull(cache.get(3L));
+
+        cache.prescriptionDetailChanged(300L);
+        assertNull(cache.get(3L));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testPrescriptionMovedToAnotherVisitInvalidatesBoth() {
+        cache.put(1L, cache.currentVersion(), 10L, List.of(100L), data("张三"));
+        cache.put(2L, cache.currentVersion(), 10L, Collections.emptyList(), data("张三"));
+
+        cache.prescriptionChanged(100L, 2L);
+
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+    }
+}
@@ -0,0 +1,144 @@
+package com.tcm.service.impl;
+
+import com.tcm.model.DiagnosticImage;
+import com.tcm.model.Doctor;
+import com.tcm.model.MedicineInventory;
+import com.tcm.model.Patient;
+import com.tcm.model.Prescription;
+import com.tcm.model.Visit;
+import com.tcm.utils.FieldProjection;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 各实体字段白名单的查询测试
+ * 使用H2内存数据库（PostgreSQL兼容模式）按白名单中的全部字段执行一次投影查询，保证每个属性路径都能生成合法的查询
+ */
+public class EntityFieldProjectionTest {
+
+    private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:projection-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        dataSource.setDriverClassName("org.h2.Driver");
+
+        entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(dataSource);
+        entityManagerFactoryBean.setPackagesToScan("com.tcm.model");
+        entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Properties properties = new Properties();
+        properties.put("hibernate.hbm2ddl.auto", "create");
+        properties.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        entityManagerFactoryBean.setJpaProperties(properties);
+        entityManagerFactoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+        entityManager = entityManagerFactory.createEntityManager();
+    }
+
+    @AfterEach
+    void tearDown() {
+        entityManager.close();
+        entityManagerFactoryBean.destroy();
+    }
+
+    @Test
+    void testEveryWhitelistedFieldIsQueryable() {
+        Prescription prescription = createPrescription();
+        Long imageId = persistImage(prescription.getVisit());
+        Map<FieldProjection<?>, Long> projections = Map.of(
+                PatientServiceImpl.PATIENT_FIELDS, prescription.getVisit().getPatient().getId(),
+                VisitServiceImpl.VISIT_FIELDS, prescription.getVisit().getId(),
+                PrescriptionServiceImpl.PRESCRIPTION_FIELDS, prescription.getId(),
+                DoctorServiceImpl.DOCTOR_FIELDS, prescription.getDoctor().getId(),
+                MedicineInventoryServiceImpl.MEDICINE_FIELDS, persistMedicine(),
+                DiagnosticImageServiceImpl.IMAGE_FIELDS, imageId);
+
+        for (Map.Entry<FieldProjection<?>, Long> entry : projections.entrySet()) {
+            List<String> fields = entry.getKey().availableFields();
+            List<Map<String, Object>> rows = select(entry.getKey(), fields);
+            assertEquals(1, rows.size());
+            assertEquals(fields, List.copyOf(rows.get(0).keySet()));
+            assertEquals(entry.getValue().toString(), rows.get(0).get("id"));
+        }
+    }
+
+    @Test
+    void testPrescriptionSummaryJoinsPatientAndDoctorNames() {
+        Prescription prescription = createPrescription();
+        FieldProjection<Prescription> projection = PrescriptionServiceImpl.PRESCRIPTION_FIELDS;
+
+        Map<String, Object> row = projection.select(entityManager, null, projection.resolve(null), null, 0).get(0);
+
+        assertEquals(prescription.getVisit().getId().toString(), row.get("visitId"));
+        assertEquals(prescription.getVisit().getPatient().getId().toString(), row.get("patientId"));
+        assertEquals("张三", row.get("patientName"));
+        assertEquals("李医生", row.get("doctorName"));
+        assertEquals("桂枝汤", row.get("prescriptionName"));
+        assertFalse(row.containsKey("doctorAdvice"));
+    }
+
+    private <T> List<Map<String, Object>> select(FieldProjection<T> projection, List<String> fields) {
+        return projection.select(entityManager, null, fields, Sort.by("id"), 0);
+    }
+
+    private Prescription createPrescription() {
+        entityManager.getTransaction().begin();
+        Patient patient = new Patient();
+        patient.setName("张三");
+        entityManager.persist(patient);
+        Doctor doctor = new Doctor();
+        doctor.setName("李医生");
+        entityManager.persist(doctor);
+        Visit visit = new Visit();
+        visit.setPatient(patient);
+        visit.setDoctor(doctor);
+        entityManager.persist(visit);
+        Prescription prescription = new Prescription();
+        prescription.setVisit(visit);
+        prescription.setDoctor(doctor);
+        prescription.setPrescriptionName("桂枝汤");
+        prescription.setDoctorAdvice("忌生冷");
+        entityManager.persist(prescription);
+        entityManager.getTransaction().commit();
+        return prescription;
+    }
+
+    private Long persistMedicine() {
+        entityManager.getTransaction().begin();
+        MedicineInventory medicine = new MedicineInventory();
+        medicine.setMedicineCode("HQ001");
+        medicine.setMedicineName("黄芪");
+        medicine.setStockQuantity(100);
+        entityManager.persist(medicine);
+        entityManager.getTransaction().commit();
+        return medicine.getId();
+    }
+
+    private Long persistImage(Visit visit) {
+        entityManager.getTransaction().begin();
+        DiagnosticImage image = new DiagnosticImage();
+        image.setVisit(visit);
+        image.setImageType("tongue");
+        image.setImageName("tongue.png");
+        entityManager.persist(image);
+        entityManager.getTransaction().commit();
+        return image.getId();
+    }
+}
@@ -0,0 +1,37 @@
+package com.tcm.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChineseNgramTokenizerTest {
+
+    @Test
+    void testIndexTokensKeepUnigramsAndBigramsInOrder() {
+        assertEquals("恶 恶寒 寒 寒发 发 发热 热 头 头痛 痛",
+                ChineseNgramTokenizer.indexTokens("恶寒发热，头痛"));
+        // null字段忽略，字母数字整体作为一个词并转小写，全角字符转半角
+        assertEquals("咳 咳嗽 嗽 copd 2 型", ChineseNgramTokenizer.indexTokens(null, "咳嗽", "ＣＯＰＤ 2型"));
+        assertEquals("", ChineseNgramTokenizer.indexTokens(null, "", "；，"));
+    }
+
+    @Test
+    void testQueryTokensUseBigramsExceptSingleCharacters() {
+        assertEquals(List.of("恶寒", "寒发", "发热"), ChineseNgramTokenizer.queryTokens("恶寒发热"));
+        assertEquals(List.of("咳", "copd"), ChineseNgramTokenizer.queryTokens(" 咳 COPD "));
+        // 重复的检索词只保留一个
+        assertEquals(List.of("头痛", "痛头"), ChineseNgramTokenizer.queryTokens("头痛头痛"));
+        assertTrue(ChineseNgramTokenizer.queryTokens(null).isEmpty());
+        assertTrue(ChineseNgramTokenizer.queryTokens("，。!").isEmpty());
+    }
+
+    @Test
+    void testQueryTokensAreContainedInIndexTokens() {
+        List<String> indexed = List.of(ChineseNgramTokenizer.indexTokens("肝郁脾虚证").split(" "));
+        assertTrue(indexed.containsAll(ChineseNgramTokenizer.queryTokens("肝郁脾虚")));
+        assertTrue(indexed.containsAll(ChineseNgramTokenizer.queryTokens("脾")));
+        assertFalse(indexed.containsAll(ChineseNgramTokenizer.queryTokens("脾肾")));
+    }
+}
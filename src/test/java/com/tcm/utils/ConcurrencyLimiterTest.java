@@ -0,0 +1,96 @@
+package com.tcm.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    void testConcurrencyNeverExceedsLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("测试", 4, 10000);
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch done = new CountDownLatch(200);
+        for (int i = 0; i < 200; i++) {
+            executor.execute(() -> {
+                try (ConcurrencyLimiter.Permit permit = limiter.acquire()) {
+                    peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+                    Thread.sleep(1);
+                    current.decrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertTrue(peak.get() <= 4, "峰值并发: " + peak.get());
+        assertEquals(0, limiter.getActive());
+    }
+
+    @Test
+    void testAcquireTimesOutWhenFull() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("模型服务", 1, 20);
+        ConcurrencyLimiter.Permit held = limiter.acquire();
+
+        RejectedExecutionException e = assertThrows(RejectedExecutionException.class, limiter::acquire);
+        assertTrue(e.getMessage().contains("模型服务"));
+
+        // 重复关闭只归还一次
+        held.close();
+        held.close();
+        assertEquals(0, limiter.getActive());
+        try (ConcurrencyLimiter.Permit permit = limiter.acquire()) {
+            assertEquals(1, limiter.getActive());
+        }
+    }
+
+    @Test
+    void testDataSourceReleasesPermitWhenConnectionClosed() throws Exception {
+        DataSource target = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        when(target.getConnection()).thenReturn(connection);
+        when(connection.isClosed()).thenReturn(false);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("数据库", 1, 20);
+        ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(target, limiter);
+
+        Connection limited = dataSource.getConnection();
+        assertFalse(limited.isClosed());
+        assertEquals(1, limiter.getActive());
+        // 连接未归还时不能再获取
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+        limited.close();
+        verify(connection).close();
+        assertEquals(0, limiter.getActive());
+        dataSource.getConnection().close();
+        assertEquals(0, limiter.getActive());
+    }
+
+    @Test
+    void testDataSourceReleasesPermitWhenPoolFails() throws Exception {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenThrow(new SQLTransientConnectionException("连接池超时"));
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("数据库", 1, 20);
+        ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(target, limiter);
+
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertEquals(0, limiter.getActive());
+    }
+}
@@ -0,0 +1,40 @@
+package com.tcm.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvReaderTest {
+
+    @Test
+    void testQuotedFieldsAndLineNumbers() throws IOException {
+        String csv = "\uFEFFname,chiefComplaint,age\r\n"
+                + "张三,\"恶寒发热，\"\"头痛\"\"\",45\r\n"
+                + "\r\n"
+                + "李四,\"咳嗽\n痰多\",\n"
+                + "王五,,30";
+        CsvReader reader = new CsvReader(new StringReader(csv));
+
+        assertEquals(List.of("name", "chiefComplaint", "age"), reader.next());
+        assertEquals(List.of("张三", "恶寒发热，\"头痛\"", "45"), reader.next());
+        assertEquals(2, reader.getRecordLine());
+        // 空行跳过，引号内的换行属于字段内容
+        assertEquals(List.of("李四", "咳嗽\n痰多", ""), reader.next());
+        assertEquals(4, reader.getRecordLine());
+        assertEquals(List.of("王五", "", "30"), reader.next());
+        assertEquals(6, reader.getRecordLine());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void testUnclosedQuoteIsRejected() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("name\n\"张三\n"));
+
+        assertEquals(List.of("name"), reader.next());
+        assertThrows(IllegalArgumentException.class, reader::next);
+    }
+}
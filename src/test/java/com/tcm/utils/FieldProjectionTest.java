@@ -0,0 +1,90 @@
+package com.tcm.utils;
+
+import com.tcm.dto.CursorPage;
+import com.tcm.model.Visit;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class FieldProjectionTest {
+
+    private FieldProjection<Visit> projection() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("id", "id");
+        attributes.put("patientId", "patient.id");
+        attributes.put("patientName", "patient.name");
+        attributes.put("chiefComplaint", "chiefComplaint");
+        attributes.put("aiAnalysisRawResponse", "aiAnalysisRawResponse");
+        attributes.put("createdAt", "createdAt");
+        return new FieldProjection<>(Visit.class, attributes, List.of("id", "patientName", "createdAt"));
+    }
+
+    @Test
+    void testResolveUsesDefaultsAndWhitelistOrder() {
+        FieldProjection<Visit> projection = projection();
+
+        assertEquals(List.of("id", "patientName", "createdAt"), projection.resolve(null));
+        assertEquals(List.of("id", "patientName", "createdAt"), projection.resolve(" , "));
+        // 按白名单顺序返回并去重
+        assertEquals(List.of("id", "chiefComplaint"), projection.resolve("chiefComplaint, id,chiefComplaint"));
+    }
+
+    @Test
+    void testResolveRejectsUnknownField() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> projection().resolve("id,diagnosticImages"));
+        assertTrue(e.getMessage().contains("diagnosticImages"));
+    }
+
+    @Test
+    void testIdFieldsAreRenderedAsStrings() {
+        FieldProjection<Visit> projection = projection();
+
+        assertEquals("1858000000000000001", projection.toValue("id", 1858000000000000001L));
+        assertEquals("42", projection.toValue("patientId", 42L));
+        assertEquals("张三", projection.toValue("patientName", "张三"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testProjectedPageDropsCursorFieldsNotRequested() {
+        FieldProjection<Visit> projection = mock(FieldProjection.class);
+        EntityManager entityManager = mock(EntityManager.class);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        LocalDateTime base = LocalDateTime.of(2024, 5, 1, 10, 0);
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("patientName", "患者" + i);
+            row.put("id", String.valueOf(100 - i));
+            row.put("createdAt", base.minusSeconds(i));
+            rows.add(row);
+        }
+        when(projection.select(eq(entityManager), any(), eq(List.of("patientName", "id", "createdAt")), any(Sort.class), anyInt()))
+                .thenReturn(rows);
+
+        CursorPage<Map<String, Object>> page = KeysetPagination.fetch(entityManager, projection, null,
+                List.of("patientName"), null, 2, false);
+
+        assertEquals(2, page.getItems().size());
+        assertEquals(Map.of("patientName", "患者0"), page.getItems().get(0));
+        String decoded = new String(Base64.getUrlDecoder().decode(page.getNextCursor()), StandardCharsets.UTF_8);
+        assertEquals("2024-05-01T09:59:59_99", decoded);
+        verify(projection).select(eq(entityManager), any(), any(), any(Sort.class), eq(3));
+        verify(projection, never()).count(any(), any(Specification.class));
+    }
+}
@@ -0,0 +1,62 @@
+package com.tcm.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HammingBkTreeTest {
+
+    @Test
+    void testNearestMatchesBruteForce() {
+        Random random = new Random(42);
+        HammingBkTree tree = new HammingBkTree();
+        List<long[]> all = new ArrayList<>();
+        long base = random.nextLong();
+        for (long id = 1; id <= 2000; id++) {
+            // 一半围绕同一个哈希随机翻转少量位，模拟相似图片
+            long hash = id % 2 == 0 ? base ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64)) : random.nextLong();
+            tree.add(hash, id);
+            all.add(new long[]{id, hash});
+        }
+        assertEquals(2000, tree.size());
+
+        for (int q = 0; q < 50; q++) {
+            long query = q % 2 == 0 ? base ^ random.nextInt(256) : random.nextLong();
+            List<Integer> expected = all.stream()
+                    .map(e -> HammingBkTree.distance(e[1], query))
+                    .sorted()
+                    .limit(10)
+                    .collect(Collectors.toList());
+            List<Integer> actual = tree.nearest(query, 10, null).stream()
+                    .map(HammingBkTree.Match::getDistance)
+                    .collect(Collectors.toList());
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void testDuplicatesExcludeAndRemove() {
+        HammingBkTree tree = new HammingBkTree();
+        tree.add(0b1010L, 1L);
+        tree.add(0b1010L, 2L);
+        tree.add(0b1011L, 3L);
+        tree.add(-1L, 4L);
+
+        List<HammingBkTree.Match> matches = tree.nearest(0b1010L, 3, 1L);
+        assertEquals(List.of(2L, 3L, 4L), matches.stream().map(HammingBkTree.Match::getId).collect(Collectors.toList()));
+        assertEquals(0, matches.get(0).getDistance());
+        assertEquals(1, matches.get(1).getDistance());
+
+        assertTrue(tree.remove(0b1010L, 2L));
+        assertFalse(tree.remove(0b1010L, 2L));
+        assertEquals(3, tree.size());
+        assertEquals(3L, tree.nearest(0b1010L, 1, 1L).get(0).getId());
+        assertTrue(tree.nearest(0L, 0, null).isEmpty());
+    }
+}
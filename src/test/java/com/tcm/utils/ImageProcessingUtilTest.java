@@ -0,0 +1,123 @@
+package com.tcm.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageProcessingUtilTest {
+
+    @TempDir
+    Path tempDir;
+
+    private byte[] encode(int width, int height, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(Color.RED);
+        g2d.fillRect(0, 0, width, height);
+        // 中心标记一个蓝点，用于验证裁剪位置
+        image.setRGB(width / 2, height / 2, Color.BLUE.getRGB());
+        g2d.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void testWriteToCopiesStreamAndRefusesOverwrite() throws IOException {
+        byte[] content = new byte[200_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Path target = tempDir.resolve("upload.bin");
+
+        assertEquals(content.length, ImageProcessingUtil.writeTo(new ByteArrayInputStream(content), target));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertThrows(FileAlreadyExistsException.class,
+                () -> ImageProcessingUtil.writeTo(new ByteArrayInputStream(content), target));
+    }
+
+    @Test
+    void testReadDimensionsFromHeader() throws IOException {
+        Path png = tempDir.resolve("a.png");
+        Files.write(png, encode(800, 600, "png"));
+        Path jpg = tempDir.resolve("b.jpg");
+        Files.write(jpg, encode(300, 1200, "jpg"));
+        Path text = tempDir.resolve("c.png");
+        Files.writeString(text, "not an image");
+
+        assertEquals(new Dimension(800, 600), ImageProcessingUtil.readDimensions(png));
+        assertEquals(new Dimension(300, 1200), ImageProcessingUtil.readDimensions(jpg));
+        assertNull(ImageProcessingUtil.readDimensions(text));
+    }
+
+    @Test
+    void testProcessImageCropsLargeImageFromCenter() throws IOException {
+        Path source = tempDir.resolve("large.png");
+        Files.write(source, encode(1025, 801, "png"));
+        Path target = tempDir.resolve("large_processed.png");
+
+        ImageProcessingUtil.processImage(source, target);
+
+        BufferedImage result = ImageIO.read(target.toFile());
+        assertEquals(512, result.getWidth());
+        assertEquals(512, result.getHeight());
+        assertEquals(Color.BLUE.getRGB(), result.getRGB(256, 256));
+    }
+
+    @Test
+    void testProcessImagePadsNarrowImageAndKeepsSmallImage() throws IOException {
+        Path narrow = tempDir.resolve("narrow.png");
+        Files.write(narrow, encode(200, 900, "png"));
+        Path narrowTarget = tempDir.resolve("narrow_processed.png");
+        ImageProcessingUtil.processImage(narrow, narrowTarget);
+
+        BufferedImage padded = ImageIO.read(narrowTarget.toFile());
+        assertEquals(512, padded.getWidth());
+        assertEquals(512, padded.getHeight());
+        assertEquals(Color.WHITE.getRGB(), padded.getRGB(0, 256));
+        assertEquals(Color.RED.getRGB(), padded.getRGB(256, 0));
+
+        Path small = tempDir.resolve("small.png");
+        Files.write(small, encode(100, 80, "png"));
+        Path smallTarget = tempDir.resolve("small_processed.png");
+        ImageProcessingUtil.processImage(small, smallTarget);
+
+        BufferedImage kept = ImageIO.read(smallTarget.toFile());
+        assertEquals(100, kept.getWidth());
+        assertEquals(80, kept.getHeight());
+    }
+
+    @Test
+    void testDifferenceHashToleratesReencodingButSeparatesDifferentImages() throws IOException {
+        BufferedImage gradient = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        BufferedImage mirrored = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 480; y++) {
+            for (int x = 0; x < 640; x++) {
+                int value = (x * 255 / 640 + (y / 60) * 20) % 256;
+                gradient.setRGB(x, y, new Color(value, value / 2, 255 - value).getRGB());
+                mirrored.setRGB(639 - x, y, new Color(value, value / 2, 255 - value).getRGB());
+            }
+        }
+        Path png = tempDir.resolve("gradient.png");
+        Path jpg = tempDir.resolve("gradient.jpg");
+        Path other = tempDir.resolve("mirrored.png");
+        ImageIO.write(gradient, "png", png.toFile());
+        ImageIO.write(gradient, "jpg", jpg.toFile());
+        ImageIO.write(mirrored, "png", other.toFile());
+
+        long hash = ImageProcessingUtil.differenceHash(png);
+        assertTrue(HammingBkTree.distance(hash, ImageProcessingUtil.differenceHash(jpg)) <= 4);
+        assertTrue(HammingBkTree.distance(hash, ImageProcessingUtil.differenceHash(other)) > 20);
+    }
+}
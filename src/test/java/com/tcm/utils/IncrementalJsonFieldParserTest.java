@@ -0,0 +1,72 @@
+package com.tcm.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalJsonFieldParserTest {
+
+    private static final String CONTENT = "```json\n{\n" +
+            "  \"中医病名\": \"感冒\",\n" +
+            "  \"证型推理\": \"风寒束表证，\\\"卫阳被遏\\\"\",\n" +
+            "  \"治则治法\": \"疏风散寒，宣肺解表\",\n" +
+            "  \"置信度\": 0.8,\n" +
+            "  \"最终结果\": {\n" +
+            "    \"处方名称\": \"荆防败毒散加减\",\n" +
+            "    \"处方组成\": [\"荆芥10g\", \"防风10g\"]\n" +
+            "  }\n" +
+            "}\n```";
+
+    @Test
+    void testFieldsEmittedAsSoonAsComplete() {
+        IncrementalJsonFieldParser parser = new IncrementalJsonFieldParser();
+        List<String> emittedAt = new ArrayList<>();
+
+        // 逐字符输入，记录每个字段在何时完成
+        for (int i = 0; i < CONTENT.length(); i++) {
+            for (Map.Entry<String, JsonNode> field : parser.feed(String.valueOf(CONTENT.charAt(i)))) {
+                emittedAt.add(field.getKey() + "@" + i);
+            }
+        }
+
+        assertEquals(5, emittedAt.size());
+        assertTrue(emittedAt.get(0).startsWith("中医病名@"));
+        // 中医病名在"感冒"的结束引号处立即返回，而不是等到整个JSON结束
+        int firstFieldEnd = Integer.parseInt(emittedAt.get(0).split("@")[1]);
+        assertEquals(CONTENT.indexOf("感冒") + 2, firstFieldEnd);
+        assertTrue(emittedAt.get(4).startsWith("最终结果@"));
+        assertTrue(parser.isComplete());
+    }
+
+    @Test
+    void testValuesAreParsed() {
+        IncrementalJsonFieldParser parser = new IncrementalJsonFieldParser();
+        List<Map.Entry<String, JsonNode>> fields = new ArrayList<>();
+        for (int i = 0; i < CONTENT.length(); i += 7) {
+            fields.addAll(parser.feed(CONTENT.substring(i, Math.min(CONTENT.length(), i + 7))));
+        }
+
+        assertEquals("感冒", fields.get(0).getValue().asText());
+        assertEquals("风寒束表证，\"卫阳被遏\"", fields.get(1).getValue().asText());
+        assertEquals("置信度", fields.get(3).getKey());
+        assertEquals(0.8, fields.get(3).getValue().asDouble());
+        JsonNode finalResult = fields.get(4).getValue();
+        assertEquals("荆防败毒散加减", finalResult.path("处方名称").asText());
+        assertEquals(2, finalResult.path("处方组成").size());
+    }
+
+    @Test
+    void testTrailingScalarBeforeRootClose() {
+        IncrementalJsonFieldParser parser = new IncrementalJsonFieldParser();
+        List<Map.Entry<String, JsonNode>> fields = parser.feed("{\"a\": true, \"b\": 12}");
+
+        assertEquals(2, fields.size());
+        assertTrue(fields.get(0).getValue().asBoolean());
+        assertEquals(12, fields.get(1).getValue().asInt());
+    }
+}
@@ -0,0 +1,79 @@
+package com.tcm.utils;
+
+import com.tcm.dto.CursorPage;
+import com.tcm.model.Patient;
+import com.tcm.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class KeysetPaginationTest {
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private List<Patient> patients(int count) {
+        List<Patient> patients = new ArrayList<>();
+        LocalDateTime base = LocalDateTime.of(2024, 5, 1, 10, 0);
+        for (int i = 0; i < count; i++) {
+            Patient patient = new Patient();
+            patient.setId(100L - i);
+            patient.setCreatedAt(base.minusSeconds(i));
+            patients.add(patient);
+        }
+        return patients;
+    }
+
+    @Test
+    void testExtraRowMeansMorePages() {
+        when(patientRepository.findBy(any(Specification.class), any())).thenReturn(patients(3));
+
+        CursorPage<Patient> page = KeysetPagination.fetch(patientRepository, null, null, 2, false);
+
+        assertEquals(2, page.getItems().size());
+        assertTrue(page.isHasMore());
+        assertNull(page.getTotal());
+        String decoded = new String(Base64.getUrlDecoder().decode(page.getNextCursor()), StandardCharsets.UTF_8);
+        assertEquals("2024-05-01T09:59:59_99", decoded);
+        // 未要求总数时不执行count查询
+        verify(patientRepository, never()).count(any(Specification.class));
+    }
+
+    @Test
+    void testLastPageHasNoCursorAndTotalOnDemand() {
+        when(patientRepository.findBy(any(Specification.class), any())).thenReturn(patients(1));
+        when(patientRepository.count(any(Specification.class))).thenReturn(41L);
+
+        String cursor = Base64.getUrlEncoder().encodeToString("2024-05-01T10:00_101".getBytes(StandardCharsets.UTF_8));
+        CursorPage<Patient> page = KeysetPagination.fetch(patientRepository, null, cursor, 1000, true);
+
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+        assertEquals(KeysetPagination.MAX_PAGE_SIZE, page.getSize());
+        assertEquals(41L, page.getTotal());
+    }
+
+    @Test
+    void testInvalidCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> KeysetPagination.fetch(patientRepository, null, "not-a-cursor", null, false));
+        verifyNoInteractions(patientRepository);
+    }
+}
@@ -0,0 +1,29 @@
+package com.tcm.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PinyinUtilTest {
+
+    @Test
+    void testFullPinyinAndInitials() {
+        assertEquals(Set.of("huangqi"), PinyinUtil.fullPinyin("黄芪"));
+        assertEquals(Set.of("hq"), PinyinUtil.initials("黄芪"));
+        // ü 写作 v，字母数字保留，标点忽略
+        assertTrue(PinyinUtil.fullPinyin("绿豆").contains("lvdou"));
+        assertEquals(Set.of("vb12"), PinyinUtil.initials("V-B12"));
+        assertTrue(PinyinUtil.initials("，").isEmpty());
+    }
+
+    @Test
+    void testPolyphonicCharactersProduceAllReadings() {
+        // 白术读 baizhu，"术"另有 shu 的读音
+        Set<String> initials = PinyinUtil.initials("白术");
+        assertTrue(initials.contains("bz"));
+        assertTrue(initials.contains("bs"));
+        assertTrue(PinyinUtil.fullPinyin("白术").contains("baizhu"));
+    }
+}
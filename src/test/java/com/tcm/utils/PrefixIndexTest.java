@@ -0,0 +1,47 @@
+package com.tcm.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrefixIndexTest {
+
+    @Test
+    void testSearchReturnsSortedDistinctValuesUnderPrefix() {
+        PrefixIndex<String> index = PrefixIndex.<String>builder(Comparator.comparingInt(String::length).thenComparing(s -> s), 3)
+                .add("黄芪", "黄芪")
+                .add("hq", "黄芪")
+                .add("huangqi", "黄芪")
+                .add("黄芩", "黄芩")
+                .add("hq", "黄芩")
+                .add("黄连", "黄连")
+                .add("黄芪片", "黄芪片")
+                .add("", "空键")
+                .build();
+
+        assertEquals(List.of("黄芩", "黄芪", "黄连"), index.search("黄", 10));
+        assertEquals(List.of("黄芪", "黄芪片"), index.search("黄芪", 10));
+        // 同一个值由多个键命中时只出现一次
+        assertEquals(List.of("黄芩", "黄芪"), index.search("h", 10));
+        assertEquals(List.of("黄芪"), index.search("huang", 10));
+        assertEquals(List.of("黄芩"), index.search("黄", 1));
+        assertTrue(index.search("白", 10).isEmpty());
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search(null, 10).isEmpty());
+    }
+
+    @Test
+    void testSearchIsLimitedToMaxResults() {
+        PrefixIndex.Builder<Integer> builder = PrefixIndex.builder(Comparator.naturalOrder(), 5);
+        for (int i = 20; i > 0; i--) {
+            builder.add("key" + i, i);
+        }
+        PrefixIndex<Integer> index = builder.build();
+
+        assertEquals(List.of(1, 2, 3, 4, 5), index.search("key", 100));
+        assertEquals(List.of(1, 10, 11, 12, 13), index.search("key1", 100));
+    }
+}
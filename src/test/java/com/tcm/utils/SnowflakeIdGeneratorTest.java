@@ -0,0 +1,216 @@
+package com.tcm.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnowflakeIdGeneratorTest {
+
+    /**
+     * 时钟可控的生成器
+     */
+    private static class ManualClockGenerator extends SnowflakeIdGenerator {
+        private final AtomicLong now = new AtomicLong(1700000000000L);
+
+        ManualClockGenerator(long maxClockDriftMs) {
+            super(1, 1, maxClockDriftMs);
+        }
+
+        @Override
+        protected long timeGen() {
+            return now.get();
+        }
+    }
+
+    @Test
+    void testConcurrentIdsAreUnique() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, 2);
+        int threads = 8;
+        int perThread = 200_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            long[][] results = new long[threads][perThread];
+            for (int t = 0; t < threads; t++) {
+                final long[] ids = results[t];
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+            long[] all = new long[threads * perThread];
+            for (int t = 0; t < threads; t++) {
+                // 单个线程内ID严格递增
+                for (int i = 1; i < perThread; i++) {
+                    assertTrue(results[t][i] > results[t][i - 1]);
+                }
+                System.arraycopy(results[t], 0, all, t * perThread, perThread);
+            }
+            Arrays.sort(all);
+            for (int i = 1; i < all.length; i++) {
+                assertNotEquals(all[i - 1], all[i], "重复ID: " + all[i]);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSequenceOverflowBorrowsNextMillisecond() {
+        ManualClockGenerator generator = new ManualClockGenerator(5000);
+        long previous = generator.nextId();
+        // 时钟不动，单毫秒4096个序列号用尽后继续生成，不阻塞
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void testSmallClockRollbackKeepsIdsIncreasing() {
+        ManualClockGenerator generator = new ManualClockGenerator(5000);
+        long before = generator.nextId();
+        generator.now.addAndGet(-1000);
+        long after = generator.nextId();
+        assertTrue(after > before);
+    }
+
+    @Test
+    void testLargeClockRollbackIsRejected() {
+        ManualClockGenerator generator = new ManualClockGenerator(5000);
+        generator.nextId();
+        generator.now.addAndGet(-10_000);
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    void testExpiredLeaseRejectsIdsUntilRenewed() {
+        ManualClockGenerator generator = new ManualClockGenerator(5000);
+        generator.setLeaseExpiry(generator.now.get() + 1000);
+        long before = generator.nextId();
+        generator.now.addAndGet(1000);
+        assertThrows(IllegalStateException.class, generator::nextId);
+        // 续期后恢复发号，逻辑时钟继续递增
+        generator.setLeaseExpiry(generator.now.get() + 1000);
+        assertTrue(generator.nextId() > before);
+    }
+
+    @Test
+    void testSustainedOverflowWaitsInsteadOfFailing() throws Exception {
+        ManualClockGenerator generator = new ManualClockGenerator(2);
+        generator.nextId();
+        // 时钟不动时借用到领先两毫秒后达到上限，下一次生成需要等待时钟前进
+        for (int i = 0; i < 8192; i++) {
+            generator.nextId();
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> pending = executor.submit(generator::nextId);
+            Thread.sleep(50);
+            assertFalse(pending.isDone());
+            generator.now.addAndGet(1);
+            assertTrue(pending.get(5, TimeUnit.SECONDS) > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testReconfigureWhileGeneratingProducesNoDuplicates() throws Exception {
+        int threads = 4;
+        int perThread = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean generating = new AtomicBoolean(true);
+        try {
+            SnowflakeIdGenerator.configure(1, 1, SnowflakeIdGenerator.DEFAULT_MAX_CLOCK_DRIFT_MS);
+            long[][] results = new long[threads][perThread];
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                final long[] ids = results[t];
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = SnowflakeIdGenerator.getInstance().nextId();
+                    }
+                    return null;
+                });
+            }
+            // 生成过程中反复重新配置为相同的机器ID（如续租失败后重新租到同一个ID）
+            Future<?> reconfigure = executor.submit(() -> {
+                start.await();
+                while (generating.get()) {
+                    SnowflakeIdGenerator.configure(1, 1, SnowflakeIdGenerator.DEFAULT_MAX_CLOCK_DRIFT_MS);
+                }
+                return null;
+            });
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            generating.set(false);
+            reconfigure.get(5, TimeUnit.SECONDS);
+
+            long[] all = new long[threads * perThread];
+            for (int t = 0; t < threads; t++) {
+                System.arraycopy(results[t], 0, all, t * perThread, perThread);
+            }
+            Arrays.sort(all);
+            for (int i = 1; i < all.length; i++) {
+                assertNotEquals(all[i - 1], all[i], "重复ID: " + all[i]);
+            }
+        } finally {
+            generating.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testReconfigureContinuesLogicalClock() {
+        SnowflakeIdGenerator before = SnowflakeIdGenerator.configure(1, 1, SnowflakeIdGenerator.DEFAULT_MAX_CLOCK_DRIFT_MS);
+        long previous = before.nextId();
+        SnowflakeIdGenerator after = SnowflakeIdGenerator.configure(2, 1, SnowflakeIdGenerator.DEFAULT_MAX_CLOCK_DRIFT_MS);
+        try {
+            assertNotSame(before, after);
+            assertSame(after, SnowflakeIdGenerator.getInstance());
+            // 时间戳和序列号部分继续递增，旧实例也在同一个逻辑时钟上推进
+            long next = after.nextId();
+            assertEquals(2, (next >>> 12) & 31);
+            assertTrue(logicalClock(next) > logicalClock(previous));
+            assertTrue(logicalClock(before.nextId()) > logicalClock(next));
+        } finally {
+            SnowflakeIdGenerator.configure(1, 1, SnowflakeIdGenerator.DEFAULT_MAX_CLOCK_DRIFT_MS);
+        }
+    }
+
+    // 去掉机器ID和数据中心ID后的时间戳和序列号
+    private static long logicalClock(long id) {
+        return ((id >>> 22) << 12) | (id & 4095);
+    }
+
+    @Test
+    void testWorkerAndDatacenterAreEncoded() {
+        long id = new SnowflakeIdGenerator(7, 3).nextId();
+        assertEquals(7, (id >>> 12) & 31);
+        assertEquals(3, (id >>> 17) & 31);
+    }
+}
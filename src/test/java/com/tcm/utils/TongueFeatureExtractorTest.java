@@ -0,0 +1,69 @@
+package com.tcm.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TongueFeatureExtractorTest {
+
+    /**
+     * 白色补白背景上画一个红色舌体，中间一块白苔、边缘一块黄苔
+     */
+    private BufferedImage tongue() {
+        BufferedImage image = new BufferedImage(512, 512, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(Color.WHITE);
+        g2d.fillRect(0, 0, 512, 512);
+        g2d.setPaint(new Color(200, 60, 70));
+        g2d.fillRect(56, 56, 400, 400);
+        g2d.setPaint(new Color(225, 220, 215));
+        g2d.fillRect(156, 156, 200, 100);
+        g2d.setPaint(new Color(220, 190, 90));
+        g2d.fillRect(156, 356, 200, 50);
+        g2d.dispose();
+        return image;
+    }
+
+    @Test
+    void testExtractColorAndCoatingRatios() {
+        float[] features = TongueFeatureExtractor.extract(tongue());
+
+        assertEquals(TongueFeatureExtractor.FEATURE_LENGTH, features.length);
+        // 舌体400*400，白苔200*100，黄苔200*50；补白区域不计入
+        assertEquals(0.8125, features[12], 0.01);
+        assertEquals(0.125, features[15], 0.01);
+        assertEquals(0.0625, features[16], 0.01);
+        float hueSum = 0;
+        for (int i = 0; i < 8; i++) {
+            hueSum += features[i];
+        }
+        assertEquals(1.0, hueSum, 0.001);
+        // 纯色块只有交界处有梯度
+        assertTrue(features[18] < 0.02);
+    }
+
+    @Test
+    void testEncodeRoundTripAndDescribe() {
+        float[] features = TongueFeatureExtractor.extract(tongue());
+        byte[] encoded = TongueFeatureExtractor.encode(features);
+
+        assertEquals(TongueFeatureExtractor.FEATURE_LENGTH * 4, encoded.length);
+        assertArrayEquals(features, TongueFeatureExtractor.decode(encoded));
+
+        String text = TongueFeatureExtractor.describe(features);
+        assertTrue(text.startsWith("舌色 红81%"), text);
+        assertTrue(text.contains("舌苔 白13%/黄6%"), text);
+    }
+
+    @Test
+    void testBlankImageHasZeroFeatures() {
+        BufferedImage blank = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        float[] features = TongueFeatureExtractor.extract(blank);
+        for (float feature : features) {
+            assertEquals(0f, feature);
+        }
+    }
+}